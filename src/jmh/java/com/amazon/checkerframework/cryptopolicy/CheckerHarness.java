@@ -0,0 +1,134 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.JavacTool;
+
+/**
+ * Runs the checker in-process on sources held in memory and keeps the javac task open afterwards, so that
+ * benchmarks can call into the checker's type factory and visitor with a live compiler environment.
+ */
+final class CheckerHarness {
+
+    private final JavacTask task;
+    private final CryptoPolicyComplianceChecker checker;
+    private final StringWriter output = new StringWriter();
+    private final List<CompilationUnitTree> compilationUnits = new ArrayList<>();
+
+    private CheckerHarness(final List<JavaFileObject> sources, final List<String> extraOptions) throws IOException {
+        final List<String> options = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-classpath", System.getProperty("java.class.path"),
+            "-Astubs=" + System.getProperty("cryptopolicy.stubs", "stubs"),
+            "-Anocheckjdk",
+            "-nowarn"));
+        options.addAll(extraOptions);
+        this.checker = new CryptoPolicyComplianceChecker();
+        this.task = JavacTool.create().getTask(output, null, null, options, null, sources);
+        task.setProcessors(Collections.singletonList(checker));
+        task.parse().forEach(compilationUnits::add);
+        // analyze() runs annotation processing and flow analysis but, unlike call(), does not close the compiler.
+        task.analyze();
+    }
+
+    /**
+     * Check the given sources.
+     *
+     * @param sources      pairs of (class name, source code).
+     * @param extraOptions additional javac options.
+     * @return the harness holding the finished checker.
+     * @throws IOException if javac fails to read the sources.
+     */
+    static CheckerHarness check(final List<String[]> sources, final String... extraOptions) throws IOException {
+        final List<JavaFileObject> files = new ArrayList<>();
+        for (String[] source : sources) {
+            files.add(new SourceFile(source[0], source[1]));
+        }
+        return new CheckerHarness(files, Arrays.asList(extraOptions));
+    }
+
+    CryptoPolicyComplianceChecker getChecker() {
+        return checker;
+    }
+
+    CryptoPolicyComplianceVisitor getVisitor() {
+        return (CryptoPolicyComplianceVisitor) checker.getVisitor();
+    }
+
+    CryptoPolicyComplianceAnnotatedTypeFactory getTypeFactory() {
+        return (CryptoPolicyComplianceAnnotatedTypeFactory) checker.getTypeFactory();
+    }
+
+    /**
+     * @return the checked compilation units, in the order the sources were given.
+     */
+    List<CompilationUnitTree> getCompilationUnits() {
+        return compilationUnits;
+    }
+
+    /**
+     * @return the diagnostics javac printed while checking.
+     */
+    String getOutput() {
+        return output.toString();
+    }
+
+    /**
+     * @param root a compilation unit.
+     * @return the first argument of every getInstance call in the unit, in source order.
+     */
+    static List<ExpressionTree> getInstanceArguments(final CompilationUnitTree root) {
+        final List<ExpressionTree> arguments = new ArrayList<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitMethodInvocation(final MethodInvocationTree node, final Void unused) {
+                if (node.getMethodSelect().toString().endsWith("getInstance") && !node.getArguments().isEmpty()) {
+                    arguments.add(node.getArguments().get(0));
+                }
+                return super.visitMethodInvocation(node, unused);
+            }
+        }.scan(root, null);
+        return arguments;
+    }
+
+    /**
+     * @return a stream that discards everything, e.g. to hide the suppression audit lines while benchmarking.
+     */
+    static PrintStream discardingStream() {
+        return new PrintStream(new OutputStream() {
+            @Override
+            public void write(final int b) {
+                // discard
+            }
+        });
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String code;
+
+        SourceFile(final String className, final String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileClient;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileResult;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileServer;
+import com.sun.tools.javac.Main;
+
+/**
+ * Compares the latency per module of a cold javac, a fresh JVM per module like a build without the
+ * {@link CompileServer}, with a warm one: the same modules compiled one after the other by a single server. Every
+ * module is a {@link SyntheticCodebase} of the same size, so the warm latencies show how quickly the server warms
+ * up and the cold ones what every module pays without it. Prints module, coldMillis and warmMillis as CSV.
+ *
+ * <pre>
+ * ./gradlew compileServerBenchmark -PcompileServerArgs="--modules 20 --files 50 --sites 10"
+ * </pre>
+ */
+public final class CompileServerBenchmark {
+
+    private static final String HEADER = "module,files,coldMillis,warmMillis";
+
+    private CompileServerBenchmark() {
+    }
+
+    /**
+     * Options:
+     * <ul>
+     *     <li>--modules: number of modules, default 20.</li>
+     *     <li>--files: files per module, default 50.</li>
+     *     <li>--sites: crypto call sites per file, default 10.</li>
+     *     <li>--out: directory for the generated modules and results.csv, default build/compile-server.</li>
+     *     <li>--jvmArg: an argument for the JVMs that compile, may be repeated.</li>
+     * </ul>
+     *
+     * @param args the options.
+     * @throws Exception if generating or compiling a module fails.
+     */
+    public static void main(final String[] args) throws Exception {
+        int modules = 20;
+        int files = 50;
+        int sites = 10;
+        Path out = Paths.get("build", "compile-server");
+        final List<String> jvmArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--modules":
+                    modules = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--files":
+                    files = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--sites":
+                    sites = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[i + 1]);
+                    break;
+                case "--jvmArg":
+                    jvmArgs.add(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final List<List<String>> arguments = new ArrayList<>();
+        for (int module = 0; module < modules; module++) {
+            final Path directory = out.resolve("module-" + module);
+            new SyntheticCodebase(files, sites).writeTo(directory);
+            arguments.add(javacArguments(directory));
+        }
+
+        final long[] coldMillis = new long[modules];
+        // the diagnostics of the cold compilations, the warm ones are in the results of the server.
+        final ProcessBuilder.Redirect coldLog = ProcessBuilder.Redirect.appendTo(out.resolve("cold.log").toFile());
+        for (int module = 0; module < modules; module++) {
+            final List<String> command = javaCommand(jvmArgs, Main.class);
+            command.add("-processor");
+            command.add(CryptoPolicyComplianceChecker.class.getName());
+            command.addAll(arguments.get(module));
+            final long start = System.nanoTime();
+            final int exitCode = new ProcessBuilder(command).redirectErrorStream(true)
+                                                            .redirectOutput(coldLog)
+                                                            .start().waitFor();
+            coldMillis[module] = (System.nanoTime() - start) / 1_000_000;
+            checkExitCode(module, exitCode);
+        }
+
+        final long[] warmMillis = new long[modules];
+        final Path portFile = out.resolve("server.port").toAbsolutePath();
+        Files.deleteIfExists(portFile);
+        final List<String> command = javaCommand(jvmArgs, CompileServer.class);
+        command.addAll(Arrays.asList("--portFile", portFile.toString()));
+        final Process server = new ProcessBuilder(command).inheritIO().start();
+        try {
+            while (!Files.exists(portFile)) {
+                if (!server.isAlive()) {
+                    throw new IllegalStateException("The compile server exited with " + server.exitValue());
+                }
+                Thread.sleep(10);
+            }
+            for (int module = 0; module < modules; module++) {
+                final long start = System.nanoTime();
+                final CompileResult result = CompileClient.compile(portFile, arguments.get(module));
+                warmMillis[module] = (System.nanoTime() - start) / 1_000_000;
+                checkExitCode(module, result.getExitCode());
+            }
+            CompileClient.shutdown(portFile);
+            server.waitFor();
+        } finally {
+            server.destroy();
+        }
+
+        final List<String> results = new ArrayList<>();
+        results.add(HEADER);
+        for (int module = 0; module < modules; module++) {
+            results.add(module + "," + files + "," + coldMillis[module] + "," + warmMillis[module]);
+        }
+        results.forEach(System.out::println);
+        Files.write(out.resolve("results.csv"), results, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> javacArguments(final Path directory) throws IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-classpath", System.getProperty("java.class.path"),
+            "-Astubs=" + Paths.get(System.getProperty("cryptopolicy.stubs", "stubs")).toAbsolutePath(),
+            "-Anocheckjdk",
+            "-Xmaxerrs", String.valueOf(Integer.MAX_VALUE)));
+        try (Stream<Path> paths = Files.walk(directory)) {
+            arguments.addAll(paths.filter(path -> path.toString().endsWith(".java"))
+                                  .map(path -> path.toAbsolutePath().toString())
+                                  .collect(Collectors.toList()));
+        }
+        return arguments;
+    }
+
+    private static List<String> javaCommand(final List<String> jvmArgs, final Class<?> mainClass) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // keep the errorprone javac on the boot classpath of Java 8 JVMs.
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                         .filter(arg -> arg.startsWith("-Xbootclasspath"))
+                         .forEach(command::add);
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), mainClass.getName()));
+        return command;
+    }
+
+    /**
+     * The synthetic modules have violations, so javac fails with 1; anything else means the compilation broke.
+     */
+    private static void checkExitCode(final int module, final int exitCode) {
+        if (exitCode != CompileResult.OK && exitCode != CompileResult.ERROR) {
+            throw new IllegalStateException("Compiling module " + module + " failed with " + exitCode);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching candidate values against a policy, which replaced matchCiphersFromAnnotation in the visitor.
+ * {@link #streamMatching()} keeps the original implementation as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyMatchingBenchmark {
+
+    @Param({"2", "16", "64"})
+    private int regexCount;
+
+    @Param({"1", "8", "64"})
+    private int valueCount;
+
+    private List<String> regexes;
+    private List<String> values;
+    private CryptoPolicy policy;
+
+    @Setup
+    public void setUp() {
+        regexes = SyntheticPolicies.regexes(regexCount);
+        values = SyntheticPolicies.values(valueCount, regexCount);
+        policy = new CryptoPolicy(CryptoPolicy.Kind.WHITELIST, regexes, Collections.emptyList());
+    }
+
+    @Benchmark
+    public List<String> policyMatching() {
+        return policy.disallowedValues(values);
+    }
+
+    @Benchmark
+    public CryptoPolicy policyCompilation() {
+        return new CryptoPolicy(CryptoPolicy.Kind.WHITELIST, regexes, Collections.emptyList());
+    }
+
+    @Benchmark
+    public List<String> streamMatching() {
+        final List<Boolean> valuesMatched =
+            values.stream()
+                  .map(value -> regexes.stream()
+                                       .anyMatch(regex -> value.matches(regex.toLowerCase())))
+                  .collect(Collectors.toList());
+
+        final List<String> matchedCiphers = new ArrayList<>();
+        for (int i = 0; i < valuesMatched.size(); i++) {
+            if (!valuesMatched.get(i)) {
+                matchedCiphers.add(values.get(i));
+            }
+        }
+        return matchedCiphers;
+    }
+}
@@ -0,0 +1,68 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The message-building path of the visitor: evaluating white and black list policies into the sorted,
+ * upper-cased error and warning strings, with and without the {@link VerdictCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyVerdictBenchmark {
+
+    @Param({"16"})
+    private int regexCount;
+
+    @Param({"1", "8", "64"})
+    private int valueCount;
+
+    private CryptoPolicy whiteList;
+    private CryptoPolicy blackList;
+    private List<String> values;
+    private VerdictCache verdictCache;
+
+    @Setup
+    public void setUp() {
+        final List<String> regexes = SyntheticPolicies.regexes(regexCount);
+        whiteList = new CryptoPolicy(CryptoPolicy.Kind.WHITELIST, regexes, regexes.subList(0, regexCount / 2));
+        blackList = new CryptoPolicy(CryptoPolicy.Kind.BLACKLIST, regexes.subList(regexCount / 2, regexCount),
+                                     regexes.subList(0, 0));
+        values = SyntheticPolicies.values(valueCount, regexCount);
+        verdictCache = new VerdictCache(VerdictCache.MAX_VERDICTS);
+    }
+
+    @Benchmark
+    public String whiteListMessages() {
+        final PolicyVerdict verdict = PolicyVerdict.evaluate(whiteList, null, values);
+        return verdict.getErrorMessage() + verdict.getWarningMessage();
+    }
+
+    @Benchmark
+    public String whiteAndBlackListMessages() {
+        final PolicyVerdict verdict = PolicyVerdict.evaluate(whiteList, blackList, values);
+        return verdict.getErrorMessage() + verdict.getWarningMessage();
+    }
+
+    @Benchmark
+    public String cachedMessages() {
+        final PolicyVerdict verdict = verdictCache.getVerdict(whiteList, blackList, values);
+        return verdict.getErrorMessage() + verdict.getWarningMessage();
+    }
+}
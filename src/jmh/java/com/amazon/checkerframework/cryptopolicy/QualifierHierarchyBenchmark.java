@@ -0,0 +1,100 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoBlackListed;
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoPolicyBottom;
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;
+import com.amazon.checkerframework.cryptopolicy.qual.UnknownCryptoAlgorithm;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CryptoPolicyComplianceQualifierHierarchy.isSubtype, both the cheap top/bottom cases and the list comparison,
+ * and the lub and glb of lists, on qualifiers with a varying number of regexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualifierHierarchyBenchmark {
+
+    @Param({"2", "16", "64"})
+    private int regexCount;
+
+    private QualifierHierarchy hierarchy;
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private AnnotationMirror narrowWhiteList;
+    private AnnotationMirror wideWhiteList;
+    private AnnotationMirror otherWhiteList;
+    private AnnotationMirror blackList;
+
+    @Setup
+    public void setUp() throws IOException {
+        final CheckerHarness harness = CheckerHarness.check(Collections.singletonList(
+            new String[] {"Empty", "class Empty {}"}));
+        hierarchy = harness.getTypeFactory().getQualifierHierarchy();
+
+        final ProcessingEnvironment env = harness.getChecker().getProcessingEnvironment();
+        final List<String> regexes = SyntheticPolicies.regexes(regexCount);
+        top = AnnotationBuilder.fromClass(env.getElementUtils(), UnknownCryptoAlgorithm.class);
+        bottom = AnnotationBuilder.fromClass(env.getElementUtils(), CryptoPolicyBottom.class);
+        narrowWhiteList = new AnnotationBuilder(env, CryptoWhiteListed.class)
+            .setValue("value", regexes.subList(0, regexCount / 2)).build();
+        wideWhiteList = new AnnotationBuilder(env, CryptoWhiteListed.class)
+            .setValue("value", regexes).build();
+        otherWhiteList = new AnnotationBuilder(env, CryptoWhiteListed.class)
+            .setValue("value", regexes.subList(regexCount / 2, regexCount)).build();
+        blackList = new AnnotationBuilder(env, CryptoBlackListed.class)
+            .setValue("value", regexes).build();
+    }
+
+    @Benchmark
+    public boolean bottomBelowTop() {
+        return hierarchy.isSubtype(bottom, top);
+    }
+
+    @Benchmark
+    public boolean narrowerWhiteList() {
+        return hierarchy.isSubtype(narrowWhiteList, wideWhiteList);
+    }
+
+    @Benchmark
+    public boolean widerWhiteList() {
+        return hierarchy.isSubtype(wideWhiteList, narrowWhiteList);
+    }
+
+    @Benchmark
+    public boolean whiteListBelowBlackList() {
+        return hierarchy.isSubtype(wideWhiteList, blackList);
+    }
+
+    @Benchmark
+    public AnnotationMirror lubOfIncomparableWhiteLists() {
+        return hierarchy.leastUpperBound(narrowWhiteList, otherWhiteList);
+    }
+
+    @Benchmark
+    public AnnotationMirror glbOfNestedWhiteLists() {
+        return hierarchy.greatestLowerBound(narrowWhiteList, wideWhiteList);
+    }
+}
@@ -0,0 +1,298 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.JavacTool;
+
+/**
+ * End-to-end scalability benchmark: generates {@link SyntheticCodebase}s of growing size and runs the
+ * {@link CryptoPolicyComplianceChecker} with the real stubs over each of them, in a fresh JVM per size so that
+ * heap and GC numbers are not polluted by earlier runs. For every size it records the wall time, the time spent
+ * in the javac phases and in the checker, the peak heap, and the GC count and time, and prints them as CSV.
+ * If the time per file grows with the size of the project, the checker stops scaling linearly there.
+ *
+ * <pre>
+ * ./gradlew scalabilityBenchmark -PscalabilityArgs="--sizes 1000,10000,100000 --sites 10 --jvmArg -Xmx16g"
+ * </pre>
+ * Run it once more with {@code --checkerArg -AcryptoFastMode} to compare the fast mode with the Value Checker.
+ */
+public final class ScalabilityBenchmark {
+
+    private static final String HEADER = "files,sites,wallMillis,msPerFile,parseMillis,enterMillis,analyzeMillis,"
+                                         + "checkerMillis,peakHeapMB,gcCount,gcMillis,errors,warnings";
+
+    private ScalabilityBenchmark() {
+    }
+
+    /**
+     * Options:
+     * <ul>
+     *     <li>--sizes: comma separated numbers of files, default 1000,10000,100000.</li>
+     *     <li>--sites: crypto call sites per file, default 10.</li>
+     *     <li>--out: directory for the generated sources and results.csv, default build/scalability.</li>
+     *     <li>--jvmArg: an argument for the JVMs that run the checker, may be repeated.</li>
+     *     <li>--checkerArg: an option for the checker, like -AcryptoFastMode, may be repeated.</li>
+     * </ul>
+     *
+     * @param args the options.
+     * @throws Exception if generating or checking a project fails.
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length >= 2 && "--check".equals(args[0])) {
+            System.out.println(check(Paths.get(args[1]), Arrays.asList(args).subList(2, args.length)));
+            return;
+        }
+
+        List<Integer> sizes = Arrays.asList(1000, 10000, 100000);
+        int sites = 10;
+        Path out = Paths.get("build", "scalability");
+        final List<String> jvmArgs = new ArrayList<>();
+        final List<String> checkerArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[i + 1].split(",")).map(Integer::valueOf).collect(Collectors.toList());
+                    break;
+                case "--sites":
+                    sites = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[i + 1]);
+                    break;
+                case "--jvmArg":
+                    jvmArgs.add(args[i + 1]);
+                    break;
+                case "--checkerArg":
+                    checkerArgs.add(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final List<String> results = new ArrayList<>();
+        results.add(HEADER);
+        System.out.println(HEADER);
+        for (int size : sizes) {
+            final Path directory = out.resolve("files-" + size);
+            new SyntheticCodebase(size, sites).writeTo(directory);
+            final String result = checkInNewJvm(directory, jvmArgs, checkerArgs);
+            results.add(result);
+            System.out.println(result);
+        }
+        Files.write(out.resolve("results.csv"), results, StandardCharsets.UTF_8);
+    }
+
+    private static String checkInNewJvm(final Path directory,
+                                        final List<String> jvmArgs,
+                                        final List<String> checkerArgs) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // keep the errorprone javac on the boot classpath of Java 8 JVMs.
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                         .filter(arg -> arg.startsWith("-Xbootclasspath"))
+                         .forEach(command::add);
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                                     ScalabilityBenchmark.class.getName(), "--check", directory.toString()));
+        command.addAll(checkerArgs);
+
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // the last line is the result, everything before it is output of the child JVM, e.g. an OOM.
+                if (result != null) {
+                    System.err.println(result);
+                }
+                result = line;
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Checking " + directory + " failed: " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Run the checker over all sources below the directory in this JVM.
+     */
+    private static String check(final Path directory, final List<String> checkerArgs) throws IOException {
+        final List<File> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(path -> path.toString().endsWith(".java")).map(Path::toFile)
+                         .collect(Collectors.toList());
+        }
+        final List<String> options = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-classpath", System.getProperty("java.class.path"),
+            "-Astubs=" + System.getProperty("cryptopolicy.stubs", "stubs"),
+            "-Anocheckjdk",
+            "-Xmaxerrs", String.valueOf(Integer.MAX_VALUE),
+            "-Xmaxwarns", String.valueOf(Integer.MAX_VALUE)));
+        options.addAll(checkerArgs);
+        final int[] errorsAndWarnings = new int[2];
+        final DiagnosticListener<JavaFileObject> diagnostics = diagnostic -> {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errorsAndWarnings[0]++;
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING
+                       || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                errorsAndWarnings[1]++;
+            }
+        };
+
+        final JavacTool javac = JavacTool.create();
+        final PhaseTimer phases = new PhaseTimer();
+        final PrintStream stdout = System.out;
+        try (StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnostics, null, null)) {
+            final JavacTask task = javac.getTask(null, fileManager, diagnostics, options, null,
+                                                 fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Collections.singletonList(new CryptoPolicyComplianceChecker()));
+            task.addTaskListener(phases);
+
+            resetPeakHeap();
+            final long gcCountBefore = gcCount();
+            final long gcMillisBefore = gcMillis();
+            // hide the audit lines of suppressed call sites, the result is the only output.
+            System.setOut(CheckerHarness.discardingStream());
+            final long start = System.nanoTime();
+            task.call();
+            final long wallMillis = (System.nanoTime() - start) / 1_000_000;
+            phases.finish();
+
+            final long sites = files.size() * (long) countSites(files.get(0).toPath());
+            return String.join(",",
+                String.valueOf(files.size()),
+                String.valueOf(sites),
+                String.valueOf(wallMillis),
+                String.format("%.3f", wallMillis / (double) files.size()),
+                String.valueOf(phases.getMillis(TaskEvent.Kind.PARSE)),
+                String.valueOf(phases.getMillis(TaskEvent.Kind.ENTER)),
+                String.valueOf(phases.getMillis(TaskEvent.Kind.ANALYZE)),
+                String.valueOf(phases.getCheckerMillis()),
+                String.valueOf(peakHeap() / (1024 * 1024)),
+                String.valueOf(gcCount() - gcCountBefore),
+                String.valueOf(gcMillis() - gcMillisBefore),
+                String.valueOf(errorsAndWarnings[0]),
+                String.valueOf(errorsAndWarnings[1]));
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private static int countSites(final Path file) throws IOException {
+        return (int) Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                          .filter(line -> line.contains(".getInstance("))
+                          .count();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * @return the sum of the peaks of the heap pools, an upper bound of the actual peak heap usage.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /**
+     * Sums up the time between the started and finished events of each javac phase. The checker runs when javac
+     * reports that it finished analyzing a class, in a listener that is registered after this one, so the time
+     * from an ANALYZE finished event to the next event is attributed to the checker.
+     */
+    private static final class PhaseTimer implements TaskListener {
+        private final Map<TaskEvent.Kind, Long> nanos = new EnumMap<>(TaskEvent.Kind.class);
+        private final Map<TaskEvent.Kind, Long> started = new EnumMap<>(TaskEvent.Kind.class);
+        private long checkerNanos;
+        private long checkerStarted = -1;
+
+        @Override
+        public void started(final TaskEvent event) {
+            stopChecker();
+            started.put(event.getKind(), System.nanoTime());
+        }
+
+        @Override
+        public void finished(final TaskEvent event) {
+            stopChecker();
+            final Long start = started.remove(event.getKind());
+            if (start != null) {
+                nanos.merge(event.getKind(), System.nanoTime() - start, Long::sum);
+            }
+            if (event.getKind() == TaskEvent.Kind.ANALYZE) {
+                checkerStarted = System.nanoTime();
+            }
+        }
+
+        void finish() {
+            stopChecker();
+        }
+
+        long getMillis(final TaskEvent.Kind kind) {
+            return nanos.getOrDefault(kind, 0L) / 1_000_000;
+        }
+
+        long getCheckerMillis() {
+            return checkerNanos / 1_000_000;
+        }
+
+        private void stopChecker() {
+            if (checkerStarted >= 0) {
+                checkerNanos += System.nanoTime() - checkerStarted;
+                checkerStarted = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.amazon.checkerframework.cryptopolicy.shard.ShardedChecker;
+import com.sun.tools.javac.Main;
+
+/**
+ * Measures how the {@link ShardedChecker} scales with the number of cores: checks one {@link SyntheticCodebase}
+ * with plain javac in a fresh JVM, then with 1, 2, 4 ... shards up to the number of available processors, and
+ * prints shards, files, millis, the speedup over plain javac and whether the merged diagnostics and audit lines
+ * are identical to those of plain javac as CSV. Each configuration is run a few times and the fastest run is reported, since the
+ * shards start JVMs of their own and the first runs also warm the file system cache. The 1-shard row shows the
+ * cost of the driver and the merge; with more shards than cores the workers only compete for the same cores.
+ *
+ * <pre>
+ * ./gradlew shardingBenchmark -PshardingArgs="--files 4000 --sites 10 --shards 1,2,4,8 --jvmArg -Xmx2g"
+ * </pre>
+ */
+public final class ShardingBenchmark {
+
+    private static final String HEADER = "shards,files,millis,speedup,identical";
+
+    private ShardingBenchmark() {
+    }
+
+    /**
+     * Options:
+     * <ul>
+     *     <li>--files: number of files, default 2000.</li>
+     *     <li>--sites: crypto call sites per file, default 10.</li>
+     *     <li>--shards: comma separated numbers of shards, default the powers of two up to the number of
+     *     processors.</li>
+     *     <li>--runs: runs per configuration, default 3.</li>
+     *     <li>--out: directory for the generated sources and results.csv, default build/sharding.</li>
+     *     <li>--jvmArg: an argument for the JVMs that run the checker, may be repeated.</li>
+     * </ul>
+     *
+     * @param args the options.
+     * @throws Exception if generating or checking the sources fails.
+     */
+    public static void main(final String[] args) throws Exception {
+        int files = 2000;
+        int sites = 10;
+        List<Integer> shardCounts = new ArrayList<>();
+        for (int shards = 1; shards <= Runtime.getRuntime().availableProcessors(); shards *= 2) {
+            shardCounts.add(shards);
+        }
+        int runs = 3;
+        Path out = Paths.get("build", "sharding");
+        final List<String> jvmArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--files":
+                    files = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--sites":
+                    sites = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--shards":
+                    shardCounts = Arrays.stream(args[i + 1].split(",")).map(Integer::valueOf)
+                                        .collect(Collectors.toList());
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[i + 1]);
+                    break;
+                case "--jvmArg":
+                    jvmArgs.add(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-classpath", System.getProperty("java.class.path"),
+            "-Astubs=" + Paths.get(System.getProperty("cryptopolicy.stubs", "stubs")).toAbsolutePath(),
+            "-Anocheckjdk",
+            "-Xmaxerrs", String.valueOf(Integer.MAX_VALUE),
+            "-Xmaxwarns", String.valueOf(Integer.MAX_VALUE)));
+        new SyntheticCodebase(files, sites).writeTo(out.resolve("src")).forEach(
+            file -> arguments.add(file.toAbsolutePath().toString()));
+
+        final List<String> results = new ArrayList<>();
+        results.add(HEADER);
+        final Path javacLog = out.resolve("javac.log");
+        long javacMillis = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            final List<String> command = javaCommand(jvmArgs);
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                                         "-processor", CryptoPolicyComplianceChecker.class.getName()));
+            command.addAll(arguments);
+            final long start = System.nanoTime();
+            new ProcessBuilder(command).redirectError(javacLog.toFile())
+                                       .redirectOutput(out.resolve("javac.out").toFile())
+                                       .start().waitFor();
+            javacMillis = Math.min(javacMillis, (System.nanoTime() - start) / 1_000_000);
+        }
+        final byte[] javacDiagnostics = Files.readAllBytes(javacLog);
+        final byte[] javacOutput = Files.readAllBytes(out.resolve("javac.out"));
+        results.add("javac," + files + "," + javacMillis + ",1.00,true");
+        System.out.println(results.get(0));
+        System.out.println(results.get(1));
+
+        for (int shards : shardCounts) {
+            long millis = Long.MAX_VALUE;
+            boolean identical = true;
+            for (int run = 0; run < runs; run++) {
+                final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+                final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                final List<String> shardedArguments =
+                    new ArrayList<>(Arrays.asList("--shards", String.valueOf(shards)));
+                for (String jvmArg : jvmArgs) {
+                    shardedArguments.addAll(Arrays.asList("--jvmArg", jvmArg));
+                }
+                shardedArguments.addAll(arguments);
+                final long start = System.nanoTime();
+                try (PrintStream err = new PrintStream(diagnostics, true, StandardCharsets.UTF_8.name());
+                     PrintStream stdout = new PrintStream(output, true, StandardCharsets.UTF_8.name())) {
+                    ShardedChecker.run(shardedArguments, stdout, err);
+                }
+                millis = Math.min(millis, (System.nanoTime() - start) / 1_000_000);
+                identical &= Arrays.equals(javacDiagnostics, diagnostics.toByteArray())
+                             && Arrays.equals(javacOutput, output.toByteArray());
+            }
+            final String result = shards + "," + files + "," + millis + ","
+                                  + String.format("%.2f", (double) javacMillis / millis) + "," + identical;
+            System.out.println(result);
+            results.add(result);
+        }
+        Files.write(out.resolve("results.csv"), results, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> javaCommand(final List<String> jvmArgs) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // keep the errorprone javac on the boot classpath of Java 8 JVMs.
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                         .filter(arg -> arg.startsWith("-Xbootclasspath"))
+                         .forEach(command::add);
+        command.addAll(jvmArgs);
+        return command;
+    }
+}
@@ -0,0 +1,180 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.cds.CdsArchiveBuilder;
+import com.sun.tools.javac.Main;
+
+/**
+ * Measures the cold start of the checker with and without the class-data sharing archive of the
+ * {@link CdsArchiveBuilder}: builds an archive from a training corpus, then checks a single small file in a fresh
+ * JVM per run, alternating between a JVM without and one with the archive, and prints the archive, the number of
+ * runs, the fastest and the median time, how many classes the JVM mapped from the archive and whether the
+ * diagnostics are identical to those without the archive as CSV. Needs Java 10 or later and a class path of jar
+ * files, which the gradle task passes with --classpath.
+ *
+ * <pre>
+ * ./gradlew startupBenchmark -PstartupArgs="--runs 20 --corpus tests/crypto-policy"
+ * </pre>
+ */
+public final class StartupBenchmark {
+
+    private static final String HEADER = "archive,runs,minMillis,medianMillis,sharedClasses,identical";
+
+    private static final String SMALL_FILE = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "class Small {",
+        "    static Cipher small() throws Exception {",
+        "        return Cipher.getInstance(\"DES\");",
+        "    }",
+        "}",
+        "");
+
+    private StartupBenchmark() {
+    }
+
+    /**
+     * Options:
+     * <ul>
+     *     <li>--classpath: the class path of the JVMs that run the checker, jar files only, default the class path
+     *     of this JVM.</li>
+     *     <li>--corpus: a directory of sources to train the archive on, may be repeated, default
+     *     tests/crypto-policy and tests/crypto-warnings.</li>
+     *     <li>--runs: runs with and without the archive each, default 10.</li>
+     *     <li>--out: directory for the archive, the small file and results.csv, default build/startup.</li>
+     *     <li>--jvmArg: an argument for the JVMs that run the checker, may be repeated.</li>
+     * </ul>
+     *
+     * @param args the options.
+     * @throws Exception if building the archive or checking the file fails.
+     */
+    public static void main(final String[] args) throws Exception {
+        String classPath = System.getProperty("java.class.path");
+        final List<Path> corpus = new ArrayList<>();
+        int runs = 10;
+        Path out = Paths.get("build", "startup");
+        final List<String> jvmArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--classpath":
+                    classPath = args[i + 1];
+                    break;
+                case "--corpus":
+                    corpus.add(Paths.get(args[i + 1]));
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[i + 1]);
+                    break;
+                case "--jvmArg":
+                    jvmArgs.add(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (corpus.isEmpty()) {
+            corpus.addAll(Arrays.asList(Paths.get("tests", "crypto-policy"), Paths.get("tests", "crypto-warnings")));
+        }
+
+        final String stubs =
+            "-Astubs=" + Paths.get(System.getProperty("cryptopolicy.stubs", "stubs")).toAbsolutePath();
+        final List<String> buildArgs = new ArrayList<>(Arrays.asList("--out", out.resolve("cds").toString(),
+                                                                     "--classpath", classPath));
+        for (String jvmArg : jvmArgs) {
+            buildArgs.addAll(Arrays.asList("--jvmArg", jvmArg));
+        }
+        buildArgs.addAll(Arrays.asList("-proc:only", "-Anocheckjdk", stubs));
+        for (Path directory : corpus) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                buildArgs.addAll(files.filter(file -> file.toString().endsWith(".java")).sorted()
+                                      .map(Path::toString).collect(Collectors.toList()));
+            }
+        }
+        final ByteArrayOutputStream builderErrors = new ByteArrayOutputStream();
+        try (PrintStream err = new PrintStream(builderErrors, true, StandardCharsets.UTF_8.name())) {
+            if (CdsArchiveBuilder.run(buildArgs, System.out, err) != 0) {
+                throw new IllegalStateException(new String(builderErrors.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+        final Path archive = out.resolve("cds").resolve(CdsArchiveBuilder.ARCHIVE);
+
+        final Path small = out.resolve("Small.java");
+        Files.write(small, SMALL_FILE.getBytes(StandardCharsets.UTF_8));
+        final List<String> javacArgs = Arrays.asList(
+            Main.class.getName(), "-proc:only", "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anocheckjdk", stubs, small.toString());
+        final List<String> withArchive = new ArrayList<>(jvmArgs);
+        withArchive.addAll(CdsArchiveBuilder.archiveJvmArgs(archive));
+
+        final List<Long> plainMillis = new ArrayList<>();
+        final List<Long> archiveMillis = new ArrayList<>();
+        byte[] plainOutput = null;
+        boolean identical = true;
+        for (int run = 0; run < runs; run++) {
+            plainMillis.add(check(jvmArgs, classPath, javacArgs, out.resolve("plain.log")));
+            archiveMillis.add(check(withArchive, classPath, javacArgs, out.resolve("cds.log")));
+            if (plainOutput == null) {
+                plainOutput = Files.readAllBytes(out.resolve("plain.log"));
+            }
+            identical &= Arrays.equals(plainOutput, Files.readAllBytes(out.resolve("cds.log")));
+        }
+
+        // one more run that logs where every class came from.
+        final List<String> logging = new ArrayList<>(withArchive);
+        logging.add("-Xlog:class+load=info:file=" + out.resolve("class-load.log"));
+        check(logging, classPath, javacArgs, out.resolve("cds.log"));
+        final long sharedClasses;
+        try (Stream<String> lines = Files.lines(out.resolve("class-load.log"))) {
+            sharedClasses = lines.filter(line -> line.contains("source: shared objects file")).count();
+        }
+
+        final List<String> results = Arrays.asList(
+            HEADER,
+            "none," + runs + "," + Collections.min(plainMillis) + "," + median(plainMillis) + ",0,true",
+            "cds," + runs + "," + Collections.min(archiveMillis) + "," + median(archiveMillis) + ","
+            + sharedClasses + "," + identical);
+        results.forEach(System.out::println);
+        Files.write(out.resolve("results.csv"), results, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the wall time of checking the file in a fresh JVM, in milliseconds.
+     */
+    private static long check(final List<String> jvmArgs,
+                              final String classPath,
+                              final List<String> javacArgs,
+                              final Path log) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", classPath));
+        command.addAll(javacArgs);
+        final long start = System.nanoTime();
+        new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start().waitFor();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static long median(final List<Long> millis) {
+        final List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.source.tree.ExpressionTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The tree path lookups behind the visitor's shouldSuppressWarnings, over every crypto call site of a large
+ * synthetic compilation unit. A third of the call sites are suppressed on the variable, a third on the enclosing
+ * method and the rest are not suppressed at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuppressionLookupBenchmark {
+
+    @Param({"100", "1000"})
+    private int methodCount;
+
+    private CryptoPolicyComplianceVisitor visitor;
+    private List<ExpressionTree> arguments;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() throws IOException {
+        final CheckerHarness harness = CheckerHarness.check(Collections.singletonList(
+            new String[] {"Suppressions", source(methodCount)}));
+        visitor = harness.getVisitor();
+        // The visitor resolves paths against the unit it visited last, which is the only one here.
+        arguments = CheckerHarness.getInstanceArguments(harness.getCompilationUnits().get(0));
+        // Suppressed call sites print an audit line.
+        stdout = System.out;
+        System.setOut(CheckerHarness.discardingStream());
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void lookupAllCallSites(final Blackhole blackhole) {
+        for (ExpressionTree argument : arguments) {
+            blackhole.consume(visitor.shouldSuppressWarnings(argument, "crypto.policy.violation", "DES"));
+        }
+    }
+
+    private static String source(final int methodCount) {
+        final StringBuilder source = new StringBuilder()
+            .append("import javax.crypto.Cipher;\n")
+            .append("import java.security.GeneralSecurityException;\n")
+            .append("import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;\n")
+            .append("class Suppressions {\n");
+        for (int i = 0; i < methodCount; i++) {
+            final boolean onMethod = i % 3 == 1;
+            final boolean onVariable = i % 3 == 2;
+            if (onMethod) {
+                source.append("  @SuppressCryptoWarning(issue = \"https://example.com/issues/1\")\n");
+            }
+            source.append("  void m").append(i).append("() throws GeneralSecurityException {\n");
+            if (onVariable) {
+                source.append("    @SuppressCryptoWarning(issue = \"https://example.com/issues/1\")\n");
+            }
+            source.append("    Cipher c = Cipher.getInstance(\"DES\");\n")
+                  .append("    if (c != null) { for (int j = 0; j < ").append(i).append("; j++) { c.getBlockSize(); } }\n")
+                  .append("  }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
@@ -0,0 +1,138 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a synthetic Java project for end-to-end benchmarks. Every class has the same number of crypto call
+ * sites, which cycle through the {@link SiteKind}s so that every size has the same mix of cases the checker
+ * handles differently. The output is deterministic, so runs on different machines check identical code.
+ */
+final class SyntheticCodebase {
+
+    /**
+     * Number of classes per generated package.
+     */
+    static final int CLASSES_PER_PACKAGE = 500;
+
+    private static final String SUPPRESSION_ISSUE = "https://example.com/issues/1";
+
+    /**
+     * The kinds of call sites, in the order they are generated.
+     */
+    enum SiteKind {
+        /** A string literal of an allowed algorithm, e.g. Cipher.getInstance("RSA/ECB/OAEPPadding"). */
+        CONSTANT,
+        /** A compile-time concatenation of literals. */
+        CONCATENATED,
+        /** A static final field, half of them declared in another class. */
+        FIELD,
+        /** A method parameter, whose value the checker cannot know. */
+        UNKNOWN,
+        /** A disallowed algorithm with a @SuppressCryptoWarning on the enclosing method. */
+        SUPPRESSED
+    }
+
+    private final int classCount;
+    private final int sitesPerClass;
+
+    /**
+     * @param classCount    the number of classes, one per file.
+     * @param sitesPerClass the number of crypto call sites in each class.
+     */
+    SyntheticCodebase(final int classCount, final int sitesPerClass) {
+        this.classCount = classCount;
+        this.sitesPerClass = sitesPerClass;
+    }
+
+    /**
+     * Write the project below the given directory, replacing any earlier output for the same size.
+     *
+     * @param directory the source root.
+     * @return the generated files.
+     * @throws IOException if a file cannot be written.
+     */
+    List<Path> writeTo(final Path directory) throws IOException {
+        final List<Path> files = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            final Path packageDirectory = directory.resolve("synthetic").resolve(packageName(i));
+            Files.createDirectories(packageDirectory);
+            final Path file = packageDirectory.resolve(className(i) + ".java");
+            Files.write(file, source(i).getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * @param index the index of a class.
+     * @return the kinds of its call sites.
+     */
+    List<SiteKind> siteKinds(final int index) {
+        final List<SiteKind> kinds = new ArrayList<>(sitesPerClass);
+        for (int site = 0; site < sitesPerClass; site++) {
+            kinds.add(SiteKind.values()[(index + site) % SiteKind.values().length]);
+        }
+        return kinds;
+    }
+
+    String source(final int index) {
+        final StringBuilder source = new StringBuilder()
+            .append("package synthetic.").append(packageName(index)).append(";\n\n")
+            .append("import java.security.GeneralSecurityException;\n")
+            .append("import java.security.MessageDigest;\n")
+            .append("import javax.crypto.Cipher;\n\n")
+            .append("import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;\n\n")
+            .append("public class ").append(className(index)).append(" {\n\n")
+            .append("    public static final String CIPHER = \"AES/GCM/NoPadding\";\n")
+            .append("    public static final String DIGEST = \"SHA-256\";\n");
+
+        final List<SiteKind> kinds = siteKinds(index);
+        for (int site = 0; site < kinds.size(); site++) {
+            source.append('\n');
+            final boolean digest = site % 2 == 1;
+            final String factory = digest ? "MessageDigest" : "Cipher";
+            final String argument;
+            switch (kinds.get(site)) {
+                case CONSTANT:
+                    argument = digest ? "\"SHA-512\"" : "\"RSA/ECB/OAEPPadding\"";
+                    break;
+                case CONCATENATED:
+                    argument = digest ? "\"SHA-\" + \"384\"" : "\"AES\" + \"/GCM/\" + \"NoPadding\"";
+                    break;
+                case FIELD:
+                    // every other field site reads the constant of the previous class, across files.
+                    final String owner = site % 4 < 2 || index == 0
+                                         ? ""
+                                         : "synthetic." + packageName(index - 1) + "." + className(index - 1) + ".";
+                    argument = owner + (digest ? "DIGEST" : "CIPHER");
+                    break;
+                case UNKNOWN:
+                    argument = "algorithm";
+                    break;
+                default:
+                    source.append("    @SuppressCryptoWarning(issue = \"").append(SUPPRESSION_ISSUE).append("\")\n");
+                    argument = digest ? "\"SHA1\"" : "\"DES/ECB/PKCS5Padding\"";
+                    break;
+            }
+            source.append("    public ").append(factory).append(" site").append(site).append('(')
+                  .append(kinds.get(site) == SiteKind.UNKNOWN ? "final String algorithm" : "")
+                  .append(") throws GeneralSecurityException {\n")
+                  .append("        return ").append(factory).append(".getInstance(").append(argument).append(");\n")
+                  .append("    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static String packageName(final int index) {
+        return "p" + index / CLASSES_PER_PACKAGE;
+    }
+
+    private static String className(final int index) {
+        return "Synthetic" + index;
+    }
+}
@@ -0,0 +1,66 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic policy regexes and algorithm names of configurable size, shaped like the ones in the stubs:
+ * plain names, "name.*" prefixes and small alternations.
+ */
+final class SyntheticPolicies {
+
+    private SyntheticPolicies() {
+    }
+
+    /**
+     * @param count the number of regexes.
+     * @return lower-case policy regexes.
+     */
+    static List<String> regexes(final int count) {
+        final List<String> regexes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0:
+                    regexes.add("alg" + i + "/gcm/nopadding");
+                    break;
+                case 1:
+                    regexes.add("sha" + i + "-.*");
+                    break;
+                case 2:
+                    regexes.add("alg" + i + "/(cbc|ctr)/pkcs[57]padding");
+                    break;
+                default:
+                    regexes.add("hmacsha(1|" + i + ")");
+                    break;
+            }
+        }
+        return regexes;
+    }
+
+    /**
+     * @param count      the number of values.
+     * @param regexCount the size of the policy the values are checked against.
+     * @return lower-case algorithm names, about half of which match {@code regexes(regexCount)}.
+     */
+    static List<String> values(final int count, final int regexCount) {
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int regex = (i * 7) % regexCount;
+            switch (i % 4) {
+                case 0:
+                    values.add("alg" + (regex - regex % 4) + "/gcm/nopadding");
+                    break;
+                case 1:
+                    values.add("sha" + i + "-256");
+                    break;
+                case 2:
+                    values.add("alg" + i + "/cbc/pkcs5padding");
+                    break;
+                default:
+                    values.add("des" + i + "/ecb/nopadding");
+                    break;
+            }
+        }
+        return values;
+    }
+}
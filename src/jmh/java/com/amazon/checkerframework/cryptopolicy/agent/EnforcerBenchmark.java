@@ -0,0 +1,89 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.PolicyVerdict;
+import com.amazon.checkerframework.cryptopolicy.VerdictCache;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The overhead per call that the agent adds to an instrumented call site: {@link Enforcer#check} with an allowed
+ * algorithm, with an equal but not identical string as configuration would produce, and with a violation that is
+ * only counted, next to the {@link VerdictCache} lookup it replaces and to Cipher.getInstance itself. Run with
+ * {@code -prof gc} to see that the checks do not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EnforcerBenchmark {
+
+    private static final String ALLOWED = "AES/GCM/NoPadding";
+
+    private CryptoPolicy whiteList;
+    private int site;
+    private String equalAllowed;
+    private String violation;
+
+    @Setup
+    public void setUp() throws IOException {
+        whiteList = StubPolicies.load(System.getProperty("cryptopolicy.stubs", "stubs"))
+                                .lookup("javax/crypto/Cipher", "getInstance", "(Ljava/lang/String;)Ljavax/crypto/Cipher;")
+                                .getWhiteList(0);
+        site = Enforcer.register(whiteList, null, "Cipher", "EnforcerBenchmark.setUp(EnforcerBenchmark.java)");
+        Enforcer.setMode(Enforcer.Mode.METRICS);
+        equalAllowed = new String(ALLOWED.toCharArray());
+        violation = new String("DES".toCharArray());
+    }
+
+    @Benchmark
+    public void checkAllowed() {
+        Enforcer.check(ALLOWED, site);
+    }
+
+    @Benchmark
+    public void checkEqualAllowed() {
+        Enforcer.check(equalAllowed, site);
+    }
+
+    @Benchmark
+    public void checkCountedViolation() {
+        Enforcer.check(violation, site);
+    }
+
+    @Benchmark
+    public PolicyVerdict verdictCacheLookup() {
+        return VerdictCache.getInstance().getVerdict(whiteList, null,
+                                                     Collections.singletonList(equalAllowed.toLowerCase()));
+    }
+
+    @Benchmark
+    public Cipher getInstance() throws GeneralSecurityException {
+        return Cipher.getInstance(equalAllowed);
+    }
+
+    @Benchmark
+    public Cipher checkedGetInstance() throws GeneralSecurityException {
+        Enforcer.check(equalAllowed, site);
+        return Cipher.getInstance(equalAllowed);
+    }
+}
@@ -0,0 +1,201 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.tools.Diagnostic;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the checker printed for one compilation unit, as stored in the {@link ResultCache}: the diagnostics
+ * with the source range and kind of the tree they were reported on, the approved @SuppressCryptoWarnings, and
+ * fingerprints of the files the unit depends on, which must be unchanged for the result to be replayed.
+ */
+final class CachedResult {
+
+    /**
+     * A diagnostic of the checker.
+     */
+    static final class CachedDiagnostic {
+        private final Diagnostic.Kind kind;
+        private final String message;
+        private final long start;
+        private final long end;
+        private final String treeKind;
+
+        CachedDiagnostic(final Diagnostic.Kind kind, final String message,
+                         final long start, final long end, final String treeKind) {
+            this.kind = kind;
+            this.message = message;
+            this.start = start;
+            this.end = end;
+            this.treeKind = treeKind;
+        }
+
+        Diagnostic.Kind getKind() {
+            return kind;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        String getTreeKind() {
+            return treeKind;
+        }
+    }
+
+    /**
+     * A diagnostic that a @SuppressCryptoWarning with a valid issue URL suppressed.
+     */
+    static final class CachedSuppression {
+        private final long position;
+        private final String messageKey;
+        private final String algorithms;
+        private final String issueUrl;
+
+        CachedSuppression(final long position, final String messageKey, final String algorithms,
+                          final String issueUrl) {
+            this.position = position;
+            this.messageKey = messageKey;
+            this.algorithms = algorithms;
+            this.issueUrl = issueUrl;
+        }
+
+        /**
+         * @return the position the suppressed diagnostic would have been reported at.
+         */
+        long getPosition() {
+            return position;
+        }
+
+        String getMessageKey() {
+            return messageKey;
+        }
+
+        String getAlgorithms() {
+            return algorithms;
+        }
+
+        String getIssueUrl() {
+            return issueUrl;
+        }
+    }
+
+    private final Map<String, String> dependencies;
+    private final List<CachedDiagnostic> diagnostics;
+    private final List<CachedSuppression> suppressions;
+
+    /**
+     * @param dependencies fingerprints of the files the unit depends on, by URI.
+     * @param diagnostics  the diagnostics, in the order they were printed.
+     * @param suppressions the approved suppressions, in the order they were printed.
+     */
+    CachedResult(final Map<String, String> dependencies,
+                 final List<CachedDiagnostic> diagnostics,
+                 final List<CachedSuppression> suppressions) {
+        this.dependencies = Collections.unmodifiableMap(dependencies);
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.suppressions = Collections.unmodifiableList(suppressions);
+    }
+
+    Map<String, String> getDependencies() {
+        return dependencies;
+    }
+
+    List<CachedDiagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    List<CachedSuppression> getSuppressions() {
+        return suppressions;
+    }
+
+    void writeTo(final DataOutputStream out) throws IOException {
+        out.writeInt(dependencies.size());
+        for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+            writeString(out, dependency.getKey());
+            writeString(out, dependency.getValue());
+        }
+        out.writeInt(diagnostics.size());
+        for (CachedDiagnostic diagnostic : diagnostics) {
+            writeString(out, diagnostic.kind.name());
+            writeString(out, diagnostic.message);
+            out.writeLong(diagnostic.start);
+            out.writeLong(diagnostic.end);
+            writeString(out, diagnostic.treeKind);
+        }
+        out.writeInt(suppressions.size());
+        for (CachedSuppression suppression : suppressions) {
+            out.writeLong(suppression.position);
+            writeString(out, suppression.messageKey);
+            writeString(out, suppression.algorithms);
+            writeString(out, suppression.issueUrl);
+        }
+    }
+
+    /**
+     * @param in a buffer positioned at a result written by {@link #writeTo}.
+     * @return the result.
+     * @throws java.nio.BufferUnderflowException if the buffer ends early.
+     * @throws IllegalArgumentException          if the buffer does not contain a result.
+     */
+    static CachedResult readFrom(final ByteBuffer in) {
+        final int dependencyCount = readCount(in);
+        final Map<String, String> dependencies = new LinkedHashMap<>();
+        for (int i = 0; i < dependencyCount; i++) {
+            dependencies.put(readString(in), readString(in));
+        }
+        final int diagnosticCount = readCount(in);
+        final List<CachedDiagnostic> diagnostics = new ArrayList<>(diagnosticCount);
+        for (int i = 0; i < diagnosticCount; i++) {
+            final Diagnostic.Kind kind = Diagnostic.Kind.valueOf(readString(in));
+            final String message = readString(in);
+            final long start = in.getLong();
+            final long end = in.getLong();
+            diagnostics.add(new CachedDiagnostic(kind, message, start, end, readString(in)));
+        }
+        final int suppressionCount = readCount(in);
+        final List<CachedSuppression> suppressions = new ArrayList<>(suppressionCount);
+        for (int i = 0; i < suppressionCount; i++) {
+            final long position = in.getLong();
+            final String messageKey = readString(in);
+            final String algorithms = readString(in);
+            suppressions.add(new CachedSuppression(position, messageKey, algorithms, readString(in)));
+        }
+        return new CachedResult(dependencies, diagnostics, suppressions);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[readCount(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(final ByteBuffer in) {
+        final int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalArgumentException("Corrupt cached result");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,168 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.amazon.checkerframework.cryptopolicy.matcher.MultiPatternMatcher;
+
+/**
+ * The compiled form of a {@link com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed} or
+ * {@link com.amazon.checkerframework.cryptopolicy.qual.CryptoBlackListed} annotation. The regexes of the
+ * annotation are lower-cased and compiled exactly once, when the policy is created by the
+ * {@link CryptoPolicyCache}, into a {@link MultiPatternMatcher} that checks a value against all of them in one pass.
+ * Instances are immutable and can be shared between compilation units and threads.
+ */
+public final class CryptoPolicy {
+
+    /**
+     * The kind of annotation a policy was created from.
+     */
+    public enum Kind {
+        WHITELIST,
+        BLACKLIST
+    }
+
+    private final Kind kind;
+    private final List<String> regexes;
+    private final List<String> warnOnRegexes;
+    private final MultiPatternMatcher matcher;
+    private final MultiPatternMatcher warnOnMatcher;
+    private final int hashCode;
+
+    /**
+     * Creates and compiles a policy. Use {@link CryptoPolicyCache#getPolicy} rather than calling this directly.
+     *
+     * @param kind          whether the regexes are white- or black-listed.
+     * @param regexes       the value array of the annotation.
+     * @param warnOnRegexes the warnOn array of the annotation; always empty for black lists.
+     */
+    CryptoPolicy(final Kind kind, final List<String> regexes, final List<String> warnOnRegexes) {
+        this(kind, regexes, warnOnRegexes, compile(regexes), compile(warnOnRegexes));
+    }
+
+    /**
+     * Creates a policy from matchers that were compiled before, e.g. read from a
+     * {@link com.amazon.checkerframework.cryptopolicy.index.PolicyIndex}.
+     *
+     * @param matcher       the matcher of the lower-cased regexes.
+     * @param warnOnMatcher the matcher of the lower-cased warnOn regexes.
+     */
+    CryptoPolicy(final Kind kind,
+                 final List<String> regexes,
+                 final List<String> warnOnRegexes,
+                 final MultiPatternMatcher matcher,
+                 final MultiPatternMatcher warnOnMatcher) {
+        this.kind = kind;
+        this.regexes = Collections.unmodifiableList(new ArrayList<>(regexes));
+        this.warnOnRegexes = Collections.unmodifiableList(new ArrayList<>(warnOnRegexes));
+        this.matcher = matcher;
+        this.warnOnMatcher = warnOnMatcher;
+        this.hashCode = Objects.hash(kind, this.regexes, this.warnOnRegexes);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public List<String> getRegexes() {
+        return regexes;
+    }
+
+    public List<String> getWarnOnRegexes() {
+        return warnOnRegexes;
+    }
+
+    /**
+     * @return the matcher of the lower-cased regexes.
+     */
+    public MultiPatternMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * @return the matcher of the lower-cased warnOn regexes.
+     */
+    public MultiPatternMatcher getWarnOnMatcher() {
+        return warnOnMatcher;
+    }
+
+    /**
+     * Find the sub list of values that are disallowed by this policy, i.e. values that do not match
+     * any regex of a white list or that match a regex of a black list.
+     *
+     * @param values lower-cased candidate values.
+     * @return Sublist of disallowed values.
+     */
+    public List<String> disallowedValues(final List<String> values) {
+        return matchValues(matcher, values, kind == Kind.BLACKLIST);
+    }
+
+    /**
+     * Find the sub list of values that match one of the warnOn regexes of this policy.
+     *
+     * @param values lower-cased candidate values.
+     * @return Sublist of values that should emit a warning.
+     */
+    public List<String> warningValues(final List<String> values) {
+        return matchValues(warnOnMatcher, values, true);
+    }
+
+    /**
+     * Two policies are equal if they were created from annotations with the same contents.
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CryptoPolicy)) {
+            return false;
+        }
+        final CryptoPolicy that = (CryptoPolicy) other;
+        return hashCode == that.hashCode
+               && kind == that.kind
+               && regexes.equals(that.regexes)
+               && warnOnRegexes.equals(that.warnOnRegexes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return kind + regexes.toString() + (warnOnRegexes.isEmpty() ? "" : " warnOn " + warnOnRegexes);
+    }
+
+    /**
+     * Note that for simplicity, all regex strings are lower-cased since the standard says crypto algorithms
+     * are not case-sensitive.
+     * Set positive to get the sublist of things that do not match.
+     */
+    private static List<String> matchValues(final MultiPatternMatcher regexMatcher,
+                                            final List<String> values,
+                                            final boolean positive) {
+        // if there are no valid list items, don't continue
+        if (regexMatcher.getRegexes().isEmpty()) {
+            return new ArrayList<>();
+        }
+        final List<String> matched = new ArrayList<>();
+        for (String value : values) {
+            if (regexMatcher.matchesAny(value) == positive) {
+                matched.add(value);
+            }
+        }
+        return matched;
+    }
+
+    private static MultiPatternMatcher compile(final List<String> regexList) {
+        final List<String> lowerCased = new ArrayList<>(regexList.size());
+        for (String regex : regexList) {
+            lowerCased.add(regex.toLowerCase());
+        }
+        return MultiPatternMatcher.compile(lowerCased);
+    }
+}
@@ -0,0 +1,87 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazon.checkerframework.cryptopolicy.matcher.MultiPatternMatcher;
+
+/**
+ * Bounded cache of compiled {@link CryptoPolicy} objects, keyed by the contents of the annotation they were
+ * created from. The same few annotations from the stub files are seen at every crypto call site, so the cache is
+ * static and shared by every compilation unit (and every checker instance) in the same javac process.
+ * The least recently used policy is evicted once the cache is full.
+ */
+public final class CryptoPolicyCache {
+
+    /**
+     * Upper bound on the number of distinct policies that are kept compiled.
+     */
+    static final int MAX_POLICIES = 1024;
+
+    private static final CryptoPolicyCache INSTANCE = new CryptoPolicyCache(MAX_POLICIES);
+
+    private final LruCache<List<Object>, CryptoPolicy> policies;
+
+    CryptoPolicyCache(final int maxPolicies) {
+        this.policies = new LruCache<>("CryptoPolicyCache", maxPolicies);
+    }
+
+    /**
+     * @return the cache shared by all checkers in this JVM.
+     */
+    public static CryptoPolicyCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Look up the compiled policy for the given annotation contents, compiling it on a miss.
+     *
+     * @param kind          whether the annotation is a white or black list.
+     * @param regexes       the value array of the annotation.
+     * @param warnOnRegexes the warnOn array of the annotation.
+     * @return the compiled policy.
+     */
+    public CryptoPolicy getPolicy(final CryptoPolicy.Kind kind,
+                                  final List<String> regexes,
+                                  final List<String> warnOnRegexes) {
+        return policies.get(Arrays.asList(kind, regexes, warnOnRegexes),
+            key -> new CryptoPolicy(kind, regexes, warnOnRegexes));
+    }
+
+    /**
+     * Look up the compiled policy for the given annotation contents, creating it from matchers that were compiled
+     * before on a miss.
+     *
+     * @param kind          whether the annotation is a white or black list.
+     * @param regexes       the value array of the annotation.
+     * @param warnOnRegexes the warnOn array of the annotation.
+     * @param matcher       the matcher of the lower-cased regexes.
+     * @param warnOnMatcher the matcher of the lower-cased warnOn regexes.
+     * @return the compiled policy.
+     */
+    public CryptoPolicy getPolicy(final CryptoPolicy.Kind kind,
+                                  final List<String> regexes,
+                                  final List<String> warnOnRegexes,
+                                  final MultiPatternMatcher matcher,
+                                  final MultiPatternMatcher warnOnMatcher) {
+        return policies.get(Arrays.asList(kind, regexes, warnOnRegexes),
+            key -> new CryptoPolicy(kind, regexes, warnOnRegexes, matcher, warnOnMatcher));
+    }
+
+    public long getHitCount() {
+        return policies.getHitCount();
+    }
+
+    public long getMissCount() {
+        return policies.getMissCount();
+    }
+
+    public int size() {
+        return policies.size();
+    }
+
+    @Override
+    public String toString() {
+        return policies.toString();
+    }
+}
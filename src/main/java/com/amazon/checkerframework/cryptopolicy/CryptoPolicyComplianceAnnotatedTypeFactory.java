@@ -1,25 +1,46 @@
 package com.amazon.checkerframework.cryptopolicy;
 
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import java.lang.annotation.Annotation;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
 import com.amazon.checkerframework.cryptopolicy.qual.CryptoBlackListed;
 import com.amazon.checkerframework.cryptopolicy.qual.CryptoPolicyBottom;
 import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;
 import com.amazon.checkerframework.cryptopolicy.qual.UnknownCryptoAlgorithm;
+import com.sun.tools.javac.code.Symbol;
 import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
-import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.AnnotationBuilder;
 
 /**
  * Need this to define the subtyping relationship between @CryptoWhiteListed annotations.
  */
 public class CryptoPolicyComplianceAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
+    /**
+     * With -AcryptoPolicyStubs, the names of the methods with policies, which rules out most elements without
+     * looking at their class and parameters.
+     */
+    private Set<String> policyMethodNames;
+
+    /**
+     * The qualifiers of the policies of -AcryptoPolicyStubs.
+     */
+    private final Map<CryptoPolicy, AnnotationMirror> policyQualifiers = new HashMap<>();
+
     /**
      * Default constructor.
      * @param checker from the CF.
@@ -30,6 +51,103 @@ public class CryptoPolicyComplianceAnnotatedTypeFactory extends BaseAnnotatedTyp
     }
 
 
+    @Override
+    protected void parseStubFiles() {
+        final CryptoPolicyMetrics metrics = ((CryptoPolicyComplianceChecker) checker).getMetrics();
+        final long start = System.nanoTime();
+        super.parseStubFiles();
+        if (metrics != null) {
+            metrics.addTime(CryptoPolicyMetrics.Phase.STUB_PARSING, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * With -AcryptoPolicyStubs, the policies of the stubs are added to the types of the parameters they annotate,
+     * where the stub parser of the CheckerFramework puts them for -Astubs.
+     */
+    @Override
+    public AnnotatedTypeMirror fromElement(final Element element) {
+        final AnnotatedTypeMirror type = super.fromElement(element);
+        final StubPolicies policies = ((CryptoPolicyComplianceChecker) checker).getPolicyStubs();
+        if (policies == null) {
+            return type;
+        }
+        if (type instanceof AnnotatedExecutableType) {
+            final StubPolicies.Callable callable = lookUpPolicies(policies, (ExecutableElement) element);
+            final List<AnnotatedTypeMirror> parameterTypes = ((AnnotatedExecutableType) type).getParameterTypes();
+            for (int i = 0; callable != null && i < parameterTypes.size(); i++) {
+                addPolicies(parameterTypes.get(i), callable, i);
+            }
+        } else if (element.getKind() == ElementKind.PARAMETER
+                   && element.getEnclosingElement() instanceof ExecutableElement) {
+            final ExecutableElement method = (ExecutableElement) element.getEnclosingElement();
+            final StubPolicies.Callable callable = lookUpPolicies(policies, method);
+            if (callable != null) {
+                addPolicies(type, callable, method.getParameters().indexOf(element));
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @return the policies of the parameters of the method, or null if it has none.
+     */
+    private StubPolicies.Callable lookUpPolicies(final StubPolicies policies, final ExecutableElement method) {
+        if (policyMethodNames == null) {
+            policyMethodNames = new HashSet<>();
+            for (StubPolicies.Callable callable : policies.getCallables()) {
+                policyMethodNames.add(callable.getName());
+            }
+        }
+        if (!policyMethodNames.contains(method.getSimpleName().toString())) {
+            return null;
+        }
+        final String owner = ((Symbol) method).enclClass().flatName().toString().replace('.', '/');
+        if (!policies.hasPolicies(owner)) {
+            return null;
+        }
+        final String[] parameterTypes = new String[method.getParameters().size()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = StubPolicies.simpleTypeName(
+                types.erasure(method.getParameters().get(i).asType()).toString());
+        }
+        return policies.lookup(owner, method.getSimpleName().toString(), parameterTypes);
+    }
+
+    private void addPolicies(final AnnotatedTypeMirror type, final StubPolicies.Callable callable, final int index) {
+        if (index < 0 || index >= callable.getParameterCount()) {
+            return;
+        }
+        for (CryptoPolicy policy : new CryptoPolicy[] {callable.getWhiteList(index), callable.getBlackList(index)}) {
+            if (policy != null) {
+                type.replaceAnnotation(policyQualifiers.computeIfAbsent(policy, this::toQualifier));
+            }
+        }
+    }
+
+    private AnnotationMirror toQualifier(final CryptoPolicy policy) {
+        if (policy.getKind() == CryptoPolicy.Kind.BLACKLIST) {
+            return new AnnotationBuilder(processingEnv, CryptoBlackListed.class)
+                .setValue("value", policy.getRegexes()).build();
+        }
+        final AnnotationBuilder builder = new AnnotationBuilder(processingEnv, CryptoWhiteListed.class)
+            .setValue("value", policy.getRegexes());
+        if (!policy.getWarnOnRegexes().isEmpty()) {
+            builder.setValue("warnOn", policy.getWarnOnRegexes());
+        }
+        return builder.build();
+    }
+
+    /**
+     * With -AcryptoMemoryBound, the tree and element caches hold at most that many entries, and fewer if
+     * -AatfCacheSize says so.
+     */
+    @Override
+    protected int getCacheSize() {
+        final int memoryBound = ((CryptoPolicyComplianceChecker) checker).getMemoryBound();
+        return memoryBound > 0 ? Math.min(memoryBound, super.getCacheSize()) : super.getCacheSize();
+    }
+
     @Override
     protected Set<Class<? extends Annotation>> createSupportedTypeQualifiers() {
         return getBundledTypeQualifiers(CryptoBlackListed.class,
@@ -42,9 +160,16 @@ public class CryptoPolicyComplianceAnnotatedTypeFactory extends BaseAnnotatedTyp
     }
 
     /**
-     * A custom qualifier hierarchy to handle subtyping.
+     * A custom qualifier hierarchy to handle subtyping. Qualifiers are interned into {@link PolicyQualifiers}, so
+     * that comparing two lists is a bitset subset test, and the lub and glb of every pair of distinct qualifiers
+     * are computed once.
      */
     private static class CryptoPolicyComplianceQualifierHierarchy extends MultiGraphQualifierHierarchy {
+
+        private final PolicyQualifiers qualifiers = new PolicyQualifiers();
+        private final Map<Long, AnnotationMirror> lubs = new HashMap<>();
+        private final Map<Long, AnnotationMirror> glbs = new HashMap<>();
+
         /**
          * Constructor matching super
          * @param f supplied by CF
@@ -55,38 +180,68 @@ public class CryptoPolicyComplianceAnnotatedTypeFactory extends BaseAnnotatedTyp
 
         @Override
         public boolean isSubtype(final AnnotationMirror subtype, final AnnotationMirror supertype) {
-            if (AnnotationUtils.areSameByClass(supertype, UnknownCryptoAlgorithm.class)
-                    || AnnotationUtils.areSameByClass(subtype, CryptoPolicyBottom.class)) {
+            final PolicyQualifiers.Qualifier sub = qualifiers.intern(subtype);
+            final PolicyQualifiers.Qualifier sup = qualifiers.intern(supertype);
+            if (sub == null || sup == null) {
+                return super.isSubtype(subtype, supertype);
+            }
+            if (sup.getKind() == PolicyQualifiers.Kind.TOP || sub.getKind() == PolicyQualifiers.Kind.BOTTOM) {
                 return true;
-            } else if (AnnotationUtils.areSameByClass(subtype, UnknownCryptoAlgorithm.class)
-                    || AnnotationUtils.areSameByClass(supertype, CryptoPolicyBottom.class)) {
+            } else if (sub.getKind() == PolicyQualifiers.Kind.TOP
+                       || sup.getKind() == PolicyQualifiers.Kind.BOTTOM) {
                 return false;
-            } else if (AnnotationUtils.areSameByClass(subtype, CryptoWhiteListed.class)
-                       && AnnotationUtils.areSameByClass(supertype, CryptoWhiteListed.class)) {
-                // both are whitelists
-                return compareCryptoListTypes(subtype, supertype);
-            } else if (AnnotationUtils.areSameByClass(subtype, CryptoBlackListed.class)
-                       && AnnotationUtils.areSameByClass(supertype, CryptoBlackListed.class)) {
-                // both are black listed
-                return compareCryptoListTypes(subtype, supertype);
+            } else if (sub.getKind() == sup.getKind()) {
+                // both are white lists or both are black lists.
+                // It is expensive to check whether two different regexes actually accept the same set of values
+                // (or, as would be ideal here, whether one accepts a strict subset of the other): doing so requires
+                // constructing DFAs, etc.; and, to make matters worse, Java regexes aren't regular in the technical
+                // sense. So we avoid the problem entirely and just check if the subtype has only regexes that
+                // literally appear in the supertype. This is a sound approximation of the actual check.
+                return sub.hasRegexesIn(sup);
             } else {
                 return false;
             }
         }
 
-        private boolean compareCryptoListTypes(final AnnotationMirror subtype, final AnnotationMirror supertype) {
-            List<String> subtypeRegexes =
-                AnnotationUtils.getElementValueArray(subtype, "value", String.class, true);
+        @Override
+        public AnnotationMirror leastUpperBound(final AnnotationMirror a1, final AnnotationMirror a2) {
+            final Long key = pairKey(a1, a2);
+            if (key == null) {
+                return super.leastUpperBound(a1, a2);
+            }
+            AnnotationMirror lub = lubs.get(key);
+            if (lub == null) {
+                lub = super.leastUpperBound(a1, a2);
+                lubs.put(key, lub);
+            }
+            return lub;
+        }
 
-            List<String> supertypeRegexes =
-                AnnotationUtils.getElementValueArray(supertype, "value", String.class, true);
+        @Override
+        public AnnotationMirror greatestLowerBound(final AnnotationMirror a1, final AnnotationMirror a2) {
+            final Long key = pairKey(a1, a2);
+            if (key == null) {
+                return super.greatestLowerBound(a1, a2);
+            }
+            AnnotationMirror glb = glbs.get(key);
+            if (glb == null) {
+                glb = super.greatestLowerBound(a1, a2);
+                glbs.put(key, glb);
+            }
+            return glb;
+        }
 
-            // It is expensive to check whether two different regexes actually accept the same set of values
-            // (or, as would be ideal here, whether one accepts a strict subset of the other): doing so requires
-            // constructing DFAs, etc.; and, to make matters worse, Java regexes aren't regular in the technical
-            // sense. So we avoid the problem entirely and just check if the subtype has only regexes that literally
-            // appear in the supertype. This is a sound approximation of the actual check.
-            return supertypeRegexes.containsAll(subtypeRegexes);
+        /**
+         * @return the memo key of the ordered pair of qualifiers, or null if one is not a qualifier of the
+         *     hierarchy.
+         */
+        private Long pairKey(final AnnotationMirror a1, final AnnotationMirror a2) {
+            final PolicyQualifiers.Qualifier q1 = qualifiers.intern(a1);
+            final PolicyQualifiers.Qualifier q2 = qualifiers.intern(a2);
+            if (q1 == null || q2 == null) {
+                return null;
+            }
+            return ((long) q1.getId() << 32) | q2.getId();
         }
     }
 }
@@ -1,26 +1,862 @@
 package com.amazon.checkerframework.cryptopolicy;
 
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import com.amazon.checkerframework.cryptopolicy.impact.CallSiteIndex;
+import com.amazon.checkerframework.cryptopolicy.index.PolicyIndex;
+import com.amazon.checkerframework.cryptopolicy.report.FindingsReport;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.comp.AttrContext;
+import com.sun.tools.javac.comp.Enter;
+import com.sun.tools.javac.comp.Env;
+import com.sun.tools.javac.comp.Todo;
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.util.Context;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.value.ValueChecker;
 
 /**
- * Dummy class used by the checker framework to load the type factory.
- * Note that the CheckerFramework uses convention driven development by searching for a (x)Checker class and then
- * loading the (x)AnnotatedTypeFactory.
- * The checker does not provide a default @SuppressWarnings but uses
- * {@link com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning} instead to
- * force users to get an exception for use of non-whitelisted ciphers.
+ * Checks that the algorithm names passed to parameters with a {@code @CryptoWhiteListed} or {@code @CryptoBlackListed}
+ * policy satisfy it, using the Value Checker to resolve the names. The CheckerFramework finds the
+ * {@link CryptoPolicyComplianceAnnotatedTypeFactory} and the {@link CryptoPolicyComplianceVisitor} by the name of this
+ * class. Instead of @SuppressWarnings, a diagnostic is only suppressed by a
+ * {@link com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning} that names the issue approving the
+ * exception. The options this checker supports are documented where they are declared below.
  */
+@SupportedOptions({CryptoPolicyComplianceChecker.POLICY_STATS_OPTION,
+                   CryptoPolicyComplianceChecker.METRICS_OPTION,
+                   CryptoPolicyComplianceChecker.NO_PREFILTER_OPTION,
+                   CryptoPolicyComplianceChecker.CACHE_DIR_OPTION,
+                   CryptoPolicyComplianceChecker.REPORT_OPTION,
+                   CryptoPolicyComplianceChecker.INTERPROCEDURAL_OPTION,
+                   CryptoPolicyComplianceChecker.EXPORT_SUMMARIES_OPTION,
+                   CryptoPolicyComplianceChecker.FAST_MODE_OPTION,
+                   CryptoPolicyComplianceChecker.CALL_SITE_INDEX_OPTION,
+                   CryptoPolicyComplianceChecker.PROFILES_OPTION,
+                   CryptoPolicyComplianceChecker.MEMORY_BOUND_OPTION,
+                   CryptoPolicyComplianceChecker.POLICY_STUBS_OPTION,
+                   CryptoPolicyComplianceChecker.POLICY_INDEX_OPTION})
 public class CryptoPolicyComplianceChecker extends BaseTypeChecker {
 
+    /**
+     * -AcryptoPolicyStats: print the hit/miss counts of the policy and verdict caches and the
+     * {@link CryptoPolicyStatistics} at the end of the run.
+     */
+    static final String POLICY_STATS_OPTION = "cryptoPolicyStats";
+
+    /**
+     * -AcryptoMetrics=path.json: write the {@link CryptoPolicyMetrics} of the run to a JSON file.
+     */
+    static final String METRICS_OPTION = "cryptoMetrics";
+
+    /**
+     * -AcryptoNoPrefilter: check every class, instead of skipping those of units that the {@link CryptoRelevanceFilter}
+     * finds cannot reach a policy.
+     */
+    static final String NO_PREFILTER_OPTION = "cryptoNoPrefilter";
+
+    /**
+     * -AcryptoCacheDir=dir: replay the results of unchanged compilation units with {@link IncrementalResults}.
+     */
+    static final String CACHE_DIR_OPTION = "cryptoCacheDir";
+
+    /**
+     * -AcryptoReport=path.sarif or path.json: collect the diagnostics and approved suppressions in a
+     * {@link FindingsReport} that is written at the end of the run, instead of printing the suppressions to stdout.
+     */
+    static final String REPORT_OPTION = "cryptoReport";
+
+    /**
+     * -AcryptoInterprocedural: resolve algorithm names that reach a policy through parameters of private methods and
+     * of methods of private, local and anonymous classes with {@link MethodSummaries}; with the value
+     * {@link #CLOSED_WORLD}, through the methods that other classes can call as well.
+     */
+    static final String INTERPROCEDURAL_OPTION = "cryptoInterprocedural";
+    static final String CLOSED_WORLD = "closedWorld";
+
+    /**
+     * -AcryptoExportSummaries: write the {@link PolicySummaries} of the compiled classes to the class output; the
+     * summaries on the class path are always checked.
+     */
+    static final String EXPORT_SUMMARIES_OPTION = "cryptoExportSummaries";
+
+    /**
+     * -AcryptoFastMode: evaluate the arguments of policies with {@link StringConstants} instead of running the Value
+     * Checker over every class.
+     */
+    static final String FAST_MODE_OPTION = "cryptoFastMode";
+
+    /**
+     * -AcryptoCallSiteIndex=path.callsites: write the call sites that were checked against a policy to a
+     * {@link CallSiteIndex}, for the {@link com.amazon.checkerframework.cryptopolicy.impact.PolicyImpactAnalyzer};
+     * every unit is checked then, the result cache is not used.
+     */
+    static final String CALL_SITE_INDEX_OPTION = "cryptoCallSiteIndex";
+
+    /**
+     * -AcryptoProfiles=name=stubs,name=stubs: evaluate the call sites against the {@link PolicyProfiles} as well; their
+     * diagnostics name the profile, and with -AcryptoReport each profile gets a report of its own.
+     */
+    static final String PROFILES_OPTION = "cryptoProfiles";
+
+    /**
+     * -AcryptoMemoryBound or -AcryptoMemoryBound=entries: free the per-unit state of this checker and of its
+     * subcheckers as soon as a unit has been checked and cap the caches that would otherwise grow with the compilation,
+     * at {@link #DEFAULT_MEMORY_BOUND} entries if there is no value.
+     */
+    static final String MEMORY_BOUND_OPTION = "cryptoMemoryBound";
+
+    /**
+     * -AcryptoPolicyStubs=stubs, instead of -Astubs=stubs: apply the policies of the parameters of the stubs here
+     * rather than through the stub parser of the CheckerFramework, which every checker of the compilation runs.
+     */
+    static final String POLICY_STUBS_OPTION = "cryptoPolicyStubs";
+
+    /**
+     * -AcryptoPolicyIndex=file: read the policies of -AcryptoPolicyStubs from the {@link PolicyIndex} that
+     * {@link com.amazon.checkerframework.cryptopolicy.index.PolicyIndexCompiler} compiled from them; a missing or stale
+     * index falls back to parsing the stubs.
+     */
+    static final String POLICY_INDEX_OPTION = "cryptoPolicyIndex";
+
+    /**
+     * The entries of each capped cache if -AcryptoMemoryBound has no value.
+     */
+    static final int DEFAULT_MEMORY_BOUND = 256;
+
+    /**
+     * The prefix of the message keys of the {@link PolicyProfiles}, whose messages start with the name of the
+     * profile and {@link #PROFILE_SEPARATOR}.
+     */
+    static final String PROFILE_KEY_PREFIX = "crypto.profile.";
+    static final String PROFILE_SEPARATOR = " profile: ";
+
+    private final CryptoPolicyStatistics statistics = new CryptoPolicyStatistics();
+
+    /**
+     * Null unless -AcryptoMetrics is given.
+     */
+    private CryptoPolicyMetrics metrics;
+
+    /**
+     * Whether {@link #runFinished()} has run.
+     */
+    private boolean finished;
+
+    /**
+     * Null if -AcryptoNoPrefilter is given or the stubs could not be indexed.
+     */
+    private CryptoRelevanceFilter relevanceFilter;
+
+    /**
+     * Null unless -AcryptoCacheDir is given.
+     */
+    private IncrementalResults incrementalResults;
+
+    /**
+     * Null unless -AcryptoReport is given.
+     */
+    private FindingsReport report;
+
+    /**
+     * Null unless -AcryptoInterprocedural is given, built before the first class is checked.
+     */
+    private MethodSummaries methodSummaries;
+
+    /**
+     * Whether the {@link MethodSummaries} have been built, if an option needs them.
+     */
+    private boolean summariesBuilt;
+
+    private PolicySummaries policySummaries;
+
+    /**
+     * Null unless -AcryptoCallSiteIndex is given.
+     */
+    private CallSiteIndex callSiteIndex;
+
+    /**
+     * Null unless -AcryptoProfiles is given.
+     */
+    private PolicyProfiles profiles;
+
+    /**
+     * The reports of the {@link #profiles} by name; null unless both -AcryptoProfiles and -AcryptoReport are given.
+     */
+    private Map<String, FindingsReport> profileReports;
+
+    /**
+     * Null unless -AcryptoPolicyStubs is given.
+     */
+    private StubPolicies policyStubs;
+
+    /**
+     * The entries of each capped cache; 0 unless -AcryptoMemoryBound is given.
+     */
+    private int memoryBound;
+
+    /**
+     * The unit whose classes are being checked, and how many of its classes javac has not handed over yet.
+     */
+    private CompilationUnitTree unit;
+    private int remainingClasses;
+
+    /**
+     * The source file of the unit that was released last, to notice a class of it that javac hands over later.
+     */
+    private JavaFileObject releasedSource;
+
     @Override
     protected LinkedHashSet<Class<? extends BaseTypeChecker>> getImmediateSubcheckerClasses() {
         LinkedHashSet<Class<? extends BaseTypeChecker>> checkers =
             super.getImmediateSubcheckerClasses();
         // run the value checker before this checker to propagate string constants around.
-        checkers.add(ValueChecker.class);
+        if (!isFastMode()) {
+            checkers.add(ValueChecker.class);
+        }
         return checkers;
     }
+
+    /**
+     * @return true if -AcryptoFastMode is given.
+     */
+    boolean isFastMode() {
+        // not hasOption(), which asks the subcheckers for their options and so calls back here.
+        final Map<String, String> options = processingEnv.getOptions();
+        return options.containsKey(FAST_MODE_OPTION)
+               || options.containsKey(getClass().getSimpleName() + "_" + FAST_MODE_OPTION);
+    }
+
+    @Override
+    public void initChecker() {
+        // the metrics have to exist before super creates the type factory, which parses the stubs.
+        if (hasOption(METRICS_OPTION)) {
+            metrics = new CryptoPolicyMetrics(statistics);
+        }
+        // the type factory sizes its caches when super creates it.
+        if (hasOption(MEMORY_BOUND_OPTION)) {
+            memoryBound = parseMemoryBound(getOption(MEMORY_BOUND_OPTION));
+        }
+        super.initChecker();
+        if (hasOption(MEMORY_BOUND_OPTION) && memoryBound == 0) {
+            message(Diagnostic.Kind.ERROR, "-A%s must be a positive number of cache entries, not %s",
+                    MEMORY_BOUND_OPTION, getOption(MEMORY_BOUND_OPTION));
+        }
+        if (getOption(INTERPROCEDURAL_OPTION) != null && !CLOSED_WORLD.equals(getOption(INTERPROCEDURAL_OPTION))) {
+            message(Diagnostic.Kind.ERROR, "-A%s takes no value or %s, not %s",
+                    INTERPROCEDURAL_OPTION, CLOSED_WORLD, getOption(INTERPROCEDURAL_OPTION));
+        }
+        policySummaries = new PolicySummaries(
+            processingEnv, Types.instance(((JavacProcessingEnvironment) processingEnv).getContext()));
+        // typeProcessingOver() is only called if javac reports no errors at all, including those of this checker.
+        JavacTask.instance(processingEnv).addTaskListener(new TaskListener() {
+            @Override
+            public void started(final TaskEvent event) {
+            }
+
+            @Override
+            public void finished(final TaskEvent event) {
+                if (event.getKind() == TaskEvent.Kind.COMPILATION) {
+                    runFinished();
+                }
+            }
+        });
+        if (hasOption(POLICY_STUBS_OPTION)) {
+            loadPolicyStubs();
+        } else if (hasOption(POLICY_INDEX_OPTION)) {
+            message(Diagnostic.Kind.ERROR, "-A%s needs the stubs it was compiled from in -A%s",
+                    POLICY_INDEX_OPTION, POLICY_STUBS_OPTION);
+        }
+        if (hasOption(PROFILES_OPTION)) {
+            try {
+                profiles = PolicyProfiles.load(getOption(PROFILES_OPTION));
+            } catch (IOException | IllegalArgumentException e) {
+                message(Diagnostic.Kind.ERROR, "Cannot load the crypto policy profiles: %s", e.getMessage());
+            }
+        }
+        if (!hasOption(NO_PREFILTER_OPTION)) {
+            StubPolicyIndex index = StubPolicyIndex.load(getOption("stubs"));
+            if (index != null && policyStubs != null) {
+                index = index.withPolicies(policyStubs);
+            }
+            if (index != null && profiles != null) {
+                // a class that only calls the methods a profile annotates is relevant too.
+                for (PolicyProfiles.Profile profile : profiles.getProfiles()) {
+                    index = index.withPolicies(profile.getStubPolicies());
+                }
+            }
+            if (index != null) {
+                relevanceFilter = new CryptoRelevanceFilter(index, policySummaries, processingEnv.getElementUtils(),
+                                                            processingEnv.getTypeUtils(), memoryBound);
+            }
+        }
+        if (hasOption(REPORT_OPTION)) {
+            report = new FindingsReport();
+            if (profiles != null) {
+                profileReports = new LinkedHashMap<>();
+                for (PolicyProfiles.Profile profile : profiles.getProfiles()) {
+                    profileReports.put(profile.getName(), new FindingsReport());
+                }
+            }
+            // diagnostics on elements, like bad issue URLs, are printed through the messager, not printMessage.
+            messager = new ReportingMessager(messager);
+        }
+        if (hasOption(CALL_SITE_INDEX_OPTION)) {
+            callSiteIndex = new CallSiteIndex();
+        } else if (hasOption(CACHE_DIR_OPTION)) {
+            // the call sites of replayed units would be missing from the index.
+            openResultCache();
+        }
+    }
+
+    /**
+     * Read the policies of -AcryptoPolicyStubs from the -AcryptoPolicyIndex, or parse the stubs if there is no
+     * index or it was compiled from other stubs or by another version.
+     */
+    private void loadPolicyStubs() {
+        final String stubs = getOption(POLICY_STUBS_OPTION);
+        final long start = System.nanoTime();
+        try {
+            StubPolicies loaded = null;
+            if (hasOption(POLICY_INDEX_OPTION)) {
+                loaded = PolicyIndex.read(Paths.get(getOption(POLICY_INDEX_OPTION)), stubs);
+                if (loaded == null) {
+                    message(Diagnostic.Kind.NOTE, "The crypto policy index %s is missing or stale, parsing %s",
+                            getOption(POLICY_INDEX_OPTION), stubs);
+                }
+            }
+            if (loaded == null) {
+                loaded = StubPolicies.load(stubs);
+                if (!loaded.getIgnoredMembers().isEmpty()) {
+                    message(Diagnostic.Kind.ERROR, "-A%s only applies policies of parameters, pass the stubs of %s "
+                                                   + "with -Astubs", POLICY_STUBS_OPTION,
+                            String.join(", ", loaded.getIgnoredMembers()));
+                }
+            }
+            policyStubs = loaded;
+        } catch (IOException | RuntimeException e) {
+            message(Diagnostic.Kind.ERROR, "Cannot load the crypto policy stubs: %s", e.getMessage());
+        }
+        if (metrics != null) {
+            metrics.addTime(CryptoPolicyMetrics.Phase.STUB_PARSING, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param value the value of -AcryptoMemoryBound, or null.
+     * @return the entries of each capped cache, or 0 if the value is not a positive number.
+     */
+    private static int parseMemoryBound(final String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_MEMORY_BOUND;
+        }
+        try {
+            return Math.max(Integer.parseInt(value), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void openResultCache() {
+        // options that do not change what the checker reports must not invalidate the cache.
+        final Map<String, String> options = new HashMap<>(processingEnv.getOptions());
+        options.keySet().removeAll(Arrays.asList(POLICY_STATS_OPTION, METRICS_OPTION, NO_PREFILTER_OPTION,
+                                                 CACHE_DIR_OPTION, REPORT_OPTION));
+        try {
+            // the results depend on the policy stubs and the stubs of the profiles as well.
+            final List<String> stubs = new ArrayList<>();
+            for (String option : Arrays.asList(getOption("stubs"), getOption(POLICY_STUBS_OPTION))) {
+                if (option != null) {
+                    stubs.add(option);
+                }
+            }
+            if (profiles != null) {
+                stubs.add(profiles.getStubs());
+            }
+            final String stubsOption = stubs.isEmpty() ? null : String.join(File.pathSeparator, stubs);
+            incrementalResults = IncrementalResults.open(Paths.get(getOption(CACHE_DIR_OPTION)), stubsOption, options,
+                                                         this, processingEnv);
+        } catch (IOException | RuntimeException e) {
+            message(Diagnostic.Kind.WARNING, "Not using the crypto policy result cache: %s", e);
+        }
+    }
+
+    /**
+     * @return the counters of this run.
+     */
+    public CryptoPolicyStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the metrics of this run, or null if -AcryptoMetrics is not given.
+     */
+    CryptoPolicyMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the entries of each capped cache, or 0 if -AcryptoMemoryBound is not given.
+     */
+    int getMemoryBound() {
+        return memoryBound;
+    }
+
+    /**
+     * @return the method summaries of the compilation, or null if -AcryptoInterprocedural is not given.
+     */
+    MethodSummaries getMethodSummaries() {
+        return methodSummaries;
+    }
+
+    /**
+     * @return the index of the checked call sites, or null if -AcryptoCallSiteIndex is not given.
+     */
+    CallSiteIndex getCallSiteIndex() {
+        return callSiteIndex;
+    }
+
+    /**
+     * @return the policies of the parameters of -AcryptoPolicyStubs, or null if it is not given or they cannot be
+     *     read.
+     */
+    StubPolicies getPolicyStubs() {
+        return policyStubs;
+    }
+
+    /**
+     * @return the profiles to evaluate the call sites against as well, or null if -AcryptoProfiles is not given.
+     */
+    PolicyProfiles getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * @return the policies of the parameters that are checked at the call sites of their methods.
+     */
+    PolicySummaries getPolicySummaries() {
+        return policySummaries;
+    }
+
+    /**
+     * Note that the result of the class that is being checked depends on the code of other compilation units.
+     */
+    void dependsOnOtherUnits() {
+        if (incrementalResults != null) {
+            incrementalResults.dependsOnOtherUnits();
+        }
+    }
+
+    @Override
+    public void typeProcess(final TypeElement element, final TreePath tree) {
+        if (tree.getCompilationUnit() != unit) {
+            unitStarted(tree.getCompilationUnit());
+        }
+        processClass(element, tree);
+        remainingClasses--;
+        if (remainingClasses <= 0) {
+            unitFinished();
+        }
+    }
+
+    /**
+     * javac hands over the top level classes of a unit one after the other, usually without classes of other
+     * units in between, but a class with errors in attribution is not handed over at all.
+     */
+    private void unitStarted(final CompilationUnitTree root) {
+        if (unit != null) {
+            unitFinished();
+        }
+        if (root.getSourceFile() == releasedSource) {
+            // the subcheckers do not set the root again for a unit they think is still current.
+            for (Class<? extends BaseTypeChecker> subcheckerClass : getImmediateSubcheckerClasses()) {
+                getSubchecker(subcheckerClass).getVisitor().setRoot(root);
+            }
+        }
+        unit = root;
+        remainingClasses = (int) root.getTypeDecls().stream().filter(tree -> tree instanceof ClassTree).count();
+        if (metrics != null) {
+            metrics.heapUnitStarted();
+        }
+    }
+
+    /**
+     * With -AcryptoMemoryBound, release the per-unit state: the caches of the type factories of this checker and of
+     * its subcheckers, their dataflow results and stores, the tree path cache, and what the visitor and the
+     * {@link CryptoRelevanceFilter} keep of the unit. The CheckerFramework would release it only when the next unit
+     * is set, after javac has attributed that.
+     */
+    private void unitFinished() {
+        final JavaFileObject source = unit.getSourceFile();
+        unit = null;
+        if (memoryBound > 0) {
+            setRoot(null);
+            for (Class<? extends BaseTypeChecker> subcheckerClass : getImmediateSubcheckerClasses()) {
+                getSubchecker(subcheckerClass).getVisitor().setRoot(null);
+            }
+            if (relevanceFilter != null) {
+                relevanceFilter.unitFinished();
+            }
+            releasedSource = source;
+        }
+        if (metrics != null) {
+            metrics.heapUnitFinished(source.getName());
+        }
+    }
+
+    private void processClass(final TypeElement element, final TreePath tree) {
+        if (!summariesBuilt && (hasOption(INTERPROCEDURAL_OPTION) || hasOption(EXPORT_SUMMARIES_OPTION))) {
+            summariesBuilt = true;
+            final long start = System.nanoTime();
+            buildMethodSummaries(tree.getCompilationUnit());
+            if (metrics != null) {
+                metrics.addTime(CryptoPolicyMetrics.Phase.METHOD_SUMMARIES, System.nanoTime() - start);
+            }
+        }
+        if (metrics == null) {
+            checkClass(element, tree);
+            return;
+        }
+        final long[] before = metrics.snapshot();
+        final long start = System.nanoTime();
+        try {
+            checkClass(element, tree);
+        } finally {
+            metrics.addTime(CryptoPolicyMetrics.Phase.CHECKER, System.nanoTime() - start);
+            metrics.unitFinished(tree.getCompilationUnit().getSourceFile().getName(), before);
+        }
+    }
+
+    /**
+     * Summarize the calls of all compilation units. By default javac attributes and checks one class after the other, so the
+     * classes that are still waiting are attributed first, like -XDcompilePolicy=simple would; javac does not
+     * attribute them again.
+     */
+    private void buildMethodSummaries(final CompilationUnitTree current) {
+        final Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+        final JavaCompiler compiler = JavaCompiler.instance(context);
+        for (Env<AttrContext> env : new ArrayList<>(Todo.instance(context))) {
+            compiler.attribute(env);
+        }
+        final Set<JCTree.JCCompilationUnit> units = Collections.newSetFromMap(new IdentityHashMap<>());
+        units.add((JCTree.JCCompilationUnit) current);
+        for (Env<AttrContext> env : Enter.instance(context).getEnvs()) {
+            units.add(env.toplevel);
+        }
+        final MethodSummaries summaries = MethodSummaries.build(
+            units, Types.instance(context), CLOSED_WORLD.equals(getOption(INTERPROCEDURAL_OPTION)));
+        if (hasOption(INTERPROCEDURAL_OPTION)) {
+            methodSummaries = summaries;
+        }
+        if (hasOption(EXPORT_SUMMARIES_OPTION)) {
+            policySummaries.compute(summaries, getTypeFactory());
+            try {
+                policySummaries.export();
+            } catch (IOException e) {
+                message(Diagnostic.Kind.WARNING, "Could not write the crypto policy summaries: %s", e);
+            }
+        }
+    }
+
+    private void checkClass(final TypeElement element, final TreePath tree) {
+        if (relevanceFilter != null && !relevanceFilter.isRelevant(tree.getCompilationUnit())) {
+            statistics.countSkippedClass();
+            return;
+        }
+        if (incrementalResults == null) {
+            super.typeProcess(element, tree);
+            return;
+        }
+        if (incrementalResults.replay(tree.getCompilationUnit())) {
+            statistics.countReplayedClass();
+            // the replayed errors are not compile errors, which would make the CheckerFramework skip the next class.
+            errsOnLastExit = incrementalResults.getErrorCount();
+            return;
+        }
+        incrementalResults.beginClass(tree.getCompilationUnit(), errsOnLastExit);
+        try {
+            super.typeProcess(element, tree);
+        } finally {
+            incrementalResults.endClass();
+        }
+    }
+
+    @Override
+    protected void printMessage(final Diagnostic.Kind kind,
+                                final String message,
+                                final Tree source,
+                                final CompilationUnitTree root) {
+        if (incrementalResults != null) {
+            incrementalResults.diagnosticPrinted(kind, message, source, root);
+        }
+        if (report != null && source != null && root != null) {
+            addPrintedToReport(kind, message, root, ((JCTree) source).getPreferredPosition());
+        }
+        super.printMessage(kind, message, source, root);
+    }
+
+    /**
+     * Document an approved use of a disallowed algorithm, in the report if there is one and on stdout otherwise.
+     *
+     * @param root       the unit of the tree the suppressed diagnostic was about.
+     * @param tree       the tree the suppressed diagnostic was about.
+     * @param messageKey the key of the suppressed diagnostic.
+     * @param algorithms the algorithms of the suppressed diagnostic.
+     * @param issueUrl   the issue that approves the suppression.
+     */
+    void suppressionApproved(final CompilationUnitTree root,
+                             final Tree tree,
+                             final String messageKey,
+                             final String algorithms,
+                             final String issueUrl) {
+        final long position = ((JCTree) tree).getPreferredPosition();
+        printSuppression(root, position, messageKey, algorithms, issueUrl);
+        if (incrementalResults != null) {
+            incrementalResults.suppressionPrinted(position, messageKey, algorithms, issueUrl);
+        }
+    }
+
+    /**
+     * Print a suppression without recording it, for the {@link IncrementalResults} to replay.
+     */
+    void printSuppression(final CompilationUnitTree root,
+                          final long position,
+                          final String messageKey,
+                          final String algorithms,
+                          final String issueUrl) {
+        if (report == null) {
+            System.out.println("Suppressing warning for " + algorithms + " is approved by " + issueUrl);
+            return;
+        }
+        final Diagnostic.Kind kind =
+            messageKey.endsWith(".warning") ? Diagnostic.Kind.WARNING : Diagnostic.Kind.ERROR;
+        final int nameEnd = messageKey.startsWith(PROFILE_KEY_PREFIX) ? algorithms.indexOf(PROFILE_SEPARATOR) : -1;
+        if (nameEnd < 0) {
+            final String message = String.format(fullMessageOf(messageKey, "%s"), algorithms);
+            addToReport(report, kind, messageKey, message, root, position, issueUrl);
+            return;
+        }
+        // the algorithms of a profile diagnostic start with the name of the profile, like its message.
+        final String name = algorithms.substring(0, nameEnd);
+        final String message = String.format(fullMessageOf(messageKey, "%s" + PROFILE_SEPARATOR + "%s"), name,
+                                             algorithms.substring(nameEnd + PROFILE_SEPARATOR.length()));
+        final FindingsReport profileReport = profileReports == null ? null : profileReports.get(name);
+        if (profileReport == null) {
+            addToReport(report, kind, messageKey, message, root, position, issueUrl);
+        } else {
+            addToReport(profileReport, kind, profileRule(messageKey),
+                        message.substring(message.indexOf(PROFILE_SEPARATOR) + PROFILE_SEPARATOR.length()),
+                        root, position, issueUrl);
+        }
+    }
+
+    /**
+     * @return the rule of a profile diagnostic in the report of its profile, where it looks like one of the stubs.
+     */
+    private static String profileRule(final String key) {
+        final String kind = key.substring(PROFILE_KEY_PREFIX.length());
+        return "unknown".equals(kind) ? "crypto.cipher.unknown" : "crypto.policy." + kind;
+    }
+
+    /**
+     * @param message a message as the CheckerFramework prints it, "[key] text".
+     */
+    private void addPrintedToReport(final Diagnostic.Kind kind,
+                                    final String message,
+                                    final CompilationUnitTree root,
+                                    final long position) {
+        final int keyEnd = message.startsWith("[") ? message.indexOf("] ") : -1;
+        if (keyEnd < 0) {
+            addToReport(report, kind, "unknown", message, root, position, null);
+            return;
+        }
+        final String key = message.substring(1, keyEnd);
+        final String text = message.substring(keyEnd + 2);
+        final int nameEnd = text.indexOf(PROFILE_SEPARATOR);
+        if (profileReports != null && key.startsWith(PROFILE_KEY_PREFIX) && nameEnd > 0) {
+            final FindingsReport profileReport = profileReports.get(text.substring(0, nameEnd));
+            if (profileReport != null) {
+                addToReport(profileReport, kind, profileRule(key),
+                            text.substring(nameEnd + PROFILE_SEPARATOR.length()), root, position, null);
+                return;
+            }
+        }
+        addToReport(report, kind, key, text, root, position, null);
+    }
+
+    private void addToReport(final FindingsReport findings,
+                             final Diagnostic.Kind kind,
+                             final String rule,
+                             final String message,
+                             final CompilationUnitTree root,
+                             final long position,
+                             final String suppressedBy) {
+        final LineMap lines = root.getLineMap();
+        findings.add(kind, rule, root.getSourceFile().getName(),
+                   position < 0 || lines == null ? 0 : lines.getLineNumber(position),
+                   position < 0 || lines == null ? 0 : lines.getColumnNumber(position),
+                   message, suppressedBy);
+    }
+
+    @Override
+    public void typeProcessingOver() {
+        runFinished();
+        super.typeProcessingOver();
+    }
+
+    /**
+     * Print the statistics and write the metrics, the report, the call site index and the result cache, once per
+     * run.
+     */
+    private void runFinished() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (unit != null) {
+            unitFinished();
+        }
+        if (hasOption(POLICY_STATS_OPTION)) {
+            message(Diagnostic.Kind.NOTE, "%s", CryptoPolicyCache.getInstance());
+            message(Diagnostic.Kind.NOTE, "%s", VerdictCache.getInstance());
+            message(Diagnostic.Kind.NOTE, "%s", statistics);
+        }
+        if (metrics != null) {
+            final String path = getOption(METRICS_OPTION);
+            try {
+                metrics.write(Paths.get(path));
+            } catch (IOException e) {
+                message(Diagnostic.Kind.WARNING, "Could not write crypto policy metrics to %s: %s", path, e);
+            }
+        }
+        if (report != null) {
+            final String path = getOption(REPORT_OPTION);
+            try {
+                report.write(Paths.get(path));
+            } catch (IOException e) {
+                message(Diagnostic.Kind.WARNING, "Could not write the crypto policy report to %s: %s", path, e);
+            }
+        }
+        if (profileReports != null) {
+            for (Map.Entry<String, FindingsReport> profileReport : profileReports.entrySet()) {
+                final String path = profileReportPath(getOption(REPORT_OPTION), profileReport.getKey());
+                try {
+                    profileReport.getValue().write(Paths.get(path));
+                } catch (IOException e) {
+                    message(Diagnostic.Kind.WARNING, "Could not write the crypto policy report to %s: %s", path, e);
+                }
+            }
+        }
+        if (callSiteIndex != null) {
+            final String path = getOption(CALL_SITE_INDEX_OPTION);
+            try {
+                callSiteIndex.write(Paths.get(path));
+            } catch (IOException e) {
+                message(Diagnostic.Kind.WARNING, "Could not write the crypto policy call site index to %s: %s",
+                        path, e);
+            }
+        }
+        if (incrementalResults != null) {
+            try {
+                incrementalResults.flush();
+            } catch (IOException e) {
+                message(Diagnostic.Kind.WARNING, "Could not write the crypto policy result cache: %s", e);
+            }
+        }
+    }
+
+    /**
+     * @return the path of the report of a profile: the name of the profile before the extension of the report, e.g.
+     *     "build/crypto.fips.sarif" for "build/crypto.sarif".
+     */
+    static String profileReportPath(final String reportPath, final String profile) {
+        final int extension = reportPath.lastIndexOf('.');
+        return extension > reportPath.lastIndexOf(File.separatorChar)
+               ? reportPath.substring(0, extension) + "." + profile + reportPath.substring(extension)
+               : reportPath + "." + profile;
+    }
+
+    /**
+     * Adds the diagnostics that the CheckerFramework reports on elements to the report.
+     */
+    private final class ReportingMessager implements Messager {
+        private final Messager delegate;
+
+        ReportingMessager(final Messager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void printMessage(final Diagnostic.Kind kind, final CharSequence message) {
+            delegate.printMessage(kind, message);
+        }
+
+        @Override
+        public void printMessage(final Diagnostic.Kind kind, final CharSequence message, final Element element) {
+            delegate.printMessage(kind, message, element);
+            record(kind, message, element);
+        }
+
+        @Override
+        public void printMessage(final Diagnostic.Kind kind,
+                                 final CharSequence message,
+                                 final Element element,
+                                 final AnnotationMirror annotation) {
+            delegate.printMessage(kind, message, element, annotation);
+            record(kind, message, element);
+        }
+
+        @Override
+        public void printMessage(final Diagnostic.Kind kind,
+                                 final CharSequence message,
+                                 final Element element,
+                                 final AnnotationMirror annotation,
+                                 final AnnotationValue value) {
+            delegate.printMessage(kind, message, element, annotation, value);
+            record(kind, message, element);
+        }
+
+        private void record(final Diagnostic.Kind kind, final CharSequence message, final Element element) {
+            final TreePath path = element == null ? null : Trees.instance(processingEnv).getPath(element);
+            if (path != null && element instanceof Symbol) {
+                final long position = TreeInfo.diagnosticPositionFor((Symbol) element, (JCTree) path.getLeaf())
+                                              .getPreferredPosition();
+                addPrintedToReport(kind, message.toString(), path.getCompilationUnit(), position);
+            }
+        }
+    }
 }
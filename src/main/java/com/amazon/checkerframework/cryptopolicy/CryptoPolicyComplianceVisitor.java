@@ -2,22 +2,32 @@ package com.amazon.checkerframework.cryptopolicy;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
-import java.net.MalformedURLException;
-import java.net.URL;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import com.amazon.checkerframework.cryptopolicy.impact.CallSiteIndex;
 import com.amazon.checkerframework.cryptopolicy.qual.CryptoBlackListed;
 import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;
-import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;
+import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree;
 import org.checkerframework.checker.compilermsgs.qual.CompilerMessageKey;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.basetype.BaseTypeVisitor;
@@ -39,6 +49,39 @@ public class CryptoPolicyComplianceVisitor extends BaseTypeVisitor {
     private static final @CompilerMessageKey String CRYPTO_COMPLIANCE_ERROR_KEY = "crypto.policy.violation";
     private static final @CompilerMessageKey String BAD_URL_KEY = "bad.crypto.issue.url";
     private static final @CompilerMessageKey String UNKNOWN_ALGORITHM_KEY = "crypto.cipher.unknown";
+    private static final @CompilerMessageKey String PROFILE_WARNING_KEY =
+        CryptoPolicyComplianceChecker.PROFILE_KEY_PREFIX + "warning";
+    private static final @CompilerMessageKey String PROFILE_ERROR_KEY =
+        CryptoPolicyComplianceChecker.PROFILE_KEY_PREFIX + "violation";
+    private static final @CompilerMessageKey String PROFILE_UNKNOWN_KEY =
+        CryptoPolicyComplianceChecker.PROFILE_KEY_PREFIX + "unknown";
+
+    /**
+     * Upper bound on the number of annotation mirrors whose policy is remembered.
+     */
+    private static final int MAX_CACHED_ANNOTATIONS = 256;
+
+    private final CryptoPolicyStatistics statistics;
+
+    /**
+     * Null unless -AcryptoMetrics is given.
+     */
+    private final CryptoPolicyMetrics metrics;
+
+    private final LruCache<AnnotationMirror, CryptoPolicy> policiesByAnnotation =
+        new LruCache<>("AnnotationPolicies", MAX_CACHED_ANNOTATIONS);
+
+    /**
+     * The suppressions of {@link #indexedRoot}, built on the first lookup in the unit; null if the unit has
+     * declarations without source positions.
+     */
+    private SuppressionIndex suppressionIndex;
+    private CompilationUnitTree indexedRoot;
+
+    /**
+     * Null unless -AcryptoFastMode is given, in which case there is no Value Checker to ask.
+     */
+    private final StringConstants stringConstants;
 
     /**
      * Default constructor.
@@ -47,6 +90,38 @@ public class CryptoPolicyComplianceVisitor extends BaseTypeVisitor {
      */
     public CryptoPolicyComplianceVisitor(BaseTypeChecker checker) {
         super(checker);
+        this.statistics = ((CryptoPolicyComplianceChecker) checker).getStatistics();
+        this.metrics = ((CryptoPolicyComplianceChecker) checker).getMetrics();
+        this.stringConstants = ((CryptoPolicyComplianceChecker) checker).isFastMode() ? new StringConstants() : null;
+    }
+
+    /**
+     * A null root, with -AcryptoMemoryBound once a unit has been checked, releases what this visitor keeps of it.
+     */
+    @Override
+    public void setRoot(final CompilationUnitTree root) {
+        super.setRoot(root);
+        if (root == null) {
+            indexedRoot = null;
+            suppressionIndex = null;
+            if (stringConstants != null) {
+                stringConstants.release();
+            }
+        }
+    }
+
+    @Override
+    public void visit(final TreePath path) {
+        if (metrics == null) {
+            super.visit(path);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            super.visit(path);
+        } finally {
+            metrics.addTime(CryptoPolicyMetrics.Phase.VISITOR, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -62,90 +137,372 @@ public class CryptoPolicyComplianceVisitor extends BaseTypeVisitor {
                                       final ExpressionTree rhsTree,
                                       final String errorKey) {
 
-        final List<String> stringValAnnotations = getLowerCasedStringValAnnotations(rhsTree);
         final AnnotationMirror whiteListAnno = lhsType.getAnnotation(CryptoWhiteListed.class);
-        final AnnotationMirror blackListAnno = lhsType.getAnnotation(CryptoBlackListed.class);
+        final AnnotationMirror blackListAnno =
+            whiteListAnno == null ? lhsType.getAnnotation(CryptoBlackListed.class) : null;
 
-        // If the lhs isn't a Crypto Policy whitelist or blacklist, or if the rhs does not have
-        // any StringVal annotations then there is nothing to do.
-        if ((whiteListAnno == null && blackListAnno == null)) {
+        // If the lhs isn't a Crypto Policy whitelist or blacklist there is nothing to do. This is the case for
+        // almost every assignment in a program, so we bail out before asking the Value Checker about the rhs.
+        if (whiteListAnno == null && blackListAnno == null) {
+            statistics.countNonPolicyAssignment();
             super.commonAssignmentCheck(lhsType, rhsTree, errorKey);
             return;
         }
-        // If we cannot determine what algorithm is used we fail the build as well to avoid false negatives.
-        if (stringValAnnotations == null || stringValAnnotations.isEmpty()) {
-            checker.report(Result.failure(UNKNOWN_ALGORITHM_KEY), rhsTree);
-            return;
+        final CryptoPolicy whiteList =
+            whiteListAnno == null ? null : getPolicy(whiteListAnno, CryptoPolicy.Kind.WHITELIST);
+        final CryptoPolicy blackList =
+            blackListAnno == null ? null : getPolicy(blackListAnno, CryptoPolicy.Kind.BLACKLIST);
+        final List<CryptoPolicy> policies = new ArrayList<>(2);
+        if (whiteList != null) {
+            policies.add(whiteList);
+        }
+        if (blackList != null) {
+            policies.add(blackList);
+        }
+        final List<String> algorithms = getAlgorithms(rhsTree, policies);
+        if (algorithms != null) {
+            final PolicyProfiles profiles = ((CryptoPolicyComplianceChecker) checker).getProfiles();
+            final CallSiteIndex.Api api =
+                getCallSiteIndex() != null || profiles != null ? getAssignedApi(rhsTree) : null;
+            if (getCallSiteIndex() != null) {
+                recordCallSite(api, whiteList, blackList, algorithms, rhsTree);
+            }
+            checkVerdict(whiteList, blackList, algorithms, rhsTree);
+            if (profiles != null) {
+                checkProfiles(profiles, api, algorithms, rhsTree, true);
+            }
         }
+    }
 
-        final Set<String> disallowedCiphers = new HashSet<>();
-        final Set<String> warningCiphers = new HashSet<>();
-        if (whiteListAnno != null) {
-            List<String> regexList = AnnotationUtils.getElementValueArray(whiteListAnno, "value", String.class, true);
-            disallowedCiphers.addAll(matchCiphersFromAnnotation(regexList, stringValAnnotations, false));
+    /**
+     * Evaluate the algorithms of a call site against the policies that the {@link PolicyProfiles} give the
+     * parameter. If the stubs annotate the parameter too, only suppressions with a valid issue URL apply, the
+     * invalid ones are reported for the stubs.
+     */
+    private void checkProfiles(final PolicyProfiles profiles,
+                               final CallSiteIndex.Api api,
+                               final List<String> algorithms,
+                               final ExpressionTree rhsTree,
+                               final boolean checkedByStubs) {
+        for (PolicyProfiles.Profile profile : profiles.getProfiles()) {
+            final CryptoPolicy[] policies = profile.getPolicies(api);
+            if (policies[0] == null && policies[1] == null) {
+                continue;
+            }
+            final PolicyVerdict verdict = VerdictCache.getInstance().getVerdict(policies[0], policies[1], algorithms);
+            final String warningMessage = verdict.getWarningMessage();
+            if (warningMessage != null
+                && !isProfileSuppressed(rhsTree, PROFILE_WARNING_KEY, profile, warningMessage, checkedByStubs)) {
+                checker.report(Result.warning(PROFILE_WARNING_KEY, profile.getName(), warningMessage), rhsTree);
+            }
+            final String errorMessage = verdict.getErrorMessage();
+            if (errorMessage != null
+                && !isProfileSuppressed(rhsTree, PROFILE_ERROR_KEY, profile, errorMessage, checkedByStubs)) {
+                checker.report(Result.failure(PROFILE_ERROR_KEY, profile.getName(), errorMessage), rhsTree);
+            }
+        }
+    }
 
-            List<String> warnList = AnnotationUtils.getElementValueArray(whiteListAnno, "warnOn", String.class, true);
-            warningCiphers.addAll(matchCiphersFromAnnotation(warnList, stringValAnnotations, true));
+    private boolean isProfileSuppressed(final ExpressionTree rhsTree,
+                                        final String messageKey,
+                                        final PolicyProfiles.Profile profile,
+                                        final String algorithms,
+                                        final boolean checkedByStubs) {
+        final String suppressedString =
+            profile.getName() + CryptoPolicyComplianceChecker.PROFILE_SEPARATOR + algorithms;
+        if (!checkedByStubs) {
+            return shouldSuppressWarnings(rhsTree, messageKey, suppressedString);
+        }
+        final SuppressionIndex.Suppression suppression = findSuppression(rhsTree);
+        if (suppression == null || suppression.getIssueUrl() == null) {
+            return false;
         }
+        ((CryptoPolicyComplianceChecker) checker).suppressionApproved(root, rhsTree, messageKey, suppressedString,
+                                                                      suppression.getIssueUrl().toString());
+        return true;
+    }
 
-        if (blackListAnno != null) {
-            List<String> regexList = AnnotationUtils.getElementValueArray(blackListAnno, "value", String.class, true);
-            disallowedCiphers.addAll(matchCiphersFromAnnotation(regexList, stringValAnnotations, true));
+    @Override
+    public Void visitMethodInvocation(final MethodInvocationTree node, final Void p) {
+        final ExecutableElement callee = TreeUtils.elementFromUse(node);
+        checkSummarizedParameters(callee, node.getArguments());
+        checkProfileParameters(callee, node.getArguments());
+        return super.visitMethodInvocation(node, p);
+    }
+
+    @Override
+    public Void visitNewClass(final NewClassTree node, final Void p) {
+        final ExecutableElement callee = TreeUtils.elementFromUse(node);
+        checkSummarizedParameters(callee, node.getArguments());
+        checkProfileParameters(callee, node.getArguments());
+        return super.visitNewClass(node, p);
+    }
+
+    /**
+     * Check the arguments of a call against the policies that the {@link PolicyProfiles} have for the parameters
+     * of the callee that the stubs do not annotate, the others are checked in commonAssignmentCheck.
+     */
+    private void checkProfileParameters(final ExecutableElement callee,
+                                        final List<? extends ExpressionTree> arguments) {
+        final PolicyProfiles profiles = ((CryptoPolicyComplianceChecker) checker).getProfiles();
+        if (profiles == null || callee == null || arguments.isEmpty()
+            || !profiles.hasPolicies(internalName((Symbol) callee))) {
+            return;
+        }
+        final List<AnnotatedTypeMirror> declared = atypeFactory.getAnnotatedType(callee).getParameterTypes();
+        final int count = callee.getParameters().size();
+        for (int i = 0; i < count && i < arguments.size(); i++) {
+            if (callee.isVarArgs() && i == count - 1) {
+                break;
+            }
+            final AnnotatedTypeMirror parameter = declared.get(i);
+            if (parameter.hasAnnotation(CryptoWhiteListed.class) || parameter.hasAnnotation(CryptoBlackListed.class)) {
+                continue;
+            }
+            final CallSiteIndex.Api api = getParameterApi(callee, i);
+            final List<PolicyProfiles.Profile> annotating = new ArrayList<>(1);
+            for (PolicyProfiles.Profile profile : profiles.getProfiles()) {
+                final CryptoPolicy[] policies = profile.getPolicies(api);
+                if (policies[0] != null || policies[1] != null) {
+                    annotating.add(profile);
+                }
+            }
+            if (annotating.isEmpty()) {
+                continue;
+            }
+            statistics.countPolicyAssignment();
+            final List<String> algorithms = resolveAlgorithms(arguments.get(i));
+            if (!algorithms.isEmpty()) {
+                checkProfiles(profiles, api, algorithms, arguments.get(i), false);
+                continue;
+            }
+            statistics.countUnknownAlgorithm();
+            for (PolicyProfiles.Profile profile : annotating) {
+                checker.report(Result.failure(PROFILE_UNKNOWN_KEY, profile.getName()), arguments.get(i));
+            }
         }
+    }
 
-        // remove all disallowedCiphers from the warningCiphers because we report an error about those already.
-        warningCiphers.removeAll(disallowedCiphers);
-        if (!warningCiphers.isEmpty()) {
-            final String messageString = String.join(", ", warningCiphers).toUpperCase();
-            if (!shouldSuppressWarnings(rhsTree, messageString)) {
-                checker.report(Result.warning(CRYPTO_COMPLIANCE_WARNING_KEY, messageString), rhsTree);
+    /**
+     * Check the arguments of a call against the policies that the {@link PolicySummaries} have for the parameters
+     * of the callee, which are not on its declared type.
+     */
+    private void checkSummarizedParameters(final ExecutableElement callee,
+                                           final List<? extends ExpressionTree> arguments) {
+        final PolicySummaries summaries = ((CryptoPolicyComplianceChecker) checker).getPolicySummaries();
+        if (summaries == null || callee == null || arguments.isEmpty()) {
+            return;
+        }
+        final int count = callee.getParameters().size();
+        for (int i = 0; i < count && i < arguments.size(); i++) {
+            if (callee.isVarArgs() && i == count - 1) {
+                // the summaries never have a policy for a varargs parameter.
+                break;
+            }
+            final List<CryptoPolicy> policies = summaries.getParameterPolicies(callee, i);
+            if (policies.isEmpty()) {
+                continue;
+            }
+            final List<String> algorithms = getAlgorithms(arguments.get(i), policies);
+            if (algorithms == null) {
+                continue;
+            }
+            CryptoPolicy whiteList = null;
+            CryptoPolicy blackList = null;
+            for (CryptoPolicy policy : policies) {
+                if (policy.getKind() == CryptoPolicy.Kind.WHITELIST) {
+                    whiteList = policy;
+                    checkVerdict(policy, null, algorithms, arguments.get(i));
+                } else {
+                    blackList = policy;
+                    checkVerdict(null, policy, algorithms, arguments.get(i));
+                }
+            }
+            if (getCallSiteIndex() != null) {
+                recordCallSite(getParameterApi(callee, i), whiteList, blackList, algorithms, arguments.get(i));
             }
         }
+    }
 
-        // if none of the regex checks returned false, then we can skip the rest of the CAC
-        if (!disallowedCiphers.isEmpty()) {
-            final String messageString = String.join(", ", disallowedCiphers).toUpperCase();
-            if (!shouldSuppressWarnings(rhsTree, messageString)) {
-                checker.report(Result.failure(CRYPTO_COMPLIANCE_ERROR_KEY, messageString), rhsTree);
+    private CallSiteIndex getCallSiteIndex() {
+        return ((CryptoPolicyComplianceChecker) checker).getCallSiteIndex();
+    }
+
+    /**
+     * Add a call site whose algorithms are known to the {@link CallSiteIndex}.
+     */
+    private void recordCallSite(final CallSiteIndex.Api api,
+                                final CryptoPolicy whiteList,
+                                final CryptoPolicy blackList,
+                                final List<String> algorithms,
+                                final ExpressionTree rhsTree) {
+        final long position = ((JCTree) rhsTree).getPreferredPosition();
+        final LineMap lines = root.getLineMap();
+        getCallSiteIndex().add(root.getSourceFile().getName(),
+                               position < 0 || lines == null ? 0 : (int) lines.getLineNumber(position),
+                               position < 0 || lines == null ? 0 : (int) lines.getColumnNumber(position),
+                               api, whiteList, blackList, algorithms, findSuppression(rhsTree) != null);
+    }
+
+    /**
+     * @return the parameter of the method invocation or constructor call that the current path leads to that the rhs
+     *     is passed to, or else the variable or method that it is assigned to or returned from.
+     */
+    private CallSiteIndex.Api getAssignedApi(final ExpressionTree rhsTree) {
+        final Tree leaf = getCurrentPath().getLeaf();
+        final ExecutableElement callee;
+        final List<? extends ExpressionTree> arguments;
+        if (leaf instanceof MethodInvocationTree) {
+            callee = TreeUtils.elementFromUse((MethodInvocationTree) leaf);
+            arguments = ((MethodInvocationTree) leaf).getArguments();
+        } else if (leaf instanceof NewClassTree) {
+            callee = TreeUtils.elementFromUse((NewClassTree) leaf);
+            arguments = ((NewClassTree) leaf).getArguments();
+        } else {
+            callee = null;
+            arguments = Collections.emptyList();
+        }
+        for (int i = 0; callee != null && i < arguments.size(); i++) {
+            if (arguments.get(i) == rhsTree && !callee.getParameters().isEmpty()) {
+                // a varargs argument is passed to the last parameter.
+                return getParameterApi(callee, Math.min(i, callee.getParameters().size() - 1));
             }
         }
+        Element target = null;
+        if (leaf instanceof VariableTree) {
+            target = TreeUtils.elementFromDeclaration((VariableTree) leaf);
+        } else if (leaf instanceof AssignmentTree) {
+            target = TreeUtils.elementFromTree(((AssignmentTree) leaf).getVariable());
+        }
+        if (target == null) {
+            final MethodTree method = TreeUtils.enclosingMethod(getCurrentPath());
+            target = method == null ? null : TreeUtils.elementFromDeclaration(method);
+        }
+        if (target == null) {
+            final ClassTree cls = TreeUtils.enclosingClass(getCurrentPath());
+            return new CallSiteIndex.Api(internalName((Symbol) TreeUtils.elementFromDeclaration(cls)), "",
+                                         Collections.<String>emptyList(), -1);
+        }
+        return new CallSiteIndex.Api(internalName((Symbol) target), target.getSimpleName().toString(),
+                                     Collections.<String>emptyList(), -1);
     }
 
     /**
-     * Find the sub list of stringList that match regular expressions in the cipher annotation.
-     * Note that for simplicity, all regex strings are lower-cased since the standard says crypto algorithms
-     * are not case-sensitive.
-     * Set positive to get the sublist of things that do not match.
-     *
-     * @param regexList  List of regex that should be matched
-     * @param stringList The list that should be matched.
-     * @param positive   True, to retain all matches, False to retain strings that don't have a match.
-     * @return Sublist of strings.
-     */
-    private List<String> matchCiphersFromAnnotation(final List<String> regexList,
-                                                    final List<String> stringList,
-                                                    final boolean positive) {
-        // if there are no valid whitelist items, don't continue
-        if (regexList.isEmpty()) {
-            return new ArrayList<>();
+     * @return the parameter, with the names that the {@link StubPolicies} give the parameter types.
+     */
+    private CallSiteIndex.Api getParameterApi(final ExecutableElement callee, final int parameter) {
+        final List<String> parameterTypes = new ArrayList<>(callee.getParameters().size());
+        for (VariableElement element : callee.getParameters()) {
+            parameterTypes.add(StubPolicies.simpleTypeName(types.erasure(element.asType()).toString()));
         }
+        return new CallSiteIndex.Api(internalName((Symbol) callee), callee.getSimpleName().toString(),
+                                     parameterTypes, parameter);
+    }
 
-        List<Boolean> valuesMatched =
-            stringList.stream()
-                      .map(value -> regexList.stream()
-                                             .anyMatch(regex -> value.matches(regex.toLowerCase())))
-                      .collect(Collectors.toList());
+    /**
+     * @return the internal name of the class of the symbol, e.g. "java/util/Map$Entry".
+     */
+    private static String internalName(final Symbol symbol) {
+        return symbol.enclClass().flatName().toString().replace('.', '/');
+    }
 
-        final List<String> matchedCiphers = new ArrayList<>();
-        for (int i = 0; i < valuesMatched.size(); i++) {
-            if (valuesMatched.get(i) == positive) {
-                matchedCiphers.add(stringList.get(i));
+    /**
+     * @param rhsTree  the value that has to satisfy the policies.
+     * @param policies the policies.
+     * @return the lower-cased algorithms the rhs can be, or null if they are unknown, which has been reported
+     *     unless the rhs is a parameter that is checked at the call sites of its method.
+     */
+    private List<String> getAlgorithms(final ExpressionTree rhsTree, final List<CryptoPolicy> policies) {
+        statistics.countPolicyAssignment();
+
+        // If we cannot determine what algorithm is used we fail the build as well to avoid false negatives.
+        final List<String> stringValAnnotations = resolveAlgorithms(rhsTree);
+        if (stringValAnnotations.isEmpty()) {
+            if (isCheckedAtCallSites(rhsTree, policies)) {
+                return null;
             }
+            statistics.countUnknownAlgorithm();
+            checker.report(Result.failure(UNKNOWN_ALGORITHM_KEY), rhsTree);
+            return null;
         }
-        return matchedCiphers;
+        return stringValAnnotations;
+    }
+
+    /**
+     * @return the lower-cased algorithms the rhs can be, or an empty list if they are unknown.
+     */
+    private List<String> resolveAlgorithms(final ExpressionTree rhsTree) {
+        final List<String> algorithms = getLowerCasedStringValAnnotations(rhsTree);
+        return algorithms.isEmpty() ? getLowerCasedParameterValues(rhsTree) : algorithms;
+    }
+
+    private void checkVerdict(final CryptoPolicy whiteList,
+                              final CryptoPolicy blackList,
+                              final List<String> stringValAnnotations,
+                              final ExpressionTree rhsTree) {
+        final PolicyVerdict verdict =
+            VerdictCache.getInstance().getVerdict(whiteList, blackList, stringValAnnotations);
+
+        final String warningMessage = verdict.getWarningMessage();
+        if (warningMessage != null
+            && !shouldSuppressWarnings(rhsTree, CRYPTO_COMPLIANCE_WARNING_KEY, warningMessage)) {
+            checker.report(Result.warning(CRYPTO_COMPLIANCE_WARNING_KEY, warningMessage), rhsTree);
+        }
+
+        // if none of the regex checks returned false, then we can skip the rest of the CAC
+        final String errorMessage = verdict.getErrorMessage();
+        if (errorMessage != null && !shouldSuppressWarnings(rhsTree, CRYPTO_COMPLIANCE_ERROR_KEY, errorMessage)) {
+            checker.report(Result.failure(CRYPTO_COMPLIANCE_ERROR_KEY, errorMessage), rhsTree);
+        }
+    }
+
+    /**
+     * With -AcryptoExportSummaries, a parameter that is passed on unchanged to a policy is checked at the call
+     * sites of its method instead, see {@link PolicySummaries}.
+     */
+    private boolean isCheckedAtCallSites(final ExpressionTree rhsTree, final List<CryptoPolicy> policies) {
+        final PolicySummaries summaries = ((CryptoPolicyComplianceChecker) checker).getPolicySummaries();
+        final ExpressionTree expression = TreeUtils.withoutParens(rhsTree);
+        if (summaries == null || expression.getKind() != Tree.Kind.IDENTIFIER) {
+            return false;
+        }
+        final Element element = TreeUtils.elementFromUse(expression);
+        if (!(element instanceof Symbol.VarSymbol) || !summaries.isCheckedAtCallSites((Symbol.VarSymbol) element,
+                                                                                       policies)) {
+            return false;
+        }
+        // the call sites may be in other units.
+        ((CryptoPolicyComplianceChecker) checker).dependsOnOtherUnits();
+        return true;
+    }
+
+    /**
+     * Look up the compiled policy for a white or black list annotation in the shared {@link CryptoPolicyCache}.
+     *
+     * @param anno The @CryptoWhiteListed or @CryptoBlackListed annotation.
+     * @param kind The kind of the annotation.
+     * @return The compiled policy.
+     */
+    private CryptoPolicy getPolicy(final AnnotationMirror anno, final CryptoPolicy.Kind kind) {
+        // The stub annotations are shared by all uses of an API, so reading them once per mirror is enough.
+        return policiesByAnnotation.get(anno, mirror -> readPolicy(mirror, kind));
+    }
+
+    static CryptoPolicy readPolicy(final AnnotationMirror anno, final CryptoPolicy.Kind kind) {
+        final List<String> regexList = AnnotationUtils.getElementValueArray(anno, "value", String.class, true);
+        final List<String> warnList = kind == CryptoPolicy.Kind.WHITELIST
+            ? AnnotationUtils.getElementValueArray(anno, "warnOn", String.class, true)
+            : Collections.<String>emptyList();
+        return CryptoPolicyCache.getInstance().getPolicy(kind, regexList, warnList);
     }
 
     private List<String> getLowerCasedStringValAnnotations(final ExpressionTree expressionTree) {
+        if (stringConstants != null) {
+            final Set<String> values = stringConstants.values(expressionTree, getCurrentPath());
+            return values == null
+                   ? new ArrayList<>()
+                   : values.stream().map(String::toLowerCase).collect(Collectors.toList());
+        }
         // get the actual Strings that the rhs can resolve to
         ValueAnnotatedTypeFactory valueAnnotatedTypeFactory =
             (ValueAnnotatedTypeFactory) atypeFactory.getTypeFactoryOfSubchecker(ValueChecker.class);
@@ -163,50 +520,116 @@ public class CryptoPolicyComplianceVisitor extends BaseTypeVisitor {
                               .collect(Collectors.toList());
     }
 
+    /**
+     * With -AcryptoInterprocedural, resolve a parameter of the enclosing method to the values its call sites pass,
+     * see {@link MethodSummaries}. Parameters that carry a policy themselves are checked at their call sites instead.
+     */
+    private List<String> getLowerCasedParameterValues(final ExpressionTree expressionTree) {
+        final CryptoPolicyComplianceChecker cryptoChecker = (CryptoPolicyComplianceChecker) checker;
+        final MethodSummaries summaries = cryptoChecker.getMethodSummaries();
+        final ExpressionTree expression = TreeUtils.withoutParens(expressionTree);
+        if (summaries == null || expression.getKind() != Tree.Kind.IDENTIFIER) {
+            return new ArrayList<>();
+        }
+        final Element element = TreeUtils.elementFromUse(expression);
+        if (element == null || element.getKind() != ElementKind.PARAMETER || !(element instanceof Symbol.VarSymbol)) {
+            return new ArrayList<>();
+        }
+        final AnnotatedTypeMirror declaredType = atypeFactory.getAnnotatedType(element);
+        if (declaredType.hasAnnotation(CryptoWhiteListed.class) || declaredType.hasAnnotation(CryptoBlackListed.class)) {
+            return new ArrayList<>();
+        }
+        // the result now depends on the call sites, which may be in other units.
+        cryptoChecker.dependsOnOtherUnits();
+        final Set<String> values = summaries.parameterValues((Symbol.VarSymbol) element);
+        if (values == null) {
+            return new ArrayList<>();
+        }
+        statistics.countSummaryResolution();
+        return values.stream().map(String::toLowerCase).collect(Collectors.toList());
+    }
+
+    /**
+     * Checks whether the enclosing variable, method or class of the tree carries a @SuppressCryptoWarning.
+     * The enclosing declarations are found in the {@link SuppressionIndex} of the unit.
+     * Package-private so the benchmarks in src/jmh can measure it in isolation.
+     *
+     * @param tree             the tree a diagnostic would be reported on.
+     * @param messageKey       the key of the diagnostic.
+     * @param suppressedString the algorithms the diagnostic is about.
+     * @return true if the diagnostic should be suppressed.
+     */
+    boolean shouldSuppressWarnings(final ExpressionTree tree, final String messageKey, final String suppressedString) {
+        statistics.countSuppressionLookup();
+        if (metrics == null) {
+            return lookUpSuppression(tree, messageKey, suppressedString);
+        }
+        final long start = System.nanoTime();
+        try {
+            return lookUpSuppression(tree, messageKey, suppressedString);
+        } finally {
+            metrics.addTime(CryptoPolicyMetrics.Phase.SUPPRESSION_LOOKUPS, System.nanoTime() - start);
+        }
+    }
+
+    private boolean lookUpSuppression(final ExpressionTree tree,
+                                      final String messageKey,
+                                      final String suppressedString) {
+        final SuppressionIndex.Suppression suppression = findSuppression(tree);
+        if (suppression == null) {
+            return false;
+        }
+        if (suppression.getIssueUrl() != null) {
+            ((CryptoPolicyComplianceChecker) checker).suppressionApproved(root, tree, messageKey, suppressedString,
+                                                                          suppression.getIssueUrl().toString());
+        } else {
+            // In theory, we would like to enforce that the URL refers to an issue that gives this package an
+            // exception to use the relevant algorithm, but this is not feasible to implement. Mostly because we
+            // won't have network access during fleet builds to perform any sort of validation. Instead, we just
+            // check if the string is a valid URL to deter users from cheating by putting in empty string, etc.
+            checker.report(Result.failure(BAD_URL_KEY, suppressedString, suppression.getIssue()),
+                           suppression.getElement());
+        }
+        return true;
+    }
 
-    private boolean shouldSuppressWarnings(final ExpressionTree tree, final String suppressedString) {
+    /**
+     * @return the innermost suppression of the enclosing declarations of the tree, or null.
+     */
+    private SuppressionIndex.Suppression findSuppression(final ExpressionTree tree) {
+        if (indexedRoot != root) {
+            indexedRoot = root;
+            suppressionIndex = SuppressionIndex.build(root, trees.getSourcePositions());
+        }
+        final long position = trees.getSourcePositions().getStartPosition(root, tree);
+        return suppressionIndex != null && position >= 0
+               ? suppressionIndex.find(position)
+               : findSuppressionOnPath(tree);
+    }
+
+    /**
+     * The lookup the {@link SuppressionIndex} replaces, for trees without a source position.
+     */
+    private SuppressionIndex.Suppression findSuppressionOnPath(final ExpressionTree tree) {
         final TreePath path = trees.getPath(this.root, tree);
         if (path != null) {
             final VariableTree var = TreeUtils.enclosingVariable(path);
-            if (var != null && hasSuppresssCryptoAnnotation(TreeUtils.elementFromTree(var),
-                                                            suppressedString)) {
-                return true;
+            if (var != null) {
+                final SuppressionIndex.Suppression suppression =
+                    SuppressionIndex.Suppression.of(TreeUtils.elementFromTree(var));
+                if (suppression != null) {
+                    return suppression;
+                }
             }
             final MethodTree method = TreeUtils.enclosingMethod(path);
             if (method != null) {
-                final Element elt = TreeUtils.elementFromTree(method);
-
-                return hasSuppresssCryptoAnnotation(elt, suppressedString);
+                return SuppressionIndex.Suppression.of(TreeUtils.elementFromTree(method));
             }
             final ClassTree cls = TreeUtils.enclosingClass(path);
             if (cls != null) {
-                final Element elt = TreeUtils.elementFromTree(cls);
-                return hasSuppresssCryptoAnnotation(elt, suppressedString);
-            }
-        }
-        return false;
-    }
-
-    private boolean hasSuppresssCryptoAnnotation(final Element elt, final String suppressedString) {
-        final SuppressCryptoWarning anno = elt.getAnnotation(SuppressCryptoWarning.class);
-        if (anno != null) {
-            // Code to validate that the string in the annotation is a valid URL. In theory, we
-            // would like to enforce that this URL also refers to a issue that gives this package
-            // an exception to use the relevant algorithm, but this is not feasible to implement.
-            // Mostly because we won't have network access during fleet builds to perform any sort
-            // of validation. Instead, we just check if the string is a valid URL to deter users
-            // from cheating by putting in empty string, etc.
-            try {
-                final URL issueUrl = new URL(anno.issue());
-                System.out.println("Suppressing warning for "
-                                   + suppressedString
-                                   + " is approved by "
-                                   + issueUrl.toString());
-            } catch (MalformedURLException e) {
-                checker.report(Result.failure(BAD_URL_KEY, suppressedString, anno.issue()), elt);
-            }
-            return true;
-        }
-        return false;
+                return SuppressionIndex.Suppression.of(TreeUtils.elementFromTree(cls));
+            }
+        }
+        return null;
     }
 }
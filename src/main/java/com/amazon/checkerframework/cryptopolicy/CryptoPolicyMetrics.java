@@ -0,0 +1,251 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of one run of the {@link CryptoPolicyComplianceChecker}, in aggregate and per compilation
+ * unit, written as JSON with -AcryptoMetrics=path.json. Nothing is logged per event: the hot paths only add to
+ * {@link LongAdder}s, and the counters are snapshotted once before and once after each compilation unit.
+ * <p>
+ * The heap of each unit is read from the {@link MemoryPoolMXBean}s of the heap: the peak is the sum of the peaks of
+ * the pools since the unit was started, which can be more than the heap ever held at once, and the retained heap is
+ * what the pools held after the last garbage collection when the unit was finished, so it lags behind if no
+ * collection ran during the unit. Neither triggers a collection.
+ */
+final class CryptoPolicyMetrics {
+
+    /**
+     * The phases that are timed. The time spent in the Value Checker is not measured directly but is the time of
+     * the whole checker minus the time of the {@link CryptoPolicyComplianceVisitor}.
+     */
+    enum Phase {
+        /** Parsing the stub files, once per run. */
+        STUB_PARSING("stubParsing"),
+        /** Building the {@link MethodSummaries} and exporting the {@link PolicySummaries}, once per run. */
+        METHOD_SUMMARIES("methodSummaries"),
+        /** The checker including its subcheckers. */
+        CHECKER("checker"),
+        /** The visitor of this checker. */
+        VISITOR("visitor"),
+        /** The @SuppressCryptoWarning lookups of the visitor. */
+        SUPPRESSION_LOOKUPS("suppressionLookups");
+
+        private final String jsonName;
+
+        Phase(final String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    private static final String[] COUNTER_NAMES = {
+        "policyChecks",
+        "fastPathAssignments",
+        "unknownAlgorithms",
+        "suppressionLookups",
+        "skippedClasses",
+        "replayedClasses",
+        "summaryResolutions",
+        "policyCacheHits",
+        "policyCacheMisses",
+        "verdictCacheHits",
+        "verdictCacheMisses",
+    };
+
+    private static final int PHASES_OFFSET = COUNTER_NAMES.length;
+
+    private final CryptoPolicyStatistics statistics;
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final Map<String, long[]> units = new LinkedHashMap<>();
+    private final Map<String, long[]> unitHeaps = new LinkedHashMap<>();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private long peakHeap;
+    private long retainedHeap;
+
+    CryptoPolicyMetrics(final CryptoPolicyStatistics statistics) {
+        this.statistics = statistics;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    void addTime(final Phase phase, final long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * @return the current values of all counters and phase times, to be passed to {@link #unitFinished}.
+     */
+    long[] snapshot() {
+        final long[] values = new long[PHASES_OFFSET + phaseNanos.length];
+        values[0] = statistics.getPolicyAssignments();
+        values[1] = statistics.getNonPolicyAssignments();
+        values[2] = statistics.getUnknownAlgorithms();
+        values[3] = statistics.getSuppressionLookups();
+        values[4] = statistics.getSkippedClasses();
+        values[5] = statistics.getReplayedClasses();
+        values[6] = statistics.getSummaryResolutions();
+        values[7] = CryptoPolicyCache.getInstance().getHitCount();
+        values[8] = CryptoPolicyCache.getInstance().getMissCount();
+        values[9] = VerdictCache.getInstance().getHitCount();
+        values[10] = VerdictCache.getInstance().getMissCount();
+        for (int i = 0; i < phaseNanos.length; i++) {
+            values[PHASES_OFFSET + i] = phaseNanos[i].sum();
+        }
+        return values;
+    }
+
+    /**
+     * Attribute everything that happened since the snapshot to a compilation unit. A unit with several top level
+     * classes is checked once per class, and the results are added up.
+     *
+     * @param file   the source file of the compilation unit.
+     * @param before the snapshot taken before checking it.
+     */
+    void unitFinished(final String file, final long[] before) {
+        final long[] after = snapshot();
+        synchronized (units) {
+            final long[] unit = units.computeIfAbsent(file, key -> new long[after.length]);
+            for (int i = 0; i < after.length; i++) {
+                unit[i] += after[i] - before[i];
+            }
+        }
+    }
+
+    /**
+     * Start measuring the heap of a compilation unit, before its first class is checked.
+     */
+    void heapUnitStarted() {
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Record the peak and retained heap of a compilation unit, after its last class has been checked.
+     *
+     * @param file the source file of the compilation unit.
+     */
+    void heapUnitFinished(final String file) {
+        long peak = 0;
+        long retained = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            final MemoryUsage peakUsage = pool.getPeakUsage();
+            final MemoryUsage collectionUsage = pool.getCollectionUsage();
+            peak += peakUsage == null ? 0 : peakUsage.getUsed();
+            // pools without collection usage are not collected on their own, what they hold now is retained.
+            final MemoryUsage retainedUsage = collectionUsage == null ? pool.getUsage() : collectionUsage;
+            retained += retainedUsage == null ? 0 : retainedUsage.getUsed();
+        }
+        synchronized (units) {
+            final long[] heap = unitHeaps.computeIfAbsent(file, key -> new long[2]);
+            heap[0] = Math.max(heap[0], peak);
+            heap[1] = retained;
+            peakHeap = Math.max(peakHeap, peak);
+            retainedHeap = retained;
+        }
+    }
+
+    /**
+     * Write all metrics as a single JSON document.
+     *
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    void write(final Path path) throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            synchronized (units) {
+                out.write("{\n  \"compilationUnitCount\": " + units.size() + ",\n  \"aggregate\": ");
+                writeValues(out, snapshot(), true);
+                if (!unitHeaps.isEmpty()) {
+                    out.write(",\n  \"heap\": ");
+                    writeHeap(out, new long[] {peakHeap, retainedHeap});
+                }
+                out.write(",\n  \"compilationUnits\": [");
+                String separator = "\n";
+                for (Map.Entry<String, long[]> unit : units.entrySet()) {
+                    out.write(separator + "    {\"file\": \"" + escape(unit.getKey()) + "\", ");
+                    writeValues(out, unit.getValue(), false);
+                    final long[] heap = unitHeaps.get(unit.getKey());
+                    if (heap != null) {
+                        out.write(", \"heap\": ");
+                        writeHeap(out, heap);
+                    }
+                    out.write("}");
+                    separator = ",\n";
+                }
+                out.write("\n  ]\n}\n");
+            }
+        }
+    }
+
+    private static void writeValues(final Writer out, final long[] values, final boolean aggregate)
+        throws IOException {
+        if (aggregate) {
+            out.write("{");
+        }
+        out.write("\"timeMillis\": {");
+        String separator = "";
+        for (Phase phase : Phase.values()) {
+            if ((phase == Phase.STUB_PARSING || phase == Phase.METHOD_SUMMARIES) && !aggregate) {
+                continue;
+            }
+            out.write(separator + "\"" + phase.jsonName + "\": " + millis(values[PHASES_OFFSET + phase.ordinal()]));
+            separator = ", ";
+        }
+        final long valueCheckerNanos = values[PHASES_OFFSET + Phase.CHECKER.ordinal()]
+                                       - values[PHASES_OFFSET + Phase.VISITOR.ordinal()];
+        out.write(", \"valueChecker\": " + millis(valueCheckerNanos) + "}, \"counters\": {");
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            out.write((i == 0 ? "" : ", ") + "\"" + COUNTER_NAMES[i] + "\": " + values[i]);
+        }
+        out.write("}");
+        if (aggregate) {
+            out.write("}");
+        }
+    }
+
+    private static void writeHeap(final Writer out, final long[] heap) throws IOException {
+        out.write("{\"peakBytes\": " + heap[0] + ", \"retainedBytes\": " + heap[1] + "}");
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String escape(final String value) {
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one run of the {@link CryptoPolicyComplianceChecker}. They are cheap enough to be updated
+ * unconditionally and are printed with -AcryptoPolicyStats and written with -AcryptoMetrics.
+ */
+public final class CryptoPolicyStatistics {
+
+    private final LongAdder nonPolicyAssignments = new LongAdder();
+    private final LongAdder policyAssignments = new LongAdder();
+    private final LongAdder unknownAlgorithms = new LongAdder();
+    private final LongAdder suppressionLookups = new LongAdder();
+    private final LongAdder skippedClasses = new LongAdder();
+    private final LongAdder replayedClasses = new LongAdder();
+    private final LongAdder summaryResolutions = new LongAdder();
+
+    /**
+     * Count an assignment whose lhs has no policy qualifier and that took the fast path.
+     */
+    void countNonPolicyAssignment() {
+        nonPolicyAssignments.increment();
+    }
+
+    /**
+     * Count an assignment to a @CryptoWhiteListed or @CryptoBlackListed lhs, which needs the Value Checker.
+     */
+    void countPolicyAssignment() {
+        policyAssignments.increment();
+    }
+
+    /**
+     * Count a policy check that failed because the Value Checker did not know the algorithm name.
+     */
+    void countUnknownAlgorithm() {
+        unknownAlgorithms.increment();
+    }
+
+    /**
+     * Count a lookup of @SuppressCryptoWarning for a call site that violates or warns about a policy.
+     */
+    void countSuppressionLookup() {
+        suppressionLookups.increment();
+    }
+
+    /**
+     * Count a top level class that the {@link CryptoRelevanceFilter} skipped.
+     */
+    void countSkippedClass() {
+        skippedClasses.increment();
+    }
+
+    /**
+     * Count a top level class whose result was replayed from the {@link ResultCache}.
+     */
+    void countReplayedClass() {
+        replayedClasses.increment();
+    }
+
+    /**
+     * Count a policy check whose algorithm names came from the {@link MethodSummaries}.
+     */
+    void countSummaryResolution() {
+        summaryResolutions.increment();
+    }
+
+    public long getNonPolicyAssignments() {
+        return nonPolicyAssignments.sum();
+    }
+
+    public long getPolicyAssignments() {
+        return policyAssignments.sum();
+    }
+
+    public long getUnknownAlgorithms() {
+        return unknownAlgorithms.sum();
+    }
+
+    public long getSuppressionLookups() {
+        return suppressionLookups.sum();
+    }
+
+    public long getSkippedClasses() {
+        return skippedClasses.sum();
+    }
+
+    public long getReplayedClasses() {
+        return replayedClasses.sum();
+    }
+
+    public long getSummaryResolutions() {
+        return summaryResolutions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Assignments: " + getNonPolicyAssignments() + " without policy (fast path), "
+               + getPolicyAssignments() + " with policy, of which " + getUnknownAlgorithms()
+               + " with unknown algorithm and " + getSummaryResolutions()
+               + " resolved through method summaries; " + getSuppressionLookups() + " suppression lookups; "
+               + getSkippedClasses() + " classes skipped by the prefilter, "
+               + getReplayedClasses() + " replayed from the result cache";
+    }
+}
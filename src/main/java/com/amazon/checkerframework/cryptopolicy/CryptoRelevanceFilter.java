@@ -0,0 +1,250 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Symbol;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * Decides with a cheap scan of the attributed trees whether a compilation unit can reach a policy qualifier at all.
+ * The only qualifiers below the default @UnknownCryptoAlgorithm are @CryptoWhiteListed, @CryptoBlackListed and
+ * @CryptoPolicyBottom, so the checker can only report something in a unit that
+ * <ul>
+ *     <li>writes one of them itself,</li>
+ *     <li>calls a method or constructor, references a method, or assigns a field whose signature has one, either
+ *     in the stubs ({@link StubPolicyIndex}) or in the source or bytecode of the declaration, which covers
+ *     wrappers that take annotated parameters, or calls a method that the {@link PolicySummaries} have policies
+ *     for,</li>
+ *     <li>or extends a type or implements a lambda whose type has such a member, which covers overriding.</li>
+ * </ul>
+ * Units that do none of these are skipped, including the Value Checker pass.
+ */
+final class CryptoRelevanceFilter {
+
+    private final StubPolicyIndex index;
+    private final PolicySummaries summaries;
+    private final Elements elements;
+    private final Types types;
+    private final Map<TypeElement, Boolean> typesWithPolicyMembers;
+
+    private CompilationUnitTree lastRoot;
+    private boolean lastRootRelevant;
+
+    /**
+     * @param maxCachedTypes the number of types whose answer is remembered, least recently used first out, or 0
+     *                       to remember all of them.
+     */
+    CryptoRelevanceFilter(final StubPolicyIndex index,
+                          final PolicySummaries summaries,
+                          final Elements elements,
+                          final Types types,
+                          final int maxCachedTypes) {
+        this.index = index;
+        this.summaries = summaries;
+        this.elements = elements;
+        this.types = types;
+        this.typesWithPolicyMembers = maxCachedTypes > 0
+                                      ? CollectionUtils.createLRUCache(maxCachedTypes)
+                                      : new HashMap<>();
+    }
+
+    /**
+     * @param root a compilation unit that javac has attributed.
+     * @return false if the checker cannot report anything in the unit.
+     */
+    boolean isRelevant(final CompilationUnitTree root) {
+        // javac hands over one top level class at a time, usually all of the same unit.
+        if (root != lastRoot) {
+            final RelevanceScanner scanner = new RelevanceScanner();
+            scanner.scan(root, null);
+            lastRoot = root;
+            lastRootRelevant = scanner.relevant;
+        }
+        return lastRootRelevant;
+    }
+
+    /**
+     * Forget the unit that was scanned last, once all its classes have been checked.
+     */
+    void unitFinished() {
+        lastRoot = null;
+    }
+
+    private boolean isPolicyAnnotated(final Element element) {
+        if (element == null) {
+            // unresolved, be conservative.
+            return true;
+        }
+        if (hasPolicyTypeAnnotation(element)) {
+            return true;
+        }
+        if (element instanceof ExecutableElement) {
+            if (summaries.hasPolicies((ExecutableElement) element)) {
+                return true;
+            }
+            for (Element parameter : ((ExecutableElement) element).getParameters()) {
+                if (hasPolicyTypeAnnotation(parameter)) {
+                    return true;
+                }
+            }
+        }
+        final Element owner = element.getEnclosingElement();
+        if (owner instanceof TypeElement) {
+            final int arity = element instanceof ExecutableElement
+                              ? ((ExecutableElement) element).getParameters().size()
+                              : -1;
+            return index.isPolicyAnnotated(elements.getBinaryName((TypeElement) owner).toString(),
+                                           element.getSimpleName().toString(), arity);
+        }
+        return false;
+    }
+
+    /**
+     * Checks the type annotations javac recorded for the declaration, which exist for source as well as for
+     * class files. For methods they include those of the parameters, the return type and type arguments.
+     */
+    private static boolean hasPolicyTypeAnnotation(final Element element) {
+        if (element instanceof Symbol) {
+            for (Attribute.TypeCompound annotation : ((Symbol) element).getRawTypeAttributes()) {
+                if (StubPolicyIndex.POLICY_QUALIFIERS.contains(annotation.type.tsym.getSimpleName().toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasPolicyMembers(final TypeMirror type) {
+        if (type == null || type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        return hasPolicyMembers((TypeElement) ((DeclaredType) type).asElement());
+    }
+
+    /**
+     * @return true if the type or any of its supertypes declares a member with a policy qualifier.
+     */
+    private boolean hasPolicyMembers(final TypeElement type) {
+        final Boolean known = typesWithPolicyMembers.get(type);
+        if (known != null) {
+            return known;
+        }
+        // guards against cycles in erroneous code.
+        typesWithPolicyMembers.put(type, false);
+        boolean result = index.hasPolicyAnnotatedMembers(elements.getBinaryName(type).toString());
+        for (Element member : type.getEnclosedElements()) {
+            if (result) {
+                break;
+            }
+            result = !(member instanceof TypeElement) && isPolicyAnnotated(member);
+        }
+        for (TypeMirror supertype : types.directSupertypes(type.asType())) {
+            if (result) {
+                break;
+            }
+            result = hasPolicyMembers(supertype);
+        }
+        typesWithPolicyMembers.put(type, result);
+        return result;
+    }
+
+    private final class RelevanceScanner extends TreeScanner<Void, Void> {
+        private boolean relevant;
+
+        @Override
+        public Void scan(final Tree tree, final Void unused) {
+            // stop as soon as the answer is known.
+            return relevant ? null : super.scan(tree, unused);
+        }
+
+        @Override
+        public Void visitAnnotation(final AnnotationTree node, final Void unused) {
+            final Tree type = node.getAnnotationType();
+            final String name = type instanceof MemberSelectTree
+                                ? ((MemberSelectTree) type).getIdentifier().toString()
+                                : ((IdentifierTree) type).getName().toString();
+            relevant |= StubPolicyIndex.POLICY_QUALIFIERS.contains(name);
+            return super.visitAnnotation(node, unused);
+        }
+
+        @Override
+        public Void visitMethodInvocation(final MethodInvocationTree node, final Void unused) {
+            relevant |= isPolicyAnnotated(TreeUtils.elementFromUse(node));
+            return super.visitMethodInvocation(node, unused);
+        }
+
+        @Override
+        public Void visitNewClass(final NewClassTree node, final Void unused) {
+            relevant |= isPolicyAnnotated(TreeUtils.elementFromUse(node));
+            return super.visitNewClass(node, unused);
+        }
+
+        @Override
+        public Void visitMemberReference(final MemberReferenceTree node, final Void unused) {
+            relevant |= isPolicyAnnotated(TreeUtils.elementFromUse(node)) || hasPolicyMembers(TreeUtils.typeOf(node));
+            return super.visitMemberReference(node, unused);
+        }
+
+        @Override
+        public Void visitLambdaExpression(final LambdaExpressionTree node, final Void unused) {
+            relevant |= hasPolicyMembers(TreeUtils.typeOf(node));
+            return super.visitLambdaExpression(node, unused);
+        }
+
+        @Override
+        public Void visitAssignment(final AssignmentTree node, final Void unused) {
+            relevant |= isAnnotatedField(node.getVariable());
+            return super.visitAssignment(node, unused);
+        }
+
+        @Override
+        public Void visitCompoundAssignment(final CompoundAssignmentTree node, final Void unused) {
+            relevant |= isAnnotatedField(node.getVariable());
+            return super.visitCompoundAssignment(node, unused);
+        }
+
+        @Override
+        public Void visitClass(final ClassTree node, final Void unused) {
+            final TypeElement type = TreeUtils.elementFromDeclaration(node);
+            if (type == null) {
+                relevant = true;
+            } else {
+                for (TypeMirror supertype : types.directSupertypes(type.asType())) {
+                    relevant |= hasPolicyMembers(supertype);
+                }
+            }
+            return super.visitClass(node, unused);
+        }
+
+        private boolean isAnnotatedField(final ExpressionTree variable) {
+            final Element element = TreeUtils.elementFromUse(variable);
+            // local variables are declared in this unit, so their annotations have been seen already.
+            return element == null || (element.getKind().isField() && isPolicyAnnotated(element));
+        }
+    }
+}
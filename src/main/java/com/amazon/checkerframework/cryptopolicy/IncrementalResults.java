@@ -0,0 +1,476 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Log;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * Replays the results of compilation units from the {@link ResultCache} instead of checking them again, and
+ * records the results of the units that are checked. A cached result is used only if
+ * <ul>
+ *     <li>the source of the unit, the stub files, the checker and CheckerFramework versions, the JDK version and
+ *     the processor options are all unchanged, which the cache key covers, and</li>
+ *     <li>the files the unit depends on are unchanged: the source files and class files that declare a type the
+ *     unit refers to, or a supertype of a class it declares. Sources are compared by content, class files by
+ *     modification time.</li>
+ *     <li>the constants and annotations of fields and methods of other files that the unit uses have the same
+ *     values, which also depend on the files those values are computed from.</li>
+ * </ul>
+ * A result is only recorded if the checker printed every diagnostic javac counted while checking the unit, so
+ * units with compile errors, which the checker does not check, or with diagnostics of the Value Checker or on
+ * elements rather than trees are never cached.
+ */
+final class IncrementalResults {
+
+    private final ResultCache cache;
+    private final CryptoPolicyComplianceChecker checker;
+    private final Trees trees;
+    private final Log log;
+    private final Map<JavaFileObject, String> fingerprints = new HashMap<>();
+    private final Map<CompilationUnitTree, Unit> units = new IdentityHashMap<>();
+
+    /** The unit of the class that is being checked, or null. */
+    private Unit current;
+    private int errorsBefore;
+    private int warningsBefore;
+
+    private IncrementalResults(final ResultCache cache,
+                               final CryptoPolicyComplianceChecker checker,
+                               final ProcessingEnvironment processingEnv) {
+        this.cache = cache;
+        this.checker = checker;
+        this.trees = Trees.instance(processingEnv);
+        this.log = Log.instance(((JavacProcessingEnvironment) processingEnv).getContext());
+    }
+
+    /**
+     * @param directory     the cache directory.
+     * @param stubsOption   the value of -Astubs.
+     * @param options       the processor options, which become part of the cache key.
+     * @param checker       the checker, which replays the results.
+     * @param processingEnv the processing environment.
+     * @return the incremental results, or null if the stubs are not plain files and directories.
+     * @throws IOException if the stubs or the cache cannot be read.
+     */
+    static IncrementalResults open(final Path directory,
+                                   final String stubsOption,
+                                   final Map<String, String> options,
+                                   final CryptoPolicyComplianceChecker checker,
+                                   final ProcessingEnvironment processingEnv) throws IOException {
+        final List<Path> stubFiles = StubPolicyIndex.findStubFiles(stubsOption);
+        if (stubFiles == null) {
+            return null;
+        }
+        final MessageDigest configuration = ResultCache.sha256();
+        configuration.update(ResultCache.sha256(version(CryptoPolicyComplianceChecker.class) + "\n"
+                                                + version(org.checkerframework.framework.source.SourceChecker.class)
+                                                + "\n" + System.getProperty("java.version")
+                                                + "\n" + new TreeMap<>(options)));
+        for (Path stubFile : stubFiles) {
+            configuration.update(ResultCache.sha256(Files.readAllBytes(stubFile)));
+        }
+        return new IncrementalResults(ResultCache.open(directory, configuration.digest()), checker, processingEnv);
+    }
+
+    /**
+     * The implementation version from the jar manifest, or the modification time of the jar or class directory for
+     * development builds.
+     */
+    private static String version(final Class<?> type) {
+        final String version = type.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        try {
+            final Path location = Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+            final Path classFile = Files.isDirectory(location)
+                                   ? location.resolve(type.getName().replace('.', '/') + ".class")
+                                   : location;
+            return location + "@" + Files.getLastModifiedTime(classFile).toMillis();
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            // unknown version, never reuse results across runs.
+            return String.valueOf(System.nanoTime());
+        }
+    }
+
+    /**
+     * Print the cached result of the unit if there is a valid one. A unit with several top level classes is
+     * replayed when the first one is checked.
+     *
+     * @param root the unit of the class that is about to be checked.
+     * @return true if the result was replayed and the class must not be checked.
+     */
+    boolean replay(final CompilationUnitTree root) {
+        Unit unit = units.get(root);
+        if (unit == null) {
+            unit = new Unit(root);
+            units.put(root, unit);
+            final CachedResult cached = unit.sourceHash == null ? null : cache.lookup(unit.sourceHash);
+            if (cached != null && cached.getDependencies().equals(dependencies(root))) {
+                unit.replayed = print(root, cached);
+            }
+        }
+        if (unit.replayed) {
+            classFinished(unit);
+        }
+        return unit.replayed;
+    }
+
+    /**
+     * @return the number of errors javac has reported so far.
+     */
+    int getErrorCount() {
+        return log.nerrors;
+    }
+
+    /**
+     * Start recording the diagnostics of a class.
+     *
+     * @param root           the unit of the class.
+     * @param errorsLastExit the error count after the checker last finished a class.
+     */
+    void beginClass(final CompilationUnitTree root, final int errorsLastExit) {
+        current = units.get(root);
+        errorsBefore = log.nerrors;
+        warningsBefore = log.nwarnings;
+        if (errorsBefore > errorsLastExit) {
+            // javac reported an error since, the checker skips this class.
+            current.cacheable = false;
+        }
+    }
+
+    /**
+     * Record a diagnostic of the checker.
+     */
+    void diagnosticPrinted(final Diagnostic.Kind kind,
+                           final CharSequence message,
+                           final Tree tree,
+                           final CompilationUnitTree root) {
+        if (current == null || current.root != root || tree == null) {
+            if (current != null) {
+                current.cacheable = false;
+            }
+            return;
+        }
+        final SourcePositions positions = trees.getSourcePositions();
+        current.diagnostics.add(new CachedResult.CachedDiagnostic(
+            kind, message.toString(), positions.getStartPosition(root, tree), positions.getEndPosition(root, tree),
+            tree.getKind().name()));
+        if (kind == Diagnostic.Kind.ERROR) {
+            current.errors++;
+        } else if (kind == Diagnostic.Kind.WARNING || kind == Diagnostic.Kind.MANDATORY_WARNING) {
+            current.warnings++;
+        }
+    }
+
+    /**
+     * Never store the result of the class that is being checked, because it depends on other units.
+     */
+    void dependsOnOtherUnits() {
+        if (current != null) {
+            current.cacheable = false;
+        }
+    }
+
+    /**
+     * Record an approved @SuppressCryptoWarning.
+     */
+    void suppressionPrinted(final long position,
+                            final String messageKey,
+                            final String algorithms,
+                            final String issueUrl) {
+        if (current != null) {
+            current.suppressions.add(new CachedResult.CachedSuppression(position, messageKey, algorithms, issueUrl));
+        }
+    }
+
+    /**
+     * Stop recording the diagnostics of a class, and store the result of its unit if it was the last class.
+     */
+    void endClass() {
+        final Unit unit = current;
+        current = null;
+        if (log.nerrors - errorsBefore != unit.errors || log.nwarnings - warningsBefore != unit.warnings) {
+            unit.cacheable = false;
+        }
+        unit.errors = 0;
+        unit.warnings = 0;
+        classFinished(unit);
+        if (unit.remainingClasses == 0 && unit.cacheable && unit.sourceHash != null) {
+            cache.store(unit.sourceHash, new CachedResult(dependencies(unit.root), unit.diagnostics, unit.suppressions));
+        }
+    }
+
+    /**
+     * Write the recorded results to disk.
+     *
+     * @throws IOException if the cache cannot be written.
+     */
+    void flush() throws IOException {
+        cache.flush();
+    }
+
+    private void classFinished(final Unit unit) {
+        unit.remainingClasses--;
+        if (unit.remainingClasses <= 0) {
+            units.remove(unit.root);
+        }
+    }
+
+    private boolean print(final CompilationUnitTree root, final CachedResult cached) {
+        final List<Tree> targets = new ArrayList<>();
+        for (CachedResult.CachedDiagnostic diagnostic : cached.getDiagnostics()) {
+            final Tree target = findTree(root, diagnostic);
+            if (target == null) {
+                return false;
+            }
+            targets.add(target);
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            final CachedResult.CachedDiagnostic diagnostic = cached.getDiagnostics().get(i);
+            checker.printMessage(diagnostic.getKind(), diagnostic.getMessage(), targets.get(i), root);
+        }
+        for (CachedResult.CachedSuppression suppression : cached.getSuppressions()) {
+            checker.printSuppression(root, suppression.getPosition(), suppression.getMessageKey(),
+                                     suppression.getAlgorithms(), suppression.getIssueUrl());
+        }
+        return true;
+    }
+
+    private Tree findTree(final CompilationUnitTree root, final CachedResult.CachedDiagnostic diagnostic) {
+        final SourcePositions positions = trees.getSourcePositions();
+        final Tree[] found = new Tree[1];
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void scan(final Tree tree, final Void unused) {
+                if (tree == null || found[0] != null) {
+                    return null;
+                }
+                final long start = positions.getStartPosition(root, tree);
+                final long end = positions.getEndPosition(root, tree);
+                if (start == diagnostic.getStart() && end == diagnostic.getEnd()
+                    && tree.getKind().name().equals(diagnostic.getTreeKind())) {
+                    found[0] = tree;
+                    return null;
+                }
+                // only descend into trees that contain the range.
+                if (start == -1 || (start <= diagnostic.getStart() && diagnostic.getEnd() <= end)) {
+                    return super.scan(tree, unused);
+                }
+                return null;
+            }
+        }.scan(root, null);
+        return found[0];
+    }
+
+    /**
+     * @return fingerprints of the files that declare the types the unit refers to and the supertypes of the
+     *     classes it declares, by URI, and the values of the members of other files it uses.
+     */
+    private Map<String, String> dependencies(final CompilationUnitTree root) {
+        final Set<Symbol.ClassSymbol> classes = new HashSet<>();
+        final Set<Symbol> uses = new HashSet<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitIdentifier(final IdentifierTree node, final Void unused) {
+                addUse(TreeUtils.elementFromUse(node), classes, uses);
+                return super.visitIdentifier(node, unused);
+            }
+
+            @Override
+            public Void visitMemberSelect(final MemberSelectTree node, final Void unused) {
+                addUse(TreeUtils.elementFromUse(node), classes, uses);
+                return super.visitMemberSelect(node, unused);
+            }
+
+            @Override
+            public Void visitMemberReference(final MemberReferenceTree node, final Void unused) {
+                addUse(TreeUtils.elementFromUse(node), classes, uses);
+                return super.visitMemberReference(node, unused);
+            }
+
+            @Override
+            public Void visitClass(final ClassTree node, final Void unused) {
+                addSupertypes(TreeUtils.elementFromDeclaration(node), classes);
+                return super.visitClass(node, unused);
+            }
+        }.scan(root, null);
+
+        final Map<String, String> dependencies = new TreeMap<>();
+        for (Symbol.ClassSymbol dependency : classes) {
+            final JavaFileObject file = file(dependency);
+            if (file != null && !file.toUri().equals(root.getSourceFile().toUri())) {
+                dependencies.put(file.toUri().toString(), fingerprint(file));
+            }
+        }
+        for (Symbol use : uses) {
+            final JavaFileObject file = file(use.outermostClass());
+            if (file != null && !file.toUri().equals(root.getSourceFile().toUri())) {
+                addResolvedValues(use, dependencies);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * The fingerprint of a file only covers its own text, but a constant or an annotation value it declares can be
+     * computed from constants of further files, like {@code static final String ALG = Other.ALG;}. So the values
+     * the unit reads from other files are part of its dependencies as well, as javac resolved them, which covers
+     * such chains of any length without fingerprinting the files along them.
+     */
+    private static void addResolvedValues(final Symbol use, final Map<String, String> dependencies) {
+        final String key = "value:" + ((Symbol.ClassSymbol) use.owner).flatName() + "#" + use;
+        if (use instanceof Symbol.VarSymbol && ((Symbol.VarSymbol) use).getConstValue() != null) {
+            dependencies.put(key, String.valueOf(((Symbol.VarSymbol) use).getConstValue()));
+        }
+        final List<Attribute.Compound> annotations = new ArrayList<>(use.getRawAttributes());
+        annotations.addAll(use.getRawTypeAttributes());
+        if (use instanceof Symbol.MethodSymbol) {
+            for (Symbol.VarSymbol parameter : ((Symbol.MethodSymbol) use).getParameters()) {
+                annotations.addAll(parameter.getRawAttributes());
+                annotations.addAll(parameter.getRawTypeAttributes());
+            }
+        }
+        if (!annotations.isEmpty()) {
+            dependencies.put(key + "@", annotations.toString());
+        }
+    }
+
+    /**
+     * @return the file of the class, or null if it has none.
+     */
+    private static JavaFileObject file(final Symbol.ClassSymbol type) {
+        // classfile is the source file for classes compiled from source, sourcefile of a class read from a class
+        // file only carries the name from its SourceFile attribute.
+        return type == null ? null : type.classfile != null ? type.classfile : type.sourcefile;
+    }
+
+    private void addSupertypes(final TypeElement type, final Set<Symbol.ClassSymbol> classes) {
+        if (type == null) {
+            return;
+        }
+        final Set<String> seen = new TreeSet<>();
+        final List<TypeMirror> work = new ArrayList<>();
+        work.add(type.getSuperclass());
+        work.addAll(type.getInterfaces());
+        while (!work.isEmpty()) {
+            final TypeMirror supertype = work.remove(work.size() - 1);
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            final TypeElement element = (TypeElement) ((DeclaredType) supertype).asElement();
+            if (seen.add(element.getQualifiedName().toString())) {
+                addTopLevelClass(element, classes);
+                work.add(element.getSuperclass());
+                work.addAll(element.getInterfaces());
+            }
+        }
+    }
+
+    private static void addUse(final Element element, final Set<Symbol.ClassSymbol> classes, final Set<Symbol> uses) {
+        addTopLevelClass(element, classes);
+        if (element instanceof Symbol.VarSymbol || element instanceof Symbol.MethodSymbol) {
+            final Symbol symbol = (Symbol) element;
+            // fields and methods, not local variables and parameters.
+            if (symbol.owner instanceof Symbol.ClassSymbol) {
+                uses.add(symbol);
+            }
+        }
+    }
+
+    private static void addTopLevelClass(final Element element, final Set<Symbol.ClassSymbol> classes) {
+        Element topLevel = element;
+        while (topLevel != null && topLevel.getEnclosingElement() != null
+               && !(topLevel.getEnclosingElement() instanceof PackageElement)) {
+            topLevel = topLevel.getEnclosingElement();
+        }
+        if (topLevel instanceof Symbol.ClassSymbol) {
+            classes.add((Symbol.ClassSymbol) topLevel);
+        }
+    }
+
+    private String fingerprint(final JavaFileObject file) {
+        return fingerprints.computeIfAbsent(file, key -> {
+            if (key.getKind() != JavaFileObject.Kind.SOURCE) {
+                return "modified:" + key.getLastModified();
+            }
+            try {
+                return "sha256:" + hex(ResultCache.sha256(key.getCharContent(true).toString()));
+            } catch (IOException | UnsupportedOperationException e) {
+                // unreadable, never equal to a stored fingerprint.
+                return "unreadable:" + System.nanoTime();
+            }
+        });
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * The state of a unit whose classes are being checked or replayed.
+     */
+    private static final class Unit {
+        private final CompilationUnitTree root;
+        private final byte[] sourceHash;
+        private final List<CachedResult.CachedDiagnostic> diagnostics = new ArrayList<>();
+        private final List<CachedResult.CachedSuppression> suppressions = new ArrayList<>();
+        private int remainingClasses;
+        private boolean replayed;
+        private boolean cacheable = true;
+        private int errors;
+        private int warnings;
+
+        Unit(final CompilationUnitTree root) {
+            this.root = root;
+            this.remainingClasses = (int) root.getTypeDecls().stream().filter(tree -> tree instanceof ClassTree).count();
+            byte[] hash;
+            try {
+                hash = ResultCache.sha256(root.getSourceFile().getCharContent(true).toString());
+            } catch (IOException e) {
+                hash = null;
+            }
+            this.sourceHash = hash;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Small thread-safe LRU cache with hit/miss counters, used for the checker's shared caches.
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+final class LruCache<K, V> {
+
+    private final String name;
+    private final Map<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param name       Name used in {@link #toString()}.
+     * @param maxEntries Upper bound on the number of entries; the least recently used entry is evicted first.
+     */
+    LruCache(final String name, final int maxEntries) {
+        this.name = name;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Look up a key, computing and storing the value on a miss. The value is computed outside the lock; if two
+     * threads miss on the same key at the same time, both compute it and the last one is kept.
+     *
+     * @param key     the key.
+     * @param compute computes the value for a missing key.
+     * @return the cached or computed value.
+     */
+    V get(final K key, final Function<? super K, ? extends V> compute) {
+        synchronized (entries) {
+            final V cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        final V value = compute.apply(key);
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+        return value;
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final long hitCount = getHitCount();
+        final long total = hitCount + getMissCount();
+        final long hitRate = total == 0 ? 0 : hitCount * 100 / total;
+        return name + ": " + hitCount + " hits, " + getMissCount() + " misses (" + hitRate + "% hit rate), "
+               + size() + " entries";
+    }
+}
@@ -0,0 +1,345 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+
+/**
+ * Summaries of the values that the call sites of the methods of a compilation pass for their parameters, for
+ * -AcryptoInterprocedural. The Value Checker only knows the values of strings within a method, so an algorithm
+ * name that reaches a policy-annotated argument through a parameter of a helper method is unknown to it.
+ * <p>
+ * Before the first class is checked, every compilation unit is summarized: each argument of each call is recorded
+ * as a set of constant strings, as a parameter of the calling method that it passes on, or as unknown. Summarizing
+ * reads nothing but fields of the attributed trees, so the units are summarized in parallel. When the visitor
+ * then finds a parameter in a policy-annotated position, {@link #parameterValues} resolves it to the union of what
+ * the call sites pass, following parameters that are passed on through chains of helpers. Each parameter is
+ * resolved once, so every method is summarized and resolved once no matter how many call sites it has.
+ * <p>
+ * The summaries assume that every caller is compiled together with the callee, which only holds for methods that
+ * only their own top-level class can call: private methods and the methods of private, local and anonymous classes.
+ * Any other method may have callers the compilation does not see, in another package or in the same package
+ * compiled separately, like the tests of a module, so its parameters are unknown unless the compilation is declared
+ * to be a closed world. A parameter is also unknown if its method has no call sites in the compilation, is
+ * used as a method reference, overrides a method of a supertype through which it may be called, or assigns the
+ * parameter, and if any call site passes an unknown value. Recursion through a parameter also makes it unknown.
+ */
+final class MethodSummaries {
+
+    /**
+     * Like the Value Checker, give up on a parameter with more possible values than this.
+     */
+    static final int MAX_VALUES = 10;
+
+    /**
+     * The resolution of a parameter that is being resolved, to detect recursion.
+     */
+    private static final Set<String> IN_PROGRESS = Collections.unmodifiableSet(new HashSet<>());
+
+    /**
+     * The resolution of a parameter whose values are unknown.
+     */
+    private static final Set<String> UNKNOWN = Collections.unmodifiableSet(new HashSet<>());
+
+    private final Types types;
+    private final boolean closedWorld;
+    private final Map<Symbol.MethodSymbol, List<Argument[]>> callSites = new HashMap<>();
+    private final Set<Symbol.MethodSymbol> referenced = new HashSet<>();
+    private final Set<Symbol.VarSymbol> assigned = new HashSet<>();
+    private final Map<Symbol.VarSymbol, Set<String>> resolved = new HashMap<>();
+
+    private MethodSummaries(final Types types, final boolean closedWorld) {
+        this.types = types;
+        this.closedWorld = closedWorld;
+    }
+
+    /**
+     * @param units       the attributed compilation units of the compilation.
+     * @param types       the types of the compilation, to find overridden methods.
+     * @param closedWorld whether the units hold every caller of their methods, including those that other classes
+     *                    can call.
+     * @return the summaries of all methods called in the units.
+     */
+    static MethodSummaries build(final Collection<JCTree.JCCompilationUnit> units,
+                                 final Types types,
+                                 final boolean closedWorld) {
+        final MethodSummaries summaries = new MethodSummaries(types, closedWorld);
+        final List<UnitSummary> unitSummaries = units.parallelStream()
+                                                     .map(UnitSummary::new)
+                                                     .collect(Collectors.toList());
+        for (UnitSummary unit : unitSummaries) {
+            for (Map.Entry<Symbol.MethodSymbol, List<Argument[]>> calls : unit.callSites.entrySet()) {
+                summaries.callSites.computeIfAbsent(calls.getKey(), key -> new ArrayList<>())
+                                   .addAll(calls.getValue());
+            }
+            summaries.referenced.addAll(unit.referenced);
+            summaries.assigned.addAll(unit.assigned);
+        }
+        return summaries;
+    }
+
+    /**
+     * @param parameter a parameter of a method of the compilation.
+     * @return the values that the call sites pass for it, or null if they are unknown.
+     */
+    Set<String> parameterValues(final Symbol.VarSymbol parameter) {
+        final Set<String> values = resolve(parameter);
+        return values == UNKNOWN || values == IN_PROGRESS ? null : values;
+    }
+
+    private Set<String> resolve(final Symbol.VarSymbol parameter) {
+        final Set<String> known = resolved.get(parameter);
+        if (known != null) {
+            return known;
+        }
+        resolved.put(parameter, IN_PROGRESS);
+        final Set<String> values = computeValues(parameter);
+        resolved.put(parameter, values);
+        return values;
+    }
+
+    private Set<String> computeValues(final Symbol.VarSymbol parameter) {
+        final Symbol.MethodSymbol method = (Symbol.MethodSymbol) parameter.owner;
+        final int index = method.params.indexOf(parameter);
+        final List<Argument[]> calls = callSites.get(method);
+        if (index < 0 || calls == null || assigned.contains(parameter) || !hasOnlyDirectCalls(method)
+            || (!closedWorld && !isOnlyCalledFromItsClass(method))) {
+            return UNKNOWN;
+        }
+        final Set<String> values = new TreeSet<>();
+        for (Argument[] arguments : calls) {
+            final Argument argument = arguments[index];
+            final Set<String> passed = argument.parameter != null ? resolve(argument.parameter) : argument.constants;
+            if (passed == UNKNOWN || passed == IN_PROGRESS) {
+                return UNKNOWN;
+            }
+            values.addAll(passed);
+            if (values.size() > MAX_VALUES) {
+                return UNKNOWN;
+            }
+        }
+        return Collections.unmodifiableSet(values);
+    }
+
+    /**
+     * @param method a method of the compilation.
+     * @return true if every call of the method is one of its call sites, so that what reaches its parameters can
+     *     be checked at the call sites; false if it is used as a method reference or overrides another method.
+     */
+    boolean hasOnlyDirectCalls(final Symbol.MethodSymbol method) {
+        return !referenced.contains(method) && !overridesAnother(method);
+    }
+
+    /**
+     * @return true if the method assigns the parameter.
+     */
+    boolean isAssigned(final Symbol.VarSymbol parameter) {
+        return assigned.contains(parameter);
+    }
+
+    /**
+     * Call back for every argument of every call of the compilation that passes a parameter of the caller on.
+     */
+    void forEachPassedParameter(final PassedParameterVisitor visitor) {
+        for (Map.Entry<Symbol.MethodSymbol, List<Argument[]>> calls : callSites.entrySet()) {
+            for (Argument[] arguments : calls.getValue()) {
+                for (int i = 0; i < arguments.length; i++) {
+                    if (arguments[i].parameter != null) {
+                        visitor.passed(calls.getKey(), i, arguments[i].parameter);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * See {@link #forEachPassedParameter}.
+     */
+    interface PassedParameterVisitor {
+        /**
+         * @param callee    the called method.
+         * @param index     the index of the parameter of the callee.
+         * @param parameter the parameter of the caller that is passed.
+         */
+        void passed(Symbol.MethodSymbol callee, int index, Symbol.VarSymbol parameter);
+    }
+
+    /**
+     * @return true if only code of the top-level class of the method, which is compiled with it, can call it.
+     */
+    private static boolean isOnlyCalledFromItsClass(final Symbol.MethodSymbol method) {
+        if ((method.flags() & Flags.PRIVATE) != 0) {
+            return true;
+        }
+        for (Symbol owner = method.owner; !(owner instanceof Symbol.PackageSymbol); owner = owner.owner) {
+            // a local or anonymous class is owned by a method or a variable.
+            if (!(owner instanceof Symbol.ClassSymbol) || (owner.flags() & Flags.PRIVATE) != 0
+                || owner.name.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if calls through a supertype may dispatch to the method, which are not its call sites.
+     */
+    private boolean overridesAnother(final Symbol.MethodSymbol method) {
+        if ((method.flags() & (Flags.STATIC | Flags.PRIVATE)) != 0 || method.isConstructor()) {
+            return false;
+        }
+        final Symbol.ClassSymbol owner = method.enclClass();
+        for (Type supertype : types.closure(owner.type)) {
+            if (supertype.tsym == owner) {
+                continue;
+            }
+            for (Symbol other : supertype.tsym.members().getSymbolsByName(method.name)) {
+                if (other instanceof Symbol.MethodSymbol && method.overrides(other, owner, types, false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * What a call site passes for a parameter: constants, a parameter of the caller, or neither, which is unknown.
+     */
+    private static final class Argument {
+        private static final Argument UNKNOWN_ARGUMENT = new Argument(MethodSummaries.UNKNOWN, null);
+
+        private final Set<String> constants;
+        private final Symbol.VarSymbol parameter;
+
+        private Argument(final Set<String> constants, final Symbol.VarSymbol parameter) {
+            this.constants = constants;
+            this.parameter = parameter;
+        }
+
+        boolean isConstant() {
+            return parameter == null && constants != MethodSummaries.UNKNOWN;
+        }
+    }
+
+    /**
+     * The calls, method references and parameter assignments of one compilation unit. Only reads fields of the
+     * trees and their symbols, which attribution has set, and never completes a symbol, so that units can be
+     * summarized concurrently.
+     */
+    private static final class UnitSummary extends TreeScanner {
+        private final Map<Symbol.MethodSymbol, List<Argument[]>> callSites = new HashMap<>();
+        private final Set<Symbol.MethodSymbol> referenced = new HashSet<>();
+        private final Set<Symbol.VarSymbol> assigned = new HashSet<>();
+
+        UnitSummary(final JCTree.JCCompilationUnit unit) {
+            scan(unit);
+        }
+
+        @Override
+        public void visitApply(final JCTree.JCMethodInvocation tree) {
+            addCall(TreeInfo.symbol(tree.meth), tree.args);
+            super.visitApply(tree);
+        }
+
+        @Override
+        public void visitNewClass(final JCTree.JCNewClass tree) {
+            addCall(tree.constructor, tree.args);
+            super.visitNewClass(tree);
+        }
+
+        @Override
+        public void visitReference(final JCTree.JCMemberReference tree) {
+            if (tree.sym instanceof Symbol.MethodSymbol) {
+                referenced.add((Symbol.MethodSymbol) tree.sym);
+            }
+            super.visitReference(tree);
+        }
+
+        @Override
+        public void visitAssign(final JCTree.JCAssign tree) {
+            addAssigned(tree.lhs);
+            super.visitAssign(tree);
+        }
+
+        @Override
+        public void visitAssignop(final JCTree.JCAssignOp tree) {
+            addAssigned(tree.lhs);
+            super.visitAssignop(tree);
+        }
+
+        private void addAssigned(final JCTree.JCExpression lhs) {
+            final Symbol.VarSymbol parameter = parameter(lhs);
+            if (parameter != null) {
+                assigned.add(parameter);
+            }
+        }
+
+        private void addCall(final Symbol callee, final List<JCTree.JCExpression> args) {
+            if (!(callee instanceof Symbol.MethodSymbol) || callee.type == null) {
+                return;
+            }
+            // the type, unlike the params of a method of a class file, is set without completing the symbol.
+            final Symbol.MethodSymbol method = (Symbol.MethodSymbol) callee;
+            final int count = method.type.getParameterTypes().size();
+            final boolean varargs = (method.flags_field & Flags.VARARGS) != 0;
+            final Argument[] arguments = new Argument[count];
+            for (int i = 0; i < count; i++) {
+                final boolean spread = varargs && i == count - 1;
+                arguments[i] = !spread && args.size() == count ? argument(args.get(i)) : Argument.UNKNOWN_ARGUMENT;
+            }
+            callSites.computeIfAbsent(method, key -> new ArrayList<>()).add(arguments);
+        }
+
+        private static Argument argument(final JCTree.JCExpression expression) {
+            final JCTree.JCExpression value = TreeInfo.skipParens(expression);
+            final Object constant = value.type == null ? null : value.type.constValue();
+            if (constant instanceof String) {
+                return new Argument(Collections.singleton((String) constant), null);
+            }
+            if (value instanceof JCTree.JCConditional) {
+                final Argument first = argument(((JCTree.JCConditional) value).truepart);
+                final Argument second = argument(((JCTree.JCConditional) value).falsepart);
+                if (!first.isConstant() || !second.isConstant()) {
+                    return Argument.UNKNOWN_ARGUMENT;
+                }
+                final Set<String> both = new TreeSet<>(first.constants);
+                both.addAll(second.constants);
+                return new Argument(both, null);
+            }
+            final Symbol.VarSymbol parameter = parameter(value);
+            return parameter != null ? new Argument(null, parameter) : Argument.UNKNOWN_ARGUMENT;
+        }
+
+        /**
+         * @return the method parameter the expression refers to, or null. Lambda parameters are not parameters of
+         *     their enclosing method and are not returned.
+         */
+        private static Symbol.VarSymbol parameter(final JCTree.JCExpression expression) {
+            final JCTree.JCExpression value = TreeInfo.skipParens(expression);
+            if (!(value instanceof JCTree.JCIdent) || !(((JCTree.JCIdent) value).sym instanceof Symbol.VarSymbol)) {
+                return null;
+            }
+            final Symbol.VarSymbol variable = (Symbol.VarSymbol) ((JCTree.JCIdent) value).sym;
+            if ((variable.flags_field & Flags.PARAMETER) == 0 || !(variable.owner instanceof Symbol.MethodSymbol)) {
+                return null;
+            }
+            final List<Symbol.VarSymbol> params = ((Symbol.MethodSymbol) variable.owner).params;
+            return params != null && params.contains(variable) ? variable : null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import com.amazon.checkerframework.cryptopolicy.impact.CallSiteIndex;
+
+/**
+ * Named sets of stub files, given with -AcryptoProfiles=name=stubs,name=stubs, whose policies are evaluated next to
+ * those of -Astubs in the same compilation, such as a FIPS allowlist next to the internal baseline. Every profile
+ * is looked up on its own for the parameters of every invoked method and constructor, whether or not the -Astubs
+ * annotate them: the visitor resolves the values of an argument once and evaluates them against the policy of
+ * every profile, so each profile only adds a lookup and a {@link VerdictCache} hit per call site. A method that a
+ * profile does not annotate has no policy in that profile.
+ */
+final class PolicyProfiles {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final List<Profile> profiles;
+
+    private PolicyProfiles(final List<Profile> profiles) {
+        this.profiles = Collections.unmodifiableList(profiles);
+    }
+
+    /**
+     * @param option the value of -AcryptoProfiles, profiles separated by commas, each a name, '=' and the stubs
+     *               of the profile like -Astubs.
+     * @return the profiles.
+     * @throws IOException              if the stubs of a profile cannot be read.
+     * @throws IllegalArgumentException if the option is malformed or a name is used twice.
+     */
+    static PolicyProfiles load(final String option) throws IOException {
+        final List<Profile> profiles = new ArrayList<>();
+        for (String profile : option.split(",")) {
+            final int equals = profile.indexOf('=');
+            final String name = equals < 0 ? profile.trim() : profile.substring(0, equals).trim();
+            if (equals < 0 || !NAME.matcher(name).matches() || equals == profile.length() - 1) {
+                throw new IllegalArgumentException("Expected name=stubs instead of \"" + profile + "\"");
+            }
+            for (Profile other : profiles) {
+                if (other.name.equals(name)) {
+                    throw new IllegalArgumentException("Duplicate profile " + name);
+                }
+            }
+            final String stubs = profile.substring(equals + 1).trim();
+            profiles.add(new Profile(name, stubs, StubPolicies.load(stubs)));
+        }
+        return new PolicyProfiles(profiles);
+    }
+
+    List<Profile> getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * @param internalName the internal name of a class, e.g. "javax/crypto/Cipher".
+     * @return true if a profile gives a policy for a parameter of a method or constructor of the class.
+     */
+    boolean hasPolicies(final String internalName) {
+        for (Profile profile : profiles) {
+            if (profile.policies.hasPolicies(internalName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the stubs of all profiles, separated by {@link File#pathSeparator}.
+     */
+    String getStubs() {
+        final List<String> stubs = new ArrayList<>();
+        for (Profile profile : profiles) {
+            stubs.add(profile.stubs);
+        }
+        return String.join(File.pathSeparator, stubs);
+    }
+
+    /**
+     * A named set of policies.
+     */
+    static final class Profile {
+        private final String name;
+        private final String stubs;
+        private final StubPolicies policies;
+
+        Profile(final String name, final String stubs, final StubPolicies policies) {
+            this.name = name;
+            this.stubs = stubs;
+            this.policies = policies;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        StubPolicies getStubPolicies() {
+            return policies;
+        }
+
+        /**
+         * @param api a parameter of a method or constructor.
+         * @return the white list and the black list of the parameter in this profile, either of them null.
+         */
+        CryptoPolicy[] getPolicies(final CallSiteIndex.Api api) {
+            final StubPolicies.Callable callable = api.getParameter() < 0
+                ? null
+                : policies.lookup(api.getOwner(), api.getName(), api.getParameterTypes().toArray(new String[0]));
+            return callable == null
+                   ? new CryptoPolicy[2]
+                   : new CryptoPolicy[] {callable.getWhiteList(api.getParameter()),
+                                         callable.getBlackList(api.getParameter())};
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.lang.model.element.AnnotationMirror;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoBlackListed;
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoPolicyBottom;
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;
+import com.amazon.checkerframework.cryptopolicy.qual.UnknownCryptoAlgorithm;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * Canonical forms of the qualifiers of the hierarchy. Every distinct {@code @CryptoWhiteListed} or
+ * {@code @CryptoBlackListed} is interned into a {@link Qualifier} the first time it is seen, with its regexes
+ * encoded as a bitset over all regexes seen so far, so that the subtype test on two lists is a bitwise subset test
+ * and results about pairs of qualifiers can be memoized by their ids. Not thread-safe, like the type factory.
+ */
+final class PolicyQualifiers {
+
+    /**
+     * The kind of qualifier, in the order of the hierarchy.
+     */
+    enum Kind {
+        TOP,
+        WHITELIST,
+        BLACKLIST,
+        BOTTOM
+    }
+
+    private static final String TOP_NAME = UnknownCryptoAlgorithm.class.getCanonicalName();
+    private static final String WHITELIST_NAME = CryptoWhiteListed.class.getCanonicalName();
+    private static final String BLACKLIST_NAME = CryptoBlackListed.class.getCanonicalName();
+    private static final String BOTTOM_NAME = CryptoPolicyBottom.class.getCanonicalName();
+
+    /**
+     * AnnotationMirrors do not override equals, so this is an identity cache that does not keep the type factory's
+     * short-lived mirrors alive.
+     */
+    private final Map<AnnotationMirror, Qualifier> byMirror = new WeakHashMap<>();
+    private final Map<List<Object>, Qualifier> byContents = new HashMap<>();
+    private final Map<String, Integer> regexBits = new HashMap<>();
+    private int nextId;
+
+    /**
+     * @param annotation a qualifier of the hierarchy.
+     * @return its canonical form, or null if it is not one of the four qualifiers.
+     */
+    Qualifier intern(final AnnotationMirror annotation) {
+        Qualifier qualifier = byMirror.get(annotation);
+        if (qualifier == null) {
+            qualifier = internContents(annotation);
+            if (qualifier != null) {
+                byMirror.put(annotation, qualifier);
+            }
+        }
+        return qualifier;
+    }
+
+    private Qualifier internContents(final AnnotationMirror annotation) {
+        final String name = AnnotationUtils.annotationName(annotation);
+        final Kind kind;
+        List<String> regexes = Collections.emptyList();
+        List<String> warnOnRegexes = Collections.emptyList();
+        if (name.equals(WHITELIST_NAME)) {
+            kind = Kind.WHITELIST;
+            regexes = AnnotationUtils.getElementValueArray(annotation, "value", String.class, true);
+            warnOnRegexes = AnnotationUtils.getElementValueArray(annotation, "warnOn", String.class, true);
+        } else if (name.equals(BLACKLIST_NAME)) {
+            kind = Kind.BLACKLIST;
+            regexes = AnnotationUtils.getElementValueArray(annotation, "value", String.class, true);
+        } else if (name.equals(TOP_NAME)) {
+            kind = Kind.TOP;
+        } else if (name.equals(BOTTOM_NAME)) {
+            kind = Kind.BOTTOM;
+        } else {
+            return null;
+        }
+        // the order of the regexes and the warnOn array are part of the identity: two lists with the same regexes
+        // in a different order are different annotations, and the glb of different annotations is bottom.
+        final List<String> listRegexes = regexes;
+        return byContents.computeIfAbsent(Arrays.asList(kind, regexes, warnOnRegexes),
+            key -> new Qualifier(nextId++, kind, encode(listRegexes)));
+    }
+
+    private long[] encode(final List<String> regexes) {
+        long[] bits = new long[0];
+        for (String regex : regexes) {
+            final int bit = regexBits.computeIfAbsent(regex, key -> regexBits.size());
+            if (bit / 64 >= bits.length) {
+                bits = Arrays.copyOf(bits, bit / 64 + 1);
+            }
+            bits[bit / 64] |= 1L << (bit % 64);
+        }
+        return bits;
+    }
+
+    /**
+     * An interned qualifier.
+     */
+    static final class Qualifier {
+        private final int id;
+        private final Kind kind;
+        private final long[] regexes;
+
+        private Qualifier(final int id, final Kind kind, final long[] regexes) {
+            this.id = id;
+            this.kind = kind;
+            this.regexes = regexes;
+        }
+
+        /**
+         * @return a small number that identifies the qualifier among those of its {@link PolicyQualifiers}.
+         */
+        int getId() {
+            return id;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @param other a list of the same kind.
+         * @return true if every regex of this list literally appears in the other list.
+         */
+        boolean hasRegexesIn(final Qualifier other) {
+            for (int i = 0; i < regexes.length; i++) {
+                final long otherWord = i < other.regexes.length ? other.regexes[i] : 0L;
+                if ((regexes[i] & ~otherWord) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
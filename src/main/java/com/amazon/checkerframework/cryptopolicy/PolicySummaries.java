@@ -0,0 +1,369 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoBlackListed;
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+
+/**
+ * The crypto policies that reach the parameters of methods, so that the wrappers a library puts around the stubbed
+ * APIs are checked at their callers in other modules, as if the library had stubs with {@code @CryptoWhiteListed}
+ * and {@code @CryptoBlackListed} parameters.
+ * <p>
+ * With -AcryptoExportSummaries, {@link #compute} finds the parameters of the methods of the compilation that are
+ * passed on unchanged to a parameter with a policy, directly or through other methods of the compilation, and
+ * {@link #export} writes a summary file for each class that has any, to
+ * {@code META-INF/crypto-policy/<binary name with slashes>.summary} in the class output. The checks of these
+ * parameters move to the call sites: the visitor checks the arguments of every call against the policies of the
+ * parameters, and does not report the parameters themselves as unknown algorithms at the policy.
+ * <p>
+ * Summaries are looked up on the class path by the name of the class whose method is called, the first time one is
+ * called, and kept whether they exist or not. Nothing is read up front, so a large class path does not slow down
+ * the start of the compilation, and only the classes that the compilation calls are looked up.
+ */
+final class PolicySummaries {
+
+    static final String DIRECTORY = "META-INF/crypto-policy/";
+    static final String SUFFIX = ".summary";
+
+    private static final int MAGIC = 0x43505053;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The summary of a class that has none, or none that can be read.
+     */
+    private static final Map<String, List<List<CryptoPolicy>>> NO_SUMMARY = Collections.emptyMap();
+
+    private final ProcessingEnvironment processingEnv;
+    private final Types types;
+
+    /**
+     * Summaries read from the class path, by binary class name, then by {@link #methodKey}.
+     */
+    private final Map<String, Map<String, List<List<CryptoPolicy>>>> loaded = new HashMap<>();
+
+    /**
+     * The policies that reach the parameters of the methods of the compilation, with -AcryptoExportSummaries.
+     */
+    private final Map<Symbol.VarSymbol, Set<CryptoPolicy>> computed = new LinkedHashMap<>();
+
+    PolicySummaries(final ProcessingEnvironment processingEnv, final Types types) {
+        this.processingEnv = processingEnv;
+        this.types = types;
+    }
+
+    /**
+     * @param method a method or constructor that is called.
+     * @param index  the index of a parameter.
+     * @return the policies that the summaries of the compilation or of the class path have for the parameter, which
+     *     is empty for parameters that are only annotated.
+     */
+    List<CryptoPolicy> getParameterPolicies(final ExecutableElement method, final int index) {
+        if (!(method instanceof Symbol.MethodSymbol)) {
+            return Collections.emptyList();
+        }
+        final Symbol.MethodSymbol symbol = (Symbol.MethodSymbol) method;
+        if (!isFromClassPath(symbol)) {
+            final Set<CryptoPolicy> policies = computed.isEmpty() || symbol.params == null
+                                               || index >= symbol.params.size()
+                                               ? null : computed.get(symbol.params.get(index));
+            return policies == null ? Collections.emptyList() : new ArrayList<>(policies);
+        }
+        final Map<String, List<List<CryptoPolicy>>> summary = classSummary(symbol.enclClass());
+        final List<List<CryptoPolicy>> parameters = summary.isEmpty() ? null : summary.get(methodKey(symbol));
+        return parameters == null || index >= parameters.size() ? Collections.emptyList() : parameters.get(index);
+    }
+
+    /**
+     * @return true if the summaries have a policy for any parameter of the method.
+     */
+    boolean hasPolicies(final ExecutableElement method) {
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            if (!getParameterPolicies(method, i).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param parameter a parameter of a method of the compilation.
+     * @param policies  the policies that it reaches.
+     * @return true if the values of the parameter are checked against the policies at the call sites of its method.
+     */
+    boolean isCheckedAtCallSites(final Symbol.VarSymbol parameter, final Collection<CryptoPolicy> policies) {
+        final Set<CryptoPolicy> checked = computed.get(parameter);
+        return checked != null && checked.containsAll(policies);
+    }
+
+    /**
+     * Find the policies that reach the parameters of the methods of the compilation. The parameters of the
+     * methods that may be called other than through their call sites, that are assigned or that carry a policy
+     * qualifier themselves are left alone.
+     *
+     * @param summaries    the calls of the compilation.
+     * @param typeFactory  the factory of the checker, for the policies that the stubs and annotations declare.
+     */
+    void compute(final MethodSummaries summaries, final AnnotatedTypeFactory typeFactory) {
+        final Map<Symbol.MethodSymbol, List<PassedParameter>> passedByCallee = new HashMap<>();
+        final Deque<PassedParameter> work = new ArrayDeque<>();
+        summaries.forEachPassedParameter((callee, index, parameter) -> {
+            final Symbol.MethodSymbol caller = (Symbol.MethodSymbol) parameter.owner;
+            if (summaries.hasOnlyDirectCalls(caller) && !summaries.isAssigned(parameter)
+                && !hasPolicyQualifier(typeFactory.fromElement(parameter))) {
+                final PassedParameter passed = new PassedParameter(callee, index, parameter);
+                passedByCallee.computeIfAbsent(callee, key -> new ArrayList<>()).add(passed);
+                work.add(passed);
+            }
+        });
+        // the policies of a parameter only grow, so this ends once no parameter gains one.
+        while (!work.isEmpty()) {
+            final PassedParameter passed = work.poll();
+            final List<CryptoPolicy> policies = new ArrayList<>(getParameterPolicies(passed.callee, passed.index));
+            final List<AnnotatedTypeMirror> declared = typeFactory.fromElement(passed.callee).getParameterTypes();
+            if (passed.index < declared.size()) {
+                addDeclaredPolicy(declared.get(passed.index), policies);
+            }
+            if (!policies.isEmpty()
+                && computed.computeIfAbsent(passed.parameter, key -> new LinkedHashSet<>()).addAll(policies)) {
+                for (PassedParameter next
+                    : passedByCallee.getOrDefault(passed.parameter.owner, Collections.emptyList())) {
+                    if (next.index == ((Symbol.MethodSymbol) passed.parameter.owner).params.indexOf(passed.parameter)) {
+                        work.add(next);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the summaries of the classes of the compilation whose methods have parameters with policies.
+     *
+     * @return the number of summary files written.
+     * @throws IOException if a file cannot be written.
+     */
+    int export() throws IOException {
+        final Map<String, Map<String, List<List<CryptoPolicy>>>> classes = new TreeMap<>();
+        for (Symbol.VarSymbol parameter : computed.keySet()) {
+            final Symbol.MethodSymbol method = (Symbol.MethodSymbol) parameter.owner;
+            if ((method.flags() & Flags.PRIVATE) != 0 || (method.enclClass().flags() & Flags.PRIVATE) != 0) {
+                // cannot be called from another module.
+                continue;
+            }
+            final List<List<CryptoPolicy>> parameters = new ArrayList<>();
+            for (Symbol.VarSymbol methodParameter : method.params) {
+                final Set<CryptoPolicy> policies = computed.get(methodParameter);
+                parameters.add(policies == null ? Collections.emptyList() : new ArrayList<>(policies));
+            }
+            classes.computeIfAbsent(method.enclClass().flatname.toString(), key -> new TreeMap<>())
+                   .put(methodKey(method), parameters);
+        }
+        for (Map.Entry<String, Map<String, List<List<CryptoPolicy>>>> summary : classes.entrySet()) {
+            final FileObject file = processingEnv.getFiler()
+                                                 .createResource(StandardLocation.CLASS_OUTPUT, "",
+                                                                 resourceName(summary.getKey()));
+            try (OutputStream out = file.openOutputStream()) {
+                write(new DataOutputStream(new BufferedOutputStream(out)), summary.getKey(), summary.getValue());
+            }
+        }
+        return classes.size();
+    }
+
+    private Map<String, List<List<CryptoPolicy>>> classSummary(final Symbol.ClassSymbol type) {
+        final String binaryName = type.flatname.toString();
+        Map<String, List<List<CryptoPolicy>>> summary = loaded.get(binaryName);
+        if (summary == null) {
+            summary = load(binaryName);
+            loaded.put(binaryName, summary);
+        }
+        return summary;
+    }
+
+    private Map<String, List<List<CryptoPolicy>>> load(final String binaryName) {
+        final FileObject file;
+        try {
+            file = processingEnv.getFiler().getResource(StandardLocation.CLASS_PATH, "", resourceName(binaryName));
+        } catch (FileNotFoundException | NoSuchFileException | IllegalArgumentException e) {
+            return NO_SUMMARY;
+        } catch (IOException e) {
+            warnUnreadable(binaryName, e);
+            return NO_SUMMARY;
+        }
+        try (InputStream in = file.openInputStream()) {
+            return read(new DataInputStream(new BufferedInputStream(in)), binaryName);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            return NO_SUMMARY;
+        } catch (IOException e) {
+            warnUnreadable(binaryName, e);
+            return NO_SUMMARY;
+        }
+    }
+
+    private void warnUnreadable(final String binaryName, final IOException e) {
+        processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.WARNING, "Ignoring the crypto policy summary of " + binaryName + ": " + e.getMessage());
+    }
+
+    private static void write(final DataOutputStream out,
+                              final String binaryName,
+                              final Map<String, List<List<CryptoPolicy>>> methods) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(binaryName);
+        out.writeInt(methods.size());
+        for (Map.Entry<String, List<List<CryptoPolicy>>> method : methods.entrySet()) {
+            out.writeUTF(method.getKey());
+            out.writeInt(method.getValue().size());
+            for (List<CryptoPolicy> policies : method.getValue()) {
+                out.writeInt(policies.size());
+                for (CryptoPolicy policy : policies) {
+                    out.writeByte(policy.getKind().ordinal());
+                    writeStrings(out, policy.getRegexes());
+                    writeStrings(out, policy.getWarnOnRegexes());
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static Map<String, List<List<CryptoPolicy>>> read(final DataInputStream in, final String binaryName)
+        throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a crypto policy summary");
+        }
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        if (!in.readUTF().equals(binaryName)) {
+            throw new IOException("summary of another class");
+        }
+        final CryptoPolicy.Kind[] kinds = CryptoPolicy.Kind.values();
+        final int methodCount = in.readInt();
+        final Map<String, List<List<CryptoPolicy>>> methods = new HashMap<>(methodCount * 2);
+        for (int i = 0; i < methodCount; i++) {
+            final String key = in.readUTF();
+            final int parameterCount = in.readInt();
+            final List<List<CryptoPolicy>> parameters = new ArrayList<>(parameterCount);
+            for (int j = 0; j < parameterCount; j++) {
+                final int policyCount = in.readInt();
+                final List<CryptoPolicy> policies = new ArrayList<>(policyCount);
+                for (int k = 0; k < policyCount; k++) {
+                    final int kind = in.readUnsignedByte();
+                    if (kind >= kinds.length) {
+                        throw new IOException("unknown policy kind " + kind);
+                    }
+                    policies.add(CryptoPolicyCache.getInstance().getPolicy(kinds[kind], readStrings(in),
+                                                                           readStrings(in)));
+                }
+                parameters.add(policies);
+            }
+            methods.put(key, parameters);
+        }
+        return methods;
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    /**
+     * @return the name of the summary resource of a class, e.g. "META-INF/crypto-policy/com/example/Crypto.summary".
+     */
+    static String resourceName(final String binaryName) {
+        return DIRECTORY + binaryName.replace('.', '/') + SUFFIX;
+    }
+
+    /**
+     * @return the name and erased parameter types of the method, the same for its symbol from source and from the
+     *     class file, e.g. "encrypt(java.lang.String,byte[])". Constructors are named {@code <init>}.
+     */
+    private String methodKey(final Symbol.MethodSymbol method) {
+        final StringBuilder key = new StringBuilder(method.name.toString()).append('(');
+        final List<Type> parameterTypes = types.erasure(method.type).getParameterTypes();
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            key.append(i == 0 ? "" : ",").append(parameterTypes.get(i));
+        }
+        return key.append(')').toString();
+    }
+
+    private static boolean isFromClassPath(final Symbol.MethodSymbol method) {
+        final JavaFileObject classfile = method.enclClass().classfile;
+        return classfile != null && classfile.getKind() == JavaFileObject.Kind.CLASS;
+    }
+
+    private static boolean hasPolicyQualifier(final AnnotatedTypeMirror type) {
+        return type.hasAnnotation(CryptoWhiteListed.class) || type.hasAnnotation(CryptoBlackListed.class);
+    }
+
+    private static void addDeclaredPolicy(final AnnotatedTypeMirror type, final List<CryptoPolicy> policies) {
+        final AnnotationMirror whiteList = type.getAnnotation(CryptoWhiteListed.class);
+        if (whiteList != null) {
+            policies.add(CryptoPolicyComplianceVisitor.readPolicy(whiteList, CryptoPolicy.Kind.WHITELIST));
+        }
+        final AnnotationMirror blackList = type.getAnnotation(CryptoBlackListed.class);
+        if (blackList != null) {
+            policies.add(CryptoPolicyComplianceVisitor.readPolicy(blackList, CryptoPolicy.Kind.BLACKLIST));
+        }
+    }
+
+    /**
+     * A parameter of a caller that a call passes on unchanged.
+     */
+    private static final class PassedParameter {
+        private final Symbol.MethodSymbol callee;
+        private final int index;
+        private final Symbol.VarSymbol parameter;
+
+        PassedParameter(final Symbol.MethodSymbol callee, final int index, final Symbol.VarSymbol parameter) {
+            this.callee = callee;
+            this.index = index;
+            this.parameter = parameter;
+        }
+    }
+}
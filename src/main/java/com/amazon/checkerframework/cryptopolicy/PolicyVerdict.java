@@ -0,0 +1,73 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The outcome of checking a set of candidate algorithm names against the white and/or black list of a call site:
+ * the disallowed values, the values that only warrant a warning, and the ready-to-report message strings.
+ * Verdicts are immutable and shared through the {@link VerdictCache}.
+ */
+public final class PolicyVerdict {
+
+    private final Set<String> disallowedCiphers;
+    private final Set<String> warningCiphers;
+    private final String errorMessage;
+    private final String warningMessage;
+
+    private PolicyVerdict(final Set<String> disallowedCiphers, final Set<String> warningCiphers) {
+        this.disallowedCiphers = Collections.unmodifiableSet(disallowedCiphers);
+        this.warningCiphers = Collections.unmodifiableSet(warningCiphers);
+        this.errorMessage = disallowedCiphers.isEmpty() ? null : String.join(", ", disallowedCiphers).toUpperCase();
+        this.warningMessage = warningCiphers.isEmpty() ? null : String.join(", ", warningCiphers).toUpperCase();
+    }
+
+    /**
+     * Evaluate the candidate values against the policies.
+     *
+     * @param whiteList  the white list policy, or null.
+     * @param blackList  the black list policy, or null.
+     * @param candidates lower-cased candidate values.
+     * @return the verdict.
+     */
+    static PolicyVerdict evaluate(final CryptoPolicy whiteList,
+                                  final CryptoPolicy blackList,
+                                  final List<String> candidates) {
+        final Set<String> disallowedCiphers = new TreeSet<>();
+        final Set<String> warningCiphers = new TreeSet<>();
+        if (whiteList != null) {
+            disallowedCiphers.addAll(whiteList.disallowedValues(candidates));
+            warningCiphers.addAll(whiteList.warningValues(candidates));
+        }
+        if (blackList != null) {
+            disallowedCiphers.addAll(blackList.disallowedValues(candidates));
+        }
+        // remove all disallowedCiphers from the warningCiphers because we report an error about those already.
+        warningCiphers.removeAll(disallowedCiphers);
+        return new PolicyVerdict(disallowedCiphers, warningCiphers);
+    }
+
+    public Set<String> getDisallowedCiphers() {
+        return disallowedCiphers;
+    }
+
+    public Set<String> getWarningCiphers() {
+        return warningCiphers;
+    }
+
+    /**
+     * @return the upper-cased, comma separated disallowed values, or null if there are none.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return the upper-cased, comma separated values that warrant a warning, or null if there are none.
+     */
+    public String getWarningMessage() {
+        return warningMessage;
+    }
+}
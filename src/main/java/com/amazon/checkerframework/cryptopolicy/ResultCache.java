@@ -0,0 +1,266 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of {@link CachedResult}s, keyed by the SHA-256 of the configuration (checker version, options and
+ * stub contents, see {@link IncrementalResults}) and of the source of a compilation unit.
+ * <p>
+ * The cache is a single append-only file of length-prefixed records, each a 32 byte key followed by the result.
+ * It is memory-mapped when opened and only the keys are read, so opening it costs one sequential pass over the
+ * file; results are decoded when they are looked up. Later records win over earlier ones with the same key. A
+ * truncated last record, e.g. of a killed build, is ignored. New results are appended at the end of the run under
+ * a lock file, so that parallel compilations can share the directory, and the file is rewritten without the
+ * shadowed records once those make up more than half of it.
+ */
+final class ResultCache {
+
+    static final String FILE_NAME = "crypto-policy-results.bin";
+
+    private static final String LOCK_FILE_NAME = "crypto-policy-results.lock";
+    private static final int MAGIC = 0x43505243;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 8;
+    private static final int KEY_LENGTH = 32;
+    private static final int MIN_RECORDS_TO_COMPACT = 1024;
+
+    private final Path file;
+    private final Path lockFile;
+    private final byte[] configurationHash;
+    private final Map<ByteBuffer, ByteBuffer> results;
+    private final Map<ByteBuffer, CachedResult> pending = new LinkedHashMap<>();
+
+    private ResultCache(final Path directory, final byte[] configurationHash) throws IOException {
+        this.file = directory.resolve(FILE_NAME);
+        this.lockFile = directory.resolve(LOCK_FILE_NAME);
+        this.configurationHash = configurationHash;
+        this.results = read(file).results;
+    }
+
+    /**
+     * @param directory         the cache directory, created if necessary.
+     * @param configurationHash the hash of everything besides the source that the results depend on.
+     * @return the cache.
+     * @throws IOException if the directory or the cache file cannot be read.
+     */
+    static ResultCache open(final Path directory, final byte[] configurationHash) throws IOException {
+        Files.createDirectories(directory);
+        return new ResultCache(directory, configurationHash);
+    }
+
+    /**
+     * @param sourceHash the SHA-256 of the source of a compilation unit.
+     * @return the cached result, or null.
+     */
+    CachedResult lookup(final byte[] sourceHash) {
+        final ByteBuffer key = key(sourceHash);
+        final CachedResult stored = pending.get(key);
+        if (stored != null) {
+            return stored;
+        }
+        final ByteBuffer result = results.get(key);
+        if (result == null) {
+            return null;
+        }
+        try {
+            return CachedResult.readFrom(result.duplicate());
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remember a result, to be written by {@link #flush()}.
+     *
+     * @param sourceHash the SHA-256 of the source of a compilation unit.
+     * @param result     the result of checking it.
+     */
+    void store(final byte[] sourceHash, final CachedResult result) {
+        pending.put(key(sourceHash), result);
+    }
+
+    /**
+     * Write the results stored since the last flush.
+     *
+     * @throws IOException if the cache file cannot be written.
+     */
+    void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // closing the channel releases the lock.
+        final FileChannel lockChannel = lock(lockFile);
+        try {
+            // other compilations may have written since this one opened the cache.
+            final Records current = read(file);
+            if (current.count + pending.size() >= MIN_RECORDS_TO_COMPACT
+                && current.count + pending.size() > 2 * (current.results.size() + pending.size())) {
+                final Map<ByteBuffer, ByteBuffer> live = new LinkedHashMap<>(current.results);
+                live.keySet().removeAll(pending.keySet());
+                final Path temporary = file.resolveSibling(FILE_NAME + ".tmp");
+                try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeFully(out, header());
+                    for (Map.Entry<ByteBuffer, ByteBuffer> result : live.entrySet()) {
+                        writeFully(out, record(result.getKey(), result.getValue().duplicate()));
+                    }
+                    writeFully(out, serializePending());
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.APPEND)) {
+                    if (out.size() < HEADER_LENGTH || current.count < 0) {
+                        out.truncate(0);
+                        writeFully(out, header());
+                    } else if (out.size() > current.end) {
+                        // drop a truncated record, new records must start at a record boundary.
+                        out.truncate(current.end);
+                    }
+                    writeFully(out, serializePending());
+                }
+            }
+        } finally {
+            lockChannel.close();
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return a channel of the file that holds an exclusive lock on it until it is closed.
+     */
+    private static FileChannel lock(final Path lockFile) throws IOException {
+        final FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private ByteBuffer serializePending() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (Map.Entry<ByteBuffer, CachedResult> result : pending.entrySet()) {
+            final ByteArrayOutputStream resultBytes = new ByteArrayOutputStream();
+            result.getValue().writeTo(new DataOutputStream(resultBytes));
+            out.writeInt(KEY_LENGTH + resultBytes.size());
+            out.write(result.getKey().array());
+            resultBytes.writeTo(out);
+        }
+        out.flush();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer record(final ByteBuffer key, final ByteBuffer result) {
+        final ByteBuffer record = ByteBuffer.allocate(4 + KEY_LENGTH + result.remaining());
+        record.putInt(KEY_LENGTH + result.remaining()).put(key.duplicate()).put(result);
+        record.flip();
+        return record;
+    }
+
+    private static ByteBuffer header() {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(FORMAT_VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully(final FileChannel out, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private ByteBuffer key(final byte[] sourceHash) {
+        final MessageDigest digest = sha256();
+        digest.update(configurationHash);
+        digest.update(sourceHash);
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    /**
+     * The results in a cache file, by key, as slices of the mapped file.
+     */
+    private static final class Records {
+        private final Map<ByteBuffer, ByteBuffer> results = new HashMap<>();
+        /** The number of records, -1 if the file is not a cache file. */
+        private int count;
+        /** The end of the last complete record. */
+        private long end = HEADER_LENGTH;
+    }
+
+    private static Records read(final Path file) throws IOException {
+        final Records records = new Records();
+        if (!Files.exists(file)) {
+            return records;
+        }
+        final ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.remaining() < HEADER_LENGTH || mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION) {
+            // an empty file, or one written by another version: start over.
+            records.count = mapped.limit() == 0 ? 0 : -1;
+            return records;
+        }
+        while (mapped.remaining() >= 4) {
+            final int length = mapped.getInt();
+            if (length < KEY_LENGTH || length > mapped.remaining()) {
+                break;
+            }
+            final ByteBuffer key = ByteBuffer.allocate(KEY_LENGTH);
+            final ByteBuffer keySlice = mapped.slice();
+            keySlice.limit(KEY_LENGTH);
+            key.put(keySlice).flip();
+            mapped.position(mapped.position() + KEY_LENGTH);
+            final ByteBuffer result = mapped.slice();
+            result.limit(length - KEY_LENGTH);
+            mapped.position(mapped.position() + length - KEY_LENGTH);
+            records.results.put(key, result);
+            records.count++;
+            records.end = mapped.position();
+        }
+        return records;
+    }
+
+    /**
+     * @param bytes the data to hash.
+     * @return the SHA-256 of the data.
+     */
+    static byte[] sha256(final byte[] bytes) {
+        return sha256().digest(bytes);
+    }
+
+    /**
+     * @param text the text to hash.
+     * @return the SHA-256 of the UTF-8 encoding of the text.
+     */
+    static byte[] sha256(final String text) {
+        return sha256(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform", e);
+        }
+    }
+}
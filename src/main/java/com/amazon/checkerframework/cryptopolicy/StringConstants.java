@@ -0,0 +1,302 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.lang.model.element.ElementKind;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+
+/**
+ * The string values an expression can have, for -AcryptoFastMode, which runs this instead of the Value Checker.
+ * The Value Checker infers integer ranges, array lengths and much more for every expression of every class, only
+ * for the checker to read the {@code @StringVal} of the arguments of policies. This evaluates just those
+ * arguments, when the visitor asks for them: compile-time constants, concatenations, conditional expressions,
+ * String.valueOf and a few methods of String on known values, and local variables of type String or of a primitive
+ * type, which are resolved to the union of the values of all their definitions in the enclosing member of the top
+ * level class.
+ * <p>
+ * Unlike the Value Checker, local variables are resolved without regard to control flow, so a variable that is
+ * reassigned before the call has the values of all its assignments, which can report a violation that the Value
+ * Checker does not, but never misses one. The Value Checker also adds "null" to the values of a concatenation with
+ * a String variable, which this does not, since a variable with known values is never null. Like the Value Checker,
+ * more than {@link #MAX_VALUES} values are unknown.
+ */
+final class StringConstants {
+
+    /**
+     * The Value Checker's limit on the values of a {@code @StringVal}.
+     */
+    static final int MAX_VALUES = 10;
+
+    /**
+     * The definitions of a local variable that the checker cannot evaluate, like a parameter, a loop variable or
+     * a compound assignment.
+     */
+    private static final JCTree.JCExpression UNKNOWN_DEFINITION = null;
+
+    /**
+     * The values of a local variable that is being evaluated, to detect a variable that depends on itself.
+     */
+    private static final Set<String> IN_PROGRESS = Collections.unmodifiableSet(new HashSet<>());
+
+    /**
+     * The values of a local variable that are unknown.
+     */
+    private static final Set<String> UNKNOWN = Collections.unmodifiableSet(new HashSet<>());
+
+    /**
+     * The member of the top level class whose definitions are indexed, since the visitor asks about one member
+     * after the other.
+     */
+    private Tree scope;
+    private final Map<Symbol.VarSymbol, List<JCTree.JCExpression>> definitions = new HashMap<>();
+    private final Map<Symbol.VarSymbol, Set<String>> variableValues = new HashMap<>();
+
+    /**
+     * @param expression an expression of type String.
+     * @param path       the path of a tree in the same member as the expression, or null.
+     * @return the values the expression can have, or null if they are unknown.
+     */
+    Set<String> values(final ExpressionTree expression, final TreePath path) {
+        setScope(path == null ? null : topLevelMember(path));
+        final Set<String> values = evaluate((JCTree.JCExpression) expression);
+        return values == null || values == IN_PROGRESS ? null : values;
+    }
+
+    private Set<String> evaluate(final JCTree.JCExpression tree) {
+        final JCTree.JCExpression expression = TreeInfo.skipParens(tree);
+        final Object constant = expression.type == null ? null : expression.type.constValue();
+        if (constant != null) {
+            return Collections.singleton(constantString(expression.type, constant));
+        }
+        switch (expression.getTag()) {
+            case CONDEXPR:
+                final JCTree.JCConditional conditional = (JCTree.JCConditional) expression;
+                return union(evaluate(conditional.truepart), evaluate(conditional.falsepart));
+            case PLUS:
+                // only string concatenation, arithmetic on variables is unknown.
+                final JCTree.JCBinary binary = (JCTree.JCBinary) expression;
+                return isString(binary.type) ? concatenate(evaluate(binary.lhs), evaluate(binary.rhs)) : null;
+            case IDENT:
+                final Symbol symbol = ((JCTree.JCIdent) expression).sym;
+                return symbol instanceof Symbol.VarSymbol ? evaluateVariable((Symbol.VarSymbol) symbol) : null;
+            case APPLY:
+                return evaluateCall((JCTree.JCMethodInvocation) expression);
+            default:
+                return null;
+        }
+    }
+
+    private Set<String> evaluateVariable(final Symbol.VarSymbol variable) {
+        final ElementKind kind = variable.getKind();
+        if (scope == null || (kind != ElementKind.LOCAL_VARIABLE && kind != ElementKind.RESOURCE_VARIABLE)
+            || !(isString(variable.type) || variable.type.isPrimitive())) {
+            return null;
+        }
+        final Set<String> known = variableValues.get(variable);
+        if (known != null) {
+            return known == UNKNOWN ? null : known;
+        }
+        variableValues.put(variable, IN_PROGRESS);
+        Set<String> values = Collections.emptySet();
+        final List<JCTree.JCExpression> variableDefinitions = definitions.get(variable);
+        if (variableDefinitions == null) {
+            // declared outside of the scope, e.g. captured by a local class.
+            values = null;
+        } else {
+            for (JCTree.JCExpression definition : variableDefinitions) {
+                values = union(values, definition == UNKNOWN_DEFINITION ? null : evaluate(definition));
+                if (values == null) {
+                    break;
+                }
+            }
+        }
+        variableValues.put(variable, values == null ? UNKNOWN : values);
+        return values;
+    }
+
+    /**
+     * Evaluates the methods of String that the Value Checker evaluates too and that are used on algorithm names.
+     */
+    private Set<String> evaluateCall(final JCTree.JCMethodInvocation call) {
+        if (!(call.meth instanceof JCTree.JCFieldAccess)) {
+            return null;
+        }
+        final JCTree.JCFieldAccess method = (JCTree.JCFieldAccess) call.meth;
+        if (!isString(method.selected.type)) {
+            return null;
+        }
+        final String name = method.name.toString();
+        if (TreeInfo.symbol(method.selected) instanceof Symbol.ClassSymbol) {
+            // String.valueOf of a String or a primitive, the other static methods are unknown.
+            final boolean convertible = call.args.size() == 1
+                                        && (isString(call.args.head.type) || call.args.head.type.isPrimitive());
+            return name.equals("valueOf") && convertible ? evaluate(call.args.head) : null;
+        }
+        if (call.args.isEmpty() && (name.equals("toUpperCase") || name.equals("toLowerCase")
+                                    || name.equals("trim") || name.equals("intern"))) {
+            final Set<String> receivers = evaluate(method.selected);
+            if (receivers == null || receivers == IN_PROGRESS) {
+                return receivers;
+            }
+            final Set<String> values = new LinkedHashSet<>();
+            for (String receiver : receivers) {
+                values.add(name.equals("toUpperCase") ? receiver.toUpperCase()
+                           : name.equals("toLowerCase") ? receiver.toLowerCase()
+                           : name.equals("trim") ? receiver.trim() : receiver);
+            }
+            return values;
+        }
+        if (call.args.size() == 1 && name.equals("concat") && isString(call.args.head.type)) {
+            return concatenate(evaluate(method.selected), evaluate(call.args.head));
+        }
+        return null;
+    }
+
+    private static Set<String> union(final Set<String> first, final Set<String> second) {
+        if (first == null || second == null || first == IN_PROGRESS || second == IN_PROGRESS) {
+            return null;
+        }
+        final Set<String> values = new LinkedHashSet<>(first);
+        values.addAll(second);
+        return values.size() > MAX_VALUES ? null : values;
+    }
+
+    private static Set<String> concatenate(final Set<String> prefixes, final Set<String> suffixes) {
+        if (prefixes == null || suffixes == null || prefixes == IN_PROGRESS || suffixes == IN_PROGRESS
+            || prefixes.size() * suffixes.size() > MAX_VALUES) {
+            return null;
+        }
+        final Set<String> values = new LinkedHashSet<>();
+        for (String prefix : prefixes) {
+            for (String suffix : suffixes) {
+                values.add(prefix + suffix);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the constant as string concatenation converts it; javac keeps char and boolean constants as ints.
+     */
+    private static String constantString(final Type type, final Object constant) {
+        if (type.hasTag(TypeTag.CHAR)) {
+            return String.valueOf((char) ((Number) constant).intValue());
+        } else if (type.hasTag(TypeTag.BOOLEAN)) {
+            return String.valueOf(((Number) constant).intValue() != 0);
+        }
+        return String.valueOf(constant);
+    }
+
+    private static boolean isString(final Type type) {
+        return type != null && type.tsym != null && type.tsym.getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    private static Tree topLevelMember(final TreePath path) {
+        for (TreePath member = path; member.getParentPath() != null; member = member.getParentPath()) {
+            final TreePath parent = member.getParentPath();
+            if (parent.getLeaf() instanceof ClassTree && parent.getParentPath() != null
+                && parent.getParentPath().getLeaf() instanceof CompilationUnitTree) {
+                return member.getLeaf();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forget the definitions of the member that was evaluated last, which refer to the trees of its unit.
+     */
+    void release() {
+        setScope(null);
+    }
+
+    private void setScope(final Tree member) {
+        if (member == scope) {
+            return;
+        }
+        scope = member;
+        definitions.clear();
+        variableValues.clear();
+        if (member != null) {
+            new DefinitionScanner().scan((JCTree) member);
+        }
+    }
+
+    /**
+     * Collects the initializers and assignments of the local variables of a member.
+     */
+    private final class DefinitionScanner extends TreeScanner {
+
+        @Override
+        public void visitVarDef(final JCTree.JCVariableDecl tree) {
+            final List<JCTree.JCExpression> variableDefinitions = definitionsOf(tree.sym);
+            if (tree.init != null) {
+                variableDefinitions.add(tree.init);
+            } else if (tree.sym != null && tree.sym.getKind() != ElementKind.LOCAL_VARIABLE) {
+                // a parameter.
+                variableDefinitions.add(UNKNOWN_DEFINITION);
+            }
+            super.visitVarDef(tree);
+        }
+
+        @Override
+        public void visitForeachLoop(final JCTree.JCEnhancedForLoop tree) {
+            definitionsOf(tree.var.sym).add(UNKNOWN_DEFINITION);
+            super.visitForeachLoop(tree);
+        }
+
+        @Override
+        public void visitAssign(final JCTree.JCAssign tree) {
+            final Symbol.VarSymbol variable = local(tree.lhs);
+            if (variable != null) {
+                definitionsOf(variable).add(tree.rhs);
+            }
+            super.visitAssign(tree);
+        }
+
+        @Override
+        public void visitUnary(final JCTree.JCUnary tree) {
+            final Symbol.VarSymbol variable = tree.getTag().isIncOrDecUnaryOp() ? local(tree.arg) : null;
+            if (variable != null) {
+                definitionsOf(variable).add(UNKNOWN_DEFINITION);
+            }
+            super.visitUnary(tree);
+        }
+
+        @Override
+        public void visitAssignop(final JCTree.JCAssignOp tree) {
+            final Symbol.VarSymbol variable = local(tree.lhs);
+            if (variable != null) {
+                definitionsOf(variable).add(UNKNOWN_DEFINITION);
+            }
+            super.visitAssignop(tree);
+        }
+
+        private List<JCTree.JCExpression> definitionsOf(final Symbol.VarSymbol variable) {
+            return definitions.computeIfAbsent(variable, key -> new ArrayList<>());
+        }
+
+        private Symbol.VarSymbol local(final JCTree.JCExpression lhs) {
+            final JCTree.JCExpression variable = TreeInfo.skipParens(lhs);
+            return variable instanceof JCTree.JCIdent && ((JCTree.JCIdent) variable).sym instanceof Symbol.VarSymbol
+                   ? (Symbol.VarSymbol) ((JCTree.JCIdent) variable).sym
+                   : null;
+        }
+    }
+}
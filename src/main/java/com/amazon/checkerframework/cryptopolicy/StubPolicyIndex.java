@@ -0,0 +1,202 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import org.checkerframework.com.github.javaparser.ParseProblemException;
+import org.checkerframework.com.github.javaparser.StaticJavaParser;
+import org.checkerframework.com.github.javaparser.ast.CompilationUnit;
+import org.checkerframework.com.github.javaparser.ast.body.BodyDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.CallableDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.ConstructorDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.FieldDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.TypeDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.VariableDeclarator;
+import org.checkerframework.com.github.javaparser.ast.expr.AnnotationExpr;
+
+/**
+ * The methods, constructors and fields that the stub files annotate with a policy qualifier
+ * ({@code @CryptoWhiteListed}, {@code @CryptoBlackListed} or {@code @CryptoPolicyBottom}) anywhere in their
+ * signature. Keys are "binary class name#member name", plus "/arity" for methods and constructors, e.g.
+ * "javax.crypto.Cipher#getInstance/1". Constructors are named {@code <init>} like in javac.
+ */
+public final class StubPolicyIndex {
+
+    /**
+     * Simple names of the qualifiers that make a member policy-relevant.
+     */
+    static final Set<String> POLICY_QUALIFIERS = new HashSet<>(Arrays.asList(
+        "CryptoWhiteListed", "CryptoBlackListed", "CryptoPolicyBottom"));
+
+    /**
+     * Indexes of unchanged stub files, keyed by their paths, sizes and modification times, so that a JVM that runs
+     * many compilations, like the {@link com.amazon.checkerframework.cryptopolicy.daemon.CompileServer}, parses
+     * the stubs once.
+     */
+    private static final LruCache<List<Object>, StubPolicyIndex> LOADED = new LruCache<>("StubPolicyIndex", 16);
+
+    /**
+     * Cached for stub files that cannot be parsed, since the cache does not store null.
+     */
+    private static final StubPolicyIndex UNPARSABLE = new StubPolicyIndex();
+
+    private final Set<String> members = new HashSet<>();
+    private final Set<String> classes = new HashSet<>();
+
+    private StubPolicyIndex() {
+    }
+
+    /**
+     * Build the index from the value of the -Astubs option.
+     *
+     * @param stubsOption paths of stub files or directories, separated by {@link File#pathSeparator}; may be null.
+     * @return the index, or null if a stub cannot be read or parsed here, e.g. because it is a class path
+     *     resource. The caller must then assume that every compilation unit is relevant.
+     */
+    static StubPolicyIndex load(final String stubsOption) {
+        final List<Path> stubFiles = findStubFiles(stubsOption);
+        if (stubFiles == null) {
+            return null;
+        }
+        final List<Object> key = new ArrayList<>();
+        try {
+            for (Path stubFile : stubFiles) {
+                key.add(stubFile.toAbsolutePath().normalize().toString());
+                key.add(Files.size(stubFile));
+                key.add(Files.getLastModifiedTime(stubFile).toMillis());
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        final StubPolicyIndex index = LOADED.get(key, unused -> {
+            final StubPolicyIndex parsed = parse(stubFiles);
+            return parsed == null ? UNPARSABLE : parsed;
+        });
+        return index == UNPARSABLE ? null : index;
+    }
+
+    /**
+     * @param policies the policies of parameters that the checker applies itself, with -AcryptoPolicyStubs.
+     * @return an index of the members of this index and of the policies.
+     */
+    StubPolicyIndex withPolicies(final StubPolicies policies) {
+        final StubPolicyIndex index = new StubPolicyIndex();
+        index.members.addAll(members);
+        index.classes.addAll(classes);
+        for (StubPolicies.Callable callable : policies.getCallables()) {
+            final String binaryName = callable.getOwner().replace('/', '.');
+            index.members.add(binaryName + "#" + callable.getName() + "/" + callable.getParameterCount());
+            index.classes.add(binaryName);
+        }
+        return index;
+    }
+
+    private static StubPolicyIndex parse(final List<Path> stubFiles) {
+        final StubPolicyIndex index = new StubPolicyIndex();
+        try {
+            for (Path stubFile : stubFiles) {
+                index.add(stubFile);
+            }
+        } catch (IOException | ParseProblemException e) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * @param stubsOption paths of stub files or directories, separated by {@link File#pathSeparator}; may be null.
+     * @return the stub files, sorted within each directory, or null if a path is neither a file nor a directory
+     *     or a directory cannot be read.
+     */
+    public static List<Path> findStubFiles(final String stubsOption) {
+        final List<Path> stubFiles = new ArrayList<>();
+        if (stubsOption == null) {
+            return stubFiles;
+        }
+        for (String stub : stubsOption.split(File.pathSeparator)) {
+            final File file = new File(stub);
+            if (file.isDirectory()) {
+                try (Stream<Path> paths = Files.walk(file.toPath())) {
+                    paths.filter(path -> path.toString().endsWith(".astub")).sorted().forEach(stubFiles::add);
+                } catch (IOException e) {
+                    return null;
+                }
+            } else if (file.isFile()) {
+                stubFiles.add(file.toPath());
+            } else {
+                return null;
+            }
+        }
+        return stubFiles;
+    }
+
+    private void add(final Path stubFile) throws IOException {
+        for (CompilationUnit unit : StaticJavaParser.parseStubUnit(stubFile).getCompilationUnits()) {
+            final String packagePrefix = unit.getPackageDeclaration()
+                                             .map(declaration -> declaration.getNameAsString() + ".")
+                                             .orElse("");
+            for (TypeDeclaration<?> type : unit.getTypes()) {
+                addType(packagePrefix + type.getNameAsString(), type);
+            }
+        }
+    }
+
+    private void addType(final String binaryName, final TypeDeclaration<?> type) {
+        for (BodyDeclaration<?> member : type.getMembers()) {
+            if (member instanceof TypeDeclaration) {
+                final TypeDeclaration<?> nested = (TypeDeclaration<?>) member;
+                addType(binaryName + "$" + nested.getNameAsString(), nested);
+            } else if (member instanceof CallableDeclaration && hasPolicyQualifier(member)) {
+                final CallableDeclaration<?> callable = (CallableDeclaration<?>) member;
+                final String name = member instanceof ConstructorDeclaration ? "<init>" : callable.getNameAsString();
+                members.add(binaryName + "#" + name + "/" + callable.getParameters().size());
+                classes.add(binaryName);
+            } else if (member instanceof FieldDeclaration && hasPolicyQualifier(member)) {
+                for (VariableDeclarator variable : ((FieldDeclaration) member).getVariables()) {
+                    members.add(binaryName + "#" + variable.getNameAsString());
+                }
+                classes.add(binaryName);
+            }
+        }
+    }
+
+    private static boolean hasPolicyQualifier(final BodyDeclaration<?> member) {
+        // the annotations of the member itself, its parameters and any type in its signature.
+        return member.findAll(AnnotationExpr.class).stream()
+                     .anyMatch(annotation -> POLICY_QUALIFIERS.contains(annotation.getName().getIdentifier()));
+    }
+
+    /**
+     * @param binaryClassName the binary name of the declaring class.
+     * @param name            the simple name of the method or field, or {@code <init>}.
+     * @param arity           the number of parameters, or -1 for fields.
+     * @return true if the stubs annotate the member with a policy qualifier.
+     */
+    boolean isPolicyAnnotated(final String binaryClassName, final String name, final int arity) {
+        return members.contains(binaryClassName + "#" + name + (arity < 0 ? "" : "/" + arity));
+    }
+
+    /**
+     * @param binaryClassName the binary name of a class.
+     * @return true if the stubs annotate any member of the class with a policy qualifier.
+     */
+    boolean hasPolicyAnnotatedMembers(final String binaryClassName) {
+        return classes.contains(binaryClassName);
+    }
+
+    /**
+     * @return the number of indexed members.
+     */
+    int size() {
+        return members.size();
+    }
+}
@@ -0,0 +1,228 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import javax.lang.model.element.Element;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * The source ranges of the variables, methods and classes of a compilation unit, built in one pass, with the
+ * {@code @SuppressCryptoWarning} of those that carry one. Finding the innermost variable, method and class around
+ * a position is a binary search plus a walk up the enclosing declarations of the same kind, instead of a search for
+ * the tree path from the root of the unit. Declarations of one kind never overlap without nesting, so the last one
+ * that starts before a position either contains it or is nested in the one that does.
+ */
+final class SuppressionIndex {
+
+    /**
+     * The {@code @SuppressCryptoWarning} of a declaration, with its issue URL validated once.
+     */
+    static final class Suppression {
+        private final Element element;
+        private final String issue;
+        private final URL issueUrl;
+
+        private Suppression(final Element element, final String issue) {
+            this.element = element;
+            this.issue = issue;
+            URL url;
+            try {
+                url = new URL(issue);
+            } catch (MalformedURLException e) {
+                url = null;
+            }
+            this.issueUrl = url;
+        }
+
+        /**
+         * @param element a declaration.
+         * @return its suppression, or null if it is not annotated with {@code @SuppressCryptoWarning}.
+         */
+        static Suppression of(final Element element) {
+            final SuppressCryptoWarning annotation = element.getAnnotation(SuppressCryptoWarning.class);
+            return annotation == null ? null : new Suppression(element, annotation.issue());
+        }
+
+        Element getElement() {
+            return element;
+        }
+
+        String getIssue() {
+            return issue;
+        }
+
+        /**
+         * @return the issue as a URL, or null if it is not a valid URL.
+         */
+        URL getIssueUrl() {
+            return issueUrl;
+        }
+    }
+
+    private static final String ANNOTATION_NAME = SuppressCryptoWarning.class.getSimpleName();
+
+    private final Ranges variables = new Ranges();
+    private final Ranges methods = new Ranges();
+    private final Ranges classes = new Ranges();
+    private boolean valid = true;
+
+    private SuppressionIndex() {
+    }
+
+    /**
+     * @param root      the compilation unit.
+     * @param positions the source positions of the unit.
+     * @return the index, or null if the source ranges of the declarations are inconsistent.
+     */
+    static SuppressionIndex build(final CompilationUnitTree root, final SourcePositions positions) {
+        final SuppressionIndex index = new SuppressionIndex();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitVariable(final VariableTree node, final Void unused) {
+                index.variables.open(node, node.getModifiers(), root, positions, index);
+                super.visitVariable(node, unused);
+                index.variables.close();
+                return null;
+            }
+
+            @Override
+            public Void visitMethod(final MethodTree node, final Void unused) {
+                index.methods.open(node, node.getModifiers(), root, positions, index);
+                super.visitMethod(node, unused);
+                index.methods.close();
+                return null;
+            }
+
+            @Override
+            public Void visitClass(final ClassTree node, final Void unused) {
+                index.classes.open(node, node.getModifiers(), root, positions, index);
+                super.visitClass(node, unused);
+                index.classes.close();
+                return null;
+            }
+        }.scan(root, null);
+        return index.valid ? index : null;
+    }
+
+    /**
+     * Find the suppression that applies at a position, like the visitor looks it up on the tree path: that of the
+     * innermost variable if it has one, else that of the innermost method if there is a method, else that of the
+     * innermost class.
+     *
+     * @param position a source position in the unit, at least 0.
+     * @return the suppression, or null if the position is not suppressed.
+     */
+    Suppression find(final long position) {
+        final Suppression variable = variables.suppression(variables.innermost(position));
+        if (variable != null) {
+            return variable;
+        }
+        final int method = methods.innermost(position);
+        if (method >= 0) {
+            return methods.suppression(method);
+        }
+        return classes.suppression(classes.innermost(position));
+    }
+
+    private static boolean mayBeSuppressed(final ModifiersTree modifiers) {
+        if (modifiers == null) {
+            return false;
+        }
+        for (AnnotationTree annotation : modifiers.getAnnotations()) {
+            final String name = annotation.getAnnotationType().toString();
+            if (name.equals(ANNOTATION_NAME) || name.endsWith("." + ANNOTATION_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The ranges of the declarations of one kind, in the order they start.
+     */
+    private static final class Ranges {
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int[] parents = new int[16];
+        private Suppression[] suppressions = new Suppression[16];
+        private int size;
+        private final Deque<Integer> open = new ArrayDeque<>();
+
+        void open(final Tree tree,
+                  final ModifiersTree modifiers,
+                  final CompilationUnitTree root,
+                  final SourcePositions positions,
+                  final SuppressionIndex index) {
+            final long start = positions.getStartPosition(root, tree);
+            final long end = positions.getEndPosition(root, tree);
+            final int parent = open.isEmpty() ? -1 : open.peek();
+            if (end < 0) {
+                // generated by javac, like default constructors, and without any source of its own.
+                open.push(parent);
+                return;
+            }
+            if (start < 0 || end < start || (size > 0 && start < starts[size - 1])) {
+                index.valid = false;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+                suppressions = Arrays.copyOf(suppressions, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            parents[size] = parent;
+            // @SuppressCryptoWarning has source retention, so it can only come from the tree's own modifiers.
+            if (mayBeSuppressed(modifiers)) {
+                final Element element = TreeUtils.elementFromTree(tree);
+                suppressions[size] = element == null ? null : Suppression.of(element);
+            }
+            open.push(size);
+            size++;
+        }
+
+        void close() {
+            open.pop();
+        }
+
+        /**
+         * @return the index of the innermost range that contains the position, or -1.
+         */
+        int innermost(final long position) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (starts[middle] <= position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int range = low - 1;
+            while (range >= 0 && ends[range] <= position) {
+                range = parents[range];
+            }
+            return range;
+        }
+
+        Suppression suppression(final int range) {
+            return range < 0 ? null : suppressions[range];
+        }
+    }
+}
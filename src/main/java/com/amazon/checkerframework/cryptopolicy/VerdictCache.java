@@ -0,0 +1,70 @@
+package com.amazon.checkerframework.cryptopolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memo table from (white list policy, black list policy, sorted candidate values) to the {@link PolicyVerdict}.
+ * The same call, e.g. Cipher.getInstance("AES/GCM/NoPadding"), shows up at thousands of call sites, and all
+ * but the first one are answered by a single lookup. Like the {@link CryptoPolicyCache}, the table is bounded
+ * and shared by every compilation unit in the javac process.
+ */
+public final class VerdictCache {
+
+    /**
+     * Upper bound on the number of memoized verdicts.
+     */
+    static final int MAX_VERDICTS = 8192;
+
+    private static final VerdictCache INSTANCE = new VerdictCache(MAX_VERDICTS);
+
+    private final LruCache<List<Object>, PolicyVerdict> verdicts;
+
+    VerdictCache(final int maxVerdicts) {
+        this.verdicts = new LruCache<>("VerdictCache", maxVerdicts);
+    }
+
+    /**
+     * @return the memo table shared by all checkers in this JVM.
+     */
+    public static VerdictCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Look up or compute the verdict for a call site.
+     *
+     * @param whiteList  the white list policy, or null.
+     * @param blackList  the black list policy, or null.
+     * @param candidates lower-cased candidate values, in any order.
+     * @return the verdict.
+     */
+    public PolicyVerdict getVerdict(final CryptoPolicy whiteList,
+                                    final CryptoPolicy blackList,
+                                    final List<String> candidates) {
+        final List<String> sortedCandidates;
+        if (candidates.size() <= 1) {
+            sortedCandidates = candidates;
+        } else {
+            sortedCandidates = new ArrayList<>(candidates);
+            Collections.sort(sortedCandidates);
+        }
+        return verdicts.get(Arrays.asList(whiteList, blackList, sortedCandidates),
+            key -> PolicyVerdict.evaluate(whiteList, blackList, sortedCandidates));
+    }
+
+    public long getHitCount() {
+        return verdicts.getHitCount();
+    }
+
+    public long getMissCount() {
+        return verdicts.getMissCount();
+    }
+
+    @Override
+    public String toString() {
+        return verdicts.toString();
+    }
+}
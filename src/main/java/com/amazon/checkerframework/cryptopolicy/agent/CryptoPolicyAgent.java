@@ -0,0 +1,82 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+
+/**
+ * A {@code java.lang.instrument} agent that enforces the policies of the stub files at runtime, for algorithm names
+ * that come from configuration and that the checker can only report as unknown. The {@link PolicyTransformer}
+ * instruments the calls of the stubbed methods as classes are loaded, and the {@link Enforcer} checks their
+ * arguments.
+ * <p>
+ * Usage: {@code -javaagent:crypto-policy-agent.jar=stubs=path[,mode=log|throw|metrics]}, where path is like the
+ * value of -Astubs. The mode is log by default. The counters are registered as the MXBean {@value #MBEAN_NAME}.
+ */
+public final class CryptoPolicyAgent {
+
+    public static final String MBEAN_NAME = "com.amazon.checkerframework.cryptopolicy:type=CryptoPolicyEnforcement";
+
+    private CryptoPolicyAgent() {
+    }
+
+    /**
+     * @param agentArgs       the options, comma separated.
+     * @param instrumentation the instrumentation of the JVM.
+     * @throws IOException if the stubs cannot be read, which keeps the JVM from starting unenforced.
+     */
+    public static void premain(final String agentArgs, final Instrumentation instrumentation) throws IOException {
+        String stubs = null;
+        Enforcer.Mode mode = Enforcer.Mode.LOG;
+        for (String option : agentArgs == null ? new String[0] : agentArgs.split(",")) {
+            final int equals = option.indexOf('=');
+            final String name = equals < 0 ? option : option.substring(0, equals);
+            final String value = equals < 0 ? "" : option.substring(equals + 1);
+            if ("stubs".equals(name)) {
+                stubs = value;
+            } else if ("mode".equals(name)) {
+                mode = Enforcer.Mode.valueOf(value.toUpperCase(Locale.ROOT));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option
+                                                   + ", expected stubs=path[,mode=log|throw|metrics]");
+            }
+        }
+        if (stubs == null) {
+            throw new IllegalArgumentException("Missing option stubs=path");
+        }
+        Enforcer.setMode(mode);
+        instrumentation.addTransformer(new PolicyTransformer(StubPolicies.load(stubs)));
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Counters(), new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            // e.g. a second agent in the same JVM; the first one's counters are the same.
+        }
+    }
+
+    private static final class Counters implements CryptoPolicyEnforcementMXBean {
+        @Override
+        public long getViolations() {
+            return Enforcer.getViolationCount();
+        }
+
+        @Override
+        public long getWarnings() {
+            return Enforcer.getWarningCount();
+        }
+
+        @Override
+        public int getCallSites() {
+            return Enforcer.getCallSiteCount();
+        }
+
+        @Override
+        public String getMode() {
+            return Enforcer.getMode().name();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+/**
+ * The counters of the {@link Enforcer}, registered by the {@link CryptoPolicyAgent} as
+ * {@value CryptoPolicyAgent#MBEAN_NAME}, for the metrics of a service.
+ */
+public interface CryptoPolicyEnforcementMXBean {
+
+    /**
+     * @return the number of calls with a value that a policy does not allow, in any mode.
+     */
+    long getViolations();
+
+    /**
+     * @return the number of calls with a value that warrants a warning.
+     */
+    long getWarnings();
+
+    /**
+     * @return the number of instrumented call sites.
+     */
+    int getCallSites();
+
+    /**
+     * @return the mode of the enforcer.
+     */
+    String getMode();
+}
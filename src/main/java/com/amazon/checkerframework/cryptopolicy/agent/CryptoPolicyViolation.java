@@ -0,0 +1,14 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+/**
+ * Thrown by the {@link Enforcer} in its {@link Enforcer.Mode#THROW} mode, before a stubbed method is called with a
+ * value that its policy does not allow.
+ */
+public class CryptoPolicyViolation extends SecurityException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CryptoPolicyViolation(final String message) {
+        super(message);
+    }
+}
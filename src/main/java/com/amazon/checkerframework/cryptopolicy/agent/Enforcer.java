@@ -0,0 +1,230 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.PolicyVerdict;
+
+/**
+ * Checks the values that reach the policy parameters of the stubbed methods at runtime, from the calls that the
+ * {@link PolicyTransformer} inserts before every call site. Each call site has an id that the transformer assigns
+ * and that leads to the {@link VerdictTable} of its policies, so an allowed value that was seen before costs an
+ * array read and a hash probe. What happens to a disallowed value depends on the {@link Mode}.
+ */
+public final class Enforcer {
+
+    /**
+     * What to do about a value that a policy does not allow. Values that warrant a warning are logged in the
+     * {@link #LOG} and {@link #THROW} modes and counted in all of them.
+     */
+    public enum Mode {
+        /** Log the first violations of each call site, and let the call go ahead. */
+        LOG,
+        /** Throw a {@link CryptoPolicyViolation} instead of making the call. */
+        THROW,
+        /** Only count the violations, see {@link CryptoPolicyEnforcementMXBean}. */
+        METRICS
+    }
+
+    /**
+     * Distinct values that are logged per call site, after which the violations of the site are only counted.
+     */
+    static final int MAX_LOGGED_VALUES = 16;
+
+    private static final Logger LOGGER = Logger.getLogger(Enforcer.class.getName());
+
+    private static final Object LOCK = new Object();
+    private static final Map<List<CryptoPolicy>, VerdictTable> TABLES = new HashMap<>();
+    private static final LongAdder VIOLATIONS = new LongAdder();
+    private static final LongAdder WARNINGS = new LongAdder();
+    private static final Properties MESSAGES = loadMessages();
+
+    private static volatile Mode mode = Mode.LOG;
+
+    /**
+     * Indexed by the ids of the call sites. Registering a site writes it into the array before the array is
+     * published, so a reader that sees the array sees the site.
+     */
+    private static volatile CallSite[] sites = new CallSite[64];
+    private static int siteCount;
+
+    private Enforcer() {
+    }
+
+    /**
+     * Check a value at a call site; called by the instrumented code before the call.
+     *
+     * @param value the argument of a parameter with a policy.
+     * @param site  the id of the call site.
+     * @throws CryptoPolicyViolation in the {@link Mode#THROW} mode, if the policy does not allow the value.
+     */
+    public static void check(final String value, final int site) {
+        if (value == null) {
+            // the method will complain about it.
+            return;
+        }
+        final CallSite[] registered = sites;
+        CallSite callSite = site < registered.length ? registered[site] : null;
+        if (callSite == null) {
+            callSite = lookup(site);
+        }
+        final PolicyVerdict verdict = callSite.table.get(value);
+        if (verdict.getErrorMessage() != null || verdict.getWarningMessage() != null) {
+            disallowed(callSite, value, verdict);
+        }
+    }
+
+    /**
+     * The class of a call site can only run after the site is registered, but without a happens-before edge from
+     * the registration, so a thread may see an older array; the lock gives it the current one.
+     */
+    private static CallSite lookup(final int site) {
+        synchronized (LOCK) {
+            return sites[site];
+        }
+    }
+
+    private static void disallowed(final CallSite site, final String value, final PolicyVerdict verdict) {
+        final Mode currentMode = mode;
+        if (verdict.getErrorMessage() != null) {
+            VIOLATIONS.increment();
+            if (currentMode == Mode.THROW) {
+                throw new CryptoPolicyViolation(site.location + ": "
+                                                + message("crypto.policy.violation", verdict.getErrorMessage()));
+            }
+            if (currentMode == Mode.LOG && site.firstTime(value)) {
+                LOGGER.log(Level.WARNING, "{0}: {1}",
+                           new Object[] {site.location, message("crypto.policy.violation",
+                                                                verdict.getErrorMessage())});
+            }
+        } else {
+            WARNINGS.increment();
+            if (currentMode != Mode.METRICS && site.firstTime(value)) {
+                LOGGER.log(Level.WARNING, "{0}: {1}",
+                           new Object[] {site.location, message("crypto.policy.warning",
+                                                                verdict.getWarningMessage())});
+            }
+        }
+    }
+
+    private static String message(final String key, final String algorithms) {
+        return String.format(MESSAGES.getProperty(key, key + ": %s"), algorithms);
+    }
+
+    private static Properties loadMessages() {
+        final Properties messages = new Properties();
+        try (InputStream in = CryptoPolicyComplianceChecker.class.getResourceAsStream("messages.properties")) {
+            if (in != null) {
+                messages.load(in);
+            }
+        } catch (IOException e) {
+            // the keys are the messages.
+        }
+        return messages;
+    }
+
+    /**
+     * Register a call site, sharing the verdicts of its policies with the other sites that have the same ones.
+     *
+     * @param whiteList the white list of the parameter, or null.
+     * @param blackList the black list of the parameter, or null.
+     * @param service   the simple name of the class that declares the method, like "Cipher", to evaluate the
+     *                  algorithms of the JCA service of that name ahead of time.
+     * @param location  the call site, like an element of a stack trace.
+     * @return the id of the call site.
+     */
+    static int register(final CryptoPolicy whiteList,
+                        final CryptoPolicy blackList,
+                        final String service,
+                        final String location) {
+        final VerdictTable table;
+        synchronized (LOCK) {
+            final List<CryptoPolicy> key = Arrays.asList(whiteList, blackList);
+            final VerdictTable existing = TABLES.get(key);
+            if (existing != null) {
+                table = existing;
+            } else {
+                table = new VerdictTable(whiteList, blackList);
+                TABLES.put(key, table);
+            }
+        }
+        if (table.size() == 0) {
+            // empty for a service that is not a JCA service.
+            table.precompute(Security.getAlgorithms(service));
+        }
+        synchronized (LOCK) {
+            CallSite[] registered = sites;
+            if (siteCount == registered.length) {
+                registered = Arrays.copyOf(registered, registered.length * 2);
+            }
+            registered[siteCount] = new CallSite(table, location);
+            sites = registered;
+            return siteCount++;
+        }
+    }
+
+    /**
+     * @param newMode what to do about violations from now on.
+     */
+    public static void setMode(final Mode newMode) {
+        mode = newMode;
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of calls with a value that a policy does not allow, in any mode.
+     */
+    public static long getViolationCount() {
+        return VIOLATIONS.sum();
+    }
+
+    /**
+     * @return the number of calls with a value that warrants a warning.
+     */
+    public static long getWarningCount() {
+        return WARNINGS.sum();
+    }
+
+    /**
+     * @return the number of instrumented call sites.
+     */
+    public static int getCallSiteCount() {
+        synchronized (LOCK) {
+            return siteCount;
+        }
+    }
+
+    private static final class CallSite {
+        private final VerdictTable table;
+        private final String location;
+        private final Set<String> loggedValues = ConcurrentHashMap.newKeySet();
+
+        CallSite(final VerdictTable table, final String location) {
+            this.table = table;
+            this.location = location;
+        }
+
+        /**
+         * @return true if the value has not been logged at this site and the site may log more values.
+         */
+        boolean firstTime(final String value) {
+            return loggedValues.size() < MAX_LOGGED_VALUES && loggedValues.add(value);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Inserts a call to {@link Enforcer#check} before every call of a method or constructor whose String parameters
+ * have a {@code @CryptoWhiteListed} or {@code @CryptoBlackListed} policy in the {@link StubPolicies}, for each of
+ * those arguments. The call sites in the application are instrumented, not the JDK's methods, so the JDK's own
+ * calls are not checked, and neither are the classes of class loaders that cannot see the {@link Enforcer}.
+ * The arguments are kept in new local variables while they are checked, which leaves the stack map frames valid.
+ */
+public final class PolicyTransformer implements ClassFileTransformer {
+
+    private static final Logger LOGGER = Logger.getLogger(PolicyTransformer.class.getName());
+
+    private static final String ENFORCER = Type.getInternalName(Enforcer.class);
+    private static final String CHECK_DESCRIPTOR = "(Ljava/lang/String;I)V";
+
+    /**
+     * Classes that are never instrumented: the JDK's, and those of the agent and its dependencies.
+     */
+    private static final String[] EXCLUDED_PREFIXES = {
+        "java/", "javax/", "jdk/", "sun/", "com/sun/",
+        "com/amazon/checkerframework/cryptopolicy/", "org/checkerframework/", "org/objectweb/asm/"
+    };
+
+    private final StubPolicies policies;
+    private final Map<ClassLoader, Boolean> seesEnforcer = new WeakHashMap<>();
+
+    /**
+     * @param policies the policies of the stubs.
+     */
+    public PolicyTransformer(final StubPolicies policies) {
+        this.policies = policies;
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String className,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] classfileBuffer) {
+        if (loader == null || className == null || classBeingRedefined != null || isExcluded(className)) {
+            return null;
+        }
+        try {
+            final ClassReader reader = new ClassReader(classfileBuffer);
+            if (!policies.isReferencedBy(reader) || !seesEnforcer(loader)) {
+                return null;
+            }
+            final ClassNode node = new ClassNode();
+            reader.accept(node, 0);
+            boolean instrumented = false;
+            for (MethodNode method : node.methods) {
+                instrumented |= instrument(node, method);
+            }
+            if (!instrumented) {
+                return null;
+            }
+            final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+            node.accept(writer);
+            return writer.toByteArray();
+        } catch (RuntimeException | LinkageError e) {
+            // never keep a class from loading, it is just not enforced.
+            LOGGER.log(Level.WARNING, "Cannot instrument " + className, e);
+            return null;
+        }
+    }
+
+    private static boolean isExcluded(final String className) {
+        for (String prefix : EXCLUDED_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized boolean seesEnforcer(final ClassLoader loader) {
+        return seesEnforcer.computeIfAbsent(loader, key -> {
+            try {
+                return Class.forName(Enforcer.class.getName(), false, key) == Enforcer.class;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+
+    private boolean instrument(final ClassNode owner, final MethodNode method) {
+        if (method.instructions.size() == 0) {
+            return false;
+        }
+        boolean instrumented = false;
+        int line = -1;
+        for (AbstractInsnNode instruction : method.instructions.toArray()) {
+            if (instruction instanceof LineNumberNode) {
+                line = ((LineNumberNode) instruction).line;
+                continue;
+            }
+            if (!(instruction instanceof MethodInsnNode)) {
+                continue;
+            }
+            final MethodInsnNode call = (MethodInsnNode) instruction;
+            final StubPolicies.Callable callable = policies.lookup(call.owner, call.name, call.desc);
+            if (callable == null) {
+                continue;
+            }
+            final Type[] argumentTypes = Type.getArgumentTypes(call.desc);
+            final List<Integer> checked = new ArrayList<>();
+            final List<Integer> siteIds = new ArrayList<>();
+            for (int parameter = 0; parameter < argumentTypes.length; parameter++) {
+                final CryptoPolicy whiteList = callable.getWhiteList(parameter);
+                final CryptoPolicy blackList = callable.getBlackList(parameter);
+                if ((whiteList != null || blackList != null)
+                    && argumentTypes[parameter].getDescriptor().equals("Ljava/lang/String;")) {
+                    checked.add(parameter);
+                    siteIds.add(Enforcer.register(whiteList, blackList, simpleName(call.owner),
+                                                  location(owner, method, line)));
+                }
+            }
+            if (!checked.isEmpty()) {
+                method.instructions.insertBefore(call, checks(method, argumentTypes, checked, siteIds));
+                instrumented = true;
+            }
+        }
+        return instrumented;
+    }
+
+    /**
+     * @return the instructions that check the arguments on top of the stack and leave them there.
+     */
+    private static InsnList checks(final MethodNode method,
+                                   final Type[] argumentTypes,
+                                   final List<Integer> checked,
+                                   final List<Integer> siteIds) {
+        final InsnList instructions = new InsnList();
+        final int last = argumentTypes.length - 1;
+        if (checked.size() == 1 && checked.get(0) == last) {
+            // the common case, like Cipher.getInstance(String), needs no local variables.
+            instructions.add(new InsnNode(Opcodes.DUP));
+            instructions.add(check(siteIds.get(0)));
+            return instructions;
+        }
+        final int[] locals = new int[argumentTypes.length];
+        for (int i = 0; i < argumentTypes.length; i++) {
+            locals[i] = method.maxLocals;
+            method.maxLocals += argumentTypes[i].getSize();
+        }
+        for (int i = last; i >= 0; i--) {
+            instructions.add(new VarInsnNode(argumentTypes[i].getOpcode(Opcodes.ISTORE), locals[i]));
+        }
+        for (int i = 0; i < checked.size(); i++) {
+            instructions.add(new VarInsnNode(Opcodes.ALOAD, locals[checked.get(i)]));
+            instructions.add(check(siteIds.get(i)));
+        }
+        for (int i = 0; i <= last; i++) {
+            instructions.add(new VarInsnNode(argumentTypes[i].getOpcode(Opcodes.ILOAD), locals[i]));
+        }
+        return instructions;
+    }
+
+    /**
+     * @return the instructions that check the String on top of the stack and pop it.
+     */
+    private static InsnList check(final int siteId) {
+        final InsnList instructions = new InsnList();
+        instructions.add(new LdcInsnNode(siteId));
+        instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, ENFORCER, "check", CHECK_DESCRIPTOR, false));
+        return instructions;
+    }
+
+    private static String simpleName(final String internalName) {
+        return internalName.substring(Math.max(internalName.lastIndexOf('/'), internalName.lastIndexOf('$')) + 1);
+    }
+
+    /**
+     * @return the call site like an element of a stack trace, e.g. "com.example.Foo.bar(Foo.java:12)".
+     */
+    private static String location(final ClassNode owner, final MethodNode method, final int line) {
+        return owner.name.replace('/', '.') + "." + method.name + "("
+               + (owner.sourceFile == null ? "Unknown Source" : owner.sourceFile)
+               + (line < 0 ? "" : ":" + line) + ")";
+    }
+}
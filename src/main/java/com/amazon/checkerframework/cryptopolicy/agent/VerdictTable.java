@@ -0,0 +1,119 @@
+package com.amazon.checkerframework.cryptopolicy.agent;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.PolicyVerdict;
+import com.amazon.checkerframework.cryptopolicy.VerdictCache;
+
+/**
+ * The verdicts of one white and black list pair for the values that reach it at runtime, for the {@link Enforcer}.
+ * A lookup hashes the value, which String caches, and probes an open-addressing array of immutable entries with
+ * plain volatile reads, so a value that was seen before is answered without locks or allocation. A new value is
+ * evaluated once and published with a compare-and-set; two threads that miss on it at the same time may both
+ * evaluate it, which only costs time. The table is bounded: once it is half full, new values are evaluated through
+ * the {@link VerdictCache} on every call instead of being added, so configuration that produces unbounded
+ * distinct names cannot exhaust memory.
+ */
+final class VerdictTable {
+
+    /**
+     * Number of slots, a power of two.
+     */
+    static final int CAPACITY = 1024;
+
+    private static final int MAX_ENTRIES = CAPACITY / 2;
+
+    private final CryptoPolicy whiteList;
+    private final CryptoPolicy blackList;
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicInteger size = new AtomicInteger();
+
+    VerdictTable(final CryptoPolicy whiteList, final CryptoPolicy blackList) {
+        this.whiteList = whiteList;
+        this.blackList = blackList;
+    }
+
+    /**
+     * Evaluate values ahead of time, like the algorithm names that the installed providers offer, so that the first
+     * call with one of them does not pay for evaluating it.
+     *
+     * @param values the values.
+     */
+    void precompute(final Iterable<String> values) {
+        for (String value : values) {
+            get(value);
+        }
+    }
+
+    /**
+     * @param value a value that reaches the policies at runtime.
+     * @return the verdict for the value.
+     */
+    PolicyVerdict get(final String value) {
+        final int hash = value.hashCode();
+        int index = spread(hash);
+        for (int probe = 0; probe < CAPACITY; probe++) {
+            final Entry entry = entries.get(index);
+            if (entry == null) {
+                break;
+            }
+            if (entry.hash == hash && (entry.value == value || entry.value.equals(value))) {
+                return entry.verdict;
+            }
+            index = (index + 1) & (CAPACITY - 1);
+        }
+        final PolicyVerdict verdict = evaluate(value);
+        if (size.get() < MAX_ENTRIES) {
+            insert(new Entry(value, hash, verdict));
+        }
+        return verdict;
+    }
+
+    private PolicyVerdict evaluate(final String value) {
+        // like the checker, which compares the lower-cased values of an argument.
+        return VerdictCache.getInstance().getVerdict(whiteList, blackList,
+                                                     Collections.singletonList(value.toLowerCase()));
+    }
+
+    private void insert(final Entry entry) {
+        int index = spread(entry.hash);
+        for (int probe = 0; probe < CAPACITY; probe++) {
+            final Entry existing = entries.get(index);
+            if (existing == null) {
+                if (entries.compareAndSet(index, null, entry)) {
+                    size.incrementAndGet();
+                    return;
+                }
+                // another thread took the slot, look at what it put there.
+                continue;
+            }
+            if (existing.hash == entry.hash && existing.value.equals(entry.value)) {
+                return;
+            }
+            index = (index + 1) & (CAPACITY - 1);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private static int spread(final int hash) {
+        return (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final int hash;
+        private final PolicyVerdict verdict;
+
+        Entry(final String value, final int hash, final PolicyVerdict verdict) {
+            this.value = value;
+            this.hash = hash;
+            this.verdict = verdict;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.amazon.checkerframework.cryptopolicy.bytecode;
+
+import javax.tools.Diagnostic;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+
+/**
+ * Audits compiled code that cannot be recompiled under the checker, such as third-party jars: finds the calls to
+ * the methods and constructors that the stub files annotate with {@code @CryptoWhiteListed} or
+ * {@code @CryptoBlackListed} and checks their constant arguments like the checker would. Jars (including jars
+ * nested in jars), directories and single class files are scanned in parallel, in batches of class files, and
+ * findings are written as soon as a class is done, in no particular order.
+ * <p>
+ * Usage: {@code BytecodeScanner [--stubs paths] [--threads n] [--out file] jar|directory|class...}
+ * <p>
+ * The exit status is 1 if any error was found and 2 if an input could not be read.
+ */
+public final class BytecodeScanner {
+
+    /**
+     * Class files per task; large enough to amortize scheduling, small enough to keep all cores busy on one jar.
+     */
+    static final int BATCH_SIZE = 256;
+
+    private final StubPolicies policies;
+    private final Properties messages;
+    private final int threads;
+    private final ThreadLocal<ClassScanner> scanners;
+    private final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[][] {new byte[64 * 1024]});
+
+    /**
+     * @param policies the policies from the stub files.
+     * @param threads  the number of threads to scan with.
+     * @throws IOException if the checker's messages cannot be read.
+     */
+    public BytecodeScanner(final StubPolicies policies, final int threads) throws IOException {
+        this.policies = policies;
+        this.threads = threads;
+        this.messages = new Properties();
+        try (InputStream in = CryptoPolicyComplianceChecker.class.getResourceAsStream("messages.properties")) {
+            if (in != null) {
+                messages.load(in);
+            }
+        }
+        this.scanners = ThreadLocal.withInitial(() -> new ClassScanner(policies, messages));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        String stubs = "stubs";
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = null;
+        final List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stubs":
+                    stubs = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+                    break;
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: BytecodeScanner [--stubs paths] [--threads n] [--out file] "
+                               + "jar|directory|class...");
+            System.exit(2);
+        }
+
+        final BytecodeScanner scanner = new BytecodeScanner(StubPolicies.load(stubs), threads);
+        final Summary summary;
+        try (Writer writer = out == null
+                             ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                             : Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            summary = scanner.scan(inputs, finding -> {
+                try {
+                    writer.write(finding.toString());
+                    writer.write(System.lineSeparator());
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        System.err.println(summary);
+        System.exit(summary.getUnreadable() > 0 ? 2 : summary.getErrors() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Scan jars, directories and class files. Directories are searched for class files and jars.
+     *
+     * @param inputs the inputs.
+     * @param sink   receives the findings, one class at a time, from any thread but never concurrently.
+     * @return the counts of the scan.
+     * @throws IOException if an input or directory cannot be listed; unreadable class files and jar entries are
+     *     only counted.
+     */
+    public Summary scan(final List<Path> inputs, final Consumer<Finding> sink) throws IOException {
+        final long start = System.nanoTime();
+        final Summary summary = new Summary();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "bytecode-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        try {
+            for (Path input : inputs) {
+                if (Files.isDirectory(input)) {
+                    final List<Path> classFiles = new ArrayList<>();
+                    try (Stream<Path> paths = Files.walk(input)) {
+                        for (Path path : paths.sorted().collect(Collectors.toList())) {
+                            if (isJar(path.toString())) {
+                                submitJar(path, executor, summary, sink, tasks);
+                            } else if (path.toString().endsWith(".class")) {
+                                classFiles.add(path);
+                            }
+                        }
+                    }
+                    submitClassFiles(classFiles, executor, summary, sink, tasks);
+                } else if (input.toString().endsWith(".class")) {
+                    submitClassFiles(Collections.singletonList(input), executor, summary, sink, tasks);
+                } else {
+                    submitJar(input, executor, summary, sink, tasks);
+                }
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        summary.millis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    private void submitClassFiles(final List<Path> classFiles,
+                                  final ExecutorService executor,
+                                  final Summary summary,
+                                  final Consumer<Finding> sink,
+                                  final List<CompletableFuture<Void>> tasks) {
+        for (int from = 0; from < classFiles.size(); from += BATCH_SIZE) {
+            final List<Path> batch = classFiles.subList(from, Math.min(from + BATCH_SIZE, classFiles.size()));
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (Path classFile : batch) {
+                    try (InputStream in = Files.newInputStream(classFile)) {
+                        scanClass(in, (int) Files.size(classFile), classFile.toString(), summary, sink);
+                    } catch (IOException | RuntimeException e) {
+                        unreadable(classFile.toString(), e, summary);
+                    }
+                }
+            }, executor));
+        }
+    }
+
+    private void submitJar(final Path jar,
+                           final ExecutorService executor,
+                           final Summary summary,
+                           final Consumer<Finding> sink,
+                           final List<CompletableFuture<Void>> tasks) {
+        final ZipFile zip;
+        try {
+            // ZipFile reads the central directory once and lets every thread inflate its own entries.
+            zip = new ZipFile(jar.toFile());
+        } catch (IOException e) {
+            unreadable(jar.toString(), e, summary);
+            return;
+        }
+        summary.containers.increment();
+        final List<ZipEntry> classFiles = new ArrayList<>();
+        final List<CompletableFuture<Void>> jarTasks = new ArrayList<>();
+        for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+            final ZipEntry entry = entries.nextElement();
+            if (entry.getName().endsWith(".class")) {
+                classFiles.add(entry);
+            } else if (isJar(entry.getName())) {
+                final String location = jar + "!/" + entry.getName();
+                jarTasks.add(CompletableFuture.runAsync(() -> {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        scanNestedJar(in, location, summary, sink);
+                    } catch (IOException | RuntimeException e) {
+                        unreadable(location, e, summary);
+                    }
+                }, executor));
+            }
+        }
+        for (int from = 0; from < classFiles.size(); from += BATCH_SIZE) {
+            final List<ZipEntry> batch = classFiles.subList(from, Math.min(from + BATCH_SIZE, classFiles.size()));
+            jarTasks.add(CompletableFuture.runAsync(() -> {
+                for (ZipEntry entry : batch) {
+                    final String location = jar + "!/" + entry.getName();
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        scanClass(in, (int) entry.getSize(), location, summary, sink);
+                    } catch (IOException | RuntimeException e) {
+                        unreadable(location, e, summary);
+                    }
+                }
+            }, executor));
+        }
+        tasks.add(CompletableFuture.allOf(jarTasks.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, e) -> {
+            try {
+                zip.close();
+            } catch (IOException closeFailure) {
+                // nothing left to read.
+            }
+        }));
+    }
+
+    /**
+     * Jars inside jars, like the libraries of a fat jar, cannot be opened as a {@link ZipFile} and are streamed
+     * in one task.
+     */
+    private void scanNestedJar(final InputStream in,
+                               final String location,
+                               final Summary summary,
+                               final Consumer<Finding> sink) throws IOException {
+        summary.containers.increment();
+        final ZipInputStream zip = new ZipInputStream(in);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            final String entryLocation = location + "!/" + entry.getName();
+            if (entry.getName().endsWith(".class")) {
+                try {
+                    scanClass(zip, (int) entry.getSize(), entryLocation, summary, sink);
+                } catch (RuntimeException e) {
+                    unreadable(entryLocation, e, summary);
+                }
+            } else if (isJar(entry.getName())) {
+                scanNestedJar(zip, entryLocation, summary, sink);
+            }
+        }
+    }
+
+    /**
+     * Read the class file into the buffer of this thread and scan it.
+     *
+     * @param size the size of the class file, or -1 if it is not known.
+     */
+    private void scanClass(final InputStream in,
+                           final int size,
+                           final String location,
+                           final Summary summary,
+                           final Consumer<Finding> sink) throws IOException {
+        final byte[][] buffer = buffers.get();
+        if (size > buffer[0].length) {
+            buffer[0] = new byte[size];
+        }
+        int length = 0;
+        for (int read; (read = in.read(buffer[0], length, buffer[0].length - length)) != -1;) {
+            length += read;
+            if (length == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], buffer[0].length * 2);
+            }
+        }
+        summary.classes.increment();
+        final List<Finding> findings = new ArrayList<>();
+        if (!scanners.get().scan(buffer[0], length, location, findings)) {
+            summary.skippedClasses.increment();
+        }
+        if (findings.isEmpty()) {
+            return;
+        }
+        for (Finding finding : findings) {
+            if (finding.getKind() == Diagnostic.Kind.ERROR) {
+                summary.errors.increment();
+            } else {
+                summary.warnings.increment();
+            }
+        }
+        synchronized (sink) {
+            findings.forEach(sink);
+        }
+    }
+
+    private static void unreadable(final String location, final Exception e, final Summary summary) {
+        summary.unreadable.increment();
+        System.err.println(location + ": cannot be scanned: " + e);
+    }
+
+    private static boolean isJar(final String name) {
+        return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear") || name.endsWith(".zip");
+    }
+
+    /**
+     * The counts of a scan.
+     */
+    public static final class Summary {
+        private final LongAdder containers = new LongAdder();
+        private final LongAdder classes = new LongAdder();
+        private final LongAdder skippedClasses = new LongAdder();
+        private final LongAdder unreadable = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder warnings = new LongAdder();
+        private long millis;
+
+        public long getClasses() {
+            return classes.sum();
+        }
+
+        /**
+         * @return the classes that do not refer to any class with policies and were not analyzed.
+         */
+        public long getSkippedClasses() {
+            return skippedClasses.sum();
+        }
+
+        /**
+         * @return the jars, class files and jar entries that could not be read or parsed.
+         */
+        public long getUnreadable() {
+            return unreadable.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getWarnings() {
+            return warnings.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Scanned " + getClasses() + " classes in " + containers.sum() + " jars in " + millis + " ms ("
+                   + getSkippedClasses() + " without policy calls, " + getUnreadable() + " unreadable): "
+                   + getErrors() + " errors, " + getWarnings() + " warnings";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.amazon.checkerframework.cryptopolicy.bytecode;
+
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.PolicyVerdict;
+import com.amazon.checkerframework.cryptopolicy.VerdictCache;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+
+/**
+ * Checks the calls in one class file against the {@link StubPolicies}, with the same verdicts as the checker:
+ * an argument with known values is checked against the white and black lists of its parameter, and an argument
+ * whose values the {@link ConstantStringInterpreter} cannot tell is reported as an unknown algorithm.
+ * Instances are not thread-safe.
+ */
+final class ClassScanner {
+
+    private final StubPolicies policies;
+    private final Properties messages;
+
+    ClassScanner(final StubPolicies policies, final Properties messages) {
+        this.policies = policies;
+        this.messages = messages;
+    }
+
+    /**
+     * Scan a class file.
+     *
+     * @param bytes    a buffer holding the class file.
+     * @param length   the length of the class file, which starts at offset 0.
+     * @param location the class file, for the findings.
+     * @param findings receives the findings.
+     * @return false if the class does not refer to any class with policies, and was not analyzed.
+     */
+    boolean scan(final byte[] bytes, final int length, final String location, final List<Finding> findings) {
+        final ClassReader reader = new ClassReader(bytes, 0, length);
+        if (!policies.isReferencedBy(reader)) {
+            return false;
+        }
+        final ClassNode node = new ClassNode();
+        reader.accept(node, ClassReader.SKIP_FRAMES);
+        for (MethodNode method : node.methods) {
+            scanMethod(node, method, location, findings);
+        }
+        return true;
+    }
+
+    private void scanMethod(final ClassNode owner,
+                            final MethodNode method,
+                            final String location,
+                            final List<Finding> findings) {
+        Frame<ConstantStringInterpreter.StringValue>[] frames = null;
+        boolean analyzed = false;
+        int line = -1;
+        final AbstractInsnNode[] instructions = method.instructions.toArray();
+        for (int i = 0; i < instructions.length; i++) {
+            final AbstractInsnNode instruction = instructions[i];
+            if (instruction instanceof LineNumberNode) {
+                line = ((LineNumberNode) instruction).line;
+                continue;
+            }
+            if (!(instruction instanceof MethodInsnNode)) {
+                continue;
+            }
+            final MethodInsnNode call = (MethodInsnNode) instruction;
+            final StubPolicies.Callable callable = policies.lookup(call.owner, call.name, call.desc);
+            if (callable == null) {
+                continue;
+            }
+            final int argumentCount = Type.getArgumentTypes(call.desc).length;
+            // most methods have no policy calls, so only those that do are analyzed.
+            if (!analyzed) {
+                analyzed = true;
+                try {
+                    frames = new Analyzer<>(new ConstantStringInterpreter()).analyze(owner.name, method);
+                } catch (AnalyzerException e) {
+                    // every argument is unknown.
+                    frames = null;
+                }
+            }
+            final Frame<ConstantStringInterpreter.StringValue> frame = frames == null ? null : frames[i];
+            if (frames != null && frame == null) {
+                // unreachable code.
+                continue;
+            }
+            final String methodName = owner.name.replace('/', '.') + "." + method.name;
+            for (int parameter = 0; parameter < callable.getParameterCount(); parameter++) {
+                final CryptoPolicy whiteList = callable.getWhiteList(parameter);
+                final CryptoPolicy blackList = callable.getBlackList(parameter);
+                if (whiteList == null && blackList == null) {
+                    continue;
+                }
+                final Set<String> values = frame == null
+                    ? null
+                    : frame.getStack(frame.getStackSize() - argumentCount + parameter).getValues();
+                check(whiteList, blackList, values, location, line, methodName, findings);
+            }
+        }
+    }
+
+    private void check(final CryptoPolicy whiteList,
+                       final CryptoPolicy blackList,
+                       final Set<String> values,
+                       final String location,
+                       final int line,
+                       final String method,
+                       final List<Finding> findings) {
+        if (values == null) {
+            findings.add(finding(location, line, method, Diagnostic.Kind.ERROR, "crypto.cipher.unknown"));
+            return;
+        }
+        final List<String> candidates = new ArrayList<>(values.size());
+        for (String value : values) {
+            candidates.add(value.toLowerCase());
+        }
+        final PolicyVerdict verdict = VerdictCache.getInstance().getVerdict(whiteList, blackList, candidates);
+        if (verdict.getWarningMessage() != null) {
+            findings.add(finding(location, line, method, Diagnostic.Kind.WARNING, "crypto.policy.warning",
+                                 verdict.getWarningMessage()));
+        }
+        if (verdict.getErrorMessage() != null) {
+            findings.add(finding(location, line, method, Diagnostic.Kind.ERROR, "crypto.policy.violation",
+                                 verdict.getErrorMessage()));
+        }
+    }
+
+    private Finding finding(final String location,
+                            final int line,
+                            final String method,
+                            final Diagnostic.Kind kind,
+                            final String messageKey,
+                            final Object... arguments) {
+        final String message = String.format(messages.getProperty(messageKey, messageKey), arguments);
+        return new Finding(location, line, method, kind, messageKey, message);
+    }
+}
@@ -0,0 +1,177 @@
+package com.amazon.checkerframework.cryptopolicy.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.Value;
+
+/**
+ * Tracks the possible values of strings through the locals and the operand stack of a method, the bytecode
+ * counterpart of the Value Checker's {@code @StringVal}: string constants loaded with {@code ldc} keep their value
+ * through loads, stores, casts and a few value-preserving String methods, and merge into sets at join points.
+ * Everything else, like parameters, fields and concatenations, is unknown.
+ */
+final class ConstantStringInterpreter extends Interpreter<ConstantStringInterpreter.StringValue> {
+
+    /**
+     * Like the Value Checker, give up on a string with more possible values than this.
+     */
+    static final int MAX_VALUES = 10;
+
+    private final BasicInterpreter basic = new BasicInterpreter();
+
+    ConstantStringInterpreter() {
+        super(Opcodes.ASM9);
+    }
+
+    @Override
+    public StringValue newValue(final Type type) {
+        return StringValue.unknown(basic.newValue(type));
+    }
+
+    @Override
+    public StringValue newOperation(final AbstractInsnNode insn) throws AnalyzerException {
+        final BasicValue value = basic.newOperation(insn);
+        if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst instanceof String) {
+            return new StringValue(value, Collections.singleton((String) ((LdcInsnNode) insn).cst));
+        }
+        return StringValue.unknown(value);
+    }
+
+    @Override
+    public StringValue copyOperation(final AbstractInsnNode insn, final StringValue value) {
+        return value;
+    }
+
+    @Override
+    public StringValue unaryOperation(final AbstractInsnNode insn, final StringValue value) throws AnalyzerException {
+        final BasicValue result = basic.unaryOperation(insn, value.basic);
+        if (insn.getOpcode() == Opcodes.CHECKCAST && "java/lang/String".equals(((TypeInsnNode) insn).desc)) {
+            return new StringValue(result, value.values);
+        }
+        return StringValue.unknown(result);
+    }
+
+    @Override
+    public StringValue binaryOperation(final AbstractInsnNode insn,
+                                       final StringValue value1,
+                                       final StringValue value2) throws AnalyzerException {
+        return StringValue.unknown(basic.binaryOperation(insn, value1.basic, value2.basic));
+    }
+
+    @Override
+    public StringValue ternaryOperation(final AbstractInsnNode insn,
+                                        final StringValue value1,
+                                        final StringValue value2,
+                                        final StringValue value3) throws AnalyzerException {
+        return StringValue.unknown(basic.ternaryOperation(insn, value1.basic, value2.basic, value3.basic));
+    }
+
+    @Override
+    public StringValue naryOperation(final AbstractInsnNode insn,
+                                     final List<? extends StringValue> values) throws AnalyzerException {
+        final List<BasicValue> basicValues = new ArrayList<>(values.size());
+        for (StringValue value : values) {
+            basicValues.add(value.basic);
+        }
+        final BasicValue result = basic.naryOperation(insn, basicValues);
+        if (insn.getOpcode() == Opcodes.INVOKEVIRTUAL && values.size() == 1) {
+            final MethodInsnNode call = (MethodInsnNode) insn;
+            final Set<String> receiver = values.get(0).getValues();
+            if ("java/lang/String".equals(call.owner) && receiver != null
+                && call.desc.equals("()Ljava/lang/String;")) {
+                switch (call.name) {
+                    case "toString":
+                    case "intern":
+                    // policies are matched case-insensitively.
+                    case "toLowerCase":
+                    case "toUpperCase":
+                        return new StringValue(result, receiver);
+                    case "trim":
+                        final Set<String> trimmed = new TreeSet<>();
+                        receiver.forEach(string -> trimmed.add(string.trim()));
+                        return new StringValue(result, trimmed);
+                    default:
+                        break;
+                }
+            }
+        }
+        return StringValue.unknown(result);
+    }
+
+    @Override
+    public void returnOperation(final AbstractInsnNode insn, final StringValue value, final StringValue expected) {
+    }
+
+    @Override
+    public StringValue merge(final StringValue value1, final StringValue value2) {
+        final BasicValue merged = basic.merge(value1.basic, value2.basic);
+        Set<String> values = null;
+        if (value1.values != null && value2.values != null) {
+            values = new TreeSet<>(value1.values);
+            values.addAll(value2.values);
+            if (values.size() > MAX_VALUES) {
+                values = null;
+            }
+        }
+        final StringValue result = new StringValue(merged, values);
+        return result.equals(value1) ? value1 : result;
+    }
+
+    /**
+     * A value in a frame: its basic type and, for strings, the set of possible values or null if they are unknown.
+     */
+    static final class StringValue implements Value {
+        private final BasicValue basic;
+        private final Set<String> values;
+
+        private StringValue(final BasicValue basic, final Set<String> values) {
+            this.basic = basic;
+            this.values = values == null ? null : Collections.unmodifiableSet(values);
+        }
+
+        private static StringValue unknown(final BasicValue basic) {
+            return basic == null ? null : new StringValue(basic, null);
+        }
+
+        /**
+         * @return the possible values of the string, or null if they are unknown.
+         */
+        Set<String> getValues() {
+            return values;
+        }
+
+        @Override
+        public int getSize() {
+            return basic.getSize();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof StringValue)) {
+                return false;
+            }
+            final StringValue that = (StringValue) other;
+            return basic.equals(that.basic) && Objects.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(basic, values);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.amazon.checkerframework.cryptopolicy.bytecode;
+
+import javax.tools.Diagnostic;
+
+/**
+ * A policy violation, warning or unknown algorithm that the {@link BytecodeScanner} found at a call site in a
+ * class file. The message keys and texts are the ones the checker reports for the same problem in source code.
+ */
+public final class Finding {
+
+    private final String location;
+    private final int line;
+    private final String method;
+    private final Diagnostic.Kind kind;
+    private final String messageKey;
+    private final String message;
+
+    Finding(final String location,
+            final int line,
+            final String method,
+            final Diagnostic.Kind kind,
+            final String messageKey,
+            final String message) {
+        this.location = location;
+        this.line = line;
+        this.method = method;
+        this.kind = kind;
+        this.messageKey = messageKey;
+        this.message = message;
+    }
+
+    /**
+     * @return the class file, e.g. "lib/app.jar!/com/example/Foo.class" or "build/classes/com/example/Foo.class".
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the source line of the call, or -1 if the class file has no line numbers.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the calling method, e.g. "com.example.Foo.encrypt".
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return {@link Diagnostic.Kind#ERROR} or {@link Diagnostic.Kind#WARNING}.
+     */
+    public Diagnostic.Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the message key, e.g. "crypto.policy.violation".
+     */
+    public String getMessageKey() {
+        return messageKey;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the finding in the format of a javac diagnostic on a single line.
+     */
+    @Override
+    public String toString() {
+        return location + (line < 0 ? "" : ":" + line) + ": "
+               + (kind == Diagnostic.Kind.ERROR ? "error" : "warning") + ": [" + messageKey + "] " + message
+               + " (in " + method + ")";
+    }
+}
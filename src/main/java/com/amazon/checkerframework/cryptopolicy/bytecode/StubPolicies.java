@@ -0,0 +1,370 @@
+package com.amazon.checkerframework.cryptopolicy.bytecode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyCache;
+import com.amazon.checkerframework.cryptopolicy.StubPolicyIndex;
+import org.checkerframework.com.github.javaparser.ParseProblemException;
+import org.checkerframework.com.github.javaparser.StaticJavaParser;
+import org.checkerframework.com.github.javaparser.ast.CompilationUnit;
+import org.checkerframework.com.github.javaparser.ast.body.BodyDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.CallableDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.ConstructorDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.FieldDeclaration;
+import org.checkerframework.com.github.javaparser.ast.body.Parameter;
+import org.checkerframework.com.github.javaparser.ast.body.TypeDeclaration;
+import org.checkerframework.com.github.javaparser.ast.expr.AnnotationExpr;
+import org.checkerframework.com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import org.checkerframework.com.github.javaparser.ast.expr.Expression;
+import org.checkerframework.com.github.javaparser.ast.expr.MemberValuePair;
+import org.checkerframework.com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import org.checkerframework.com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import org.checkerframework.com.github.javaparser.ast.expr.StringLiteralExpr;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+/**
+ * The {@code @CryptoWhiteListed} and {@code @CryptoBlackListed} parameters of the methods and constructors declared
+ * in the stub files, for matching against method invocations in class files. Overloads are told apart by the
+ * simple names of their parameter types, which is all a stub file reliably gives.
+ */
+public final class StubPolicies {
+
+    private static final int CONSTANT_CLASS_TAG = 7;
+
+    /**
+     * Simple names of the qualifiers of the hierarchy below the top.
+     */
+    private static final Set<String> POLICY_QUALIFIERS = new HashSet<>(Arrays.asList(
+        "CryptoWhiteListed", "CryptoBlackListed", "CryptoPolicyBottom"));
+
+    private final Map<String, List<Callable>> callables = new HashMap<>();
+    private final Set<String> owners = new HashSet<>();
+    private final List<String> ignoredMembers = new ArrayList<>();
+
+    private StubPolicies() {
+    }
+
+    /**
+     * @param callables the policies of methods and constructors, e.g. read from a
+     *                  {@link com.amazon.checkerframework.cryptopolicy.index.PolicyIndex}.
+     * @return the policies.
+     */
+    public static StubPolicies of(final List<Callable> callables) {
+        final StubPolicies policies = new StubPolicies();
+        for (Callable callable : callables) {
+            policies.add(callable);
+        }
+        return policies;
+    }
+
+    /**
+     * Read the policies from stub files.
+     *
+     * @param stubsOption paths of stub files or directories, separated by {@link File#pathSeparator}, like -Astubs.
+     * @return the policies.
+     * @throws IOException if a stub cannot be read or parsed.
+     */
+    public static StubPolicies load(final String stubsOption) throws IOException {
+        final List<Path> stubFiles = StubPolicyIndex.findStubFiles(stubsOption);
+        if (stubFiles == null) {
+            throw new IOException("Cannot read the stubs " + stubsOption);
+        }
+        final StubPolicies policies = new StubPolicies();
+        for (Path stubFile : stubFiles) {
+            try {
+                for (CompilationUnit unit : StaticJavaParser.parseStubUnit(stubFile).getCompilationUnits()) {
+                    final String packagePrefix = unit.getPackageDeclaration()
+                                                     .map(declaration -> declaration.getNameAsString() + ".")
+                                                     .orElse("");
+                    for (TypeDeclaration<?> type : unit.getTypes()) {
+                        policies.addType((packagePrefix + type.getNameAsString()).replace('.', '/'), type);
+                    }
+                }
+            } catch (ParseProblemException e) {
+                throw new IOException("Cannot parse " + stubFile + ": " + e.getMessage(), e);
+            }
+        }
+        return policies;
+    }
+
+    private void addType(final String internalName, final TypeDeclaration<?> type) {
+        for (BodyDeclaration<?> member : type.getMembers()) {
+            if (member instanceof TypeDeclaration) {
+                final TypeDeclaration<?> nested = (TypeDeclaration<?>) member;
+                addType(internalName + "$" + nested.getNameAsString(), nested);
+            } else if (member instanceof CallableDeclaration) {
+                final String name = member instanceof ConstructorDeclaration
+                                    ? "<init>"
+                                    : ((CallableDeclaration<?>) member).getNameAsString();
+                final Callable callable = toCallable(internalName, name, (CallableDeclaration<?>) member);
+                if (callable != null) {
+                    add(callable);
+                }
+                if (countPolicyQualifiers(member) > countParameterPolicies(callable)) {
+                    ignoredMembers.add(memberName(internalName, name));
+                }
+            } else if (member instanceof FieldDeclaration && countPolicyQualifiers(member) > 0) {
+                ignoredMembers.add(memberName(internalName,
+                                              ((FieldDeclaration) member).getVariable(0).getNameAsString()));
+            }
+        }
+    }
+
+    private static String memberName(final String internalName, final String name) {
+        return internalName.replace('/', '.') + "." + name;
+    }
+
+    private void add(final Callable callable) {
+        callables.computeIfAbsent(callable.owner + "." + callable.name, key -> new ArrayList<>()).add(callable);
+        owners.add(callable.owner);
+    }
+
+    /**
+     * @return the policy qualifiers anywhere in the declaration: on the member, its parameters and any type in its
+     *     signature.
+     */
+    private static long countPolicyQualifiers(final BodyDeclaration<?> member) {
+        return member.findAll(AnnotationExpr.class).stream()
+                     .filter(annotation -> POLICY_QUALIFIERS.contains(annotation.getName().getIdentifier()))
+                     .count();
+    }
+
+    private static long countParameterPolicies(final Callable callable) {
+        long count = 0;
+        for (int i = 0; callable != null && i < callable.getParameterCount(); i++) {
+            count += (callable.whiteLists[i] != null ? 1 : 0) + (callable.blackLists[i] != null ? 1 : 0);
+        }
+        return count;
+    }
+
+    /**
+     * @return the callable, or null if none of its parameters has a policy.
+     */
+    private static Callable toCallable(final String internalName,
+                                       final String name,
+                                       final CallableDeclaration<?> declaration) {
+        final List<Parameter> parameters = declaration.getParameters();
+        final String[] parameterTypes = new String[parameters.size()];
+        final CryptoPolicy[] whiteLists = new CryptoPolicy[parameters.size()];
+        final CryptoPolicy[] blackLists = new CryptoPolicy[parameters.size()];
+        boolean hasPolicy = false;
+        for (int i = 0; i < parameters.size(); i++) {
+            final Parameter parameter = parameters.get(i);
+            parameterTypes[i] = simpleTypeName(parameter.getType().asString()) + (parameter.isVarArgs() ? "[]" : "");
+            for (AnnotationExpr annotation : parameter.getAnnotations()) {
+                final String qualifier = annotation.getName().getIdentifier();
+                if ("CryptoWhiteListed".equals(qualifier)) {
+                    whiteLists[i] = CryptoPolicyCache.getInstance().getPolicy(
+                        CryptoPolicy.Kind.WHITELIST, strings(annotation, "value"), strings(annotation, "warnOn"));
+                    hasPolicy = true;
+                } else if ("CryptoBlackListed".equals(qualifier)) {
+                    blackLists[i] = CryptoPolicyCache.getInstance().getPolicy(
+                        CryptoPolicy.Kind.BLACKLIST, strings(annotation, "value"), Collections.emptyList());
+                    hasPolicy = true;
+                }
+            }
+        }
+        return hasPolicy ? new Callable(internalName, name, parameterTypes, whiteLists, blackLists) : null;
+    }
+
+    private static List<String> strings(final AnnotationExpr annotation, final String element) {
+        Expression value = null;
+        if (annotation instanceof SingleMemberAnnotationExpr && "value".equals(element)) {
+            value = ((SingleMemberAnnotationExpr) annotation).getMemberValue();
+        } else if (annotation instanceof NormalAnnotationExpr) {
+            for (MemberValuePair pair : ((NormalAnnotationExpr) annotation).getPairs()) {
+                if (pair.getNameAsString().equals(element)) {
+                    value = pair.getValue();
+                }
+            }
+        }
+        final List<String> strings = new ArrayList<>();
+        if (value instanceof ArrayInitializerExpr) {
+            for (Expression item : ((ArrayInitializerExpr) value).getValues()) {
+                if (item instanceof StringLiteralExpr) {
+                    strings.add(((StringLiteralExpr) item).asString());
+                }
+            }
+        } else if (value instanceof StringLiteralExpr) {
+            strings.add(((StringLiteralExpr) value).asString());
+        }
+        return strings;
+    }
+
+    /**
+     * @param typeName a source or binary type name, e.g. "java.util.Map.Entry&lt;K, V&gt;" or "java.util.Map$Entry".
+     * @return the simple name with array brackets, e.g. "Entry".
+     */
+    public static String simpleTypeName(final String typeName) {
+        String name = typeName;
+        final int typeArguments = name.indexOf('<');
+        if (typeArguments >= 0) {
+            name = name.substring(0, typeArguments) + name.substring(name.lastIndexOf('>') + 1);
+        }
+        name = name.replace(" ", "");
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+    }
+
+    /**
+     * @return the policies of all methods and constructors, sorted by class and name, overloads in the order of the
+     *     stubs.
+     */
+    public List<Callable> getCallables() {
+        final List<Callable> all = new ArrayList<>();
+        for (String key : new TreeSet<>(callables.keySet())) {
+            all.addAll(callables.get(key));
+        }
+        return all;
+    }
+
+    /**
+     * These policies only cover {@code @CryptoWhiteListed} and {@code @CryptoBlackListed} parameters; a policy
+     * qualifier on a field, on a return type, inside a type or a {@code @CryptoPolicyBottom} is not among them.
+     *
+     * @return the members of the stubs with such a qualifier, as "binary class name.member name".
+     */
+    public List<String> getIgnoredMembers() {
+        return Collections.unmodifiableList(ignoredMembers);
+    }
+
+    /**
+     * @param internalName the internal name of a class, e.g. "javax/crypto/Cipher".
+     * @return true if the stubs give a policy for a parameter of a method or constructor of the class.
+     */
+    public boolean hasPolicies(final String internalName) {
+        return owners.contains(internalName);
+    }
+
+    /**
+     * Every class whose methods a class calls has an entry in its constant pool, so looking at those entries rules
+     * out most classes without parsing any method.
+     *
+     * @param reader a class file.
+     * @return true if the class refers to a class with policies.
+     */
+    public boolean isReferencedBy(final ClassReader reader) {
+        final char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            final int offset = reader.getItem(i);
+            // offset is 0 for the second slot of long and double constants.
+            if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_CLASS_TAG
+                && hasPolicies(reader.readUTF8(offset, buffer))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param owner      the internal name of the class that declares the method.
+     * @param name       the name of the method, or {@code <init>}.
+     * @param descriptor the descriptor of the method.
+     * @return the policies of the method, or null if it has none.
+     */
+    public Callable lookup(final String owner, final String name, final String descriptor) {
+        if (!hasPolicies(owner)) {
+            return null;
+        }
+        final Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        final String[] parameterTypes = new String[argumentTypes.length];
+        for (int i = 0; i < argumentTypes.length; i++) {
+            parameterTypes[i] = simpleTypeName(argumentTypes[i].getClassName());
+        }
+        return lookup(owner, name, parameterTypes);
+    }
+
+    /**
+     * @param owner          the internal name of the class that declares the method.
+     * @param name           the name of the method, or {@code <init>}.
+     * @param parameterTypes the simple names of the parameter types, as returned by {@link #simpleTypeName}.
+     * @return the policies of the method, or null if it has none.
+     */
+    public Callable lookup(final String owner, final String name, final String[] parameterTypes) {
+        final List<Callable> overloads = callables.get(owner + "." + name);
+        if (overloads == null) {
+            return null;
+        }
+        for (Callable callable : overloads) {
+            if (Arrays.equals(callable.parameterTypes, parameterTypes)) {
+                return callable;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The policies of the parameters of one method or constructor.
+     */
+    public static final class Callable {
+        private final String owner;
+        private final String name;
+        private final String[] parameterTypes;
+        private final CryptoPolicy[] whiteLists;
+        private final CryptoPolicy[] blackLists;
+
+        /**
+         * @param owner          the internal name of the class that declares the method.
+         * @param name           the name of the method, or {@code <init>}.
+         * @param parameterTypes the simple names of the parameter types, as returned by {@link #simpleTypeName}.
+         * @param whiteLists     the white list of each parameter, or null.
+         * @param blackLists     the black list of each parameter, or null.
+         */
+        public Callable(final String owner,
+                        final String name,
+                        final String[] parameterTypes,
+                        final CryptoPolicy[] whiteLists,
+                        final CryptoPolicy[] blackLists) {
+            this.owner = owner;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+            this.whiteLists = whiteLists;
+            this.blackLists = blackLists;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getParameterCount() {
+            return parameterTypes.length;
+        }
+
+        /**
+         * @return the simple name of the type of the parameter, as returned by {@link #simpleTypeName}.
+         */
+        public String getParameterType(final int parameter) {
+            return parameterTypes[parameter];
+        }
+
+        /**
+         * @return the white list of the parameter, or null.
+         */
+        public CryptoPolicy getWhiteList(final int parameter) {
+            return whiteLists[parameter];
+        }
+
+        /**
+         * @return the black list of the parameter, or null.
+         */
+        public CryptoPolicy getBlackList(final int parameter) {
+            return blackLists[parameter];
+        }
+    }
+}
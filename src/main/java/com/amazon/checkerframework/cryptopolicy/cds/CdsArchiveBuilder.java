@@ -0,0 +1,176 @@
+package com.amazon.checkerframework.cryptopolicy.cds;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileResult;
+import com.sun.tools.javac.Main;
+
+/**
+ * Builds an application class-data sharing (AppCDS) archive for the JVMs that run javac with the checker, so that
+ * they map the classes of javac, the CheckerFramework, the Value Checker and this checker from the archive instead
+ * of loading, verifying and parsing them again on every start. It checks a training corpus once with
+ * -XX:DumpLoadedClassList, which records every class the JVM loaded from the JDK and the class path, and then
+ * dumps these classes into the archive with -Xshare:dump. The checker loads through javac's processor class loader,
+ * which asks the class path of the JVM first, so its classes are archived as long as they are on that class path.
+ * <p>
+ * A JVM uses the archive only with the same JDK and a class path that starts with the class path of the archive,
+ * and AppCDS takes classes from jar files only, so the class path must not contain directories. Parsing the stubs
+ * happens on every start regardless; the archive only saves the class loading. Application classes can be archived
+ * with Java 10 or later; Java 10 also needs -XX:+UseAppCDS, see {@link #archiveJvmArgs}.
+ * <p>
+ * Usage: {@code CdsArchiveBuilder [--out dir] [--classpath path] [--jvmArg arg]... javac-arguments}, where the
+ * javac arguments check the training corpus, e.g. {@code -proc:only -Astubs=stubs src/Main.java}. The checker is
+ * added as the processor if none is given. The driver writes checker.classlist, checker.jsa and the logs of both
+ * steps to the output directory, build/cds by default.
+ */
+public final class CdsArchiveBuilder {
+
+    public static final String CLASS_LIST = "checker.classlist";
+    public static final String ARCHIVE = "checker.jsa";
+
+    private CdsArchiveBuilder() {
+    }
+
+    public static void main(final String[] args) {
+        System.exit(run(Arrays.asList(args), System.out, System.err));
+    }
+
+    /**
+     * @param args the options of the driver, followed by the arguments of javac for the training run.
+     * @param out  receives the path of the archive and how to use it.
+     * @param err  receives the errors.
+     * @return 0 if the archive was written.
+     */
+    public static int run(final List<String> args, final PrintStream out, final PrintStream err) {
+        Path directory = Paths.get("build", "cds");
+        String classPath = System.getProperty("java.class.path");
+        final List<String> jvmArgs = new ArrayList<>();
+        int i = 0;
+        for (; i + 1 < args.size(); i += 2) {
+            if (args.get(i).equals("--out")) {
+                directory = Paths.get(args.get(i + 1));
+            } else if (args.get(i).equals("--classpath")) {
+                classPath = args.get(i + 1);
+            } else if (args.get(i).equals("--jvmArg")) {
+                jvmArgs.add(args.get(i + 1));
+            } else {
+                break;
+            }
+        }
+        if (i == args.size()) {
+            err.println("Usage: CdsArchiveBuilder [--out dir] [--classpath path] [--jvmArg arg]... javac-arguments");
+            return CompileResult.COMMAND_LINE_ERROR;
+        }
+        if (javaFeatureVersion() < 10) {
+            err.println("error: archiving application classes needs Java 10 or later, this is Java "
+                        + System.getProperty("java.specification.version"));
+            return CompileResult.COMMAND_LINE_ERROR;
+        }
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (Files.isDirectory(Paths.get(entry)) && !isEmptyDirectory(Paths.get(entry))) {
+                err.println("error: AppCDS only archives classes from jar files, but the class path contains the "
+                            + "directory " + entry);
+                return CompileResult.COMMAND_LINE_ERROR;
+            }
+        }
+        final List<String> javacArgs = new ArrayList<>(args.subList(i, args.size()));
+        if (!javacArgs.contains("-processor")) {
+            javacArgs.addAll(0, Arrays.asList("-processor", CryptoPolicyComplianceChecker.class.getName()));
+        }
+
+        try {
+            Files.createDirectories(directory);
+            final Path classList = directory.resolve(CLASS_LIST);
+            final Path archive = directory.resolve(ARCHIVE);
+            final List<String> training = javaCommand(jvmArgs, classPath);
+            training.addAll(1, Arrays.asList("-Xshare:off", "-XX:DumpLoadedClassList=" + classList));
+            training.add(Main.class.getName());
+            training.addAll(javacArgs);
+            // javac exits with 1 if the corpus has violations, which a representative corpus usually has.
+            final int trainingExit = execute(training, directory.resolve("training.log"));
+            if (trainingExit > CompileResult.ERROR || !Files.isRegularFile(classList)) {
+                err.println("error: the training run failed with exit code " + trainingExit + ", see "
+                            + directory.resolve("training.log"));
+                return CompileResult.ABNORMAL;
+            }
+
+            Files.deleteIfExists(archive);
+            final List<String> dump = javaCommand(jvmArgs, classPath);
+            dump.addAll(1, Arrays.asList("-Xshare:dump", "-XX:SharedClassListFile=" + classList));
+            dump.addAll(1, archiveJvmArgs(archive));
+            final int dumpExit = execute(dump, directory.resolve("dump.log"));
+            if (dumpExit != 0 || !Files.isRegularFile(archive)) {
+                err.println("error: dumping the archive failed with exit code " + dumpExit + ", see "
+                            + directory.resolve("dump.log"));
+                return CompileResult.ABNORMAL;
+            }
+
+            final long classes;
+            try (Stream<String> lines = Files.lines(classList)) {
+                classes = lines.filter(line -> !line.startsWith("#")).count();
+            }
+            out.println("Wrote " + archive + " with " + classes + " classes. Run javac with the same JDK and class "
+                        + "path to use it:");
+            out.println("  java " + String.join(" ", archiveJvmArgs(archive)) + " -cp " + classPath + " "
+                        + Main.class.getName() + " ...");
+            return CompileResult.OK;
+        } catch (IOException | InterruptedException e) {
+            err.println("error: " + e);
+            return CompileResult.ABNORMAL;
+        }
+    }
+
+    /**
+     * @param archive an archive written by this builder.
+     * @return the options of the JVM that make it use the archive.
+     */
+    public static List<String> archiveJvmArgs(final Path archive) {
+        final List<String> jvmArgs = new ArrayList<>();
+        if (javaFeatureVersion() == 10) {
+            jvmArgs.add("-XX:+UseAppCDS");
+        }
+        jvmArgs.add("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+        return jvmArgs;
+    }
+
+    /**
+     * @return the feature version of this JVM, like 8 for "1.8" and 11 for "11".
+     */
+    static int javaFeatureVersion() {
+        final String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+
+    private static boolean isEmptyDirectory(final Path directory) {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return !entries.findAny().isPresent();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the command that starts a JVM like this one, with the JVM options and the class path.
+     */
+    private static List<String> javaCommand(final List<String> jvmArgs, final String classPath) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", classPath));
+        return command;
+    }
+
+    private static int execute(final List<String> command, final Path log) throws IOException, InterruptedException {
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start().waitFor();
+    }
+}
@@ -0,0 +1,168 @@
+package com.amazon.checkerframework.cryptopolicy.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a compilation to a running {@link CompileServer} and prints its result like javac would: the diagnostics
+ * to stderr, the output of the checker to stdout, and javac's exit code as its own.
+ * <p>
+ * Usage: {@code CompileClient --portFile file [--timeout minutes] [--shutdown | javac arguments...]}
+ * <p>
+ * The exit status is 3 if the server cannot be reached or does not answer within the timeout, 60 minutes by
+ * default, which includes waiting for the compilations of other clients that the server is running.
+ */
+public final class CompileClient {
+
+    /**
+     * The exit status if the server cannot be reached, javac's status for a system error.
+     */
+    public static final int UNREACHABLE = 3;
+
+    /**
+     * How long a client waits for the answer of the server if no --timeout is given.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(60);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private CompileClient() {
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 2 || !"--portFile".equals(args[0])) {
+            usage();
+        }
+        final Path portFile = Paths.get(args[1]);
+        long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        int first = 2;
+        if (args.length > 2 && "--timeout".equals(args[2])) {
+            try {
+                timeoutMillis = TimeUnit.MINUTES.toMillis(Long.parseLong(args[3]));
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                usage();
+            }
+            first = 4;
+        }
+        final List<String> arguments = Arrays.asList(args).subList(first, args.length);
+        final CompileResult result;
+        try {
+            if (arguments.equals(Collections.singletonList("--shutdown"))) {
+                send(portFile, CompileServer.SHUTDOWN, Collections.emptyList(), timeoutMillis);
+                return;
+            }
+            result = compile(portFile, arguments, timeoutMillis);
+        } catch (IOException e) {
+            System.err.println("Cannot reach the crypto policy compile server of " + portFile + ": " + e);
+            System.exit(UNREACHABLE);
+            return;
+        }
+        System.out.print(result.getOutput());
+        System.out.flush();
+        System.err.print(result.getDiagnostics());
+        System.err.flush();
+        System.exit(result.getExitCode());
+    }
+
+    private static void usage() {
+        System.err.println("Usage: CompileClient --portFile file [--timeout minutes] "
+                           + "[--shutdown | javac arguments...]");
+        System.exit(2);
+    }
+
+    /**
+     * @param portFile  the port file of the server.
+     * @param arguments the arguments of javac.
+     * @return the result of the compilation.
+     * @throws IOException if the server cannot be reached, fails before it answers or does not answer within
+     *                     {@link #DEFAULT_TIMEOUT_MILLIS}.
+     */
+    public static CompileResult compile(final Path portFile, final List<String> arguments) throws IOException {
+        return compile(portFile, arguments, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param portFile      the port file of the server.
+     * @param arguments     the arguments of javac.
+     * @param timeoutMillis how long to wait for the answer, or 0 to wait forever.
+     * @return the result of the compilation.
+     * @throws IOException if the server cannot be reached, fails before it answers or does not answer in time.
+     */
+    public static CompileResult compile(final Path portFile, final List<String> arguments, final long timeoutMillis)
+        throws IOException {
+        return send(portFile, CompileServer.COMPILE, arguments, timeoutMillis);
+    }
+
+    /**
+     * Ask the server to stop after the compilation it is running, if any.
+     *
+     * @param portFile the port file of the server.
+     * @throws IOException if the server cannot be reached or does not answer within {@link #DEFAULT_TIMEOUT_MILLIS}.
+     */
+    public static void shutdown(final Path portFile) throws IOException {
+        send(portFile, CompileServer.SHUTDOWN, Collections.emptyList(), DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    private static CompileResult send(final Path portFile,
+                                      final byte command,
+                                      final List<String> arguments,
+                                      final long timeoutMillis) throws IOException {
+        final List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+        if (lines.size() != 2) {
+            throw new IOException("Invalid port file " + portFile);
+        }
+        final int port;
+        try {
+            port = Integer.parseInt(lines.get(0));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid port file " + portFile, e);
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            // a server that stalls or dies without closing the connection fails the read instead of blocking it.
+            socket.setSoTimeout((int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(CompileServer.MAGIC);
+            out.writeInt(CompileServer.PROTOCOL_VERSION);
+            out.write(fromHex(lines.get(1)));
+            out.writeByte(command);
+            if (command == CompileServer.COMPILE) {
+                out.writeInt(arguments.size());
+                for (String argument : arguments) {
+                    CompileResult.writeString(out, argument);
+                }
+            }
+            out.flush();
+            return CompileResult.read(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+        }
+    }
+
+    private static byte[] fromHex(final String hex) throws IOException {
+        if (hex.length() % 2 != 0) {
+            throw new IOException("Invalid token");
+        }
+        final byte[] bytes = new byte[hex.length() / 2];
+        try {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid token", e);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,81 @@
+package com.amazon.checkerframework.cryptopolicy.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The outcome of one compilation of the {@link CompileServer}: javac's exit code, the diagnostics as javac prints
+ * them, and what the checker printed to stdout, like the audit lines of approved suppressions.
+ */
+public final class CompileResult {
+
+    /**
+     * The exit codes of javac.
+     */
+    public static final int OK = 0;
+    public static final int ERROR = 1;
+    public static final int COMMAND_LINE_ERROR = 2;
+    public static final int ABNORMAL = 4;
+
+    /**
+     * Upper bound on the length of a string on the wire, so that a stray connection cannot make either side allocate
+     * an arbitrary amount of memory.
+     */
+    private static final int MAX_STRING_BYTES = 64 * 1024 * 1024;
+
+    private final int exitCode;
+    private final String diagnostics;
+    private final String output;
+
+    CompileResult(final int exitCode, final String diagnostics, final String output) {
+        this.exitCode = exitCode;
+        this.diagnostics = diagnostics;
+        this.output = output;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * @return the errors, warnings and notes of javac and the checker, as javac prints them to stderr.
+     */
+    public String getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return what the compilation printed to stdout.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    void write(final DataOutputStream out) throws IOException {
+        out.writeInt(exitCode);
+        writeString(out, diagnostics);
+        writeString(out, output);
+    }
+
+    static CompileResult read(final DataInputStream in) throws IOException {
+        return new CompileResult(in.readInt(), readString(in), readString(in));
+    }
+
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
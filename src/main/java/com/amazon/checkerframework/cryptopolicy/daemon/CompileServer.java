@@ -0,0 +1,327 @@
+package com.amazon.checkerframework.cryptopolicy.daemon;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.main.CommandLine;
+import com.sun.tools.javac.main.Option;
+
+/**
+ * A long-lived process that compiles with the {@link CryptoPolicyComplianceChecker} on behalf of
+ * {@link CompileClient}s, so that a build of many modules pays for starting a JVM, loading javac and the
+ * CheckerFramework and JIT-compiling them once instead of once per module. The checker's policy and verdict caches
+ * and the prefilter's index of the stub files are shared by all compilations; the index is only built again when the
+ * stubs change, but the CheckerFramework still parses the -Astubs for every request.
+ * <p>
+ * Every request gets a new javac task, file manager and checker, like a compilation in a fresh JVM, so nothing that
+ * one module's compilation sees leaks into the next. Requests are compiled one at a time, since the checker prints
+ * approved suppressions to {@code System.out}, which is captured for the request that prints them. Start one server
+ * per worker to compile modules in parallel. A request that makes javac or the checker fail, even with an
+ * {@link Error} other than a {@link VirtualMachineError}, gets an {@link CompileResult#ABNORMAL} result and the server
+ * keeps serving.
+ * <p>
+ * The server only accepts connections from the loopback interface that present the random token it writes, with
+ * its port, to the port file, which only the owner can read. Relative paths in the arguments of a request are
+ * resolved against the server's working directory, so start it in the root of the build or pass absolute paths,
+ * as Gradle does.
+ * <p>
+ * Usage: {@code CompileServer --portFile file [--port n] [--idleTimeout minutes]}
+ */
+public final class CompileServer implements Closeable {
+
+    static final int MAGIC = 0x43505344;
+    static final int PROTOCOL_VERSION = 1;
+    static final byte COMPILE = 1;
+    static final byte SHUTDOWN = 2;
+
+    private static final int TOKEN_BYTES = 16;
+
+    /**
+     * How long the server waits for the rest of a request once a client has connected.
+     */
+    private static final int REQUEST_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(1);
+
+    private final ServerSocket serverSocket;
+    private final Path portFile;
+    private final byte[] token;
+
+    private CompileServer(final ServerSocket serverSocket, final Path portFile, final byte[] token) {
+        this.serverSocket = serverSocket;
+        this.portFile = portFile;
+        this.token = token;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Path portFile = null;
+        int port = 0;
+        long idleTimeoutMinutes = 180;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--portFile":
+                    portFile = Paths.get(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--idleTimeout":
+                    idleTimeoutMinutes = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    portFile = null;
+                    i = args.length;
+                    break;
+            }
+        }
+        if (portFile == null) {
+            System.err.println("Usage: CompileServer --portFile file [--port n] [--idleTimeout minutes]");
+            System.exit(2);
+        }
+        try (CompileServer server = open(port, portFile, TimeUnit.MINUTES.toMillis(idleTimeoutMinutes))) {
+            System.err.println("Crypto policy compile server listening on port " + server.getPort());
+            server.serve();
+        }
+    }
+
+    /**
+     * Listen on the loopback interface and write the port and the token to the port file.
+     *
+     * @param port        the port, or 0 for any free port.
+     * @param portFile    the file that clients read the port and the token from.
+     * @param idleMillis  how long {@link #serve()} waits for a request before it returns, or 0 to wait forever.
+     * @return the server.
+     * @throws IOException if the port cannot be bound or the port file cannot be written.
+     */
+    public static CompileServer open(final int port, final Path portFile, final long idleMillis) throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        try {
+            serverSocket.setSoTimeout((int) Math.min(idleMillis, Integer.MAX_VALUE));
+            final byte[] token = new byte[TOKEN_BYTES];
+            new SecureRandom().nextBytes(token);
+            writePortFile(portFile, serverSocket.getLocalPort(), token);
+            return new CompileServer(serverSocket, portFile, token);
+        } catch (IOException | RuntimeException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    private static void writePortFile(final Path portFile, final int port, final byte[] token) throws IOException {
+        final Path directory = portFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path temporary = Files.createTempFile(directory, portFile.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system, the file has the default permissions of the user's temporary files.
+            }
+            Files.write(temporary, Arrays.asList(String.valueOf(port), toHex(token)), StandardCharsets.UTF_8);
+            Files.move(temporary, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Answer requests until a client asks the server to shut down or no request arrives within the idle timeout.
+     *
+     * @throws IOException if the server socket fails.
+     */
+    public void serve() throws IOException {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                return;
+            }
+            try (Socket connection = socket) {
+                connection.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                if (!answer(connection)) {
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Dropped a crypto policy compile request: " + e);
+            }
+        }
+    }
+
+    /**
+     * @return false if the client asked the server to shut down.
+     */
+    private boolean answer(final Socket connection) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        if (in.readInt() != MAGIC || in.readInt() != PROTOCOL_VERSION) {
+            throw new IOException("Not a crypto policy compile request");
+        }
+        final byte[] requestToken = new byte[TOKEN_BYTES];
+        in.readFully(requestToken);
+        if (!MessageDigest.isEqual(token, requestToken)) {
+            throw new IOException("Wrong token");
+        }
+        final byte command = in.readByte();
+        if (command == SHUTDOWN) {
+            new CompileResult(CompileResult.OK, "", "").write(out);
+            out.flush();
+            return false;
+        } else if (command != COMPILE) {
+            throw new IOException("Unknown command " + command);
+        }
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of arguments " + count);
+        }
+        final List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            arguments.add(CompileResult.readString(in));
+        }
+        compile(arguments).write(out);
+        out.flush();
+        return true;
+    }
+
+    /**
+     * Compile in this JVM, as javac would with the same arguments and the checker as the only annotation processor.
+     * The arguments are those of javac, including @files; -processor and -processorpath are ignored.
+     *
+     * @param arguments the arguments of javac.
+     * @return the result.
+     */
+    public static synchronized CompileResult compile(final List<String> arguments) {
+        final StringWriter diagnostics = new StringWriter();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final PrintStream stdout = System.out;
+        int exitCode;
+        try (PrintWriter diagnosticsWriter = new PrintWriter(diagnostics)) {
+            System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+            final List<String> options = new ArrayList<>();
+            final List<String> files = new ArrayList<>();
+            splitArguments(CommandLine.parse(arguments.toArray(new String[0])), options, files);
+
+            final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+            try (StandardJavaFileManager fileManager = javac.getStandardFileManager(null, null, null)) {
+                final JavaCompiler.CompilationTask task = javac.getTask(
+                    diagnosticsWriter, fileManager, null, options, null,
+                    fileManager.getJavaFileObjectsFromStrings(files));
+                task.setProcessors(Collections.singletonList(new CryptoPolicyComplianceChecker()));
+                // javac's exit code, which tells an error in the sources from a failure of the compiler.
+                exitCode = ((JavacTaskImpl) task).doCall().exitCode;
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException | IllegalArgumentException e) {
+            // a missing @file or source file, or an invalid option.
+            diagnostics.append("error: ").append(e.getMessage()).append(System.lineSeparator());
+            exitCode = CompileResult.COMMAND_LINE_ERROR;
+        } catch (RuntimeException | StackOverflowError e) {
+            exitCode = abnormal(diagnostics, e);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            // e.g. a LinkageError or an AssertionError of this request, which does not leave the JVM unusable.
+            exitCode = abnormal(diagnostics, e);
+        } finally {
+            System.setOut(stdout);
+        }
+        return new CompileResult(exitCode, diagnostics.toString(), new String(output.toByteArray(),
+                                                                              StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append the stack trace of a failed compilation to its diagnostics.
+     *
+     * @return {@link CompileResult#ABNORMAL}.
+     */
+    private static int abnormal(final StringWriter diagnostics, final Throwable failure) {
+        final StringWriter stackTrace = new StringWriter();
+        failure.printStackTrace(new PrintWriter(stackTrace, true));
+        diagnostics.append(stackTrace.toString());
+        return CompileResult.ABNORMAL;
+    }
+
+    /**
+     * Separate the source files from the options, which the compiler API takes apart.
+     *
+     * @param arguments the arguments of javac, with @files expanded.
+     * @param options   receives the options and their values.
+     * @param files     receives the source files.
+     */
+    public static void splitArguments(final String[] arguments, final List<String> options,
+                                      final List<String> files) {
+        for (int i = 0; i < arguments.length; i++) {
+            final String argument = arguments[i];
+            if (!argument.startsWith("-") && argument.endsWith(".java")) {
+                files.add(argument);
+                continue;
+            }
+            options.add(argument);
+            final Option option = Option.lookup(argument);
+            // "--option=value" carries its value, "-option value" is followed by it.
+            if (option != null && option.getArgKind() == Option.ArgKind.REQUIRED && !argument.contains("=")
+                && i + 1 < arguments.length) {
+                options.add(arguments[++i]);
+            }
+        }
+    }
+
+    /**
+     * Stop listening and delete the port file, unless another server has replaced it since.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        try {
+            final List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+            if (lines.size() == 2 && lines.get(1).equals(toHex(token))) {
+                Files.delete(portFile);
+            }
+        } catch (IOException e) {
+            // already deleted.
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
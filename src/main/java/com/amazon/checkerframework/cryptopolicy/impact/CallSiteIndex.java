@@ -0,0 +1,454 @@
+package com.amazon.checkerframework.cryptopolicy.impact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyCache;
+
+/**
+ * The call sites that the checker evaluated against a policy in one compilation, written with
+ * -AcryptoCallSiteIndex: where each site is, which API and policy it was checked against, and the lower-cased
+ * values the argument can have. The {@link PolicyImpactAnalyzer} evaluates proposed policies against these indexes
+ * without compiling anything. Sites whose argument the checker could not resolve are not in the index, they are
+ * reported as unknown under any policy.
+ * <p>
+ * File names, APIs, policies and candidate sets repeat across a code base, so the file has a table of each and the
+ * sites refer to them by number, as variable-length integers.
+ */
+public final class CallSiteIndex {
+
+    private static final int MAGIC = 0x43504349;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The ints of a site in {@link #sites}: file, line, column, API, white list, black list, candidates, flags.
+     */
+    private static final int STRIDE = 8;
+    private static final int SUPPRESSED = 1;
+
+    /**
+     * Number of the absent policy.
+     */
+    private static final int NO_POLICY = 0;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringNumbers = new HashMap<>();
+    private final List<Api> apis = new ArrayList<>();
+    private final Map<Api, Integer> apiNumbers = new HashMap<>();
+    private final List<CryptoPolicy> policies = new ArrayList<>(Collections.singletonList(null));
+    private final Map<CryptoPolicy, Integer> policyNumbers = new HashMap<>();
+    private final List<List<String>> candidateSets = new ArrayList<>();
+    private final Map<List<String>, Integer> candidateSetNumbers = new HashMap<>();
+    private int[] sites = new int[STRIDE * 64];
+    private int size;
+
+    /**
+     * Add a call site.
+     *
+     * @param file       the source file.
+     * @param line       the line of the argument.
+     * @param column     the column of the argument.
+     * @param api        what the argument is passed or assigned to.
+     * @param whiteList  the white list the argument was checked against, or null.
+     * @param blackList  the black list the argument was checked against, or null.
+     * @param candidates the lower-cased values the argument can have.
+     * @param suppressed whether a {@code @SuppressCryptoWarning} applies to the site.
+     */
+    public void add(final String file,
+                    final int line,
+                    final int column,
+                    final Api api,
+                    final CryptoPolicy whiteList,
+                    final CryptoPolicy blackList,
+                    final Collection<String> candidates,
+                    final boolean suppressed) {
+        if (sites.length < (size + 1) * STRIDE) {
+            sites = Arrays.copyOf(sites, sites.length * 2);
+        }
+        final int offset = size * STRIDE;
+        sites[offset] = stringNumber(file);
+        sites[offset + 1] = line;
+        sites[offset + 2] = column;
+        sites[offset + 3] = number(api, apis, apiNumbers);
+        sites[offset + 4] = policyNumber(whiteList);
+        sites[offset + 5] = policyNumber(blackList);
+        sites[offset + 6] = number(Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(candidates))),
+                                   candidateSets, candidateSetNumbers);
+        sites[offset + 7] = suppressed ? SUPPRESSED : 0;
+        size++;
+    }
+
+    /**
+     * @return the number of call sites.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param site the number of a call site, less than {@link #size()}.
+     * @return the call site.
+     */
+    public CallSite get(final int site) {
+        final int offset = site * STRIDE;
+        return new CallSite(strings.get(sites[offset]), sites[offset + 1], sites[offset + 2],
+                            apis.get(sites[offset + 3]), policies.get(sites[offset + 4]),
+                            policies.get(sites[offset + 5]), candidateSets.get(sites[offset + 6]),
+                            (sites[offset + 7] & SUPPRESSED) != 0);
+    }
+
+    private int stringNumber(final String string) {
+        return number(string, strings, stringNumbers);
+    }
+
+    private int policyNumber(final CryptoPolicy policy) {
+        return policy == null ? NO_POLICY : number(policy, policies, policyNumbers);
+    }
+
+    private static <T> int number(final T value, final List<T> table, final Map<T, Integer> numbers) {
+        return numbers.computeIfAbsent(value, key -> {
+            table.add(key);
+            return table.size() - 1;
+        });
+    }
+
+    /**
+     * Write the index to a file, replacing it atomically.
+     *
+     * @param file the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(final Path file) throws IOException {
+        final Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        final Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temporary)) {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                write(out);
+                out.flush();
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(final DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        // the policies and APIs refer to strings, so they are numbered before the string table is written.
+        final int[][] policyStrings = new int[policies.size()][];
+        for (int i = 1; i < policies.size(); i++) {
+            final CryptoPolicy policy = policies.get(i);
+            policyStrings[i] = new int[1 + policy.getRegexes().size() + policy.getWarnOnRegexes().size()];
+            policyStrings[i][0] = policy.getKind().ordinal();
+            int next = 1;
+            for (String regex : policy.getRegexes()) {
+                policyStrings[i][next++] = stringNumber(regex);
+            }
+            for (String regex : policy.getWarnOnRegexes()) {
+                policyStrings[i][next++] = stringNumber(regex);
+            }
+        }
+        final int[][] apiStrings = new int[apis.size()][];
+        for (int i = 0; i < apis.size(); i++) {
+            final Api api = apis.get(i);
+            apiStrings[i] = new int[2 + api.parameterTypes.size()];
+            apiStrings[i][0] = stringNumber(api.owner);
+            apiStrings[i][1] = stringNumber(api.name);
+            for (int j = 0; j < api.parameterTypes.size(); j++) {
+                apiStrings[i][2 + j] = stringNumber(api.parameterTypes.get(j));
+            }
+        }
+        final int[][] candidateStrings = new int[candidateSets.size()][];
+        for (int i = 0; i < candidateSets.size(); i++) {
+            final List<String> candidates = candidateSets.get(i);
+            candidateStrings[i] = new int[candidates.size()];
+            for (int j = 0; j < candidates.size(); j++) {
+                candidateStrings[i][j] = stringNumber(candidates.get(j));
+            }
+        }
+
+        writeVarInt(out, strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        writeVarInt(out, policies.size() - 1);
+        for (int i = 1; i < policies.size(); i++) {
+            final CryptoPolicy policy = policies.get(i);
+            out.writeByte(policyStrings[i][0]);
+            writeVarInt(out, policy.getRegexes().size());
+            writeVarInt(out, policy.getWarnOnRegexes().size());
+            for (int j = 1; j < policyStrings[i].length; j++) {
+                writeVarInt(out, policyStrings[i][j]);
+            }
+        }
+        writeVarInt(out, apis.size());
+        for (int i = 0; i < apis.size(); i++) {
+            writeVarInt(out, apiStrings[i][0]);
+            writeVarInt(out, apiStrings[i][1]);
+            writeVarInt(out, apis.get(i).parameter + 1);
+            writeVarInt(out, apiStrings[i].length - 2);
+            for (int j = 2; j < apiStrings[i].length; j++) {
+                writeVarInt(out, apiStrings[i][j]);
+            }
+        }
+        writeVarInt(out, candidateSets.size());
+        for (int[] candidates : candidateStrings) {
+            writeVarInt(out, candidates.length);
+            for (int candidate : candidates) {
+                writeVarInt(out, candidate);
+            }
+        }
+        writeVarInt(out, size);
+        for (int i = 0; i < size * STRIDE; i++) {
+            writeVarInt(out, sites[i]);
+        }
+    }
+
+    /**
+     * @param file an index written by {@link #write}.
+     * @return the index.
+     * @throws IOException if the file cannot be read or is not an index.
+     */
+    public static CallSiteIndex read(final Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return read(new DataInputStream(new BufferedInputStream(stream)));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException(file + " is corrupt", e);
+        }
+    }
+
+    private static CallSiteIndex read(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a crypto policy call site index");
+        }
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported call site index version " + version);
+        }
+        final CallSiteIndex index = new CallSiteIndex();
+        final int stringCount = readVarInt(in);
+        for (int i = 0; i < stringCount; i++) {
+            index.strings.add(in.readUTF());
+        }
+        final CryptoPolicy.Kind[] kinds = CryptoPolicy.Kind.values();
+        final int policyCount = readVarInt(in);
+        for (int i = 0; i < policyCount; i++) {
+            final CryptoPolicy.Kind kind = kinds[in.readUnsignedByte()];
+            final int regexCount = readVarInt(in);
+            final int warnOnCount = readVarInt(in);
+            final List<String> regexes = index.readStrings(in, regexCount);
+            final List<String> warnOn = index.readStrings(in, warnOnCount);
+            // keep the numbers of the file even if two policies of an old index compile to the same one.
+            index.policies.add(CryptoPolicyCache.getInstance().getPolicy(kind, regexes, warnOn));
+        }
+        final int apiCount = readVarInt(in);
+        for (int i = 0; i < apiCount; i++) {
+            final String owner = index.strings.get(readVarInt(in));
+            final String name = index.strings.get(readVarInt(in));
+            final int parameter = readVarInt(in) - 1;
+            final List<String> parameterTypes = index.readStrings(in, readVarInt(in));
+            index.apis.add(new Api(owner, name, parameterTypes, parameter));
+        }
+        final int candidateSetCount = readVarInt(in);
+        for (int i = 0; i < candidateSetCount; i++) {
+            index.candidateSets.add(Collections.unmodifiableList(index.readStrings(in, readVarInt(in))));
+        }
+        index.size = readVarInt(in);
+        index.sites = new int[index.size * STRIDE];
+        for (int i = 0; i < index.sites.length; i++) {
+            index.sites[i] = readVarInt(in);
+        }
+        return index;
+    }
+
+    private List<String> readStrings(final DataInputStream in, final int count) throws IOException {
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(strings.get(readVarInt(in)));
+        }
+        return values;
+    }
+
+    private static void writeVarInt(final DataOutputStream out, final int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarInt(final DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * What the argument of a call site is passed or assigned to: a parameter of a method or constructor, named like
+     * the {@link com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies} name them, or a variable or the
+     * return value of a method, which have no parameter.
+     */
+    public static final class Api {
+        private final String owner;
+        private final String name;
+        private final List<String> parameterTypes;
+        private final int parameter;
+
+        /**
+         * @param owner          the internal name of the class, e.g. "javax/crypto/Cipher".
+         * @param name           the name of the method, {@code <init>}, or of the variable.
+         * @param parameterTypes the simple names of the parameter types of the method, e.g. "String".
+         * @param parameter      the parameter that the argument is passed to, or -1.
+         */
+        public Api(final String owner, final String name, final List<String> parameterTypes, final int parameter) {
+            this.owner = owner;
+            this.name = name;
+            this.parameterTypes = Collections.unmodifiableList(new ArrayList<>(parameterTypes));
+            this.parameter = parameter;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        /**
+         * @return the parameter that the argument is passed to, or -1 if it is not passed to a method.
+         */
+        public int getParameter() {
+            return parameter;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Api)) {
+                return false;
+            }
+            final Api api = (Api) other;
+            return parameter == api.parameter && owner.equals(api.owner) && name.equals(api.name)
+                   && parameterTypes.equals(api.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, name, parameterTypes, parameter);
+        }
+
+        /**
+         * @return the API in source form, e.g. "javax.crypto.Cipher.getInstance(String)".
+         */
+        @Override
+        public String toString() {
+            final String member = owner.replace('/', '.').replace('$', '.') + "." + name;
+            return parameter < 0 ? member : member + "(" + String.join(", ", parameterTypes) + ")";
+        }
+    }
+
+    /**
+     * One call site of an index.
+     */
+    public static final class CallSite {
+        private final String file;
+        private final int line;
+        private final int column;
+        private final Api api;
+        private final CryptoPolicy whiteList;
+        private final CryptoPolicy blackList;
+        private final List<String> candidates;
+        private final boolean suppressed;
+
+        CallSite(final String file,
+                 final int line,
+                 final int column,
+                 final Api api,
+                 final CryptoPolicy whiteList,
+                 final CryptoPolicy blackList,
+                 final List<String> candidates,
+                 final boolean suppressed) {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.api = api;
+            this.whiteList = whiteList;
+            this.blackList = blackList;
+            this.candidates = candidates;
+            this.suppressed = suppressed;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public Api getApi() {
+            return api;
+        }
+
+        /**
+         * @return the white list the site was checked against when the index was written, or null.
+         */
+        public CryptoPolicy getWhiteList() {
+            return whiteList;
+        }
+
+        /**
+         * @return the black list the site was checked against when the index was written, or null.
+         */
+        public CryptoPolicy getBlackList() {
+            return blackList;
+        }
+
+        /**
+         * @return the sorted, lower-cased values the argument can have.
+         */
+        public List<String> getCandidates() {
+            return candidates;
+        }
+
+        public boolean isSuppressed() {
+            return suppressed;
+        }
+    }
+}
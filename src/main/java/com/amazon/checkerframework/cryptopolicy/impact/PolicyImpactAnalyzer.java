@@ -0,0 +1,470 @@
+package com.amazon.checkerframework.cryptopolicy.impact;
+
+import javax.tools.Diagnostic;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.PolicyVerdict;
+import com.amazon.checkerframework.cryptopolicy.VerdictCache;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+
+/**
+ * Finds out what a change to the stub files would break without compiling anything: evaluates the call sites of
+ * {@link CallSiteIndex}es, written with -AcryptoCallSiteIndex, against the policies of proposed stubs, and lists the
+ * violations and warnings that the proposed stubs add to those of the current ones. A site is evaluated against
+ * the proposed stubs if the current stubs give the policy it was checked against; other sites, like the parameters
+ * of methods in the code base, keep the policy they were compiled with. The indexes are evaluated in parallel, in
+ * batches of sites, and each combination of policies and candidate values is evaluated once. Impacts are listed in
+ * the order of their files and positions.
+ * <p>
+ * Usage: {@code PolicyImpactAnalyzer --proposed paths [--stubs paths] [--threads n] [--out file] index|directory...}
+ * where the paths are like -Astubs and directories are searched for files that end in {@value #INDEX_SUFFIX}.
+ * <p>
+ * The exit status is 1 if the proposed stubs add a violation and 2 if an index could not be read.
+ */
+public final class PolicyImpactAnalyzer {
+
+    public static final String INDEX_SUFFIX = ".callsites";
+
+    /**
+     * Call sites per task.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    private static final String VIOLATION_KEY = "crypto.policy.violation";
+    private static final String WARNING_KEY = "crypto.policy.warning";
+
+    /**
+     * The value of {@link #proposedPolicies} for sites that keep the policies they were compiled with.
+     */
+    private static final CryptoPolicy[] RECORDED = new CryptoPolicy[0];
+
+    private final StubPolicies current;
+    private final StubPolicies proposed;
+    private final int threads;
+    private final Properties messages = new Properties();
+    private final Map<CallSiteIndex.Api, CryptoPolicy[]> proposedPolicies = new ConcurrentHashMap<>();
+    private final Map<List<Object>, Outcome> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * @param current  the policies of the stubs the indexes were written with.
+     * @param proposed the policies of the proposed stubs.
+     * @param threads  the number of threads to evaluate with.
+     * @throws IOException if the checker's messages cannot be read.
+     */
+    public PolicyImpactAnalyzer(final StubPolicies current, final StubPolicies proposed, final int threads)
+        throws IOException {
+        this.current = current;
+        this.proposed = proposed;
+        this.threads = threads;
+        try (InputStream in = CryptoPolicyComplianceChecker.class.getResourceAsStream("messages.properties")) {
+            if (in != null) {
+                messages.load(in);
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        String stubs = "stubs";
+        String proposedStubs = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = null;
+        final List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stubs":
+                    stubs = args[++i];
+                    break;
+                case "--proposed":
+                    proposedStubs = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+                    break;
+            }
+        }
+        if (proposedStubs == null || inputs.isEmpty()) {
+            System.err.println("Usage: PolicyImpactAnalyzer --proposed paths [--stubs paths] [--threads n] "
+                               + "[--out file] index|directory...");
+            System.exit(2);
+        }
+
+        final PolicyImpactAnalyzer analyzer =
+            new PolicyImpactAnalyzer(StubPolicies.load(stubs), StubPolicies.load(proposedStubs), threads);
+        final Summary summary;
+        try (Writer writer = out == null
+                             ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                             : Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            summary = analyzer.analyze(findIndexes(inputs), impact -> {
+                try {
+                    writer.write(impact.toString());
+                    writer.write(System.lineSeparator());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        System.err.println(summary);
+        System.exit(summary.getUnreadable() > 0 ? 2 : summary.getViolations() > 0 ? 1 : 0);
+    }
+
+    /**
+     * @param inputs index files and directories.
+     * @return the indexes, sorted by path.
+     * @throws IOException if a directory cannot be searched.
+     */
+    public static List<Path> findIndexes(final List<Path> inputs) throws IOException {
+        final List<Path> indexes = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    indexes.addAll(files.filter(file -> Files.isRegularFile(file)
+                                                        && file.toString().endsWith(INDEX_SUFFIX))
+                                        .collect(Collectors.toList()));
+                }
+            } else {
+                indexes.add(input);
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * Evaluate the proposed stubs against indexes.
+     *
+     * @param indexes the indexes.
+     * @param sink    receives the new violations and warnings, in the order of their files and positions, after
+     *                all indexes are evaluated.
+     * @return the counts of the analysis; indexes that cannot be read are reported on stderr and counted.
+     */
+    public Summary analyze(final List<Path> indexes, final Consumer<Impact> sink) {
+        final long start = System.nanoTime();
+        final Summary summary = new Summary();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "policy-impact");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final List<CompletableFuture<List<Impact>>> tasks = new ArrayList<>();
+        try {
+            for (Path file : indexes) {
+                tasks.add(CompletableFuture.supplyAsync(() -> read(file, summary), executor)
+                                           .thenCompose(index -> evaluate(index, executor, summary)));
+            }
+            final List<Impact> impacts = new ArrayList<>();
+            for (CompletableFuture<List<Impact>> task : tasks) {
+                impacts.addAll(task.join());
+            }
+            impacts.sort(Impact.ORDER);
+            impacts.forEach(sink);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        summary.millis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    private static CallSiteIndex read(final Path file, final Summary summary) {
+        try {
+            final CallSiteIndex index = CallSiteIndex.read(file);
+            summary.indexes.increment();
+            return index;
+        } catch (IOException e) {
+            summary.unreadable.increment();
+            System.err.println(file + ": cannot be analyzed: " + e);
+            return null;
+        }
+    }
+
+    private CompletableFuture<List<Impact>> evaluate(final CallSiteIndex index,
+                                                     final ExecutorService executor,
+                                                     final Summary summary) {
+        if (index == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        final List<CompletableFuture<List<Impact>>> batches = new ArrayList<>();
+        for (int from = 0; from < index.size(); from += BATCH_SIZE) {
+            final int batchStart = from;
+            final int batchEnd = Math.min(from + BATCH_SIZE, index.size());
+            batches.add(CompletableFuture.supplyAsync(() -> {
+                final List<Impact> impacts = new ArrayList<>();
+                for (int site = batchStart; site < batchEnd; site++) {
+                    evaluate(index.get(site), summary, impacts);
+                }
+                return impacts;
+            }, executor));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            final List<Impact> impacts = new ArrayList<>();
+            for (CompletableFuture<List<Impact>> batch : batches) {
+                impacts.addAll(batch.join());
+            }
+            return impacts;
+        });
+    }
+
+    private void evaluate(final CallSiteIndex.CallSite site, final Summary summary, final List<Impact> impacts) {
+        summary.sites.increment();
+        CryptoPolicy[] policies = proposedPolicies.computeIfAbsent(site.getApi(), this::lookUpProposed);
+        if (policies == RECORDED) {
+            policies = new CryptoPolicy[] {site.getWhiteList(), site.getBlackList()};
+        }
+        final Outcome outcome = outcomes.computeIfAbsent(
+            Arrays.asList(site.getWhiteList(), site.getBlackList(), policies[0], policies[1], site.getCandidates()),
+            key -> compare(site.getWhiteList(), site.getBlackList(), (CryptoPolicy) key.get(2),
+                           (CryptoPolicy) key.get(3), site.getCandidates()));
+        if (outcome.resolved) {
+            summary.resolved.increment();
+        }
+        if (outcome.newViolations == null && outcome.newWarnings == null) {
+            return;
+        }
+        if (site.isSuppressed()) {
+            summary.suppressed.increment();
+            return;
+        }
+        if (outcome.newViolations != null) {
+            summary.violations.increment();
+            impacts.add(new Impact(site, Diagnostic.Kind.ERROR, VIOLATION_KEY, outcome.newViolations,
+                                   message(VIOLATION_KEY, outcome.newViolations)));
+        }
+        if (outcome.newWarnings != null) {
+            summary.warnings.increment();
+            impacts.add(new Impact(site, Diagnostic.Kind.WARNING, WARNING_KEY, outcome.newWarnings,
+                                   message(WARNING_KEY, outcome.newWarnings)));
+        }
+    }
+
+    /**
+     * @return the white and black list that the proposed stubs give the parameter, or {@link #RECORDED} if the
+     *     current stubs do not give it a policy.
+     */
+    private CryptoPolicy[] lookUpProposed(final CallSiteIndex.Api api) {
+        final int parameter = api.getParameter();
+        if (parameter < 0) {
+            return RECORDED;
+        }
+        final String[] parameterTypes = api.getParameterTypes().toArray(new String[0]);
+        final StubPolicies.Callable currently = current.lookup(api.getOwner(), api.getName(), parameterTypes);
+        if (currently == null
+            || currently.getWhiteList(parameter) == null && currently.getBlackList(parameter) == null) {
+            return RECORDED;
+        }
+        final StubPolicies.Callable callable = proposed.lookup(api.getOwner(), api.getName(), parameterTypes);
+        return callable == null
+               ? new CryptoPolicy[2]
+               : new CryptoPolicy[] {callable.getWhiteList(parameter), callable.getBlackList(parameter)};
+    }
+
+    private static Outcome compare(final CryptoPolicy whiteList,
+                                   final CryptoPolicy blackList,
+                                   final CryptoPolicy proposedWhiteList,
+                                   final CryptoPolicy proposedBlackList,
+                                   final List<String> candidates) {
+        final VerdictCache verdicts = VerdictCache.getInstance();
+        final PolicyVerdict before = verdicts.getVerdict(whiteList, blackList, candidates);
+        final PolicyVerdict after = verdicts.getVerdict(proposedWhiteList, proposedBlackList, candidates);
+        return new Outcome(added(before.getDisallowedCiphers(), after.getDisallowedCiphers()),
+                           added(before.getWarningCiphers(), after.getWarningCiphers()),
+                           added(after.getDisallowedCiphers(), before.getDisallowedCiphers()) != null);
+    }
+
+    /**
+     * @return the upper-cased, comma separated values that are only in after, like a verdict's messages, or null.
+     */
+    private static String added(final Set<String> before, final Set<String> after) {
+        final Set<String> added = new TreeSet<>(after);
+        added.removeAll(before);
+        return added.isEmpty() ? null : String.join(", ", added).toUpperCase();
+    }
+
+    private String message(final String key, final String algorithms) {
+        final String format = messages.getProperty(key);
+        return format == null ? algorithms : String.format(format, algorithms).trim();
+    }
+
+    /**
+     * What the proposed stubs change for a combination of policies and candidate values.
+     */
+    private static final class Outcome {
+        private final String newViolations;
+        private final String newWarnings;
+        private final boolean resolved;
+
+        Outcome(final String newViolations, final String newWarnings, final boolean resolved) {
+            this.newViolations = newViolations;
+            this.newWarnings = newWarnings;
+            this.resolved = resolved;
+        }
+    }
+
+    /**
+     * A violation or warning that the proposed stubs would add at a call site.
+     */
+    public static final class Impact {
+        static final Comparator<Impact> ORDER =
+            Comparator.comparing((Impact impact) -> impact.site.getFile())
+                      .thenComparingInt(impact -> impact.site.getLine())
+                      .thenComparingInt(impact -> impact.site.getColumn())
+                      .thenComparing(impact -> impact.kind);
+
+        private final CallSiteIndex.CallSite site;
+        private final Diagnostic.Kind kind;
+        private final String messageKey;
+        private final String algorithms;
+        private final String message;
+
+        Impact(final CallSiteIndex.CallSite site,
+               final Diagnostic.Kind kind,
+               final String messageKey,
+               final String algorithms,
+               final String message) {
+            this.site = site;
+            this.kind = kind;
+            this.messageKey = messageKey;
+            this.algorithms = algorithms;
+            this.message = message;
+        }
+
+        public CallSiteIndex.CallSite getSite() {
+            return site;
+        }
+
+        /**
+         * @return {@link Diagnostic.Kind#ERROR} or {@link Diagnostic.Kind#WARNING}.
+         */
+        public Diagnostic.Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the message key, e.g. "crypto.policy.violation".
+         */
+        public String getMessageKey() {
+            return messageKey;
+        }
+
+        /**
+         * @return the upper-cased, comma separated values that the proposed stubs newly disallow or warn about.
+         */
+        public String getAlgorithms() {
+            return algorithms;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return the impact in the format of a javac diagnostic on a single line.
+         */
+        @Override
+        public String toString() {
+            return site.getFile() + ":" + site.getLine() + ":" + site.getColumn() + ": "
+                   + (kind == Diagnostic.Kind.ERROR ? "error" : "warning") + ": [" + messageKey + "] " + message
+                   + " (in " + site.getApi() + ")";
+        }
+    }
+
+    /**
+     * What an analysis found.
+     */
+    public static final class Summary {
+        private final LongAdder indexes = new LongAdder();
+        private final LongAdder unreadable = new LongAdder();
+        private final LongAdder sites = new LongAdder();
+        private final LongAdder violations = new LongAdder();
+        private final LongAdder warnings = new LongAdder();
+        private final LongAdder resolved = new LongAdder();
+        private final LongAdder suppressed = new LongAdder();
+        private long millis;
+
+        public long getIndexes() {
+            return indexes.sum();
+        }
+
+        public long getUnreadable() {
+            return unreadable.sum();
+        }
+
+        public long getSites() {
+            return sites.sum();
+        }
+
+        /**
+         * @return the call sites with a violation that the proposed stubs add.
+         */
+        public long getViolations() {
+            return violations.sum();
+        }
+
+        /**
+         * @return the call sites with a warning that the proposed stubs add.
+         */
+        public long getWarnings() {
+            return warnings.sum();
+        }
+
+        /**
+         * @return the call sites with a violation that the proposed stubs remove.
+         */
+        public long getResolved() {
+            return resolved.sum();
+        }
+
+        /**
+         * @return the call sites with a new violation or warning that a {@code @SuppressCryptoWarning} suppresses.
+         */
+        public long getSuppressed() {
+            return suppressed.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Evaluated " + getSites() + " call sites of " + getIndexes() + " indexes in " + millis + " ms ("
+                   + getUnreadable() + " unreadable indexes): " + getViolations() + " new violations, "
+                   + getWarnings() + " new warnings, " + getSuppressed() + " suppressed, " + getResolved()
+                   + " resolved";
+        }
+    }
+}
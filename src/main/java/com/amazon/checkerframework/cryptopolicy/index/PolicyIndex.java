@@ -0,0 +1,233 @@
+package com.amazon.checkerframework.cryptopolicy.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyCache;
+import com.amazon.checkerframework.cryptopolicy.StubPolicyIndex;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import com.amazon.checkerframework.cryptopolicy.matcher.MultiPatternMatcher;
+
+/**
+ * The binary form of the {@link StubPolicies} of a set of stub files, written by the {@link PolicyIndexCompiler}
+ * and read by the checker with -AcryptoPolicyIndex, so that a compilation neither parses the stubs nor compiles
+ * their regexes. The file starts with a magic number, the format version and the length and CRC-32 of each stub
+ * file it was compiled from. Next come the distinct policies, each with its regexes and the compiled tiers of its
+ * {@link MultiPatternMatcher}s, and last the methods and constructors with the index of the white and black list
+ * of every parameter. All numbers are big-endian ints, except the longs of the stub files, and all strings are
+ * lengths followed by UTF-8 bytes.
+ * <p>
+ * {@link #read} maps the file and decodes it in one pass. An index of another format version or of other stubs is
+ * stale; the caller then parses the stubs instead.
+ */
+public final class PolicyIndex {
+
+    private static final int MAGIC = 0x43504958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int NO_POLICY = -1;
+
+    private PolicyIndex() {
+    }
+
+    /**
+     * Write the index of the policies of the stubs.
+     *
+     * @param policies    the policies of the stubs.
+     * @param stubsOption the stubs the policies were read from, like -Astubs.
+     * @param index       the file to write; it is replaced atomically.
+     * @throws IOException if the stubs cannot be read or the index cannot be written.
+     */
+    public static void write(final StubPolicies policies, final String stubsOption, final Path index)
+        throws IOException {
+        final Map<CryptoPolicy, Integer> ids = new LinkedHashMap<>();
+        for (StubPolicies.Callable callable : policies.getCallables()) {
+            for (int i = 0; i < callable.getParameterCount(); i++) {
+                addPolicy(ids, callable.getWhiteList(i));
+                addPolicy(ids, callable.getBlackList(i));
+            }
+        }
+        final Path absolute = index.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        final Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out =
+                     new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                final long[] checksums = checksums(stubsOption);
+                out.writeInt(checksums.length);
+                for (long checksum : checksums) {
+                    out.writeLong(checksum);
+                }
+                out.writeInt(ids.size());
+                for (CryptoPolicy policy : ids.keySet()) {
+                    out.writeByte(policy.getKind().ordinal());
+                    writeStrings(out, policy.getRegexes());
+                    writeStrings(out, policy.getWarnOnRegexes());
+                    policy.getMatcher().write(out);
+                    policy.getWarnOnMatcher().write(out);
+                }
+                final List<StubPolicies.Callable> callables = policies.getCallables();
+                out.writeInt(callables.size());
+                for (StubPolicies.Callable callable : callables) {
+                    writeString(out, callable.getOwner());
+                    writeString(out, callable.getName());
+                    out.writeInt(callable.getParameterCount());
+                    for (int i = 0; i < callable.getParameterCount(); i++) {
+                        writeString(out, callable.getParameterType(i));
+                        out.writeInt(policyId(ids, callable.getWhiteList(i)));
+                        out.writeInt(policyId(ids, callable.getBlackList(i)));
+                    }
+                }
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Read the index of the policies of the stubs.
+     *
+     * @param index       the index file.
+     * @param stubsOption the stubs the index has to be compiled from, like -Astubs.
+     * @return the policies, or null if the index does not exist, has another format version, was compiled from
+     *     other stubs or is truncated.
+     * @throws IOException if the stubs or an existing index cannot be read.
+     */
+    public static StubPolicies read(final Path index, final String stubsOption) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final long[] checksums = checksums(stubsOption);
+            if (buffer.getInt() != checksums.length) {
+                return null;
+            }
+            for (long checksum : checksums) {
+                if (buffer.getLong() != checksum) {
+                    return null;
+                }
+            }
+            final CryptoPolicy[] policies = new CryptoPolicy[buffer.getInt()];
+            for (int id = 0; id < policies.length; id++) {
+                final CryptoPolicy.Kind kind = CryptoPolicy.Kind.values()[buffer.get()];
+                final List<String> regexes = readStrings(buffer);
+                final List<String> warnOnRegexes = readStrings(buffer);
+                final MultiPatternMatcher matcher = MultiPatternMatcher.read(buffer);
+                final MultiPatternMatcher warnOnMatcher = MultiPatternMatcher.read(buffer);
+                policies[id] = CryptoPolicyCache.getInstance().getPolicy(kind, regexes, warnOnRegexes, matcher,
+                                                                         warnOnMatcher);
+            }
+            final List<StubPolicies.Callable> callables = new ArrayList<>();
+            for (int count = buffer.getInt(); count > 0; count--) {
+                final String owner = readString(buffer);
+                final String name = readString(buffer);
+                final String[] parameterTypes = new String[buffer.getInt()];
+                final CryptoPolicy[] whiteLists = new CryptoPolicy[parameterTypes.length];
+                final CryptoPolicy[] blackLists = new CryptoPolicy[parameterTypes.length];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = readString(buffer);
+                    whiteLists[i] = policy(policies, buffer.getInt());
+                    blackLists[i] = policy(policies, buffer.getInt());
+                }
+                callables.add(new StubPolicies.Callable(owner, name, parameterTypes, whiteLists, blackLists));
+            }
+            return buffer.hasRemaining() ? null : StubPolicies.of(callables);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The index guards against edited stubs, not forged ones, so a CRC-32 is enough and saves initializing a
+     * message digest in every compilation.
+     *
+     * @param stubsOption paths of stub files or directories, like -Astubs.
+     * @return the length and the CRC-32 of each stub file, in the order they are read.
+     * @throws IOException if a stub cannot be read.
+     */
+    static long[] checksums(final String stubsOption) throws IOException {
+        final List<Path> stubFiles = StubPolicyIndex.findStubFiles(stubsOption);
+        if (stubFiles == null) {
+            throw new IOException("Cannot read the stubs " + stubsOption);
+        }
+        final long[] checksums = new long[2 * stubFiles.size()];
+        for (int i = 0; i < stubFiles.size(); i++) {
+            final byte[] contents = Files.readAllBytes(stubFiles.get(i));
+            final CRC32 crc = new CRC32();
+            crc.update(contents);
+            checksums[2 * i] = contents.length;
+            checksums[2 * i + 1] = crc.getValue();
+        }
+        return checksums;
+    }
+
+    private static void addPolicy(final Map<CryptoPolicy, Integer> ids, final CryptoPolicy policy) {
+        if (policy != null && !ids.containsKey(policy)) {
+            ids.put(policy, ids.size());
+        }
+    }
+
+    private static int policyId(final Map<CryptoPolicy, Integer> ids, final CryptoPolicy policy) {
+        return policy == null ? NO_POLICY : ids.get(policy);
+    }
+
+    private static CryptoPolicy policy(final CryptoPolicy[] policies, final int id) {
+        return id == NO_POLICY ? null : policies[id];
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static List<String> readStrings(final ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        final List<String> strings = new ArrayList<>(Math.min(count, buffer.remaining()));
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(buffer));
+        }
+        return strings;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.amazon.checkerframework.cryptopolicy.index;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+
+/**
+ * Compiles the policy stubs into a {@link PolicyIndex}, for -AcryptoPolicyStubs=stubs -AcryptoPolicyIndex=file.
+ * The index only holds the {@code @CryptoWhiteListed} and {@code @CryptoBlackListed} parameters of methods and
+ * constructors, so stubs that annotate anything else with a policy qualifier are rejected; pass those with
+ * -Astubs.
+ * <p>
+ * Usage: {@code PolicyIndexCompiler [--stubs paths] [--out file]}, by default the stubs directory and
+ * build/crypto-policy.idx. Exits with 1 if the stubs have members the index cannot hold and 2 if the stubs cannot
+ * be read or the index cannot be written.
+ */
+public final class PolicyIndexCompiler {
+
+    private PolicyIndexCompiler() {
+    }
+
+    public static void main(final String[] args) {
+        String stubs = "stubs";
+        Path out = Paths.get("build", "crypto-policy.idx");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--stubs") && i + 1 < args.length) {
+                stubs = args[++i];
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else {
+                System.err.println("Usage: PolicyIndexCompiler [--stubs paths] [--out file]");
+                System.exit(2);
+            }
+        }
+
+        final StubPolicies policies;
+        try {
+            policies = StubPolicies.load(stubs);
+            if (!policies.getIgnoredMembers().isEmpty()) {
+                System.err.println("error: the index only holds policies of parameters, pass the stubs of "
+                                   + String.join(", ", policies.getIgnoredMembers()) + " with -Astubs");
+                System.exit(1);
+            }
+            PolicyIndex.write(policies, stubs, out);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println("Wrote " + policies.getCallables().size() + " methods and constructors with policies to "
+                           + out);
+    }
+}
@@ -0,0 +1,103 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable set of UTF-16 chars, stored as sorted, disjoint, inclusive [lo, hi] ranges.
+ */
+final class CharRanges {
+
+    static final CharRanges EMPTY = new CharRanges(new int[0]);
+    static final CharRanges DIGITS = of('0', '9');
+    static final CharRanges WORD = union(union(of('a', 'z'), of('A', 'Z')), union(of('_', '_'), DIGITS));
+    static final CharRanges SPACE = union(of(' ', ' '), of('\t', '\r'));
+
+    /**
+     * What '.' matches without the DOTALL or UNIX_LINES flags: everything except the line terminators.
+     */
+    static final CharRanges DOT = union(union(of('\n', '\n'), of('\r', '\r')),
+                                        union(of(0x85, 0x85), of(0x2028, 0x2029))).complement();
+
+    private final int[] ranges;
+
+    private CharRanges(final int[] ranges) {
+        this.ranges = ranges;
+    }
+
+    static CharRanges of(final int lo, final int hi) {
+        return new CharRanges(new int[]{lo, hi});
+    }
+
+    static CharRanges union(final CharRanges a, final CharRanges b) {
+        final List<int[]> all = new ArrayList<>();
+        for (int i = 0; i < a.ranges.length; i += 2) {
+            all.add(new int[]{a.ranges[i], a.ranges[i + 1]});
+        }
+        for (int i = 0; i < b.ranges.length; i += 2) {
+            all.add(new int[]{b.ranges[i], b.ranges[i + 1]});
+        }
+        all.sort(Comparator.comparingInt(r -> r[0]));
+        final int[] merged = new int[all.size() * 2];
+        int n = 0;
+        for (int[] r : all) {
+            if (n > 0 && r[0] <= merged[n - 1] + 1) {
+                merged[n - 1] = Math.max(merged[n - 1], r[1]);
+            } else {
+                merged[n++] = r[0];
+                merged[n++] = r[1];
+            }
+        }
+        return new CharRanges(Arrays.copyOf(merged, n));
+    }
+
+    CharRanges complement() {
+        final int[] result = new int[ranges.length + 2];
+        int n = 0;
+        int next = Character.MIN_VALUE;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[n++] = next;
+                result[n++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            result[n++] = next;
+            result[n++] = Character.MAX_VALUE;
+        }
+        return new CharRanges(Arrays.copyOf(result, n));
+    }
+
+    boolean contains(final int c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c < ranges[i]) {
+                return false;
+            }
+            if (c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the only char in this set, or -1 if the set does not contain exactly one char.
+     */
+    int singleChar() {
+        return ranges.length == 2 && ranges[0] == ranges[1] ? ranges[0] : -1;
+    }
+
+    /**
+     * Adds the boundaries of this set to the given list: the first char of every range and the first char
+     * after it. Two chars between consecutive boundaries are either both in this set or both not in it.
+     */
+    void addBoundaries(final List<Integer> boundaries) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            boundaries.add(ranges[i]);
+            boundaries.add(ranges[i + 1] + 1);
+        }
+    }
+}
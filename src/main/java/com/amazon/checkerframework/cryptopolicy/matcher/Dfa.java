@@ -0,0 +1,190 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * DFA built eagerly from an {@link Nfa} by subset construction. Chars are grouped into equivalence classes
+ * (chars that no transition of the NFA can tell apart), so the transition table stays small even though the
+ * alphabet is all of UTF-16. The DFA is immutable once built and can be used from several threads.
+ */
+final class Dfa {
+
+    private static final int ASCII = 128;
+
+    /**
+     * Class k covers the chars from classStarts[k] up to (excluding) classStarts[k + 1].
+     */
+    private final int[] classStarts;
+    private final int[] asciiClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] acceptingRegex;
+
+    private Dfa(final int[] classStarts, final int[] transitions, final int[] acceptingRegex) {
+        this.classStarts = classStarts;
+        this.classCount = classStarts.length;
+        this.transitions = transitions;
+        this.acceptingRegex = acceptingRegex;
+        this.asciiClasses = new int[ASCII];
+        for (int c = 0; c < ASCII; c++) {
+            asciiClasses[c] = classOfSlow(c);
+        }
+    }
+
+    /**
+     * Run the subset construction.
+     *
+     * @param nfa       the union NFA.
+     * @param maxStates upper bound on the number of DFA states.
+     * @return the DFA, or null if it would need more than maxStates states.
+     */
+    static Dfa build(final Nfa nfa, final int maxStates) {
+        final TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        final List<Integer> collected = new ArrayList<>();
+        for (CharRanges chars : nfa.charSets) {
+            if (chars != null) {
+                chars.addBoundaries(collected);
+            }
+        }
+        for (Integer boundary : collected) {
+            if (boundary <= Character.MAX_VALUE) {
+                boundaries.add(boundary);
+            }
+        }
+        final int[] classStarts = new int[boundaries.size()];
+        int k = 0;
+        for (Integer boundary : boundaries) {
+            classStarts[k++] = boundary;
+        }
+        final int classCount = classStarts.length;
+
+        // For every NFA state with a char transition, the set of classes it accepts.
+        final BitSet[] classesOfState = new BitSet[nfa.stateCount()];
+        for (int s = 0; s < nfa.stateCount(); s++) {
+            if (nfa.charSets[s] != null) {
+                classesOfState[s] = new BitSet(classCount);
+                for (int cls = 0; cls < classCount; cls++) {
+                    if (nfa.charSets[s].contains(classStarts[cls])) {
+                        classesOfState[s].set(cls);
+                    }
+                }
+            }
+        }
+
+        final Map<BitSet, Integer> ids = new HashMap<>();
+        final List<BitSet> states = new ArrayList<>();
+        final BitSet initial = new BitSet(nfa.stateCount());
+        initial.set(nfa.start);
+        nfa.closure(initial);
+        ids.put(initial, 0);
+        states.add(initial);
+
+        int[] transitions = new int[16 * classCount];
+        for (int id = 0; id < states.size(); id++) {
+            final BitSet current = states.get(id);
+            if ((id + 1) * classCount > transitions.length) {
+                transitions = Arrays.copyOf(transitions, transitions.length * 2);
+            }
+            for (int cls = 0; cls < classCount; cls++) {
+                final BitSet next = new BitSet(nfa.stateCount());
+                for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+                    if (classesOfState[s] != null && classesOfState[s].get(cls)) {
+                        next.set(nfa.charTargets[s]);
+                    }
+                }
+                if (next.isEmpty()) {
+                    transitions[id * classCount + cls] = -1;
+                    continue;
+                }
+                nfa.closure(next);
+                Integer nextId = ids.get(next);
+                if (nextId == null) {
+                    if (states.size() >= maxStates) {
+                        return null;
+                    }
+                    nextId = states.size();
+                    ids.put(next, nextId);
+                    states.add(next);
+                }
+                transitions[id * classCount + cls] = nextId;
+            }
+        }
+
+        final int[] accepting = new int[states.size()];
+        for (int id = 0; id < states.size(); id++) {
+            accepting[id] = nfa.acceptedRegex(states.get(id));
+        }
+        return new Dfa(classStarts, Arrays.copyOf(transitions, states.size() * classCount), accepting);
+    }
+
+    /**
+     * Read the tables that {@link #write} wrote.
+     *
+     * @param in the buffer, at the tables.
+     * @return the DFA.
+     */
+    static Dfa read(final ByteBuffer in) {
+        final int[] classStarts = readInts(in);
+        final int[] transitions = readInts(in);
+        return new Dfa(classStarts, transitions, readInts(in));
+    }
+
+    /**
+     * Write the tables, so that the DFA can be read back without running the subset construction.
+     */
+    void write(final DataOutput out) throws IOException {
+        writeInts(out, classStarts);
+        writeInts(out, transitions);
+        writeInts(out, acceptingRegex);
+    }
+
+    private static int[] readInts(final ByteBuffer in) {
+        final int[] ints = new int[in.getInt()];
+        in.asIntBuffer().get(ints);
+        in.position(in.position() + ints.length * Integer.BYTES);
+        return ints;
+    }
+
+    private static void writeInts(final DataOutput out, final int[] ints) throws IOException {
+        out.writeInt(ints.length);
+        for (int value : ints) {
+            out.writeInt(value);
+        }
+    }
+
+    int stateCount() {
+        return acceptingRegex.length;
+    }
+
+    /**
+     * @param value the string to match in full.
+     * @return the smallest index of a regex that matches the value, or -1.
+     */
+    int match(final String value) {
+        int state = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            final int cls = c < ASCII ? asciiClasses[c] : classOfSlow(c);
+            state = transitions[state * classCount + cls];
+            if (state < 0) {
+                return -1;
+            }
+        }
+        return acceptingRegex[state];
+    }
+
+    private int classOfSlow(final int c) {
+        final int index = Arrays.binarySearch(classStarts, c);
+        return index >= 0 ? index : -index - 2;
+    }
+}
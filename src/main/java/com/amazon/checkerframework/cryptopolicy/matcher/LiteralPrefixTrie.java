@@ -0,0 +1,142 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.util.Arrays;
+
+/**
+ * Fast path for the two most common regex shapes in policies: plain literals such as {@code "md5"} and
+ * literal prefixes such as {@code "aes/gcm.*"}. All of them are stored in one trie, so a single walk over the
+ * value finds every literal regex that matches it.
+ */
+final class LiteralPrefixTrie {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * A regex that the trie can represent.
+     */
+    static final class Literal {
+        final String text;
+        final boolean prefix;
+
+        Literal(final String text, final boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int exactRegex = NONE;
+        private int prefixRegex = NONE;
+
+        Node child(final char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(final char c) {
+            final Node existing = child(c);
+            if (existing != null) {
+                return existing;
+            }
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = new Node();
+            return children[children.length - 1];
+        }
+    }
+
+    /**
+     * Recognize regexes of the form {@code literal} or {@code literal.*}, where the literal may contain
+     * backslash-escaped punctuation.
+     *
+     * @param regex the regex.
+     * @return the literal, or null if the regex has any other shape.
+     */
+    static Literal parse(final String regex) {
+        final StringBuilder text = new StringBuilder(regex.length());
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '.' && i == regex.length() - 2 && regex.charAt(i + 1) == '*') {
+                return new Literal(text.toString(), true);
+            }
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                final char escaped = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escaped) || Character.isSurrogate(escaped)) {
+                    return null;
+                }
+                text.append(escaped);
+                i += 2;
+                continue;
+            }
+            if (".[]{}()*+?^$|".indexOf(c) >= 0 || Character.isSurrogate(c)) {
+                return null;
+            }
+            text.append(c);
+            i++;
+        }
+        return new Literal(text.toString(), false);
+    }
+
+    void add(final Literal literal, final int regexIndex) {
+        Node node = root;
+        for (int i = 0; i < literal.text.length(); i++) {
+            node = node.addChild(literal.text.charAt(i));
+        }
+        if (literal.prefix) {
+            node.prefixRegex = Math.min(node.prefixRegex, regexIndex);
+        } else {
+            node.exactRegex = Math.min(node.exactRegex, regexIndex);
+        }
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param value the string to match in full.
+     * @return the smallest index of a literal regex that matches the value, or -1.
+     */
+    int match(final String value) {
+        // '.' does not match line terminators, so a prefix only matches if none follow it.
+        final int lastLineTerminator = lastLineTerminator(value);
+        int best = NONE;
+        Node node = root;
+        int depth = 0;
+        while (node != null) {
+            if (node.prefixRegex < best && lastLineTerminator < depth) {
+                best = node.prefixRegex;
+            }
+            if (depth == value.length()) {
+                best = Math.min(best, node.exactRegex);
+                break;
+            }
+            node = node.child(value.charAt(depth++));
+        }
+        return best == NONE ? -1 : best;
+    }
+
+    private static int lastLineTerminator(final String value) {
+        for (int i = value.length() - 1; i >= 0; i--) {
+            if (!CharRanges.DOT.contains(value.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
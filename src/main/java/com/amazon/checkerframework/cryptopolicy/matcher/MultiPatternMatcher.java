@@ -0,0 +1,282 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a string against a whole list of regexes at once and tells which regex (the first one in list order)
+ * matched it. Matching has the same semantics as {@link String#matches(String)} for every regex in the list.
+ * Regexes are compiled into three tiers:
+ * <ol>
+ *   <li>literals and literal prefixes ({@code "md5"}, {@code "aes/gcm.*"}) go into a {@link LiteralPrefixTrie},</li>
+ *   <li>the remaining regular regexes are combined into one DFA (or, if that gets too large, one NFA),</li>
+ *   <li>regexes with constructs the engine cannot handle are matched with java.util.regex.</li>
+ * </ol>
+ * Instances are immutable and thread-safe. {@link #write} and {@link #read} store the compiled tiers, so that a
+ * matcher can be restored without parsing its regexes or building its DFA again.
+ */
+public final class MultiPatternMatcher {
+
+    /**
+     * How a single regex of the list is evaluated.
+     */
+    public enum Strategy {
+        LITERAL_TRIE,
+        AUTOMATON,
+        JAVA_REGEX
+    }
+
+    private static final int MAX_DFA_STATES = 2048;
+
+    /**
+     * How {@link #write} stores the automaton.
+     */
+    private static final byte NO_AUTOMATON = 0;
+    private static final byte DFA = 1;
+    private static final byte NFA = 2;
+
+    private final List<String> regexes;
+    private final Pattern[] patterns;
+    private final Strategy[] strategies;
+    private final LiteralPrefixTrie trie;
+    private final Nfa nfa;
+    private final Dfa dfa;
+    private final int[] javaRegexIndices;
+
+    private MultiPatternMatcher(final List<String> regexes) {
+        this.regexes = Collections.unmodifiableList(new ArrayList<>(regexes));
+        this.patterns = new Pattern[regexes.size()];
+        this.strategies = new Strategy[regexes.size()];
+        this.trie = new LiteralPrefixTrie();
+
+        final Nfa.Builder builder = new Nfa.Builder();
+        final int unionStart = builder.newState();
+        final List<Integer> javaRegexes = new ArrayList<>();
+        for (int i = 0; i < regexes.size(); i++) {
+            final String regex = regexes.get(i);
+            // Always compile with java.util.regex as well: it rejects malformed regexes exactly like before and
+            // handles values the automata do not support.
+            patterns[i] = Pattern.compile(regex);
+            final LiteralPrefixTrie.Literal literal = LiteralPrefixTrie.parse(regex);
+            if (literal != null) {
+                trie.add(literal, i);
+                strategies[i] = Strategy.LITERAL_TRIE;
+                continue;
+            }
+            try {
+                builder.addRegex(unionStart, RegexParser.parse(regex), i);
+                strategies[i] = Strategy.AUTOMATON;
+            } catch (RegexParser.UnsupportedRegexException e) {
+                javaRegexes.add(i);
+                strategies[i] = Strategy.JAVA_REGEX;
+            }
+        }
+        if (builder.stateCount() > 1) {
+            final Nfa union = builder.build(unionStart);
+            this.dfa = Dfa.build(union, MAX_DFA_STATES);
+            this.nfa = dfa == null ? union : null;
+        } else {
+            this.dfa = null;
+            this.nfa = null;
+        }
+        this.javaRegexIndices = new int[javaRegexes.size()];
+        for (int i = 0; i < javaRegexIndices.length; i++) {
+            javaRegexIndices[i] = javaRegexes.get(i);
+        }
+    }
+
+    private MultiPatternMatcher(final List<String> regexes,
+                                final Strategy[] strategies,
+                                final Nfa nfa,
+                                final Dfa dfa) {
+        this.regexes = Collections.unmodifiableList(new ArrayList<>(regexes));
+        this.patterns = new Pattern[regexes.size()];
+        this.strategies = strategies;
+        this.trie = new LiteralPrefixTrie();
+        this.nfa = nfa;
+        this.dfa = dfa;
+        final List<Integer> javaRegexes = new ArrayList<>();
+        for (int i = 0; i < regexes.size(); i++) {
+            if (strategies[i] == Strategy.LITERAL_TRIE) {
+                trie.add(LiteralPrefixTrie.parse(regexes.get(i)), i);
+            } else if (strategies[i] == Strategy.JAVA_REGEX) {
+                // the other patterns are only needed for values with surrogates, see pattern().
+                patterns[i] = Pattern.compile(regexes.get(i));
+                javaRegexes.add(i);
+            }
+        }
+        this.javaRegexIndices = new int[javaRegexes.size()];
+        for (int i = 0; i < javaRegexIndices.length; i++) {
+            javaRegexIndices[i] = javaRegexes.get(i);
+        }
+    }
+
+    /**
+     * Compile a list of regexes. The regexes are used exactly as given; callers are responsible for any
+     * normalization such as lower-casing.
+     *
+     * @param regexes the regexes.
+     * @return the matcher.
+     * @throws java.util.regex.PatternSyntaxException if one of the regexes is malformed.
+     */
+    public static MultiPatternMatcher compile(final List<String> regexes) {
+        return new MultiPatternMatcher(regexes);
+    }
+
+    /**
+     * Restore a matcher that {@link #write} wrote. Only the regexes that need java.util.regex are compiled; a DFA
+     * is read as it is, an NFA that was too large for one is built again from the regexes.
+     *
+     * @param in the buffer, at the matcher; its position is moved past it.
+     * @return the matcher.
+     * @throws IllegalArgumentException if the buffer does not hold a matcher.
+     */
+    public static MultiPatternMatcher read(final ByteBuffer in) {
+        final List<String> regexes = new ArrayList<>();
+        final Strategy[] strategies = new Strategy[in.getInt()];
+        for (int i = 0; i < strategies.length; i++) {
+            final byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            regexes.add(new String(bytes, StandardCharsets.UTF_8));
+            strategies[i] = Strategy.values()[in.get()];
+        }
+        final byte automaton = in.get();
+        if (automaton == DFA) {
+            return new MultiPatternMatcher(regexes, strategies, null, Dfa.read(in));
+        } else if (automaton == NFA) {
+            final Nfa.Builder builder = new Nfa.Builder();
+            final int unionStart = builder.newState();
+            for (int i = 0; i < regexes.size(); i++) {
+                if (strategies[i] == Strategy.AUTOMATON) {
+                    try {
+                        builder.addRegex(unionStart, RegexParser.parse(regexes.get(i)), i);
+                    } catch (RegexParser.UnsupportedRegexException e) {
+                        throw new IllegalArgumentException("Not an automaton regex: " + regexes.get(i), e);
+                    }
+                }
+            }
+            return new MultiPatternMatcher(regexes, strategies, builder.build(unionStart), null);
+        } else if (automaton != NO_AUTOMATON) {
+            throw new IllegalArgumentException("Unknown automaton " + automaton);
+        }
+        return new MultiPatternMatcher(regexes, strategies, null, null);
+    }
+
+    /**
+     * Write the regexes, how each is evaluated and the DFA, for {@link #read}.
+     *
+     * @param out the output.
+     * @throws IOException if the output cannot be written.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(regexes.size());
+        for (int i = 0; i < regexes.size(); i++) {
+            final byte[] bytes = regexes.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeByte(strategies[i].ordinal());
+        }
+        if (dfa != null) {
+            out.writeByte(DFA);
+            dfa.write(out);
+        } else {
+            out.writeByte(nfa != null ? NFA : NO_AUTOMATON);
+        }
+    }
+
+    public List<String> getRegexes() {
+        return regexes;
+    }
+
+    /**
+     * @param regexIndex index into {@link #getRegexes()}.
+     * @return how that regex is evaluated.
+     */
+    public Strategy getStrategy(final int regexIndex) {
+        return strategies[regexIndex];
+    }
+
+    /**
+     * Match a value against all regexes.
+     *
+     * @param value the string to match in full.
+     * @return the index of the first regex that matches the value, or -1 if none does.
+     */
+    public int firstMatch(final String value) {
+        if (hasSurrogates(value)) {
+            // The automata work on UTF-16 chars while java.util.regex works on code points.
+            return firstMatchWithPatterns(value);
+        }
+        int best = trie.isEmpty() ? -1 : trie.match(value);
+        final int automatonMatch = dfa != null ? dfa.match(value) : nfa != null ? nfa.match(value) : -1;
+        if (automatonMatch >= 0 && (best < 0 || automatonMatch < best)) {
+            best = automatonMatch;
+        }
+        for (int index : javaRegexIndices) {
+            if (best >= 0 && index > best) {
+                break;
+            }
+            if (patterns[index].matcher(value).matches()) {
+                return index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param value the string to match in full.
+     * @return whether any of the regexes matches the value.
+     */
+    public boolean matchesAny(final String value) {
+        return firstMatch(value) >= 0;
+    }
+
+    /**
+     * Match several values in one pass.
+     *
+     * @param values the strings to match.
+     * @return for every value, the index of the first regex that matches it, or -1.
+     */
+    public int[] match(final List<String> values) {
+        final int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = firstMatch(values.get(i));
+        }
+        return result;
+    }
+
+    private int firstMatchWithPatterns(final String value) {
+        for (int i = 0; i < patterns.length; i++) {
+            if (pattern(i).matcher(value).matches()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A restored matcher compiles the patterns of the regexes that the trie or the automaton evaluate the first
+     * time a value with surrogates needs them.
+     */
+    private synchronized Pattern pattern(final int regexIndex) {
+        if (patterns[regexIndex] == null) {
+            patterns[regexIndex] = Pattern.compile(regexes.get(regexIndex));
+        }
+        return patterns[regexIndex];
+    }
+
+    private static boolean hasSurrogates(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isSurrogate(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
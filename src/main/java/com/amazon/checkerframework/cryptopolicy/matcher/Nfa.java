@@ -0,0 +1,144 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Thompson NFA for the union of several regexes. Every state has at most one char transition; the
+ * accepting state of each regex remembers the index of that regex so a single simulation tells which
+ * of the regexes matched.
+ */
+final class Nfa {
+
+    final int start;
+    final int[][] epsilons;
+    final CharRanges[] charSets;
+    final int[] charTargets;
+    final int[] acceptingRegex;
+
+    private Nfa(final Builder builder, final int start) {
+        final int n = builder.charSets.size();
+        this.start = start;
+        this.epsilons = new int[n][];
+        this.charSets = builder.charSets.toArray(new CharRanges[n]);
+        this.charTargets = new int[n];
+        this.acceptingRegex = new int[n];
+        for (int i = 0; i < n; i++) {
+            final List<Integer> eps = builder.epsilons.get(i);
+            epsilons[i] = new int[eps.size()];
+            for (int j = 0; j < eps.size(); j++) {
+                epsilons[i][j] = eps.get(j);
+            }
+            charTargets[i] = builder.charTargets.get(i);
+            acceptingRegex[i] = builder.acceptingRegex.get(i);
+        }
+    }
+
+    int stateCount() {
+        return charSets.length;
+    }
+
+    /**
+     * Adds all states reachable through epsilon transitions to the set.
+     */
+    void closure(final BitSet states) {
+        final int[] stack = new int[stateCount()];
+        int size = 0;
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+            stack[size++] = s;
+        }
+        while (size > 0) {
+            final int s = stack[--size];
+            for (int target : epsilons[s]) {
+                if (!states.get(target)) {
+                    states.set(target);
+                    stack[size++] = target;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the smallest regex index accepted by any state in the set, or -1.
+     */
+    int acceptedRegex(final BitSet states) {
+        int best = -1;
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+            final int regex = acceptingRegex[s];
+            if (regex >= 0 && (best < 0 || regex < best)) {
+                best = regex;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Direct simulation, used when the NFA is too large to be turned into a DFA.
+     *
+     * @param value the string to match in full.
+     * @return the smallest index of a regex that matches the value, or -1.
+     */
+    int match(final String value) {
+        BitSet current = new BitSet(stateCount());
+        current.set(start);
+        closure(current);
+        for (int i = 0; i < value.length() && !current.isEmpty(); i++) {
+            final char c = value.charAt(i);
+            final BitSet next = new BitSet(stateCount());
+            for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+                if (charSets[s] != null && charSets[s].contains(c)) {
+                    next.set(charTargets[s]);
+                }
+            }
+            closure(next);
+            current = next;
+        }
+        return acceptedRegex(current);
+    }
+
+    /**
+     * Collects NFA states while {@link RegexNode}s are being translated.
+     */
+    static final class Builder {
+        private final List<List<Integer>> epsilons = new ArrayList<>();
+        private final List<CharRanges> charSets = new ArrayList<>();
+        private final List<Integer> charTargets = new ArrayList<>();
+        private final List<Integer> acceptingRegex = new ArrayList<>();
+
+        int newState() {
+            epsilons.add(new ArrayList<>(2));
+            charSets.add(null);
+            charTargets.add(-1);
+            acceptingRegex.add(-1);
+            return charSets.size() - 1;
+        }
+
+        void addEpsilon(final int from, final int to) {
+            epsilons.get(from).add(to);
+        }
+
+        void addCharTransition(final int from, final CharRanges chars, final int to) {
+            charSets.set(from, chars);
+            charTargets.set(from, to);
+        }
+
+        int stateCount() {
+            return charSets.size();
+        }
+
+        /**
+         * Adds a whole regex to the union: the shared start state gets an epsilon transition to the regex
+         * and the end of the regex accepts with the given index.
+         */
+        void addRegex(final int unionStart, final RegexNode regex, final int regexIndex) {
+            final int[] fragment = regex.build(this);
+            addEpsilon(unionStart, fragment[0]);
+            acceptingRegex.set(fragment[1], regexIndex);
+        }
+
+        Nfa build(final int unionStart) {
+            return new Nfa(this, unionStart);
+        }
+    }
+}
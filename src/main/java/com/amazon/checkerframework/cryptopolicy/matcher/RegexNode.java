@@ -0,0 +1,140 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.util.List;
+
+/**
+ * Syntax tree of the regular subset of java.util.regex that {@link RegexParser} understands.
+ */
+abstract class RegexNode {
+
+    /**
+     * Adds the NFA states for this node to the builder.
+     *
+     * @param nfa the automaton under construction.
+     * @return the start and end state of the fragment.
+     */
+    abstract int[] build(Nfa.Builder nfa);
+
+    /**
+     * Matches exactly one char out of a set.
+     */
+    static final class CharSet extends RegexNode {
+        final CharRanges chars;
+
+        CharSet(final CharRanges chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        int[] build(final Nfa.Builder nfa) {
+            final int start = nfa.newState();
+            final int end = nfa.newState();
+            nfa.addCharTransition(start, chars, end);
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Matches the empty string.
+     */
+    static final class Empty extends RegexNode {
+        @Override
+        int[] build(final Nfa.Builder nfa) {
+            final int start = nfa.newState();
+            final int end = nfa.newState();
+            nfa.addEpsilon(start, end);
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Matches its parts one after another.
+     */
+    static final class Concat extends RegexNode {
+        final List<RegexNode> parts;
+
+        Concat(final List<RegexNode> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        int[] build(final Nfa.Builder nfa) {
+            int[] result = null;
+            for (RegexNode part : parts) {
+                final int[] fragment = part.build(nfa);
+                if (result == null) {
+                    result = fragment;
+                } else {
+                    nfa.addEpsilon(result[1], fragment[0]);
+                    result = new int[]{result[0], fragment[1]};
+                }
+            }
+            return result == null ? new Empty().build(nfa) : result;
+        }
+    }
+
+    /**
+     * Matches any one of its alternatives.
+     */
+    static final class Alternation extends RegexNode {
+        final List<RegexNode> alternatives;
+
+        Alternation(final List<RegexNode> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        @Override
+        int[] build(final Nfa.Builder nfa) {
+            final int start = nfa.newState();
+            final int end = nfa.newState();
+            for (RegexNode alternative : alternatives) {
+                final int[] fragment = alternative.build(nfa);
+                nfa.addEpsilon(start, fragment[0]);
+                nfa.addEpsilon(fragment[1], end);
+            }
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Matches between min and max repetitions of its body; max is -1 for unbounded repetition.
+     */
+    static final class Repeat extends RegexNode {
+        final RegexNode body;
+        final int min;
+        final int max;
+
+        Repeat(final RegexNode body, final int min, final int max) {
+            this.body = body;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        int[] build(final Nfa.Builder nfa) {
+            final int start = nfa.newState();
+            int current = start;
+            for (int i = 0; i < min; i++) {
+                final int[] copy = body.build(nfa);
+                nfa.addEpsilon(current, copy[0]);
+                current = copy[1];
+            }
+            final int end = nfa.newState();
+            if (max < 0) {
+                final int[] loop = body.build(nfa);
+                nfa.addEpsilon(current, loop[0]);
+                nfa.addEpsilon(loop[1], loop[0]);
+                nfa.addEpsilon(loop[1], end);
+            } else {
+                for (int i = min; i < max; i++) {
+                    final int[] copy = body.build(nfa);
+                    nfa.addEpsilon(current, copy[0]);
+                    nfa.addEpsilon(current, end);
+                    current = copy[1];
+                }
+            }
+            nfa.addEpsilon(current, end);
+            return new int[]{start, end};
+        }
+    }
+}
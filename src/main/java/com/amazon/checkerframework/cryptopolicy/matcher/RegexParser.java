@@ -0,0 +1,282 @@
+package com.amazon.checkerframework.cryptopolicy.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser for the regular subset of java.util.regex syntax that policies actually use: literals, '.', escapes,
+ * simple character classes, groups, alternation and greedy or lazy quantifiers. Lazy quantifiers accept the
+ * same strings as greedy ones under full-string matching, so both are handled alike.
+ * Anything else (anchors, back references, look-arounds, flags, possessive quantifiers, unicode properties,
+ * class intersections, ...) makes the parser give up with an {@link UnsupportedRegexException} and the caller
+ * falls back to java.util.regex for that regex.
+ * The parser is only used on regexes that already compiled with {@link java.util.regex.Pattern}, so it does
+ * not need to produce good error messages for malformed input.
+ */
+final class RegexParser {
+
+    /**
+     * Counted repetitions are expanded into copies, so large counts are left to java.util.regex.
+     */
+    private static final int MAX_REPETITIONS = 32;
+
+    private final String regex;
+    private int pos;
+
+    private RegexParser(final String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Signals a construct the engine does not handle.
+     */
+    static final class UnsupportedRegexException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedRegexException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Parse a complete regex.
+     *
+     * @param regex the regex.
+     * @return the syntax tree.
+     * @throws UnsupportedRegexException if the regex uses a construct outside of the supported subset.
+     */
+    static RegexNode parse(final String regex) throws UnsupportedRegexException {
+        final RegexParser parser = new RegexParser(regex);
+        final RegexNode node = parser.parseAlternation();
+        if (parser.pos != regex.length()) {
+            throw new UnsupportedRegexException("Unexpected '" + regex.charAt(parser.pos) + "'");
+        }
+        return node;
+    }
+
+    private RegexNode parseAlternation() throws UnsupportedRegexException {
+        final List<RegexNode> alternatives = new ArrayList<>();
+        alternatives.add(parseConcat());
+        while (pos < regex.length() && regex.charAt(pos) == '|') {
+            pos++;
+            alternatives.add(parseConcat());
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : new RegexNode.Alternation(alternatives);
+    }
+
+    private RegexNode parseConcat() throws UnsupportedRegexException {
+        final List<RegexNode> parts = new ArrayList<>();
+        while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+            parts.add(parseQuantified(parseAtom()));
+        }
+        return parts.size() == 1 ? parts.get(0) : new RegexNode.Concat(parts);
+    }
+
+    private RegexNode parseQuantified(final RegexNode atom) throws UnsupportedRegexException {
+        RegexNode result = atom;
+        while (pos < regex.length()) {
+            final char c = regex.charAt(pos);
+            final int min;
+            final int max;
+            if (c == '*') {
+                pos++;
+                min = 0;
+                max = -1;
+            } else if (c == '+') {
+                pos++;
+                min = 1;
+                max = -1;
+            } else if (c == '?') {
+                pos++;
+                min = 0;
+                max = 1;
+            } else if (c == '{') {
+                pos++;
+                min = parseNumber();
+                if (peek() == ',') {
+                    pos++;
+                    max = peek() == '}' ? -1 : parseNumber();
+                } else {
+                    max = min;
+                }
+                expect('}');
+                if (min > MAX_REPETITIONS || max > MAX_REPETITIONS) {
+                    throw new UnsupportedRegexException("Repetition count too large");
+                }
+            } else {
+                return result;
+            }
+            if (peek() == '+') {
+                throw new UnsupportedRegexException("Possessive quantifier");
+            } else if (peek() == '?') {
+                pos++;
+            }
+            result = new RegexNode.Repeat(result, min, max);
+        }
+        return result;
+    }
+
+    private RegexNode parseAtom() throws UnsupportedRegexException {
+        final char c = regex.charAt(pos++);
+        switch (c) {
+            case '.':
+                return new RegexNode.CharSet(CharRanges.DOT);
+            case '[':
+                return new RegexNode.CharSet(parseCharClass());
+            case '\\':
+                return new RegexNode.CharSet(parseEscape());
+            case '(':
+                if (peek() == '?') {
+                    pos++;
+                    expect(':');
+                }
+                final RegexNode group = parseAlternation();
+                expect(')');
+                return group;
+            case '^':
+            case '$':
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw new UnsupportedRegexException("Unsupported '" + c + "'");
+            default:
+                if (Character.isSurrogate(c)) {
+                    throw new UnsupportedRegexException("Supplementary character");
+                }
+                return new RegexNode.CharSet(CharRanges.of(c, c));
+        }
+    }
+
+    private CharRanges parseCharClass() throws UnsupportedRegexException {
+        boolean negated = false;
+        if (peek() == '^') {
+            pos++;
+            negated = true;
+        }
+        if (peek() == ']') {
+            throw new UnsupportedRegexException("Leading ']' in character class");
+        }
+        CharRanges result = CharRanges.EMPTY;
+        while (peek() != ']') {
+            if (peek() == -1 || peek() == '[' || regex.startsWith("&&", pos)) {
+                throw new UnsupportedRegexException("Nested character class");
+            }
+            final CharRanges lo = parseClassChar();
+            if (peek() == '-' && pos + 1 < regex.length() && regex.charAt(pos + 1) != ']') {
+                pos++;
+                final CharRanges hi = parseClassChar();
+                final int loChar = singleChar(lo);
+                final int hiChar = singleChar(hi);
+                result = CharRanges.union(result, CharRanges.of(loChar, hiChar));
+            } else {
+                result = CharRanges.union(result, lo);
+            }
+        }
+        pos++;
+        return negated ? result.complement() : result;
+    }
+
+    private CharRanges parseClassChar() throws UnsupportedRegexException {
+        final char c = regex.charAt(pos++);
+        if (c == '\\') {
+            return parseEscape();
+        }
+        if (Character.isSurrogate(c)) {
+            throw new UnsupportedRegexException("Supplementary character");
+        }
+        return CharRanges.of(c, c);
+    }
+
+    private static int singleChar(final CharRanges chars) throws UnsupportedRegexException {
+        final int c = chars.singleChar();
+        if (c < 0) {
+            throw new UnsupportedRegexException("Range bound is not a single character");
+        }
+        return c;
+    }
+
+    private CharRanges parseEscape() throws UnsupportedRegexException {
+        if (pos >= regex.length()) {
+            throw new UnsupportedRegexException("Trailing backslash");
+        }
+        final char c = regex.charAt(pos++);
+        switch (c) {
+            case 'd':
+                return CharRanges.DIGITS;
+            case 'D':
+                return CharRanges.DIGITS.complement();
+            case 'w':
+                return CharRanges.WORD;
+            case 'W':
+                return CharRanges.WORD.complement();
+            case 's':
+                return CharRanges.SPACE;
+            case 'S':
+                return CharRanges.SPACE.complement();
+            case 't':
+                return CharRanges.of('\t', '\t');
+            case 'n':
+                return CharRanges.of('\n', '\n');
+            case 'r':
+                return CharRanges.of('\r', '\r');
+            case 'f':
+                return CharRanges.of('\f', '\f');
+            case 'a':
+                return CharRanges.of(0x07, 0x07);
+            case 'e':
+                return CharRanges.of(0x1B, 0x1B);
+            case 'x':
+                return singleton(parseHex(2));
+            case 'u':
+                return singleton(parseHex(4));
+            default:
+                if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) {
+                    throw new UnsupportedRegexException("Unsupported escape \\" + c);
+                }
+                return CharRanges.of(c, c);
+        }
+    }
+
+    private static CharRanges singleton(final int c) throws UnsupportedRegexException {
+        if (Character.isSurrogate((char) c)) {
+            throw new UnsupportedRegexException("Surrogate escape");
+        }
+        return CharRanges.of(c, c);
+    }
+
+    private int parseHex(final int digits) throws UnsupportedRegexException {
+        if (pos + digits > regex.length()) {
+            throw new UnsupportedRegexException("Short hex escape");
+        }
+        try {
+            final int value = Integer.parseInt(regex.substring(pos, pos + digits), 16);
+            pos += digits;
+            return value;
+        } catch (NumberFormatException e) {
+            throw new UnsupportedRegexException("Bad hex escape");
+        }
+    }
+
+    private int parseNumber() throws UnsupportedRegexException {
+        final int start = pos;
+        while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '9') {
+            pos++;
+        }
+        if (start == pos || pos - start > 4) {
+            throw new UnsupportedRegexException("Bad repetition count");
+        }
+        return Integer.parseInt(regex.substring(start, pos));
+    }
+
+    private int peek() {
+        return pos < regex.length() ? regex.charAt(pos) : -1;
+    }
+
+    private void expect(final char c) throws UnsupportedRegexException {
+        if (peek() != c) {
+            throw new UnsupportedRegexException("Expected '" + c + "'");
+        }
+        pos++;
+    }
+}
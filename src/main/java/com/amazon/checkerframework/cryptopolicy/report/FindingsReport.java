@@ -0,0 +1,147 @@
+package com.amazon.checkerframework.cryptopolicy.report;
+
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the results of a compilation in memory and writes them as a single report at the end, see
+ * {@link ReportWriter} for the formats. Results are rows of ints that point into a table of distinct strings, so the
+ * file names, rules and messages that repeat across the call sites of a module are stored once. Results are written
+ * sorted by file, line and column, so that the report does not depend on the order javac checks the classes in.
+ * Not thread-safe, like the checker.
+ */
+public final class FindingsReport {
+
+    private static final int LEVEL = 0;
+    private static final int RULE = 1;
+    private static final int FILE = 2;
+    private static final int LINE = 3;
+    private static final int COLUMN = 4;
+    private static final int MESSAGE = 5;
+    private static final int SUPPRESSED_BY = 6;
+    private static final int ROW_LENGTH = 7;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private int[] rows = new int[ROW_LENGTH * 64];
+    private int size;
+
+    /**
+     * @param kind         the kind of the diagnostic, or of the diagnostic that was suppressed.
+     * @param rule         the message key.
+     * @param file         the source file, as javac prints it.
+     * @param line         the 1-based line, or 0 if unknown.
+     * @param column       the 1-based column, or 0 if unknown.
+     * @param message      the message without the key.
+     * @param suppressedBy the issue URL of the {@code @SuppressCryptoWarning} that suppressed the diagnostic, or null.
+     */
+    public void add(final Diagnostic.Kind kind,
+                    final String rule,
+                    final String file,
+                    final long line,
+                    final long column,
+                    final String message,
+                    final String suppressedBy) {
+        final int row = newRow();
+        rows[row + LEVEL] = level(kind).ordinal();
+        rows[row + RULE] = intern(rule);
+        rows[row + FILE] = intern(file);
+        rows[row + LINE] = (int) Math.max(0, line);
+        rows[row + COLUMN] = (int) Math.max(0, column);
+        rows[row + MESSAGE] = intern(message);
+        rows[row + SUPPRESSED_BY] = suppressedBy == null ? -1 : intern(suppressedBy);
+    }
+
+    /**
+     * Add the results of a report that was written before, like the report of a part of a compilation; the results
+     * of several parts are written in the same order as those of a single compilation.
+     *
+     * @param report a report in either format.
+     * @throws IOException if the report cannot be read.
+     */
+    public void addAll(final Path report) throws IOException {
+        ReportReader.read(report, entry -> {
+            final int row = newRow();
+            rows[row + LEVEL] = entry.getLevel().ordinal();
+            rows[row + RULE] = intern(entry.getRule());
+            rows[row + FILE] = intern(entry.getFile());
+            rows[row + LINE] = entry.getLine();
+            rows[row + COLUMN] = entry.getColumn();
+            rows[row + MESSAGE] = intern(entry.getMessage());
+            rows[row + SUPPRESSED_BY] = entry.getSuppressedBy() == null ? -1 : intern(entry.getSuppressedBy());
+        });
+    }
+
+    /**
+     * @return the number of results.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param path the file to write, SARIF if the name ends in .sarif, JSON otherwise.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(final Path path) throws IOException {
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer, String>comparing(i -> strings.get(rows[i * ROW_LENGTH + FILE]))
+                                     .thenComparingInt(i -> rows[i * ROW_LENGTH + LINE])
+                                     .thenComparingInt(i -> rows[i * ROW_LENGTH + COLUMN]));
+        try (ReportWriter writer = ReportWriter.open(path)) {
+            for (int i : order) {
+                writer.write(entry(i));
+            }
+        }
+    }
+
+    /**
+     * @return the offset of a new row at the end of {@link #rows}.
+     */
+    private int newRow() {
+        if ((size + 1) * ROW_LENGTH > rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        return size++ * ROW_LENGTH;
+    }
+
+    private ReportEntry entry(final int index) {
+        final int row = index * ROW_LENGTH;
+        return new ReportEntry(ReportEntry.Level.values()[rows[row + LEVEL]],
+                               strings.get(rows[row + RULE]),
+                               strings.get(rows[row + FILE]),
+                               rows[row + LINE],
+                               rows[row + COLUMN],
+                               strings.get(rows[row + MESSAGE]),
+                               rows[row + SUPPRESSED_BY] < 0 ? null : strings.get(rows[row + SUPPRESSED_BY]));
+    }
+
+    private int intern(final String string) {
+        return stringIds.computeIfAbsent(string, key -> {
+            strings.add(key);
+            return strings.size() - 1;
+        });
+    }
+
+    private static ReportEntry.Level level(final Diagnostic.Kind kind) {
+        switch (kind) {
+            case ERROR:
+                return ReportEntry.Level.ERROR;
+            case WARNING:
+            case MANDATORY_WARNING:
+                return ReportEntry.Level.WARNING;
+            default:
+                return ReportEntry.Level.NOTE;
+        }
+    }
+}
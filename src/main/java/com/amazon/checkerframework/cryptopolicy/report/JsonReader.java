@@ -0,0 +1,240 @@
+package com.amazon.checkerframework.cryptopolicy.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal pull parser for JSON, so that reports can be read one result at a time instead of as a whole document.
+ * Containers are walked with {@link #beginObject()}, {@link #nextName()}, {@link #beginArray()} and
+ * {@link #hasNext()}; {@link #readValue()} reads a single value into maps, lists, strings, numbers, booleans and
+ * null, and {@link #skipValue()} skips one without keeping anything.
+ */
+final class JsonReader implements Closeable {
+
+    private final Reader in;
+    private int peeked = -2;
+    private long offset;
+
+    /**
+     * Whether the container that is being read has had an element yet, for each open container.
+     */
+    private final List<Boolean> started = new ArrayList<>();
+
+    JsonReader(final Reader in) {
+        this.in = in;
+    }
+
+    void beginObject() throws IOException {
+        expect('{');
+        started.add(false);
+    }
+
+    void beginArray() throws IOException {
+        expect('[');
+        started.add(false);
+    }
+
+    /**
+     * @return true if the object or array that is being read has another element, false after consuming its end.
+     */
+    boolean hasNext() throws IOException {
+        final int c = peekToken();
+        if (c == '}' || c == ']') {
+            read();
+            started.remove(started.size() - 1);
+            return false;
+        }
+        final int last = started.size() - 1;
+        if (started.get(last)) {
+            expect(',');
+        } else {
+            started.set(last, true);
+        }
+        return true;
+    }
+
+    /**
+     * @return the name of the next member of the object that is being read, after {@link #hasNext()}.
+     */
+    String nextName() throws IOException {
+        final String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * @return true if the next value is the start of an array.
+     */
+    boolean peekArray() throws IOException {
+        return peekToken() == '[';
+    }
+
+    /**
+     * @return the next value: a Map, List, String, Long, Double, Boolean or null.
+     */
+    Object readValue() throws IOException {
+        final int c = peekToken();
+        switch (c) {
+            case '{':
+                beginObject();
+                final Map<String, Object> object = new LinkedHashMap<>();
+                while (hasNext()) {
+                    final String name = nextName();
+                    object.put(name, readValue());
+                }
+                return object;
+            case '[':
+                beginArray();
+                final List<Object> array = new ArrayList<>();
+                while (hasNext()) {
+                    array.add(readValue());
+                }
+                return array;
+            case '"':
+                return readString();
+            default:
+                return readLiteral();
+        }
+    }
+
+    void skipValue() throws IOException {
+        final int c = peekToken();
+        if (c == '{') {
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+        } else if (c == '[') {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+        } else if (c == '"') {
+            readString();
+        } else {
+            readLiteral();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        final StringBuilder value = new StringBuilder();
+        while (true) {
+            final int c = read();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\') {
+                final int escaped = read();
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        final char[] hex = {(char) read(), (char) read(), (char) read(), (char) read()};
+                        try {
+                            value.append((char) Integer.parseInt(new String(hex), 16));
+                        } catch (NumberFormatException e) {
+                            throw syntaxError("invalid unicode escape");
+                        }
+                        break;
+                    default:
+                        value.append((char) escaped);
+                        break;
+                }
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private Object readLiteral() throws IOException {
+        peekToken();
+        final StringBuilder literal = new StringBuilder();
+        while (true) {
+            final int c = peek();
+            if (c < 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                break;
+            }
+            literal.append((char) read());
+        }
+        final String text = literal.toString();
+        switch (text) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return null;
+            default:
+                try {
+                    return text.contains(".") || text.contains("e") || text.contains("E")
+                           ? (Object) Double.valueOf(text)
+                           : (Object) Long.valueOf(text);
+                } catch (NumberFormatException e) {
+                    if (text.isEmpty()) {
+                        throw syntaxError(peek() < 0 ? "unexpected end of input" : "unexpected character");
+                    }
+                    throw syntaxError("unexpected '" + text + "'");
+                }
+        }
+    }
+
+    private void expect(final char expected) throws IOException {
+        if (peekToken() != expected) {
+            throw syntaxError("expected '" + expected + "'");
+        }
+        read();
+    }
+
+    private int peekToken() throws IOException {
+        while (peek() >= 0 && Character.isWhitespace(peek())) {
+            read();
+        }
+        return peek();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = in.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        final int c = peek();
+        if (c < 0) {
+            throw syntaxError("unexpected end of input");
+        }
+        peeked = -2;
+        offset++;
+        return c;
+    }
+
+    private IOException syntaxError(final String message) {
+        return new IOException("Malformed JSON at character " + offset + ": " + message);
+    }
+}
@@ -0,0 +1,95 @@
+package com.amazon.checkerframework.cryptopolicy.report;
+
+import java.util.Locale;
+
+/**
+ * One result of a report: a diagnostic of the checker, or a diagnostic that a {@code @SuppressCryptoWarning} with a
+ * valid issue URL suppressed.
+ */
+final class ReportEntry {
+
+    /**
+     * The severity of a result, named like the SARIF levels.
+     */
+    enum Level {
+        ERROR,
+        WARNING,
+        NOTE;
+
+        String jsonName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @param name a level as written by {@link #jsonName()}.
+         * @return the level, or WARNING, the SARIF default, if the name is unknown.
+         */
+        static Level fromJsonName(final String name) {
+            for (Level level : values()) {
+                if (level.jsonName().equals(name)) {
+                    return level;
+                }
+            }
+            return WARNING;
+        }
+    }
+
+    private final Level level;
+    private final String rule;
+    private final String file;
+    private final int line;
+    private final int column;
+    private final String message;
+    private final String suppressedBy;
+
+    /**
+     * @param level        the severity.
+     * @param rule         the message key, e.g. crypto.policy.violation.
+     * @param file         the source file, as javac prints it.
+     * @param line         the 1-based line, or 0 if unknown.
+     * @param column       the 1-based column, or 0 if unknown.
+     * @param message      the message without the key.
+     * @param suppressedBy the issue URL of the suppression, or null if the result is not suppressed.
+     */
+    ReportEntry(final Level level, final String rule, final String file, final int line, final int column,
+                final String message, final String suppressedBy) {
+        this.level = level;
+        this.rule = rule;
+        this.file = file;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+        this.suppressedBy = suppressedBy;
+    }
+
+    Level getLevel() {
+        return level;
+    }
+
+    String getRule() {
+        return rule;
+    }
+
+    String getFile() {
+        return file;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    int getColumn() {
+        return column;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the issue URL that approves the suppression, or null if the result is not suppressed.
+     */
+    String getSuppressedBy() {
+        return suppressedBy;
+    }
+}
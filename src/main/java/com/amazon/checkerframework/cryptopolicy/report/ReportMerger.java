@@ -0,0 +1,152 @@
+package com.amazon.checkerframework.cryptopolicy.report;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Combines the reports of many modules, written with -AcryptoReport, into one. The reports are read one result at a
+ * time and each result is written to the merged report right away, so memory use does not grow with the number or
+ * the size of the reports. Inputs are files or directories, which are searched for files that match a glob
+ * ({@code *.{sarif,json}} by default), and are merged in the order of their paths, so the same inputs always give
+ * the same report. The inputs can be in either format; the format of the merged report follows its file name.
+ */
+public final class ReportMerger {
+
+    /**
+     * What was merged.
+     */
+    public static final class Summary {
+        private int reports;
+        private int unreadable;
+        private int errors;
+        private int warnings;
+        private int suppressed;
+
+        public int getReports() {
+            return reports;
+        }
+
+        public int getUnreadable() {
+            return unreadable;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public int getWarnings() {
+            return warnings;
+        }
+
+        public int getSuppressed() {
+            return suppressed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Merged %d reports: %d errors, %d warnings, %d suppressed, %d unreadable reports",
+                                 reports, errors, warnings, suppressed, unreadable);
+        }
+    }
+
+    private ReportMerger() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Path out = null;
+        String glob = "*.{sarif,json}";
+        final List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                case "--glob":
+                    glob = args[++i];
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+                    break;
+            }
+        }
+        if (out == null || inputs.isEmpty()) {
+            System.err.println("Usage: ReportMerger --out file.sarif|file.json [--glob pattern] report|directory...");
+            System.exit(2);
+        }
+        final Summary summary = merge(findReports(inputs, glob, out), out);
+        System.err.println(summary);
+        System.exit(summary.getUnreadable() > 0 ? 2 : summary.getErrors() > 0 ? 1 : 0);
+    }
+
+    /**
+     * @param inputs report files and directories.
+     * @param glob   the pattern that the names of reports in the directories match.
+     * @param out    the merged report, which is never an input.
+     * @return the reports, sorted by path.
+     * @throws IOException if a directory cannot be searched.
+     */
+    public static List<Path> findReports(final List<Path> inputs, final String glob, final Path out)
+        throws IOException {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        final Path outFile = out.toAbsolutePath().normalize();
+        final List<Path> reports = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    reports.addAll(files.filter(file -> Files.isRegularFile(file)
+                                                        && matcher.matches(file.getFileName()))
+                                        .collect(Collectors.toList()));
+                }
+            } else {
+                reports.add(input);
+            }
+        }
+        reports.removeIf(report -> report.toAbsolutePath().normalize().equals(outFile));
+        Collections.sort(reports);
+        return reports;
+    }
+
+    /**
+     * @param reports the reports to merge, in order.
+     * @param out     the merged report, SARIF if the name ends in .sarif, JSON otherwise.
+     * @return the summary; reports that cannot be read are reported on stderr and counted as unreadable.
+     * @throws IOException if the merged report cannot be written.
+     */
+    public static Summary merge(final List<Path> reports, final Path out) throws IOException {
+        final Summary summary = new Summary();
+        try (ReportWriter writer = ReportWriter.open(out)) {
+            for (Path report : reports) {
+                try {
+                    ReportReader.read(report, entry -> {
+                        try {
+                            writer.write(entry);
+                        } catch (IOException e) {
+                            // a failure to write the merged report, not to read this one.
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    summary.reports++;
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (IOException e) {
+                    System.err.println(report + ": cannot be merged: " + e.getMessage());
+                    summary.unreadable++;
+                }
+            }
+            summary.errors = writer.getErrors();
+            summary.warnings = writer.getWarnings();
+            summary.suppressed = writer.getSuppressed();
+        }
+        return summary;
+    }
+}
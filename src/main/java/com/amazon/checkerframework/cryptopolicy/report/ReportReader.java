@@ -0,0 +1,116 @@
+package com.amazon.checkerframework.cryptopolicy.report;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the results of a report in either format that {@link ReportWriter} writes, one at a time. The format is
+ * recognized by the content, not the file name: SARIF has results in its runs, the plain JSON format at the top.
+ */
+final class ReportReader {
+
+    /**
+     * Receives the results of a report.
+     */
+    interface Sink {
+        void accept(ReportEntry entry) throws IOException;
+    }
+
+    private ReportReader() {
+    }
+
+    /**
+     * @param path a report.
+     * @param sink receives each result, in the order of the file.
+     * @throws IOException if the file cannot be read or is not a report.
+     */
+    static void read(final Path path, final Sink sink) throws IOException {
+        try (JsonReader json = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                final String name = json.nextName();
+                if (name.equals("results") && json.peekArray()) {
+                    readResults(json, sink, false);
+                } else if (name.equals("runs") && json.peekArray()) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        readRun(json, sink);
+                    }
+                } else {
+                    json.skipValue();
+                }
+            }
+        }
+    }
+
+    private static void readRun(final JsonReader json, final Sink sink) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("results") && json.peekArray()) {
+                readResults(json, sink, true);
+            } else {
+                json.skipValue();
+            }
+        }
+    }
+
+    private static void readResults(final JsonReader json, final Sink sink, final boolean sarif) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            final Object result = json.readValue();
+            if (result instanceof Map) {
+                sink.accept(sarif ? fromSarif((Map<?, ?>) result) : fromJson((Map<?, ?>) result));
+            }
+        }
+    }
+
+    private static ReportEntry fromJson(final Map<?, ?> result) {
+        final Object suppressedBy = result.get("suppressedBy");
+        return new ReportEntry(ReportEntry.Level.fromJsonName(string(result.get("level"))),
+                               string(result.get("rule")),
+                               string(result.get("file")),
+                               number(result.get("line")),
+                               number(result.get("column")),
+                               string(result.get("message")),
+                               suppressedBy instanceof String ? (String) suppressedBy : null);
+    }
+
+    private static ReportEntry fromSarif(final Map<?, ?> result) {
+        final Map<?, ?> location = map(map(result, "locations", 0), "physicalLocation");
+        final Map<?, ?> region = map(location, "region");
+        final Map<?, ?> suppression = map(result, "suppressions", 0);
+        return new ReportEntry(ReportEntry.Level.fromJsonName(string(result.get("level"))),
+                               string(result.get("ruleId")),
+                               string(map(location, "artifactLocation").get("uri")),
+                               number(region.get("startLine")),
+                               number(region.get("startColumn")),
+                               string(map(result, "message").get("text")),
+                               suppression.isEmpty() ? null : string(suppression.get("justification")));
+    }
+
+    private static Map<?, ?> map(final Map<?, ?> object, final String name, final int index) {
+        final Object list = object.get(name);
+        if (list instanceof List && ((List<?>) list).size() > index && ((List<?>) list).get(index) instanceof Map) {
+            return (Map<?, ?>) ((List<?>) list).get(index);
+        }
+        return Collections.emptyMap();
+    }
+
+    private static Map<?, ?> map(final Map<?, ?> object, final String name) {
+        final Object value = object.get(name);
+        return value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+    }
+
+    private static String string(final Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static int number(final Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+}
@@ -0,0 +1,233 @@
+package com.amazon.checkerframework.cryptopolicy.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes {@link ReportEntry}s one at a time as a JSON or a SARIF 2.1.0 document, depending on the file name: files
+ * that end in {@code .sarif} or {@code .sarif.json} get SARIF, all others the plain JSON format
+ * <pre>
+ * {"version": 1, "results": [{"level": ..., "rule": ..., "file": ..., "line": ..., "column": ...,
+ *                             "message": ..., "suppressedBy": ...}, ...],
+ *  "summary": {"errors": ..., "warnings": ..., "notes": ..., "suppressed": ...}}
+ * </pre>
+ * where suppressedBy is only present for results that a {@code @SuppressCryptoWarning} suppressed. In SARIF,
+ * those results carry an inSource suppression with the issue URL as justification. Each result is written on a
+ * line of its own, and nothing but the rule ids and the counts of the summary is kept in memory.
+ */
+abstract class ReportWriter implements Closeable {
+
+    static final String TOOL_NAME = "crypto-policy-compliance-checker";
+
+    private final Writer out;
+    private String separator = "\n";
+    private int errors;
+    private int warnings;
+    private int notes;
+    private int suppressed;
+
+    private ReportWriter(final Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @param path the file to write, its parent directories are created if necessary.
+     * @return a writer for the format of the file name.
+     * @throws IOException if the file cannot be created.
+     */
+    static ReportWriter open(final Path path) throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        final ReportWriter writer = isSarif(path) ? new Sarif(out) : new Json(out);
+        try {
+            writer.begin();
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * @param path a report file.
+     * @return true if the file name asks for SARIF.
+     */
+    static boolean isSarif(final Path path) {
+        final String name = path.getFileName().toString();
+        return name.endsWith(".sarif") || name.endsWith(".sarif.json");
+    }
+
+    /**
+     * @param entry the next result.
+     * @throws IOException if it cannot be written.
+     */
+    final void write(final ReportEntry entry) throws IOException {
+        if (entry.getSuppressedBy() != null) {
+            suppressed++;
+        } else if (entry.getLevel() == ReportEntry.Level.ERROR) {
+            errors++;
+        } else if (entry.getLevel() == ReportEntry.Level.WARNING) {
+            warnings++;
+        } else {
+            notes++;
+        }
+        out.write(separator);
+        separator = ",\n";
+        writeEntry(entry);
+    }
+
+    int getErrors() {
+        return errors;
+    }
+
+    int getWarnings() {
+        return warnings;
+    }
+
+    int getNotes() {
+        return notes;
+    }
+
+    int getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * Finish the document and close the file.
+     */
+    @Override
+    public final void close() throws IOException {
+        try {
+            end();
+        } finally {
+            out.close();
+        }
+    }
+
+    abstract void begin() throws IOException;
+
+    abstract void writeEntry(ReportEntry entry) throws IOException;
+
+    abstract void end() throws IOException;
+
+    final Writer out() {
+        return out;
+    }
+
+    static String quote(final String value) {
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c == '\t') {
+                quoted.append("\\t");
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * The plain JSON format.
+     */
+    private static final class Json extends ReportWriter {
+
+        Json(final Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out().write("{\n  \"version\": 1,\n  \"results\": [");
+        }
+
+        @Override
+        void writeEntry(final ReportEntry entry) throws IOException {
+            out().write("    {\"level\": " + quote(entry.getLevel().jsonName())
+                        + ", \"rule\": " + quote(entry.getRule())
+                        + ", \"file\": " + quote(entry.getFile())
+                        + ", \"line\": " + entry.getLine()
+                        + ", \"column\": " + entry.getColumn()
+                        + ", \"message\": " + quote(entry.getMessage()));
+            if (entry.getSuppressedBy() != null) {
+                out().write(", \"suppressedBy\": " + quote(entry.getSuppressedBy()));
+            }
+            out().write("}");
+        }
+
+        @Override
+        void end() throws IOException {
+            out().write("\n  ],\n  \"summary\": {\"errors\": " + getErrors()
+                        + ", \"warnings\": " + getWarnings()
+                        + ", \"notes\": " + getNotes()
+                        + ", \"suppressed\": " + getSuppressed() + "}\n}\n");
+        }
+    }
+
+    /**
+     * SARIF 2.1.0 with a single run.
+     */
+    private static final class Sarif extends ReportWriter {
+
+        private final Set<String> rules = new TreeSet<>();
+
+        Sarif(final Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out().write("{\n  \"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\",\n"
+                        + "  \"version\": \"2.1.0\",\n  \"runs\": [{\n    \"results\": [");
+        }
+
+        @Override
+        void writeEntry(final ReportEntry entry) throws IOException {
+            rules.add(entry.getRule());
+            out().write("      {\"ruleId\": " + quote(entry.getRule())
+                        + ", \"level\": " + quote(entry.getLevel().jsonName())
+                        + ", \"message\": {\"text\": " + quote(entry.getMessage()) + "}"
+                        + ", \"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": "
+                        + quote(entry.getFile().replace('\\', '/')) + "}");
+            if (entry.getLine() > 0) {
+                out().write(", \"region\": {\"startLine\": " + entry.getLine());
+                if (entry.getColumn() > 0) {
+                    out().write(", \"startColumn\": " + entry.getColumn());
+                }
+                out().write("}");
+            }
+            out().write("}}]");
+            if (entry.getSuppressedBy() != null) {
+                out().write(", \"suppressions\": [{\"kind\": \"inSource\", \"justification\": "
+                            + quote(entry.getSuppressedBy()) + "}]");
+            }
+            out().write("}");
+        }
+
+        @Override
+        void end() throws IOException {
+            out().write("\n    ],\n    \"tool\": {\"driver\": {\"name\": " + quote(TOOL_NAME) + ", \"rules\": [");
+            String ruleSeparator = "";
+            for (String rule : rules) {
+                out().write(ruleSeparator + "{\"id\": " + quote(rule) + "}");
+                ruleSeparator = ", ";
+            }
+            out().write("]}}\n  }]\n}\n");
+        }
+    }
+}
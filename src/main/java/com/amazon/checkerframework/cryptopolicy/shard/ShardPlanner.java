@@ -0,0 +1,192 @@
+package com.amazon.checkerframework.cryptopolicy.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the source files of a compilation into shards of about the same size for the {@link ShardedChecker}.
+ * Files of the same package stay together, since they use each other's package-private members and constants far
+ * more often than those of other packages, so a shard resolves most of the classes it references from its own
+ * files instead of parsing them again from the source path. Packages are assigned largest first to the shard with
+ * the fewest bytes so far; a package that is larger than a shard's share of the bytes is split into runs of
+ * consecutive files. The plan only depends on the files, their sizes and the number of shards, so the same source
+ * set is always split the same way.
+ */
+final class ShardPlanner {
+
+    private static final Pattern PACKAGE = Pattern.compile("(?m)^\\s*package\\s+([\\w.]+)\\s*;");
+
+    /**
+     * The files of one package, or a run of them.
+     */
+    private static final class Group {
+        private final String packageName;
+        private final List<Integer> files = new ArrayList<>();
+        private long bytes;
+
+        Group(final String packageName) {
+            this.packageName = packageName;
+        }
+    }
+
+    private final List<int[]> shards;
+    private final Set<String> sourceRoots;
+
+    private ShardPlanner(final List<int[]> shards, final Set<String> sourceRoots) {
+        this.shards = shards;
+        this.sourceRoots = sourceRoots;
+    }
+
+    /**
+     * @param files  the source files, in the order of the command line.
+     * @param shards the number of shards to plan for.
+     * @return the plan, with at most as many shards as files.
+     * @throws IOException if a file cannot be read.
+     */
+    static ShardPlanner plan(final List<String> files, final int shards) throws IOException {
+        final Map<String, Group> packages = new TreeMap<>();
+        final Set<String> sourceRoots = new LinkedHashSet<>();
+        long totalBytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            final Path file = Paths.get(files.get(i));
+            final byte[] source = Files.readAllBytes(file);
+            final String packageName = packageName(new String(source, StandardCharsets.UTF_8));
+            final Group group = packages.computeIfAbsent(packageName, Group::new);
+            group.files.add(i);
+            group.bytes += source.length;
+            totalBytes += source.length;
+            final Path root = sourceRoot(file.toAbsolutePath().normalize(), packageName);
+            if (root != null) {
+                sourceRoots.add(root.toString());
+            }
+        }
+
+        final int shardCount = Math.max(1, Math.min(shards, files.size()));
+        final long share = (totalBytes + shardCount - 1) / shardCount;
+        final List<Group> groups = new ArrayList<>();
+        for (Group group : packages.values()) {
+            groups.addAll(split(group, files, share));
+        }
+        // largest first, so the small packages even out the shards at the end.
+        groups.sort(Comparator.<Group>comparingLong(group -> -group.bytes)
+                              .thenComparing(group -> group.packageName)
+                              .thenComparingInt(group -> group.files.get(0)));
+
+        final long[] loads = new long[shardCount];
+        final List<List<Integer>> assigned = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (Group group : groups) {
+            int lightest = 0;
+            for (int shard = 1; shard < shardCount; shard++) {
+                if (loads[shard] < loads[lightest]) {
+                    lightest = shard;
+                }
+            }
+            loads[lightest] += group.bytes;
+            assigned.get(lightest).addAll(group.files);
+        }
+
+        final List<int[]> plan = new ArrayList<>();
+        for (List<Integer> shard : assigned) {
+            if (!shard.isEmpty()) {
+                final int[] indexes = shard.stream().mapToInt(Integer::intValue).toArray();
+                // javac checks the files of a shard in the order of the command line, like a single compilation.
+                Arrays.sort(indexes);
+                plan.add(indexes);
+            }
+        }
+        return new ShardPlanner(plan, sourceRoots);
+    }
+
+    /**
+     * @return the number of shards.
+     */
+    int size() {
+        return shards.size();
+    }
+
+    /**
+     * @param shard a shard.
+     * @return the indexes of its files in the list that was planned, in ascending order.
+     */
+    int[] getFiles(final int shard) {
+        return shards.get(shard).clone();
+    }
+
+    /**
+     * @return the directories that the packages of the files start in, in the order they were found, separated by
+     *     {@link File#pathSeparator}; each shard finds the classes of the other shards on this source path.
+     */
+    String getSourcePath() {
+        return String.join(File.pathSeparator, sourceRoots);
+    }
+
+    /**
+     * @return the package a compilation unit declares, or "" for the unnamed package.
+     */
+    static String packageName(final String source) {
+        final Matcher matcher = PACKAGE.matcher(source);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    /**
+     * @return the directory that the directories of the package start in, or null if the file is not in a
+     *     directory named like its package.
+     */
+    private static Path sourceRoot(final Path file, final String packageName) {
+        Path directory = file.getParent();
+        if (packageName.isEmpty()) {
+            return directory;
+        }
+        final List<String> names = Arrays.asList(packageName.split("\\."));
+        Collections.reverse(names);
+        for (String name : names) {
+            if (directory == null || directory.getFileName() == null
+                || !directory.getFileName().toString().equals(name)) {
+                return null;
+            }
+            directory = directory.getParent();
+        }
+        return directory;
+    }
+
+    /**
+     * @return the group, or runs of its files of at most the share of a shard if it is larger.
+     */
+    private static List<Group> split(final Group group, final List<String> files, final long share)
+        throws IOException {
+        if (group.bytes <= share) {
+            return Collections.singletonList(group);
+        }
+        final List<Group> runs = new ArrayList<>();
+        Group run = new Group(group.packageName);
+        for (int file : group.files) {
+            final long bytes = Files.size(Paths.get(files.get(file)));
+            if (!run.files.isEmpty() && run.bytes + bytes > share) {
+                runs.add(run);
+                run = new Group(group.packageName);
+            }
+            run.files.add(file);
+            run.bytes += bytes;
+        }
+        runs.add(run);
+        return runs;
+    }
+}
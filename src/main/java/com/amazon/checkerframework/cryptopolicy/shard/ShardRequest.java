@@ -0,0 +1,132 @@
+package com.amazon.checkerframework.cryptopolicy.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the {@link ShardedChecker} asks a {@link ShardWorker} to check: the options of javac, all source files of
+ * the compilation and which of them belong to the shard. The worker needs all files to tell the diagnostics of
+ * its own files from those of files that it only parses from the source path.
+ */
+final class ShardRequest {
+
+    private static final int MAGIC = 0x43505352;
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<String> options;
+    private final List<String> files;
+    private final int[] shardFiles;
+
+    /**
+     * @param options    the options of javac for the shard.
+     * @param files      all source files of the compilation, in the order of the command line.
+     * @param shardFiles the indexes of the files of the shard, in ascending order.
+     */
+    ShardRequest(final List<String> options, final List<String> files, final int[] shardFiles) {
+        this.options = Collections.unmodifiableList(options);
+        this.files = Collections.unmodifiableList(files);
+        this.shardFiles = shardFiles;
+    }
+
+    List<String> getOptions() {
+        return options;
+    }
+
+    List<String> getFiles() {
+        return files;
+    }
+
+    int[] getShardFiles() {
+        return shardFiles.clone();
+    }
+
+    /**
+     * @param file a source file, as given to javac.
+     * @return the file as an absolute, normalized path, so that the same file given with a relative and an absolute
+     *     path is recognized.
+     */
+    static String fileKey(final String file) {
+        try {
+            return Paths.get(file).toAbsolutePath().normalize().toString();
+        } catch (InvalidPathException e) {
+            return file;
+        }
+    }
+
+    void write(final Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeStrings(out, options);
+            writeStrings(out, files);
+            out.writeInt(shardFiles.length);
+            for (int file : shardFiles) {
+                out.writeInt(file);
+            }
+        }
+    }
+
+    static ShardRequest read(final Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException(path + " is not a shard request");
+            }
+            final List<String> options = readStrings(in);
+            final List<String> files = readStrings(in);
+            final int[] shardFiles = new int[in.readInt()];
+            for (int i = 0; i < shardFiles.length; i++) {
+                shardFiles[i] = in.readInt();
+                if (shardFiles[i] < 0 || shardFiles[i] >= files.size()) {
+                    throw new IOException("Invalid file index " + shardFiles[i]);
+                }
+            }
+            return new ShardRequest(options, files, shardFiles);
+        }
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static List<String> readStrings(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of strings " + count);
+        }
+        final List<String> strings = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
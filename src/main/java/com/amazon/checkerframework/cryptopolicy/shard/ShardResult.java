@@ -0,0 +1,161 @@
+package com.amazon.checkerframework.cryptopolicy.shard;
+
+import javax.tools.Diagnostic;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a {@link ShardWorker} printed, split into {@link Output}s that carry where in a single compilation of all
+ * files they would have been printed, so that the {@link ShardedChecker} can put the outputs of all shards into
+ * that order; and javac's exit code.
+ */
+final class ShardResult {
+
+    private static final int MAGIC = 0x43505354;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Where an output goes.
+     */
+    enum Stream {
+        /** A diagnostic, printed to stderr by javac. */
+        DIAGNOSTIC,
+        /** A line the checker printed to stdout, like the audit of an approved suppression. */
+        STDOUT,
+        /** Anything else javac printed to its log, like the output of -verbose. */
+        LOG
+    }
+
+    /**
+     * Outputs before any class is analyzed: option warnings and the errors of parsing and entering the files.
+     */
+    static final int PHASE_ENTER = 0;
+    /**
+     * Outputs while the classes are analyzed, which is when the checker reports.
+     */
+    static final int PHASE_ANALYZE = 1;
+    /**
+     * Outputs without a source after the analysis started, printed at the end of the compilation.
+     */
+    static final int PHASE_END = 2;
+
+    /**
+     * The file of an output that belongs to no file of the compilation.
+     */
+    static final int NO_FILE = -1;
+
+    /**
+     * One diagnostic, line or log message.
+     */
+    static final class Output {
+        private final Stream stream;
+        private final Diagnostic.Kind kind;
+        private final int phase;
+        private final int file;
+        private final String text;
+
+        /**
+         * @param stream where the output goes.
+         * @param kind   the kind of a diagnostic, null for other outputs.
+         * @param phase  one of the PHASE constants.
+         * @param file   the index of the file that was parsed or analyzed when it was printed, or
+         *               {@link #NO_FILE}.
+         * @param text   the text, for a diagnostic as javac formats it.
+         */
+        Output(final Stream stream, final Diagnostic.Kind kind, final int phase, final int file, final String text) {
+            this.stream = stream;
+            this.kind = kind;
+            this.phase = phase;
+            this.file = file;
+            this.text = text;
+        }
+
+        Stream getStream() {
+            return stream;
+        }
+
+        Diagnostic.Kind getKind() {
+            return kind;
+        }
+
+        int getPhase() {
+            return phase;
+        }
+
+        int getFile() {
+            return file;
+        }
+
+        String getText() {
+            return text;
+        }
+    }
+
+    private final int exitCode;
+    private final List<Output> outputs;
+
+    /**
+     * @param exitCode javac's exit code.
+     * @param outputs  the outputs, in the order they were printed.
+     */
+    ShardResult(final int exitCode, final List<Output> outputs) {
+        this.exitCode = exitCode;
+        this.outputs = Collections.unmodifiableList(outputs);
+    }
+
+    int getExitCode() {
+        return exitCode;
+    }
+
+    List<Output> getOutputs() {
+        return outputs;
+    }
+
+    void write(final Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(exitCode);
+            out.writeInt(outputs.size());
+            for (Output output : outputs) {
+                out.writeByte(output.stream.ordinal());
+                out.writeByte(output.kind == null ? -1 : output.kind.ordinal());
+                out.writeByte(output.phase);
+                out.writeInt(output.file);
+                ShardRequest.writeString(out, output.text);
+            }
+        }
+    }
+
+    static ShardResult read(final Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException(path + " is not a shard result");
+            }
+            final int exitCode = in.readInt();
+            final int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid number of outputs " + count);
+            }
+            final List<Output> outputs = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                final int stream = in.readByte();
+                final int kind = in.readByte();
+                if (stream < 0 || stream >= Stream.values().length || kind >= Diagnostic.Kind.values().length) {
+                    throw new IOException("Invalid output " + stream + "/" + kind);
+                }
+                outputs.add(new Output(Stream.values()[stream], kind < 0 ? null : Diagnostic.Kind.values()[kind],
+                                       in.readByte(), in.readInt(), ShardRequest.readString(in)));
+            }
+            return new ShardResult(exitCode, outputs);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.amazon.checkerframework.cryptopolicy.shard;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.main.Main;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.JavacMessages;
+import com.sun.tools.javac.util.Log;
+
+/**
+ * Checks one shard for the {@link ShardedChecker}, in a JVM of its own. It runs javac like the command line does,
+ * but records every diagnostic as javac would print it together with the file that javac was parsing or
+ * analyzing at the time, and the same for the lines the checker prints to stdout, so that the driver can merge the
+ * outputs of all shards in the order of a single compilation. Diagnostics of files that another shard checks, and
+ * that this one only parsed from the source path, are dropped.
+ * <p>
+ * Usage: {@code ShardWorker request result}
+ */
+public final class ShardWorker {
+
+    private final Map<String, Integer> fileIndexes = new HashMap<>();
+    private final BitSet shardFiles = new BitSet();
+    private final List<ShardResult.Output> outputs = new ArrayList<>();
+    private final Context context = new Context();
+    private int currentFile = ShardResult.NO_FILE;
+    private boolean analyzing;
+
+    private ShardWorker(final ShardRequest request) {
+        for (int i = 0; i < request.getFiles().size(); i++) {
+            fileIndexes.put(ShardRequest.fileKey(request.getFiles().get(i)), i);
+        }
+        for (int file : request.getShardFiles()) {
+            shardFiles.set(file);
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ShardWorker request result");
+            System.exit(2);
+        }
+        check(ShardRequest.read(Paths.get(args[0]))).write(Paths.get(args[1]));
+    }
+
+    /**
+     * @param request the options and files.
+     * @return what the compilation of the files of the shard printed.
+     */
+    static ShardResult check(final ShardRequest request) {
+        return new ShardWorker(request).compile(request);
+    }
+
+    private ShardResult compile(final ShardRequest request) {
+        final List<String> arguments = new ArrayList<>(request.getOptions());
+        for (int file : request.getShardFiles()) {
+            arguments.add(request.getFiles().get(file));
+        }
+        final StringWriter log = new StringWriter();
+        final PrintStream stdout = System.out;
+        final LineRecorder lines = new LineRecorder();
+        final Main.Result result;
+        try (PrintWriter logWriter = new PrintWriter(log, true)) {
+            System.setOut(new PrintStream(lines, true, StandardCharsets.UTF_8.name()));
+            JavacFileManager.preRegister(context);
+            context.put(DiagnosticListener.class, new DiagnosticRecorder());
+            MultiTaskListener.instance(context).add(new ProgressListener());
+            result = new Main("javac", logWriter).compile(arguments.toArray(new String[0]), context);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            System.out.flush();
+            System.setOut(stdout);
+            lines.close();
+        }
+
+        // the driver prints the counts of all shards.
+        final Log javacLog = Log.instance(context);
+        String text = log.toString();
+        final String counts = ShardedChecker.countLines(javacLog.nerrors, javacLog.nwarnings);
+        if (text.endsWith(counts)) {
+            text = text.substring(0, text.length() - counts.length());
+        }
+        if (!text.isEmpty()) {
+            outputs.add(new ShardResult.Output(ShardResult.Stream.LOG, null, ShardResult.PHASE_END,
+                                               ShardResult.NO_FILE, text));
+        }
+        return new ShardResult(result.exitCode, outputs);
+    }
+
+    /**
+     * @return the index of the file, or {@link ShardResult#NO_FILE} if it is not a source file of the compilation.
+     */
+    private int indexOf(final JavaFileObject file) {
+        if (file == null) {
+            return ShardResult.NO_FILE;
+        }
+        final Integer index = fileIndexes.get(ShardRequest.fileKey(file.getName()));
+        return index == null ? ShardResult.NO_FILE : index;
+    }
+
+    /**
+     * Tracks the compilation unit that javac analyzes; the checker reports while it is analyzed.
+     */
+    private final class ProgressListener implements TaskListener {
+        @Override
+        public void started(final TaskEvent event) {
+            if (event.getKind() == TaskEvent.Kind.ANALYZE) {
+                currentFile = indexOf(event.getSourceFile());
+                analyzing = true;
+            }
+        }
+
+        @Override
+        public void finished(final TaskEvent event) {
+            // the checker runs when the analysis of a unit has finished, the unit stays current until the next.
+        }
+    }
+
+    /**
+     * Records the diagnostics, formatted as javac prints them.
+     */
+    private final class DiagnosticRecorder implements DiagnosticListener<JavaFileObject> {
+        @Override
+        public void report(final Diagnostic<? extends JavaFileObject> diagnostic) {
+            final int source = indexOf(diagnostic.getSource());
+            if (source != ShardResult.NO_FILE && !shardFiles.get(source)) {
+                return;
+            }
+            final int phase;
+            final int file;
+            if (!analyzing) {
+                phase = ShardResult.PHASE_ENTER;
+                file = source;
+            } else if (diagnostic.getSource() == null) {
+                phase = ShardResult.PHASE_END;
+                file = ShardResult.NO_FILE;
+            } else {
+                phase = ShardResult.PHASE_ANALYZE;
+                file = currentFile;
+            }
+            final String text = diagnostic instanceof JCDiagnostic
+                ? Log.instance(context).getDiagnosticFormatter().format(
+                    (JCDiagnostic) diagnostic, JavacMessages.instance(context).getCurrentLocale())
+                : diagnostic.toString();
+            outputs.add(new ShardResult.Output(ShardResult.Stream.DIAGNOSTIC, diagnostic.getKind(), phase, file,
+                                               text));
+        }
+    }
+
+    /**
+     * Records what is printed to stdout, a line at a time.
+     */
+    private final class LineRecorder extends OutputStream {
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public void write(final int b) {
+            if (b == '\n') {
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                if (text.endsWith("\r")) {
+                    text = text.substring(0, text.length() - 1);
+                }
+                line.reset();
+                outputs.add(new ShardResult.Output(ShardResult.Stream.STDOUT, null,
+                                                   analyzing ? ShardResult.PHASE_ANALYZE : ShardResult.PHASE_ENTER,
+                                                   currentFile, text));
+            } else {
+                line.write(b);
+            }
+        }
+
+        /**
+         * Record the last line, if it does not end with a line separator.
+         */
+        @Override
+        public void close() {
+            if (line.size() > 0) {
+                write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.amazon.checkerframework.cryptopolicy.shard;
+
+import javax.tools.Diagnostic;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileResult;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileServer;
+import com.amazon.checkerframework.cryptopolicy.impact.CallSiteIndex;
+import com.amazon.checkerframework.cryptopolicy.report.FindingsReport;
+import com.sun.tools.javac.main.CommandLine;
+import com.sun.tools.javac.util.Log;
+
+/**
+ * Checks a large source set in parallel: the files are split into shards with the {@link ShardPlanner}, each shard
+ * is checked by a {@link ShardWorker} in a JVM of its own, and the diagnostics, the audit lines of approved
+ * suppressions, the -AcryptoReport reports and the -AcryptoCallSiteIndex index of all shards are merged into the
+ * output of a single compilation of all files: the same diagnostics in the same order, with the -Xmaxerrs and
+ * -Xmaxwarns limits and the error and warning counts applied to the merged diagnostics. Each shard finds the
+ * classes of the other shards on the source path, so constants and annotated methods of other packages are
+ * resolved like in a single compilation. The exit code is the highest exit code of the shards.
+ * <p>
+ * The shards run in separate JVMs because the CheckerFramework keeps state in static fields, so two compilations
+ * in one JVM can only run one after the other. Each worker parses the stubs once and shares the checker's policy
+ * and verdict caches across the files of its shard. With -AcryptoMetrics each shard writes its own metrics, named
+ * after the shard, e.g. metrics.shard0.json; with -AcryptoCacheDir each shard uses a directory of its own below
+ * the given one. -AcryptoInterprocedural and -AcryptoExportSummaries need the summaries of all methods in one
+ * compilation, so they are checked in a single shard.
+ * <p>
+ * Usage: {@code ShardedChecker [--shards n] [--jvmArg arg]... javac-arguments}
+ */
+public final class ShardedChecker {
+
+    private static final int DEFAULT_MAX_DIAGNOSTICS = 100;
+
+    private static final String REPORT_OPTION = "-AcryptoReport=";
+    private static final String CALL_SITE_INDEX_OPTION = "-AcryptoCallSiteIndex=";
+    private static final String METRICS_OPTION = "-AcryptoMetrics=";
+    private static final String CACHE_DIR_OPTION = "-AcryptoCacheDir=";
+    private static final List<String> SINGLE_SHARD_OPTIONS =
+        Arrays.asList("-AcryptoInterprocedural", "-AcryptoExportSummaries");
+
+    private final int shards;
+    private final List<String> jvmArgs;
+    private final List<String> options = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+    private final List<String> sourcePath = new ArrayList<>();
+    private int maxErrors = DEFAULT_MAX_DIAGNOSTICS;
+    private int maxWarnings = DEFAULT_MAX_DIAGNOSTICS;
+    private boolean singleShard;
+    private String report;
+    private String callSiteIndex;
+    private String metrics;
+    private String cacheDir;
+
+    private ShardedChecker(final int shards, final List<String> jvmArgs) {
+        this.shards = shards;
+        this.jvmArgs = jvmArgs;
+    }
+
+    public static void main(final String[] args) {
+        System.exit(run(Arrays.asList(args), System.out, System.err));
+    }
+
+    /**
+     * @param args the options of the driver, followed by the arguments of javac.
+     * @param out  receives what the checker prints to stdout.
+     * @param err  receives the diagnostics.
+     * @return the exit code, like javac's.
+     */
+    public static int run(final List<String> args, final PrintStream out, final PrintStream err) {
+        int shards = Runtime.getRuntime().availableProcessors();
+        final List<String> jvmArgs = new ArrayList<>();
+        int i = 0;
+        for (; i + 1 < args.size(); i += 2) {
+            if (args.get(i).equals("--shards")) {
+                shards = Integer.parseInt(args.get(i + 1));
+            } else if (args.get(i).equals("--jvmArg")) {
+                jvmArgs.add(args.get(i + 1));
+            } else {
+                break;
+            }
+        }
+        if (i == args.size() || shards < 1) {
+            err.println("Usage: ShardedChecker [--shards n] [--jvmArg arg]... javac-arguments");
+            return CompileResult.COMMAND_LINE_ERROR;
+        }
+        final ShardedChecker checker = new ShardedChecker(shards, jvmArgs);
+        try {
+            checker.parseArguments(CommandLine.parse(args.subList(i, args.size()).toArray(new String[0])));
+        } catch (IOException | IllegalArgumentException e) {
+            // a missing @file, or an option without its value.
+            err.println("error: " + e.getMessage());
+            return CompileResult.COMMAND_LINE_ERROR;
+        }
+        Path workDirectory = null;
+        try {
+            workDirectory = Files.createTempDirectory("crypto-shards");
+            return checker.check(workDirectory, out, err);
+        } catch (IOException | InterruptedException e) {
+            err.println("error: " + e);
+            return CompileResult.ABNORMAL;
+        } finally {
+            if (workDirectory != null) {
+                delete(workDirectory);
+            }
+        }
+    }
+
+    /**
+     * Take apart the arguments of javac: the options that every shard gets, the files, and the options that the
+     * driver applies to the merged output or that each shard gets a value of its own for.
+     */
+    private void parseArguments(final String[] arguments) {
+        final List<String> javacOptions = new ArrayList<>();
+        CompileServer.splitArguments(arguments, javacOptions, files);
+        boolean processor = false;
+        for (int i = 0; i < javacOptions.size(); i++) {
+            final String option = javacOptions.get(i);
+            if (option.equals("-Xmaxerrs") || option.equals("-Xmaxwarns")) {
+                final int limit = Integer.parseInt(value(javacOptions, ++i));
+                if (option.equals("-Xmaxerrs")) {
+                    maxErrors = limit;
+                } else {
+                    maxWarnings = limit;
+                }
+            } else if (option.equals("-sourcepath") || option.equals("--source-path")) {
+                sourcePath.add(value(javacOptions, ++i));
+            } else if (option.startsWith("--source-path=")) {
+                sourcePath.add(option.substring("--source-path=".length()));
+            } else if (option.startsWith("-implicit:")) {
+                // the classes of the other shards are only read from the source path, never compiled.
+                continue;
+            } else if (option.startsWith(REPORT_OPTION)) {
+                report = option.substring(REPORT_OPTION.length());
+            } else if (option.startsWith(CALL_SITE_INDEX_OPTION)) {
+                callSiteIndex = option.substring(CALL_SITE_INDEX_OPTION.length());
+            } else if (option.startsWith(METRICS_OPTION)) {
+                metrics = option.substring(METRICS_OPTION.length());
+            } else if (option.startsWith(CACHE_DIR_OPTION)) {
+                cacheDir = option.substring(CACHE_DIR_OPTION.length());
+            } else {
+                processor |= option.equals("-processor");
+                singleShard |= SINGLE_SHARD_OPTIONS.contains(option.split("=", 2)[0]);
+                options.add(option);
+            }
+        }
+        if (!processor) {
+            options.addAll(Arrays.asList("-processor", CryptoPolicyComplianceChecker.class.getName()));
+        }
+        // the limits apply to the merged diagnostics.
+        options.addAll(Arrays.asList("-Xmaxerrs", String.valueOf(Integer.MAX_VALUE),
+                                     "-Xmaxwarns", String.valueOf(Integer.MAX_VALUE),
+                                     "-implicit:none"));
+    }
+
+    private static String value(final List<String> options, final int index) {
+        if (index >= options.size()) {
+            throw new IllegalArgumentException(options.get(index - 1) + " requires an argument");
+        }
+        return options.get(index);
+    }
+
+    private int check(final Path workDirectory, final PrintStream out, final PrintStream err)
+        throws IOException, InterruptedException {
+        final ShardPlanner plan = ShardPlanner.plan(files, singleShard ? 1 : shards);
+        final List<int[]> shardFiles = new ArrayList<>();
+        for (int shard = 0; shard < plan.size(); shard++) {
+            shardFiles.add(plan.getFiles(shard));
+        }
+        if (shardFiles.isEmpty()) {
+            // javac reports that there is nothing to compile.
+            shardFiles.add(new int[0]);
+        }
+        if (!plan.getSourcePath().isEmpty()) {
+            sourcePath.add(plan.getSourcePath());
+        }
+
+        final List<Process> workers = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < shardFiles.size(); shard++) {
+                workers.add(start(shard, shardFiles.get(shard), workDirectory));
+            }
+            final List<ShardResult> results = new ArrayList<>();
+            int exitCode = CompileResult.OK;
+            for (int shard = 0; shard < workers.size(); shard++) {
+                final int workerExitCode = workers.get(shard).waitFor();
+                final Path result = shardDirectory(workDirectory, shard).resolve("result");
+                if (workerExitCode != 0 || !Files.exists(result)) {
+                    err.println("error: shard " + shard + " failed with exit code " + workerExitCode + ":");
+                    err.print(new String(Files.readAllBytes(shardDirectory(workDirectory, shard).resolve("log")),
+                                         StandardCharsets.UTF_8));
+                    exitCode = Math.max(exitCode, CompileResult.ABNORMAL);
+                    continue;
+                }
+                results.add(ShardResult.read(result));
+            }
+            exitCode = Math.max(exitCode, print(results, out, err));
+            mergeReports(workDirectory, shardFiles.size(), err);
+            mergeCallSiteIndexes(workDirectory, shardFiles.size(), err);
+            return exitCode;
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+    }
+
+    private Process start(final int shard, final int[] shardFiles, final Path workDirectory) throws IOException {
+        final Path directory = shardDirectory(workDirectory, shard);
+        Files.createDirectories(directory);
+        final List<String> shardOptions = new ArrayList<>(options);
+        if (!sourcePath.isEmpty()) {
+            shardOptions.addAll(Arrays.asList("-sourcepath", String.join(File.pathSeparator, sourcePath)));
+        }
+        if (report != null) {
+            shardOptions.add(REPORT_OPTION + directory.resolve("reports").resolve(
+                Paths.get(report).getFileName().toString()));
+        }
+        if (callSiteIndex != null) {
+            shardOptions.add(CALL_SITE_INDEX_OPTION + directory.resolve("index.callsites"));
+        }
+        if (metrics != null) {
+            shardOptions.add(METRICS_OPTION + shardPath(metrics, shard));
+        }
+        if (cacheDir != null) {
+            shardOptions.add(CACHE_DIR_OPTION + Paths.get(cacheDir, "shard-" + shard));
+        }
+        new ShardRequest(shardOptions, files, shardFiles).write(directory.resolve("request"));
+
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // keep the errorprone javac on the boot classpath of Java 8 JVMs.
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                         .filter(arg -> arg.startsWith("-Xbootclasspath"))
+                         .forEach(command::add);
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), ShardWorker.class.getName(),
+                                     directory.resolve("request").toString(), directory.resolve("result").toString()));
+        return new ProcessBuilder(command).redirectErrorStream(true)
+                                          .redirectOutput(directory.resolve("log").toFile())
+                                          .start();
+    }
+
+    private static Path shardDirectory(final Path workDirectory, final int shard) {
+        return workDirectory.resolve("shard-" + shard);
+    }
+
+    /**
+     * @return the path of a file of a shard: the shard before the extension of the file, e.g.
+     *     "build/metrics.shard0.json" for "build/metrics.json".
+     */
+    static String shardPath(final String path, final int shard) {
+        final Path file = Paths.get(path);
+        final String name = file.getFileName().toString();
+        final int extension = name.lastIndexOf('.');
+        final String shardName = extension <= 0
+            ? name + ".shard" + shard
+            : name.substring(0, extension) + ".shard" + shard + name.substring(extension);
+        return file.resolveSibling(shardName).toString();
+    }
+
+    /**
+     * Print the outputs of all shards in the order of a single compilation: what was printed while the files were
+     * parsed and entered, then what was printed while they were analyzed, each in the order of the files, then the
+     * rest. Outputs that belong to no file, like warnings about the options, are printed by every shard and only
+     * printed once.
+     *
+     * @return the highest exit code of the shards.
+     */
+    private int print(final List<ShardResult> results, final PrintStream out, final PrintStream err) {
+        final List<long[]> order = new ArrayList<>();
+        int exitCode = CompileResult.OK;
+        for (int shard = 0; shard < results.size(); shard++) {
+            final List<ShardResult.Output> outputs = results.get(shard).getOutputs();
+            for (int i = 0; i < outputs.size(); i++) {
+                order.add(new long[] {outputs.get(i).getPhase(), outputs.get(i).getFile(), shard, i});
+            }
+            exitCode = Math.max(exitCode, results.get(shard).getExitCode());
+        }
+        order.sort(Comparator.<long[]>comparingLong(key -> key[0])
+                             .thenComparingLong(key -> key[1])
+                             .thenComparingLong(key -> key[2])
+                             .thenComparingLong(key -> key[3]));
+
+        final Set<String> printed = new HashSet<>();
+        int errors = 0;
+        int warnings = 0;
+        for (long[] key : order) {
+            final ShardResult.Output output = results.get((int) key[2]).getOutputs().get((int) key[3]);
+            if (output.getFile() == ShardResult.NO_FILE
+                && !printed.add(output.getStream() + ":" + output.getKind() + ":" + output.getText())) {
+                continue;
+            }
+            switch (output.getStream()) {
+                case DIAGNOSTIC:
+                    final Diagnostic.Kind kind = output.getKind();
+                    if (kind == Diagnostic.Kind.ERROR) {
+                        if (errors == maxErrors) {
+                            continue;
+                        }
+                        errors++;
+                    } else if (kind == Diagnostic.Kind.WARNING || kind == Diagnostic.Kind.MANDATORY_WARNING) {
+                        if (warnings == maxWarnings) {
+                            continue;
+                        }
+                        warnings++;
+                    }
+                    err.print(lines(output.getText()));
+                    break;
+                case STDOUT:
+                    out.println(output.getText());
+                    break;
+                default:
+                    err.print(output.getText());
+                    break;
+            }
+        }
+        err.print(countLines(errors, warnings));
+        err.flush();
+        out.flush();
+        return exitCode;
+    }
+
+    /**
+     * @return the text as javac prints it, each line ended with the line separator.
+     */
+    private static String lines(final String text) {
+        final StringBuilder lines = new StringBuilder();
+        if (text.isEmpty()) {
+            return "";
+        }
+        for (String line : text.split("\n")) {
+            lines.append(line).append(System.lineSeparator());
+        }
+        return lines.toString();
+    }
+
+    /**
+     * @return the lines with the numbers of errors and warnings that javac prints at the end of a compilation.
+     */
+    static String countLines(final int errors, final int warnings) {
+        final StringBuilder lines = new StringBuilder();
+        if (errors != 0) {
+            lines.append(lines(Log.getLocalizedString(errors == 1 ? "count.error" : "count.error.plural",
+                                                      String.valueOf(errors))));
+        }
+        if (warnings != 0) {
+            lines.append(lines(Log.getLocalizedString(warnings == 1 ? "count.warn" : "count.warn.plural",
+                                                      String.valueOf(warnings))));
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Merge the reports of the shards, and of their profiles, into reports named like those of the shards next to
+     * the report that was asked for.
+     */
+    private void mergeReports(final Path workDirectory, final int shardCount, final PrintStream err) {
+        if (report == null) {
+            return;
+        }
+        final Map<String, List<Path>> reports = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            final Path directory = shardDirectory(workDirectory, shard).resolve("reports");
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (Stream<Path> shardReports = Files.list(directory)) {
+                shardReports.sorted().forEach(
+                    path -> reports.computeIfAbsent(path.getFileName().toString(), name -> new ArrayList<>())
+                                   .add(path));
+            } catch (IOException e) {
+                err.println("warning: Could not read the crypto policy reports of shard " + shard + ": " + e);
+            }
+        }
+        for (Map.Entry<String, List<Path>> shardReports : reports.entrySet()) {
+            final Path path = Paths.get(report).resolveSibling(shardReports.getKey());
+            try {
+                final FindingsReport merged = new FindingsReport();
+                for (Path shardReport : shardReports.getValue()) {
+                    merged.addAll(shardReport);
+                }
+                if (path.toAbsolutePath().getParent() != null) {
+                    Files.createDirectories(path.toAbsolutePath().getParent());
+                }
+                merged.write(path);
+            } catch (IOException e) {
+                err.println("warning: Could not write the crypto policy report to " + path + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Merge the call site indexes of the shards, with the call sites in the order of the files.
+     */
+    private void mergeCallSiteIndexes(final Path workDirectory, final int shardCount, final PrintStream err) {
+        if (callSiteIndex == null) {
+            return;
+        }
+        final Map<String, Integer> fileIndexes = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            fileIndexes.put(ShardRequest.fileKey(files.get(i)), i);
+        }
+        final List<CallSiteIndex.CallSite> callSites = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            final Path index = shardDirectory(workDirectory, shard).resolve("index.callsites");
+            if (!Files.exists(index)) {
+                continue;
+            }
+            try {
+                final CallSiteIndex shardIndex = CallSiteIndex.read(index);
+                for (int site = 0; site < shardIndex.size(); site++) {
+                    callSites.add(shardIndex.get(site));
+                }
+            } catch (IOException e) {
+                err.println("warning: Could not read the crypto policy call site index of shard " + shard + ": "
+                            + e);
+            }
+        }
+        // stable, so the call sites of a file stay in the order they were checked in.
+        callSites.sort(Comparator.comparingInt(
+            site -> fileIndexes.getOrDefault(ShardRequest.fileKey(site.getFile()), Integer.MAX_VALUE)));
+        final CallSiteIndex merged = new CallSiteIndex();
+        for (CallSiteIndex.CallSite site : callSites) {
+            merged.add(site.getFile(), site.getLine(), site.getColumn(), site.getApi(), site.getWhiteList(),
+                       site.getBlackList(), site.getCandidates(), site.isSuppressed());
+        }
+        try {
+            merged.write(Paths.get(callSiteIndex));
+        } catch (IOException e) {
+            err.println("warning: Could not write the crypto policy call site index to " + callSiteIndex + ": " + e);
+        }
+    }
+
+    private static void delete(final Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // a temporary directory, which the system cleans up eventually.
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.Provider;
+import javax.crypto.Cipher;
+
+import com.amazon.checkerframework.cryptopolicy.agent.CryptoPolicyViolation;
+import com.amazon.checkerframework.cryptopolicy.agent.Enforcer;
+import com.amazon.checkerframework.cryptopolicy.agent.PolicyTransformer;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Instruments a class with the {@link PolicyTransformer} like the agent would when the class is loaded, and calls it
+ * with algorithms from "configuration", checking what the {@link Enforcer} does in each mode.
+ */
+public class AgentTests {
+
+    /**
+     * The class that is instrumented.
+     */
+    static final class Service {
+        static Cipher cipher(final String algorithm) throws Exception {
+            return Cipher.getInstance(algorithm);
+        }
+
+        static MessageDigest digest(final String algorithm, final Provider provider) throws Exception {
+            return MessageDigest.getInstance(algorithm, provider);
+        }
+    }
+
+    private static Method cipher;
+    private static Method digest;
+    private static Provider digestProvider;
+
+    @BeforeClass
+    public static void instrument() throws Exception {
+        final Class<?> service = instrumented(Service.class, new PolicyTransformer(StubPolicies.load("stubs")));
+        cipher = service.getDeclaredMethod("cipher", String.class);
+        cipher.setAccessible(true);
+        digest = service.getDeclaredMethod("digest", String.class, Provider.class);
+        digest.setAccessible(true);
+        digestProvider = MessageDigest.getInstance("SHA-256").getProvider();
+    }
+
+    @After
+    public void resetMode() {
+        Enforcer.setMode(Enforcer.Mode.LOG);
+    }
+
+    @Test
+    public void violationsThrowInThrowMode() throws Exception {
+        Enforcer.setMode(Enforcer.Mode.THROW);
+        Assert.assertNotNull(cipher.invoke(null, "AES/GCM/NoPadding"));
+        Assert.assertNotNull(digest.invoke(null, "SHA-256", digestProvider));
+
+        final long violations = Enforcer.getViolationCount();
+        final CryptoPolicyViolation violation = expectViolation(cipher, "DES");
+        Assert.assertTrue(violation.getMessage(),
+                          violation.getMessage().startsWith("AgentTests$Service.cipher(AgentTests.java:"));
+        Assert.assertTrue(violation.getMessage(), violation.getMessage().contains("DES is not strong enough"));
+        // an argument that is not the last one.
+        expectViolation(digest, "SHA1", digestProvider);
+        Assert.assertEquals(violations + 2, Enforcer.getViolationCount());
+    }
+
+    @Test
+    public void violationsAreCountedInMetricsMode() throws Exception {
+        Enforcer.setMode(Enforcer.Mode.METRICS);
+        final long violations = Enforcer.getViolationCount();
+        final long warnings = Enforcer.getWarningCount();
+        Assert.assertNotNull(cipher.invoke(null, "DES"));
+        Assert.assertNotNull(cipher.invoke(null, "DES"));
+        Assert.assertNotNull(digest.invoke(null, "MD5", digestProvider));
+        Assert.assertEquals(violations + 2, Enforcer.getViolationCount());
+        Assert.assertEquals(warnings + 1, Enforcer.getWarningCount());
+    }
+
+    @Test
+    public void nullIsLeftToTheMethod() throws Exception {
+        Enforcer.setMode(Enforcer.Mode.THROW);
+        try {
+            cipher.invoke(null, (Object) null);
+            Assert.fail("Cipher.getInstance(null) returned");
+        } catch (InvocationTargetException e) {
+            Assert.assertFalse(e.getCause() instanceof CryptoPolicyViolation);
+        }
+    }
+
+    private static CryptoPolicyViolation expectViolation(final Method method, final Object... arguments)
+        throws IllegalAccessException {
+        try {
+            method.invoke(null, arguments);
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof CryptoPolicyViolation);
+            return (CryptoPolicyViolation) e.getCause();
+        }
+        throw new AssertionError(method.getName() + " was not stopped");
+    }
+
+    /**
+     * @return the class, loaded in a new class loader from the class file that the transformer returns.
+     */
+    private static Class<?> instrumented(final Class<?> type, final PolicyTransformer transformer)
+        throws IOException {
+        final String internalName = type.getName().replace('.', '/');
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = type.getClassLoader().getResourceAsStream(internalName + ".class")) {
+            final byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        final DefiningLoader loader = new DefiningLoader(type.getClassLoader());
+        final byte[] transformed = transformer.transform(loader, internalName, null, null, bytes.toByteArray());
+        Assert.assertNotNull(transformed);
+        return loader.define(type.getName(), transformed);
+    }
+
+    private static final class DefiningLoader extends ClassLoader {
+        DefiningLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(final String name, final byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import com.amazon.checkerframework.cryptopolicy.bytecode.BytecodeScanner;
+import com.amazon.checkerframework.cryptopolicy.bytecode.Finding;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles a class that calls the stubbed crypto APIs and checks that the bytecode scanner reports the same
+ * problems as the checker would, both in a class directory and in a jar nested in a jar.
+ */
+public class BytecodeScannerTests {
+
+    private static final String SOURCE = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "import java.security.MessageDigest;",
+        "public class Legacy {",
+        "    static final String ALGORITHM = \"DES\";",
+        "    void literal() throws Exception { Cipher.getInstance(\"des\"); }",
+        "    void allowed() throws Exception { Cipher.getInstance(\"AES/GCM/NoPadding\", \"SunJCE\"); }",
+        "    void inlined() throws Exception { Cipher.getInstance(ALGORITHM); }",
+        "    void branches(boolean b) throws Exception {",
+        "        String algorithm = b ? \"AES/GCM/NoPadding\" : \"RC4\";",
+        "        Cipher.getInstance(algorithm.toUpperCase());",
+        "    }",
+        "    void loop() throws Exception {",
+        "        String algorithm = \"SHA-256\";",
+        "        for (int i = 0; i < 2; i++) { MessageDigest.getInstance(algorithm); algorithm = \"SHA-512\"; }",
+        "    }",
+        "    void unknown(String algorithm) throws Exception { Cipher.getInstance(algorithm); }",
+        "    void weak() throws Exception { MessageDigest.getInstance(\"MD5\"); }",
+        "}",
+        "");
+
+    private static final List<String> EXPECTED = Arrays.asList(
+        "5 crypto.policy.violation DES",
+        "7 crypto.policy.violation DES",
+        "10 crypto.policy.violation RC4",
+        "16 crypto.cipher.unknown",
+        "17 crypto.policy.warning MD5");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void classDirectory() throws IOException {
+        final Path classes = compile();
+        Assert.assertEquals(EXPECTED, scan(classes));
+    }
+
+    @Test
+    public void nestedJar() throws IOException {
+        final Path classes = compile();
+        final Path jar = temporaryFolder.getRoot().toPath().resolve("legacy.jar");
+        writeJar(jar, "Legacy.class", Files.readAllBytes(classes.resolve("Legacy.class")));
+        final Path fatJar = temporaryFolder.getRoot().toPath().resolve("fat.jar");
+        writeJar(fatJar, "lib/legacy.jar", Files.readAllBytes(jar));
+        Assert.assertEquals(EXPECTED, scan(fatJar));
+    }
+
+    private Path compile() throws IOException {
+        final Path source = temporaryFolder.newFolder("src").toPath().resolve("Legacy.java");
+        Files.write(source, SOURCE.getBytes(StandardCharsets.UTF_8));
+        final Path classes = temporaryFolder.newFolder("classes").toPath();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertEquals(0, compiler.run(null, null, null, "-d", classes.toString(), source.toString()));
+        return classes;
+    }
+
+    private static List<String> scan(final Path input) throws IOException {
+        final List<String> findings = new ArrayList<>();
+        final BytecodeScanner scanner = new BytecodeScanner(StubPolicies.load("stubs"), 2);
+        final BytecodeScanner.Summary summary = scanner.scan(Collections.singletonList(input), (Finding finding) -> {
+            Assert.assertTrue(finding.getLocation(), finding.getLocation().endsWith("Legacy.class"));
+            findings.add(finding.getLine() + " " + finding.getMessageKey()
+                         + (finding.getMessageKey().equals("crypto.cipher.unknown")
+                            ? ""
+                            : " " + finding.getMessage().split(" ")[3]));
+        });
+        Assert.assertEquals(1, summary.getClasses());
+        Assert.assertEquals(0, summary.getUnreadable());
+        Collections.sort(findings, (a, b) -> Integer.compare(Integer.parseInt(a.split(" ")[0]),
+                                                             Integer.parseInt(b.split(" ")[0])));
+        return findings;
+    }
+
+    private static void writeJar(final Path jar, final String entry, final byte[] content) throws IOException {
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new ZipEntry(entry));
+            jarOut.write(content);
+            jarOut.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.cds.CdsArchiveBuilder;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Builds a class-data sharing archive with the {@link CdsArchiveBuilder} and checks that javac gives the same
+ * output with it as without it. Archiving application classes needs Java 10 or later, so on older JVMs only the
+ * rejection is tested.
+ */
+public class CdsArchiveTests {
+
+    private static final String VIOLATION = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "public class Violation {",
+        "    static void run() throws Exception {",
+        "        Cipher.getInstance(\"DES\");",
+        "    }",
+        "}");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path source;
+
+    @Before
+    public void writeSource() throws IOException {
+        source = temporaryFolder.getRoot().toPath().resolve("Violation.java");
+        Files.write(source, VIOLATION.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsClassDirectoriesAndOldJava() throws IOException {
+        // the test classes are in directories.
+        final Path out = temporaryFolder.getRoot().toPath().resolve("cds");
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final int exitCode = CdsArchiveBuilder.run(
+            Arrays.asList("--out", out.toString(), "-proc:only", "-Astubs=stubs", source.toString()),
+            new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name()),
+            new PrintStream(err, true, StandardCharsets.UTF_8.name()));
+
+        Assert.assertEquals(CompileResult.COMMAND_LINE_ERROR, exitCode);
+        Assert.assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).startsWith("error: "));
+        Assert.assertFalse(Files.exists(out));
+    }
+
+    @Test
+    public void archivedCheckerPrintsTheSameDiagnostics() throws IOException, InterruptedException {
+        final String version = System.getProperty("java.specification.version");
+        Assume.assumeFalse("needs Java 10 or later", version.startsWith("1."));
+        Assume.assumeTrue("needs Java 10 or later", Integer.parseInt(version) >= 10);
+
+        final List<String> classPath = new ArrayList<>();
+        final List<Path> directories = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (Files.isDirectory(Paths.get(entry))) {
+                directories.add(Paths.get(entry));
+            } else {
+                classPath.add(entry);
+            }
+        }
+        classPath.add(0, jar(directories).toString());
+        final Path out = temporaryFolder.getRoot().toPath().resolve("cds");
+        final int exitCode = CdsArchiveBuilder.run(
+            Arrays.asList("--out", out.toString(), "--classpath", String.join(File.pathSeparator, classPath),
+                          "-proc:only", "-Anocheckjdk", "-Astubs=stubs", source.toString()),
+            System.out, System.err);
+        Assert.assertEquals(CompileResult.OK, exitCode);
+
+        final List<String> javac = Arrays.asList(
+            "-cp", String.join(File.pathSeparator, classPath), "com.sun.tools.javac.Main", "-proc:only",
+            "-processor", CryptoPolicyComplianceChecker.class.getName(), "-Anocheckjdk", "-Astubs=stubs",
+            source.toString());
+        final List<String> shared = new ArrayList<>(CdsArchiveBuilder.archiveJvmArgs(
+            out.resolve(CdsArchiveBuilder.ARCHIVE)));
+        // fails to start if the archive cannot be mapped.
+        shared.add("-Xshare:on");
+        final String plain = java(new ArrayList<>(), javac);
+        Assert.assertTrue(plain, plain.contains("crypto.policy.violation"));
+        Assert.assertEquals(plain, java(shared, javac));
+    }
+
+    /**
+     * @return a jar of the class path directories, which hold the classes and resources of the checker in the tests.
+     */
+    private Path jar(final List<Path> directories) throws IOException {
+        final Path jar = temporaryFolder.getRoot().toPath().resolve("checker.jar");
+        final Set<String> names = new HashSet<>();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Path directory : directories) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        final String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+                        if (names.add(name)) {
+                            out.putNextEntry(new JarEntry(name));
+                            Files.copy(file, out);
+                            out.closeEntry();
+                        }
+                    }
+                }
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * @return what a JVM with the options and arguments printed.
+     */
+    private static String java(final List<String> jvmArgs, final List<String> args)
+        throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(args);
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        copy(process.getInputStream(), output);
+        process.waitFor();
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void copy(final InputStream in, final OutputStream out) throws IOException {
+        final byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
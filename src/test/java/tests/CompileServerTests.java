@@ -0,0 +1,194 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileClient;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileResult;
+import com.amazon.checkerframework.cryptopolicy.daemon.CompileServer;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Sends several modules to one compile server, checking that each gets the diagnostics and output that a separate
+ * javac would give it, and nothing of the modules before it.
+ */
+public class CompileServerTests {
+
+    private static final String VIOLATION = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "public class Violation {",
+        "    static void run() throws Exception {",
+        "        Cipher.getInstance(\"DES\");",
+        "    }",
+        "}");
+
+    private static final String SUPPRESSED = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;",
+        "public class Suppressed {",
+        "    @SuppressCryptoWarning(issue = \"https://example.com/issues/1\")",
+        "    static void run() throws Exception {",
+        "        Cipher.getInstance(\"RC4\");",
+        "    }",
+        "}");
+
+    private static final String CLEAN = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "public class Clean {",
+        "    static void run() throws Exception {",
+        "        Cipher.getInstance(\"AES/GCM/NoPadding\");",
+        "    }",
+        "}");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path portFile;
+    private CompileServer server;
+    private CompletableFuture<Void> serving;
+
+    @Before
+    public void startServer() throws IOException {
+        portFile = temporaryFolder.getRoot().toPath().resolve("server.port");
+        server = CompileServer.open(0, portFile, 0);
+        serving = CompletableFuture.runAsync(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        if (!serving.isDone()) {
+            CompileClient.shutdown(portFile);
+        }
+        serving.get();
+        server.close();
+        Assert.assertFalse(Files.exists(portFile));
+    }
+
+    @Test
+    public void modulesAreIsolated() throws IOException {
+        final CompileResult violation = compile("Violation.java", VIOLATION);
+        Assert.assertEquals(CompileResult.ERROR, violation.getExitCode());
+        Assert.assertTrue(violation.getDiagnostics(),
+                          violation.getDiagnostics().contains("Violation.java:4: error: (crypto.policy.violation)"));
+        Assert.assertEquals("", violation.getOutput());
+
+        final CompileResult suppressed = compile("Suppressed.java", SUPPRESSED);
+        Assert.assertEquals(suppressed.getDiagnostics(), CompileResult.OK, suppressed.getExitCode());
+        Assert.assertEquals("Suppressing warning for RC4 is approved by https://example.com/issues/1",
+                            suppressed.getOutput().trim());
+
+        final CompileResult clean = compile("Clean.java", CLEAN);
+        Assert.assertEquals(CompileResult.OK, clean.getExitCode());
+        Assert.assertEquals("", clean.getDiagnostics());
+        Assert.assertEquals("", clean.getOutput());
+
+        // and the same module again gives the same result.
+        Assert.assertEquals(violation.getDiagnostics(), compile("Violation.java", VIOLATION).getDiagnostics());
+    }
+
+    @Test
+    public void invalidOptionsAreCommandLineErrors() throws IOException {
+        final CompileResult result = CompileClient.compile(portFile, Collections.singletonList("-notAnOption"));
+        Assert.assertEquals(CompileResult.COMMAND_LINE_ERROR, result.getExitCode());
+    }
+
+    @Test
+    public void requestsWithoutTheTokenAreDropped() throws IOException {
+        final List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+        final Path forged = temporaryFolder.getRoot().toPath().resolve("forged.port");
+        Files.write(forged, Arrays.asList(lines.get(0), lines.get(1).replaceAll("[0-9a-f]", "0")),
+                    StandardCharsets.UTF_8);
+        try {
+            CompileClient.compile(forged, Collections.singletonList("-version"));
+            Assert.fail("The server answered a request with the wrong token");
+        } catch (IOException expected) {
+            // the server closes the connection without an answer.
+        }
+        // and keeps serving.
+        Assert.assertEquals(CompileResult.OK, compile("Clean.java", CLEAN).getExitCode());
+    }
+
+    @Test
+    public void errorsOfARequestAreAbnormalResults() throws IOException {
+        final Path plugins = temporaryFolder.newFolder("plugins").toPath();
+        final Path services = plugins.resolve("META-INF/services/" + Plugin.class.getName());
+        Files.createDirectories(services.getParent());
+        Files.write(services, Collections.singletonList(FailingPlugin.class.getName()), StandardCharsets.UTF_8);
+        final Path file = temporaryFolder.getRoot().toPath().resolve("Clean.java");
+        Files.write(file, CLEAN.getBytes(StandardCharsets.UTF_8));
+
+        final CompileResult result = CompileClient.compile(portFile, Arrays.asList(
+            "-proc:only", "-Xplugin:" + FailingPlugin.NAME,
+            "-classpath", plugins + File.pathSeparator + System.getProperty("java.class.path"), file.toString()));
+        Assert.assertEquals(result.getDiagnostics(), CompileResult.ABNORMAL, result.getExitCode());
+        Assert.assertTrue(result.getDiagnostics(), result.getDiagnostics().contains(FailingPlugin.NAME));
+        // and keeps serving.
+        Assert.assertEquals(CompileResult.OK, compile("Clean.java", CLEAN).getExitCode());
+    }
+
+    @Test
+    public void clientsGiveUpOnAServerThatDoesNotAnswer() throws IOException {
+        try (ServerSocket stalled = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            final Path stalledPortFile = temporaryFolder.getRoot().toPath().resolve("stalled.port");
+            Files.write(stalledPortFile, Arrays.asList(String.valueOf(stalled.getLocalPort()),
+                                                       Files.readAllLines(portFile, StandardCharsets.UTF_8).get(1)),
+                        StandardCharsets.UTF_8);
+            // the connection is accepted by the backlog, but nothing reads the request or answers it.
+            try {
+                CompileClient.compile(stalledPortFile, Collections.singletonList("-version"), 500);
+                Assert.fail("The client got an answer from a server that never sends one");
+            } catch (SocketTimeoutException expected) {
+                // the client stops waiting.
+            }
+        }
+    }
+
+    /**
+     * A javac plugin whose initialization fails with an {@link Error}.
+     */
+    public static final class FailingPlugin implements Plugin {
+        static final String NAME = "FailingPlugin";
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public void init(final JavacTask task, final String... args) {
+            throw new LinkageError(NAME + " cannot be initialized");
+        }
+    }
+
+    private CompileResult compile(final String fileName, final String source) throws IOException {
+        final Path file = temporaryFolder.getRoot().toPath().resolve(fileName);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only", "-Anomsgtext", "-Anocheckjdk", "-Astubs=stubs",
+            "-classpath", System.getProperty("java.class.path")));
+        arguments.add(file.toString());
+        return CompileClient.compile(portFile, arguments);
+    }
+}
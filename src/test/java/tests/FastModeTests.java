@@ -0,0 +1,184 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles the same sources with and without -AcryptoFastMode, checking that the fast mode reports the same
+ * diagnostics as the Value Checker does, except for local variables that are reassigned.
+ */
+public class FastModeTests {
+
+    private static final String[] ALGORITHMS = {
+        "AES/GCM/NoPadding", "RSA/ECB/OAEPPadding", "DES", "RC4", "AES/CBC/PKCS5Padding", "aes/gcm/nopadding"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameDiagnosticsOnTestData() throws IOException {
+        for (String directory : Arrays.asList("crypto-policy", "crypto-warnings")) {
+            final List<File> files = sources(directory);
+            Assert.assertEquals(directory, compile(files, Collections.emptyList()),
+                                compile(files, Collections.singletonList("-AcryptoFastMode")));
+        }
+        final List<File> files = sources("crypto-interprocedural");
+        Assert.assertEquals(compile(files, Collections.singletonList("-AcryptoInterprocedural")),
+                            compile(files, Arrays.asList("-AcryptoInterprocedural", "-AcryptoFastMode")));
+    }
+
+    @Test
+    public void sameDiagnosticsOnGeneratedSources() throws IOException {
+        final Random random = new Random(42);
+        final List<File> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(write("Generated" + i + ".java", generate("Generated" + i, random)));
+        }
+        final List<String> diagnostics = compile(files, Collections.emptyList());
+        Assert.assertFalse(diagnostics.isEmpty());
+        Assert.assertEquals(diagnostics, compile(files, Collections.singletonList("-AcryptoFastMode")));
+    }
+
+    @Test
+    public void reassignedLocalsHaveTheValuesOfAllAssignments() throws IOException {
+        final File file = write("Reassigned.java", String.join("\n",
+            "import javax.crypto.Cipher;",
+            "public class Reassigned {",
+            "    static void run() throws Exception {",
+            "        String algorithm = \"DES\";",
+            "        algorithm = \"AES/GCM/NoPadding\";",
+            "        Cipher.getInstance(algorithm);",
+            "    }",
+            "}"));
+        final List<File> files = Collections.singletonList(file);
+        Assert.assertEquals(Collections.emptyList(), compile(files, Collections.emptyList()));
+        Assert.assertEquals(Collections.singletonList("Reassigned.java:6: (crypto.policy.violation)"),
+                            compile(files, Collections.singletonList("-AcryptoFastMode")));
+    }
+
+    /**
+     * @return a class with a method per call site, each passing an algorithm name built in a different way.
+     */
+    private static String generate(final String className, final Random random) {
+        final StringBuilder source = new StringBuilder();
+        source.append("import javax.crypto.Cipher;\n");
+        source.append("public class ").append(className).append(" {\n");
+        source.append("    static final String FIELD = \"").append(pick(random)).append("\";\n");
+        for (int site = 0; site < 10; site++) {
+            source.append("    static void site").append(site)
+                  .append("(final boolean flag, final String parameter) throws Exception {\n");
+            final String first = pick(random);
+            final String second = pick(random);
+            switch (random.nextInt(9)) {
+                case 0:
+                    source.append("        Cipher.getInstance(\"").append(first).append("\");\n");
+                    break;
+                case 1:
+                    source.append("        Cipher.getInstance(FIELD);\n");
+                    break;
+                case 2:
+                    source.append("        Cipher.getInstance(flag ? \"").append(first).append("\" : \"")
+                          .append(second).append("\");\n");
+                    break;
+                case 3:
+                    final int split = first.indexOf('/') < 0 ? first.length() : first.indexOf('/') + 1;
+                    source.append("        final String prefix = \"").append(first, 0, split).append("\";\n");
+                    source.append("        Cipher.getInstance(prefix + \"").append(first.substring(split))
+                          .append("\");\n");
+                    break;
+                case 4:
+                    source.append("        final String local = \"").append(first).append("\";\n");
+                    source.append("        Cipher.getInstance(local);\n");
+                    break;
+                case 5:
+                    source.append("        final String branch;\n");
+                    source.append("        if (flag) {\n");
+                    source.append("            branch = \"").append(first).append("\";\n");
+                    source.append("        } else {\n");
+                    source.append("            branch = \"").append(second).append("\";\n");
+                    source.append("        }\n");
+                    source.append("        Cipher.getInstance(branch);\n");
+                    break;
+                case 6:
+                    source.append("        Cipher.getInstance(\"").append(first.toLowerCase())
+                          .append("\".toUpperCase());\n");
+                    break;
+                case 7:
+                    source.append("        Cipher.getInstance(\"").append(first, 0, first.length() / 2)
+                          .append("\".concat(\"").append(first.substring(first.length() / 2)).append("\"));\n");
+                    break;
+                default:
+                    source.append("        Cipher.getInstance(parameter);\n");
+                    break;
+            }
+            source.append("    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static String pick(final Random random) {
+        return ALGORITHMS[random.nextInt(ALGORITHMS.length)];
+    }
+
+    private static List<File> sources(final String directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(new File("tests", directory).toPath())) {
+            return paths.filter(path -> path.toString().endsWith(".java")).sorted().map(Path::toFile)
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private File write(final String fileName, final String source) throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), fileName);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @return the diagnostics of the checker, as "file:line: (key)", sorted.
+     */
+    private static List<String> compile(final List<File> files, final List<String> options) throws IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anomsgtext", "-Anocheckjdk", "-Astubs=stubs", "-nowarn",
+            "-classpath", System.getProperty("java.class.path")));
+        arguments.addAll(options);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                             fileManager.getJavaFileObjectsFromFiles(files)).call();
+        }
+        final List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.NOTE && diagnostic.getKind() != Diagnostic.Kind.OTHER) {
+                results.add(new File(diagnostic.getSource().getName()).getName() + ":"
+                            + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+}
@@ -0,0 +1,141 @@
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import com.amazon.checkerframework.cryptopolicy.impact.CallSiteIndex;
+import com.amazon.checkerframework.cryptopolicy.impact.PolicyImpactAnalyzer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles a class with -AcryptoCallSiteIndex and evaluates changed copies of the stubs against the index with the
+ * {@link PolicyImpactAnalyzer}.
+ */
+public class ImpactAnalysisTests {
+
+    private static final String SOURCE = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;",
+        "public class App {",
+        "    static void run(final boolean legacy) throws Exception {",
+        "        Cipher.getInstance(\"AES/GCM/NoPadding\");",
+        "        Cipher.getInstance(legacy ? \"RSA/ECB/OAEPPadding\" : \"AES/GCM/NoPadding\");",
+        "        Cipher.getInstance(\"DES\");",
+        "    }",
+        "    @SuppressCryptoWarning(issue = \"https://example.com/issues/1\")",
+        "    static void approved() throws Exception {",
+        "        Cipher.getInstance(\"RSA/ECB/PKCS1Padding\");",
+        "    }",
+        "}");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path index;
+
+    @Before
+    public void compile() throws IOException {
+        final Path file = temporaryFolder.getRoot().toPath().resolve("src/App.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+        index = temporaryFolder.getRoot().toPath().resolve("index/app" + PolicyImpactAnalyzer.INDEX_SUFFIX);
+
+        final List<String> arguments = Arrays.asList(
+            "-proc:only", "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anomsgtext", "-Anocheckjdk", "-Astubs=stubs", "-AcryptoCallSiteIndex=" + index,
+            "-classpath", System.getProperty("java.class.path"));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            // the DES call is a violation.
+            Assert.assertFalse(compiler.getTask(null, fileManager, diagnostics -> { }, arguments, null,
+                                                fileManager.getJavaFileObjects(file.toFile())).call());
+        }
+    }
+
+    @Test
+    public void indexHasTheCheckedCallSites() throws IOException {
+        final CallSiteIndex callSites = CallSiteIndex.read(index);
+        Assert.assertEquals(4, callSites.size());
+        final CallSiteIndex.CallSite ternary = callSites.get(1);
+        Assert.assertEquals(6, ternary.getLine());
+        Assert.assertEquals("javax.crypto.Cipher.getInstance(String)", ternary.getApi().toString());
+        Assert.assertEquals(Arrays.asList("aes/gcm/nopadding", "rsa/ecb/oaeppadding"), ternary.getCandidates());
+        Assert.assertFalse(ternary.isSuppressed());
+        Assert.assertTrue(callSites.get(3).isSuppressed());
+    }
+
+    @Test
+    public void removedPatternsListNewViolations() throws IOException {
+        final List<String> impacts = new ArrayList<>();
+        final PolicyImpactAnalyzer.Summary summary =
+            analyze(changedStubs("\"aes/gcm.*\", \"rsa/ecb.*\"", "\"aes/gcm.*\""), impacts);
+
+        Assert.assertEquals(Collections.singletonList("6: crypto.policy.violation RSA/ECB/OAEPPADDING"), impacts);
+        Assert.assertEquals(4, summary.getSites());
+        Assert.assertEquals(1, summary.getViolations());
+        Assert.assertEquals(1, summary.getSuppressed());
+        Assert.assertEquals(0, summary.getResolved());
+    }
+
+    @Test
+    public void addedPatternsResolveViolations() throws IOException {
+        final List<String> impacts = new ArrayList<>();
+        final PolicyImpactAnalyzer.Summary summary =
+            analyze(changedStubs("\"aes/gcm.*\", \"rsa/ecb.*\"", "\"aes/gcm.*\", \"rsa/ecb.*\", \"des\""), impacts);
+
+        Assert.assertEquals(Collections.emptyList(), impacts);
+        Assert.assertEquals(0, summary.getViolations());
+        Assert.assertEquals(1, summary.getResolved());
+    }
+
+    @Test
+    public void unreadableIndexesAreCounted() throws IOException {
+        final Path corrupt = index.resolveSibling("corrupt" + PolicyImpactAnalyzer.INDEX_SUFFIX);
+        Files.write(corrupt, new byte[] {1, 2, 3});
+        final PolicyImpactAnalyzer.Summary summary = new PolicyImpactAnalyzer(
+            StubPolicies.load("stubs"), StubPolicies.load("stubs"), 2).analyze(
+            PolicyImpactAnalyzer.findIndexes(Collections.singletonList(index.getParent())), impact -> { });
+
+        Assert.assertEquals(1, summary.getIndexes());
+        Assert.assertEquals(1, summary.getUnreadable());
+        Assert.assertEquals(4, summary.getSites());
+    }
+
+    /**
+     * @return a copy of the stubs with the white list of Cipher.getInstance replaced.
+     */
+    private Path changedStubs(final String whiteList, final String proposed) throws IOException {
+        final Path stubs = temporaryFolder.newFolder("proposed").toPath();
+        for (String name : Arrays.asList("java.security.astub", "javax.crypto.astub")) {
+            final String stub = new String(Files.readAllBytes(Paths.get("stubs", name)), StandardCharsets.UTF_8);
+            Files.write(stubs.resolve(name), stub.replace(whiteList, proposed).getBytes(StandardCharsets.UTF_8));
+        }
+        return stubs;
+    }
+
+    /**
+     * @param impacts receives the impacts, as "line: key algorithms".
+     */
+    private PolicyImpactAnalyzer.Summary analyze(final Path proposed, final List<String> impacts)
+        throws IOException {
+        final PolicyImpactAnalyzer analyzer =
+            new PolicyImpactAnalyzer(StubPolicies.load("stubs"), StubPolicies.load(proposed.toString()), 2);
+        return analyzer.analyze(Collections.singletonList(index), impact -> impacts.add(
+            impact.getSite().getLine() + ": " + impact.getMessageKey() + " " + impact.getAlgorithms()));
+    }
+}
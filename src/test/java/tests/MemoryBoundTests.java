@@ -0,0 +1,150 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles the same sources with and without -AcryptoMemoryBound, with a bound small enough that the capped caches
+ * evict, checking that releasing the state of every unit once it has been checked does not change the diagnostics.
+ */
+public class MemoryBoundTests {
+
+    private static final Pattern HEAP = Pattern.compile("\"heap\": \\{\"peakBytes\": (\\d+), \"retainedBytes\": (\\d+)}");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameDiagnosticsOnTestData() throws IOException {
+        for (String directory : Arrays.asList("crypto-policy", "crypto-warnings")) {
+            final List<File> files = sources(directory);
+            Assert.assertEquals(directory, compile(files, Collections.emptyList()),
+                                compile(files, Collections.singletonList("-AcryptoMemoryBound=4")));
+            Assert.assertEquals(directory, compile(files, Collections.singletonList("-AcryptoFastMode")),
+                                compile(files, Arrays.asList("-AcryptoFastMode", "-AcryptoMemoryBound=4")));
+        }
+    }
+
+    @Test
+    public void unitsWithSeveralClassesAreReleasedAfterTheLast() throws IOException {
+        final List<File> files = Arrays.asList(
+            write("First.java", String.join("\n",
+                "import javax.crypto.Cipher;",
+                "public class First {",
+                "    static final String ALGORITHM = \"DES\";",
+                "    static Cipher first() throws Exception {",
+                "        return Cipher.getInstance(ALGORITHM);",
+                "    }",
+                "}",
+                "class Second {",
+                "    static Cipher second() throws Exception {",
+                "        final String algorithm = \"RC4\";",
+                "        return Cipher.getInstance(algorithm);",
+                "    }",
+                "}")),
+            write("Third.java", String.join("\n",
+                "import javax.crypto.Cipher;",
+                "class Third {",
+                "    static Cipher third() throws Exception {",
+                "        return Cipher.getInstance(First.ALGORITHM);",
+                "    }",
+                "}")));
+        final List<String> diagnostics = compile(files, Collections.emptyList());
+        Assert.assertEquals(Arrays.asList("First.java:11: (crypto.policy.violation)",
+                                          "First.java:5: (crypto.policy.violation)",
+                                          "Third.java:4: (crypto.policy.violation)"), diagnostics);
+        Assert.assertEquals(diagnostics, compile(files, Collections.singletonList("-AcryptoMemoryBound")));
+    }
+
+    @Test
+    public void metricsReportTheHeapOfEveryUnit() throws IOException {
+        final List<File> files = sources("crypto-policy");
+        final Path metrics = temporaryFolder.getRoot().toPath().resolve("metrics.json");
+        compile(files, Arrays.asList("-AcryptoMemoryBound", "-AcryptoMetrics=" + metrics));
+
+        final String json = new String(Files.readAllBytes(metrics), StandardCharsets.UTF_8);
+        final Matcher heap = HEAP.matcher(json);
+        int count = 0;
+        while (heap.find()) {
+            Assert.assertTrue(json, Long.parseLong(heap.group(1)) > 0);
+            Assert.assertTrue(json, Long.parseLong(heap.group(2)) > 0);
+            count++;
+        }
+        // the aggregate and every unit.
+        Assert.assertEquals(json, files.size() + 1, count);
+    }
+
+    @Test
+    public void invalidBoundIsAnError() throws IOException {
+        final List<String> diagnostics =
+            compile(sources("crypto-policy"), Collections.singletonList("-AcryptoMemoryBound=none"));
+        Assert.assertTrue(diagnostics.toString(),
+                          diagnostics.stream().anyMatch(diagnostic -> diagnostic.contains("cryptoMemoryBound")));
+    }
+
+    private static List<File> sources(final String directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(new File("tests", directory).toPath())) {
+            return paths.filter(path -> path.toString().endsWith(".java")).sorted().map(Path::toFile)
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private File write(final String fileName, final String source) throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), fileName);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @return the diagnostics of the checker, as "file:line: (key)", sorted; diagnostics without a source as their
+     *     message.
+     */
+    private static List<String> compile(final List<File> files, final List<String> options) throws IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anomsgtext", "-Anocheckjdk", "-Astubs=stubs", "-nowarn",
+            "-classpath", System.getProperty("java.class.path")));
+        arguments.addAll(options);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                             fileManager.getJavaFileObjectsFromFiles(files)).call();
+        }
+        final List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.NOTE || diagnostic.getKind() == Diagnostic.Kind.OTHER) {
+                continue;
+            }
+            results.add(diagnostic.getSource() == null
+                        ? diagnostic.getMessage(null)
+                        : new File(diagnostic.getSource().getName()).getName() + ":"
+                          + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+        }
+        Collections.sort(results);
+        return results;
+    }
+}
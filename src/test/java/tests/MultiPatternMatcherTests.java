@@ -0,0 +1,178 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.amazon.checkerframework.cryptopolicy.matcher.MultiPatternMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the multi-pattern engine gives exactly the same verdicts as matching every lower-cased regex
+ * with {@link String#matches(String)}, which is what the checker did before the engine existed.
+ */
+public class MultiPatternMatcherTests {
+
+    private static final List<String> REGEXES = Arrays.asList(
+        // from the stub files and the README
+        "aes/gcm.*", "rsa/ecb.*", "sha-.*", "md5", "HmacSHA-?(1.*|2.*|384|512.*)", "HmacSHA-?1",
+        // literal shapes
+        "", ".*", "des", "aes\\/cbc.*", "a\\.b", "3des.*",
+        // automaton shapes
+        "aes/(gcm|ccm)/nopadding", "(aes|des)(ede)?/[a-z]+/.*", "sha[0-9]{1,3}with(rsa|ecdsa)",
+        "[^/]+/ecb/.*", "rc[24]", "x?y*z+", "(ab)*", "a{2,}", "\\w+\\d", "[a-c\\-]+", "\\s*aes", ".+?",
+        "pbkdf2withhmacsha(1|256|512)", "[\\x41-\\x5a]+", "(?:tls|ssl)v1\\.[0-3]",
+        // fall back to java.util.regex
+        "^aes.*$", "(a)\\1", "aes(?=/gcm).*", "[a-z&&[^x]]+", "\\x{61}+", "a*+b", "(?i)AES.*", "\\bdes\\b"
+    );
+
+    private static final List<String> VALUES = Arrays.asList(
+        "", "aes", "aes/gcm/nopadding", "aes/gcm", "aes/ccm/nopadding", "aes/cbc/pkcs5padding", "aes/gcm\n",
+        "aes/gcm/\r", "rsa/ecb/oaeppadding", "des", "desede/cbc/pkcs5padding", "3des", "md5", "md5 ", "sha-256",
+        "sha-", "sha256withrsa", "sha1withecdsa", "hmacsha-1", "hmacsha1", "hmacsha384", "hmacsha-512/256",
+        "hmacsha3", "rc2", "rc4", "rc5", "z", "xz", "yyz", "xyyzz", "abab", "aba", "aa", "a", "aaaa", "ab1",
+        "a-b-c", "  aes", "pbkdf2withhmacsha256", "tlsv1.2", "sslv1.4", "a.b", "a/b", "aes/cbc/", "aes\u2028x",
+        "\ud83d\ude00", "aes/gcm\ud83d\ude00", "ab", "aab", "AES", "des ", "x", "ABC"
+    );
+
+    @Test
+    public void sameVerdictsAsStringMatches() {
+        for (int size = 1; size <= REGEXES.size(); size++) {
+            final List<String> regexes = lowerCase(REGEXES.subList(0, size));
+            final MultiPatternMatcher matcher = MultiPatternMatcher.compile(regexes);
+            for (String value : VALUES) {
+                Assert.assertEquals(regexes + " on '" + value + "'",
+                                    referenceFirstMatch(regexes, value), matcher.firstMatch(value));
+            }
+        }
+    }
+
+    @Test
+    public void sameVerdictsOnRandomPolicies() {
+        final Random random = new Random(20200601L);
+        for (int round = 0; round < 300; round++) {
+            final List<String> regexes = new ArrayList<>();
+            final int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                regexes.add(randomRegex(random, 3));
+            }
+            final MultiPatternMatcher matcher = MultiPatternMatcher.compile(regexes);
+            for (int v = 0; v < 50; v++) {
+                final String value = randomValue(random);
+                Assert.assertEquals(regexes + " on '" + value + "'",
+                                    referenceFirstMatch(regexes, value), matcher.firstMatch(value));
+            }
+            for (String value : VALUES) {
+                Assert.assertEquals(regexes + " on '" + value + "'",
+                                    referenceFirstMatch(regexes, value), matcher.firstMatch(value));
+            }
+        }
+    }
+
+    @Test
+    public void matchReportsWhichRegexMatched() {
+        final MultiPatternMatcher matcher =
+            MultiPatternMatcher.compile(Arrays.asList("aes/gcm.*", "rsa/ecb.*", "(aes|rsa)/.*"));
+        final int[] result = matcher.match(Arrays.asList("aes/gcm/nopadding", "rsa/ecb/pkcs1padding",
+                                                         "aes/cbc/nopadding", "des"));
+        Assert.assertArrayEquals(new int[]{0, 1, 2, -1}, result);
+    }
+
+    @Test
+    public void usesTheCheapestStrategy() {
+        final MultiPatternMatcher matcher =
+            MultiPatternMatcher.compile(Arrays.asList("aes/gcm.*", "md5", "hmacsha-?(1.*|2.*)", "(a)\\1"));
+        Assert.assertEquals(MultiPatternMatcher.Strategy.LITERAL_TRIE, matcher.getStrategy(0));
+        Assert.assertEquals(MultiPatternMatcher.Strategy.LITERAL_TRIE, matcher.getStrategy(1));
+        Assert.assertEquals(MultiPatternMatcher.Strategy.AUTOMATON, matcher.getStrategy(2));
+        Assert.assertEquals(MultiPatternMatcher.Strategy.JAVA_REGEX, matcher.getStrategy(3));
+    }
+
+    @Test
+    public void readMatcherGivesTheSameVerdicts() throws IOException {
+        final Random random = new Random(20201018L);
+        for (int round = 0; round < 100; round++) {
+            final List<String> regexes = new ArrayList<>();
+            if (round == 0) {
+                regexes.addAll(lowerCase(REGEXES));
+            }
+            for (int i = random.nextInt(8); i >= 0; i--) {
+                regexes.add(randomRegex(random, 3));
+            }
+            final MultiPatternMatcher matcher = MultiPatternMatcher.compile(regexes);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                matcher.write(out);
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            final MultiPatternMatcher read = MultiPatternMatcher.read(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+            Assert.assertEquals(regexes, read.getRegexes());
+            for (int i = 0; i < regexes.size(); i++) {
+                Assert.assertEquals(matcher.getStrategy(i), read.getStrategy(i));
+            }
+            for (int v = 0; v < 50; v++) {
+                final String value = randomValue(random);
+                Assert.assertEquals(regexes + " on '" + value + "'", matcher.firstMatch(value), read.firstMatch(value));
+            }
+            for (String value : VALUES) {
+                Assert.assertEquals(regexes + " on '" + value + "'", matcher.firstMatch(value), read.firstMatch(value));
+            }
+        }
+    }
+
+    private static int referenceFirstMatch(final List<String> regexes, final String value) {
+        for (int i = 0; i < regexes.size(); i++) {
+            if (value.matches(regexes.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> lowerCase(final List<String> regexes) {
+        final List<String> result = new ArrayList<>();
+        for (String regex : regexes) {
+            result.add(regex.toLowerCase());
+        }
+        return result;
+    }
+
+    private static String randomRegex(final Random random, final int depth) {
+        final int choice = random.nextInt(depth <= 0 ? 4 : 10);
+        switch (choice) {
+            case 0:
+                return String.valueOf("abc/-".charAt(random.nextInt(5)));
+            case 1:
+                return ".";
+            case 2:
+                return random.nextBoolean() ? "[a-b]" : "[^c/]";
+            case 3:
+                return random.nextBoolean() ? "\\d" : "\\/";
+            case 4:
+            case 5:
+                return randomRegex(random, depth - 1) + randomRegex(random, depth - 1);
+            case 6:
+                return "(" + randomRegex(random, depth - 1) + "|" + randomRegex(random, depth - 1) + ")";
+            case 7:
+                return "(" + randomRegex(random, depth - 1) + ")" + "*+?".charAt(random.nextInt(3));
+            case 8:
+                return "(?:" + randomRegex(random, depth - 1) + "){1,2}";
+            default:
+                return "abc".charAt(random.nextInt(3)) + ".*";
+        }
+    }
+
+    private static String randomValue(final Random random) {
+        final StringBuilder value = new StringBuilder();
+        final int length = random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            value.append("abc/-1\n".charAt(random.nextInt(7)));
+        }
+        return value.toString();
+    }
+}
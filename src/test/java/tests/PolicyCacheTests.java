@@ -0,0 +1,60 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the {@link CryptoPolicyCache} that all compilations in a JVM share: its hit and miss counts, and that the
+ * least recently used policy is evicted once it is full. The cache is shared, so every test uses regexes of its own.
+ */
+public class PolicyCacheTests {
+
+    /**
+     * CryptoPolicyCache.MAX_POLICIES.
+     */
+    private static final int MAX_POLICIES = 1024;
+
+    private final CryptoPolicyCache policies = CryptoPolicyCache.getInstance();
+
+    @Test
+    public void policiesAreCompiledOnce() {
+        final long hits = policies.getHitCount();
+        final long misses = policies.getMissCount();
+        final CryptoPolicy policy = whiteList("once/.*");
+        Assert.assertSame(policy, whiteList("once/.*"));
+        Assert.assertSame(policy, whiteList("once/.*"));
+        Assert.assertEquals(misses + 1, policies.getMissCount());
+        Assert.assertEquals(hits + 2, policies.getHitCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedPolicyIsEvicted() {
+        final CryptoPolicy kept = whiteList("kept/.*");
+        final CryptoPolicy evicted = whiteList("evicted/.*");
+        for (int i = 0; i < MAX_POLICIES - 2; i++) {
+            whiteList("filler-" + i);
+        }
+        Assert.assertSame(kept, whiteList("kept/.*"));
+        // one more policy than fits evicts the least recently used one, which is no longer the kept one.
+        whiteList("filler-last");
+        Assert.assertEquals(MAX_POLICIES, policies.size());
+
+        final long misses = policies.getMissCount();
+        Assert.assertSame(kept, whiteList("kept/.*"));
+        Assert.assertEquals(misses, policies.getMissCount());
+        Assert.assertNotSame(evicted, whiteList("evicted/.*"));
+        Assert.assertEquals(misses + 1, policies.getMissCount());
+    }
+
+    private CryptoPolicy whiteList(final String regex) {
+        return policies.getPolicy(CryptoPolicy.Kind.WHITELIST, list(regex), Collections.<String>emptyList());
+    }
+
+    private static List<String> list(final String... values) {
+        return Arrays.asList(values);
+    }
+}
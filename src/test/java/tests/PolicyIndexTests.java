@@ -0,0 +1,146 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.bytecode.StubPolicies;
+import com.amazon.checkerframework.cryptopolicy.index.PolicyIndex;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles the test data with the policies of the stubs applied by the CheckerFramework (-Astubs), by the checker
+ * (-AcryptoPolicyStubs) and read from a {@link PolicyIndex} (-AcryptoPolicyIndex), checking that all report the same
+ * diagnostics and that a stale index falls back to the stubs.
+ */
+public class PolicyIndexTests {
+
+    private static final String NOTE = "NOTE: ";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameDiagnosticsWithPolicyStubsAndIndex() throws IOException {
+        final Path index = temporaryFolder.getRoot().toPath().resolve("crypto-policy.idx");
+        PolicyIndex.write(StubPolicies.load("stubs"), "stubs", index);
+        Assert.assertNotNull(PolicyIndex.read(index, "stubs"));
+
+        for (String directory : Arrays.asList("crypto-policy", "crypto-warnings")) {
+            final List<File> files = sources(directory);
+            final List<String> expected = compile(files, Collections.singletonList("-Astubs=stubs"));
+            Assert.assertFalse(directory, expected.isEmpty());
+            Assert.assertEquals(directory, expected,
+                                compile(files, Collections.singletonList("-AcryptoPolicyStubs=stubs")));
+            Assert.assertEquals(directory, expected,
+                                compile(files, Arrays.asList("-AcryptoPolicyStubs=stubs",
+                                                             "-AcryptoPolicyIndex=" + index)));
+        }
+    }
+
+    @Test
+    public void staleIndexFallsBackToTheStubs() throws IOException {
+        final Path stubs = temporaryFolder.newFolder("stubs").toPath();
+        for (String stub : Arrays.asList("java.security.astub", "javax.crypto.astub")) {
+            Files.copy(new File("stubs", stub).toPath(), stubs.resolve(stub));
+        }
+        final Path index = temporaryFolder.getRoot().toPath().resolve("crypto-policy.idx");
+        PolicyIndex.write(StubPolicies.load(stubs.toString()), stubs.toString(), index);
+        // approves DES, which the stale index would still report.
+        final Path cipherStub = stubs.resolve("javax.crypto.astub");
+        final String edited = new String(Files.readAllBytes(cipherStub), StandardCharsets.UTF_8)
+            .replace("\"rsa/ecb.*\"}", "\"rsa/ecb.*\", \"des\"}");
+        Files.write(cipherStub, edited.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        Assert.assertNull(PolicyIndex.read(index, stubs.toString()));
+
+        final List<File> files = sources("crypto-policy");
+        final List<String> withIndex = compile(files, Arrays.asList("-AcryptoPolicyStubs=" + stubs,
+                                                                    "-AcryptoPolicyIndex=" + index));
+        Assert.assertTrue(withIndex.toString(), withIndex.remove(NOTE + "The crypto policy index " + index
+                                                                 + " is missing or stale, parsing " + stubs));
+        Assert.assertEquals(compile(files, Collections.singletonList("-Astubs=" + stubs)), withIndex);
+        Assert.assertNotEquals(compile(files, Collections.singletonList("-Astubs=stubs")), withIndex);
+
+        final List<String> missing = compile(files, Arrays.asList(
+            "-AcryptoPolicyStubs=" + stubs, "-AcryptoPolicyIndex=" + index.resolveSibling("missing.idx")));
+        Assert.assertEquals(withIndex.size() + 1, missing.size());
+    }
+
+    @Test
+    public void policiesOnlyOfParameters() throws IOException {
+        final Path stub = temporaryFolder.getRoot().toPath().resolve("returns.astub");
+        Files.write(stub, String.join("\n",
+            "package javax.crypto;",
+            "import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;",
+            "class Cipher {",
+            "    static Cipher getInstance(@CryptoWhiteListed({\"aes/gcm.*\"}) String transformation);",
+            "    @CryptoWhiteListed({\"aes.*\"}) String getAlgorithm();",
+            "}").getBytes(StandardCharsets.UTF_8));
+        final StubPolicies policies = StubPolicies.load(stub.toString());
+        Assert.assertEquals(Collections.singletonList("javax.crypto.Cipher.getAlgorithm"),
+                            policies.getIgnoredMembers());
+        Assert.assertEquals(1, policies.getCallables().size());
+
+        final List<String> diagnostics = compile(sources("crypto-policy"),
+                                                 Collections.singletonList("-AcryptoPolicyStubs=" + stub));
+        Assert.assertTrue(diagnostics.toString(), diagnostics.contains(
+            "ERROR: -AcryptoPolicyStubs only applies policies of parameters, pass the stubs of "
+            + "javax.crypto.Cipher.getAlgorithm with -Astubs"));
+    }
+
+    private static List<File> sources(final String directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(new File("tests", directory).toPath())) {
+            return paths.filter(path -> path.toString().endsWith(".java")).sorted().map(Path::toFile)
+                        .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the diagnostics of the checker, as "file:line: (key)", and those without a source, as
+     *     "KIND: message", sorted.
+     */
+    private static List<String> compile(final List<File> files, final List<String> options) throws IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anomsgtext", "-Anocheckjdk",
+            "-classpath", System.getProperty("java.class.path")));
+        arguments.addAll(options);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                             fileManager.getJavaFileObjectsFromFiles(files)).call();
+        }
+        final List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getSource() == null) {
+                results.add(diagnostic.getKind() + ": " + diagnostic.getMessage(null));
+            } else if (diagnostic.getKind() != Diagnostic.Kind.NOTE
+                       && diagnostic.getKind() != Diagnostic.Kind.OTHER) {
+                results.add(new File(diagnostic.getSource().getName()).getName() + ":"
+                            + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+}
@@ -0,0 +1,119 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles a library with -AcryptoExportSummaries and then a module that uses it from the class path, checking that
+ * the library's wrapper of Cipher.getInstance is checked at the call sites in the module.
+ */
+public class PolicySummaryTests {
+
+    private static final String LIBRARY = String.join("\n",
+        "package lib;",
+        "import javax.crypto.Cipher;",
+        "public class Crypto {",
+        "    public static Cipher cipher(final String algorithm) throws Exception {",
+        "        return open(algorithm);",
+        "    }",
+        "    private static Cipher open(final String algorithm) throws Exception {",
+        "        return Cipher.getInstance(algorithm);",
+        "    }",
+        "    public static void legacy() throws Exception {",
+        "        cipher(\"DES\");",
+        "    }",
+        "}");
+
+    private static final String MODULE = String.join("\n",
+        "import lib.Crypto;",
+        "public class App {",
+        "    static void run(final String configured) throws Exception {",
+        "        Crypto.cipher(\"AES/GCM/NoPadding\");",
+        "        Crypto.cipher(\"RC4\");",
+        "        Crypto.cipher(configured);",
+        "    }",
+        "}");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void wrappersAreCheckedAtCallSitesOfOtherModules() throws IOException {
+        final Path library = compileLibrary();
+        Assert.assertTrue(Files.isRegularFile(library.resolve("META-INF/crypto-policy/lib/Crypto.summary")));
+
+        Assert.assertEquals(Arrays.asList("5: (crypto.policy.violation)", "6: (crypto.cipher.unknown)"),
+                            compile("App.java", MODULE, library, Collections.emptyList()));
+    }
+
+    @Test
+    public void withoutSummariesWrappersAreNotChecked() throws IOException {
+        final Path library = compileLibrary();
+        Files.delete(library.resolve("META-INF/crypto-policy/lib/Crypto.summary"));
+
+        Assert.assertEquals(Collections.emptyList(), compile("App.java", MODULE, library, Collections.emptyList()));
+    }
+
+    private Path compileLibrary() throws IOException {
+        // the wrapper's parameter is checked at its call sites instead of reported as unknown. -Awarns, so that
+        // javac writes the classes despite the violation.
+        Assert.assertEquals(Collections.singletonList("11: (crypto.policy.violation)"),
+                            compile("lib/Crypto.java", LIBRARY, null,
+                                    Arrays.asList("-AcryptoExportSummaries", "-Awarns")));
+        return temporaryFolder.getRoot().toPath().resolve("out-lib");
+    }
+
+    /**
+     * @return the diagnostics of the checker, as "line: (key)".
+     */
+    private List<String> compile(final String fileName,
+                                 final String source,
+                                 final Path classPath,
+                                 final List<String> options) throws IOException {
+        final Path sources = temporaryFolder.getRoot().toPath().resolve("src-" + fileName.replace('/', '-'));
+        final Path file = sources.resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        final Path out = temporaryFolder.getRoot().toPath().resolve(classPath == null ? "out-lib" : "out-app");
+        Files.createDirectories(out);
+
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anomsgtext", "-Anocheckjdk", "-Astubs=stubs",
+            "-classpath", System.getProperty("java.class.path")
+                          + (classPath == null ? "" : File.pathSeparator + classPath),
+            "-d", out.toString()));
+        arguments.addAll(options);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                             fileManager.getJavaFileObjects(file.toFile())).call();
+        }
+        final List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.NOTE && diagnostic.getKind() != Diagnostic.Kind.OTHER) {
+                results.add(diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,189 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles a class with -AcryptoProfiles, checking that the call sites are evaluated against each profile in the
+ * same compilation and that each profile gets its own diagnostics and report.
+ */
+public class ProfileTests {
+
+    private static final String SOURCE = String.join("\n",
+        "import javax.crypto.Cipher;",
+        "import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;",
+        "public class App {",
+        "    static void run() throws Exception {",
+        "        Cipher.getInstance(\"AES/GCM/NoPadding\");",
+        "        Cipher.getInstance(\"RSA/ECB/OAEPPadding\");",
+        "        Cipher.getInstance(\"DES\");",
+        "    }",
+        "    @SuppressCryptoWarning(issue = \"https://example.com/issues/1\")",
+        "    static void approved() throws Exception {",
+        "        Cipher.getInstance(\"RSA/ECB/PKCS1Padding\");",
+        "    }",
+        "}");
+
+    /**
+     * Only calls KeyGenerator, which the stubs do not annotate.
+     */
+    private static final String KEYS_SOURCE = String.join("\n",
+        "import javax.crypto.KeyGenerator;",
+        "import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;",
+        "public class Keys {",
+        "    static void run(String algorithm) throws Exception {",
+        "        KeyGenerator.getInstance(\"AES\");",
+        "        KeyGenerator.getInstance(\"HmacMD5\");",
+        "        KeyGenerator.getInstance(algorithm);",
+        "    }",
+        "    @SuppressCryptoWarning(issue = \"https://example.com/issues/2\")",
+        "    static void approved() throws Exception {",
+        "        KeyGenerator.getInstance(\"DESede\");",
+        "    }",
+        "}");
+
+    private static final String KEY_GENERATOR_STUB = String.join("\n",
+        "package javax.crypto;",
+        "import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;",
+        "class KeyGenerator {",
+        "    static KeyGenerator getInstance(@CryptoWhiteListed({\"aes\"}) String algorithm);",
+        "}");
+
+    /**
+     * The key, the profile and the algorithms of a policy diagnostic.
+     */
+    private static final Pattern POLICY_MESSAGE =
+        Pattern.compile("(?s)(\\[[a-z.]+\\]) (\\w+ profile: )?Used crypto algorithm: (.*?) is .*");
+
+    private static final String CIPHER_WHITE_LIST = "\"aes/gcm.*\", \"rsa/ecb.*\"";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void everyProfileHasItsOwnDiagnostics() throws IOException {
+        final String profiles = "strict=" + profile("strict", "\"aes/gcm.*\"")
+                                + ",legacy=" + profile("legacy", CIPHER_WHITE_LIST + ", \"des\"");
+
+        Assert.assertEquals(Arrays.asList("6: [crypto.profile.violation] strict profile: RSA/ECB/OAEPPADDING",
+                                          "7: [crypto.policy.violation] DES",
+                                          "7: [crypto.profile.violation] strict profile: DES"),
+                            compile("-AcryptoProfiles=" + profiles));
+    }
+
+    @Test
+    public void everyProfileHasItsOwnReport() throws IOException {
+        final Path report = temporaryFolder.getRoot().toPath().resolve("reports/crypto.json");
+        compile("-AcryptoProfiles=strict=" + profile("strict", "\"aes/gcm.*\""), "-AcryptoReport=" + report);
+
+        final String stubsReport = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+        Assert.assertTrue(stubsReport, stubsReport.contains("DES"));
+        Assert.assertFalse(stubsReport, stubsReport.contains("profile"));
+        final String strictReport = new String(Files.readAllBytes(report.resolveSibling("crypto.strict.json")),
+                                               StandardCharsets.UTF_8);
+        Assert.assertTrue(strictReport, strictReport.contains("\"rule\": \"crypto.policy.violation\""));
+        Assert.assertTrue(strictReport, strictReport.contains("RSA/ECB/OAEPPADDING"));
+        Assert.assertTrue(strictReport, strictReport.contains("DES"));
+        Assert.assertTrue(strictReport, strictReport.contains("RSA/ECB/PKCS1PADDING"));
+        Assert.assertTrue(strictReport, strictReport.contains("\"suppressedBy\": \"https://example.com/issues/1\""));
+    }
+
+    @Test
+    public void apisThatOnlyAProfileAnnotatesAreChecked() throws IOException {
+        final Path pci = profile("pci", CIPHER_WHITE_LIST);
+        Files.write(pci.resolve("javax.crypto.keygen.astub"), KEY_GENERATOR_STUB.getBytes(StandardCharsets.UTF_8));
+        final Path report = temporaryFolder.getRoot().toPath().resolve("reports/crypto.json");
+
+        Assert.assertEquals(Arrays.asList("6: [crypto.profile.violation] pci profile: HMACMD5",
+                                          "7: [crypto.profile.unknown] pci profile: The CheckerFramework was unable "
+                                          + "to detect which algorithm is being used in here."),
+                            compileSource("Keys", KEYS_SOURCE, "-AcryptoProfiles=pci=" + pci, "-AcryptoReport=" + report));
+        final String stubsReport = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+        Assert.assertFalse(stubsReport, stubsReport.contains("profile"));
+        final String pciReport = new String(Files.readAllBytes(report.resolveSibling("crypto.pci.json")),
+                                            StandardCharsets.UTF_8);
+        Assert.assertTrue(pciReport, pciReport.contains("\"rule\": \"crypto.cipher.unknown\""));
+        Assert.assertTrue(pciReport, pciReport.contains("\"suppressedBy\": \"https://example.com/issues/2\""));
+
+        Assert.assertEquals(Collections.emptyList(), compileSource("Keys", KEYS_SOURCE));
+    }
+
+    @Test
+    public void malformedProfilesAreAnError() throws IOException {
+        final List<String> diagnostics = compile("-AcryptoProfiles=strict");
+        Assert.assertTrue(diagnostics.toString(),
+                          diagnostics.get(0).contains("Cannot load the crypto policy profiles"));
+    }
+
+    /**
+     * @return a copy of the stubs with the white list of Cipher.getInstance replaced.
+     */
+    private Path profile(final String name, final String cipherWhiteList) throws IOException {
+        final Path stubs = temporaryFolder.newFolder(name).toPath();
+        for (String stub : Arrays.asList("java.security.astub", "javax.crypto.astub")) {
+            final String text = new String(Files.readAllBytes(Paths.get("stubs", stub)), StandardCharsets.UTF_8);
+            Files.write(stubs.resolve(stub),
+                        text.replace(CIPHER_WHITE_LIST, cipherWhiteList).getBytes(StandardCharsets.UTF_8));
+        }
+        return stubs;
+    }
+
+    /**
+     * @return the errors and warnings, as "line: [key] profile: algorithms" for policy diagnostics.
+     */
+    private List<String> compile(final String... options) throws IOException {
+        return compileSource("App", SOURCE, options);
+    }
+
+    private List<String> compileSource(final String className,
+                                       final String source,
+                                       final String... options) throws IOException {
+        final Path file = temporaryFolder.getRoot().toPath().resolve("src/" + className + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only", "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anocheckjdk", "-Astubs=stubs", "-classpath", System.getProperty("java.class.path")));
+        arguments.addAll(Arrays.asList(options));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                             fileManager.getJavaFileObjects(file.toFile())).call();
+        }
+        final List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.NOTE || diagnostic.getKind() == Diagnostic.Kind.OTHER) {
+                continue;
+            }
+            final String message = diagnostic.getMessage(null);
+            final Matcher matcher = POLICY_MESSAGE.matcher(message);
+            results.add(diagnostic.getLineNumber() + ": "
+                        + (matcher.matches()
+                           ? matcher.group(1) + " " + (matcher.group(2) == null ? "" : matcher.group(2))
+                             + matcher.group(3)
+                           : message));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,101 @@
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.amazon.checkerframework.cryptopolicy.report.FindingsReport;
+import com.amazon.checkerframework.cryptopolicy.report.ReportMerger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writes reports of both formats and merges them, checking that the merged report has every result of every input
+ * in order, whatever the formats of the inputs.
+ */
+public class ReportTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void resultsAreSortedByLocation() throws IOException {
+        final FindingsReport report = module("B.java");
+        final Path json = temporaryFolder.getRoot().toPath().resolve("b.json");
+        report.write(json);
+        Assert.assertEquals(Arrays.asList(
+            "{\"level\": \"error\", \"rule\": \"crypto.cipher.unknown\", \"file\": \"B.java\", \"line\": 3, "
+            + "\"column\": 9, \"message\": \"unknown\\n\\tcipher\"},",
+            "{\"level\": \"warning\", \"rule\": \"crypto.policy.warning\", \"file\": \"B.java\", \"line\": 7, "
+            + "\"column\": 5, \"message\": \"MD5 is weak\"},",
+            "{\"level\": \"error\", \"rule\": \"crypto.policy.violation\", \"file\": \"B.java\", \"line\": 12, "
+            + "\"column\": 1, \"message\": \"DES is not strong enough\", "
+            + "\"suppressedBy\": \"https://example.com/issues/1\"}"), results(json));
+    }
+
+    @Test
+    public void mergeAcrossFormats() throws IOException {
+        final Path modules = temporaryFolder.newFolder("modules").toPath();
+        Files.createDirectories(modules.resolve("a/build"));
+        Files.createDirectories(modules.resolve("b/build"));
+        module("A.java").write(modules.resolve("a/build/crypto.sarif"));
+        module("B.java").write(modules.resolve("b/build/crypto.json"));
+        Files.write(modules.resolve("b/build/metrics.txt"), "not a report".getBytes(StandardCharsets.UTF_8));
+
+        final Path sarif = temporaryFolder.getRoot().toPath().resolve("merged.sarif");
+        final List<Path> reports = ReportMerger.findReports(Collections.singletonList(modules), "*.{sarif,json}",
+                                                            sarif);
+        Assert.assertEquals(2, reports.size());
+        ReportMerger.Summary summary = ReportMerger.merge(reports, sarif);
+        Assert.assertEquals(2, summary.getReports());
+        Assert.assertEquals(0, summary.getUnreadable());
+        Assert.assertEquals(2, summary.getErrors());
+        Assert.assertEquals(2, summary.getWarnings());
+        Assert.assertEquals(2, summary.getSuppressed());
+
+        // and back to JSON, which must give the same results as the modules wrote.
+        final Path json = temporaryFolder.getRoot().toPath().resolve("merged.json");
+        summary = ReportMerger.merge(Collections.singletonList(sarif), json);
+        Assert.assertEquals(2, summary.getSuppressed());
+        final Path a = temporaryFolder.getRoot().toPath().resolve("a.json");
+        module("A.java").write(a);
+        final Path b = temporaryFolder.getRoot().toPath().resolve("b.json");
+        module("B.java").write(b);
+        final List<String> expected = results(a);
+        expected.set(expected.size() - 1, expected.get(expected.size() - 1) + ",");
+        expected.addAll(results(b));
+        Assert.assertEquals(expected, results(json));
+    }
+
+    @Test
+    public void unreadableReportsAreCounted() throws IOException {
+        final Path broken = temporaryFolder.newFile("broken.json").toPath();
+        Files.write(broken, "{\"results\": [{\"level\": ".getBytes(StandardCharsets.UTF_8));
+        final ReportMerger.Summary summary =
+            ReportMerger.merge(Collections.singletonList(broken), temporaryFolder.getRoot().toPath().resolve("m.json"));
+        Assert.assertEquals(0, summary.getReports());
+        Assert.assertEquals(1, summary.getUnreadable());
+    }
+
+    private static FindingsReport module(final String file) {
+        final FindingsReport report = new FindingsReport();
+        report.add(Diagnostic.Kind.ERROR, "crypto.policy.violation", file, 12, 1, "DES is not strong enough",
+                   "https://example.com/issues/1");
+        report.add(Diagnostic.Kind.MANDATORY_WARNING, "crypto.policy.warning", file, 7, 5, "MD5 is weak", null);
+        report.add(Diagnostic.Kind.ERROR, "crypto.cipher.unknown", file, 3, 9, "unknown\n\tcipher", null);
+        return report;
+    }
+
+    private static List<String> results(final Path json) throws IOException {
+        return Files.readAllLines(json, StandardCharsets.UTF_8).stream()
+                    .filter(line -> line.startsWith("    {"))
+                    .map(String::trim)
+                    .collect(Collectors.toList());
+    }
+}
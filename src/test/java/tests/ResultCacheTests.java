@@ -0,0 +1,150 @@
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles sources twice with -AcryptoCacheDir, checking that unchanged units are replayed and that a unit is
+ * checked again when a value it reads changes in a file it does not refer to directly.
+ */
+public class ResultCacheTests {
+
+    private static final Pattern REPLAYED = Pattern.compile("\"replayedClasses\": (\\d+)");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path cacheDir;
+    private Path metrics;
+
+    @Before
+    public void createCache() throws IOException {
+        cacheDir = temporaryFolder.newFolder("cache").toPath();
+        metrics = temporaryFolder.getRoot().toPath().resolve("metrics.json");
+    }
+
+    @Test
+    public void constantChainThroughThreeClasses() throws IOException {
+        final List<File> files = Arrays.asList(
+            write("First.java", String.join("\n",
+                "import javax.crypto.Cipher;",
+                "class First {",
+                "    static Cipher first() throws Exception {",
+                "        return Cipher.getInstance(Second.ALGORITHM);",
+                "    }",
+                "}")),
+            write("Second.java", String.join("\n",
+                "class Second {",
+                "    static final String ALGORITHM = Third.ALGORITHM;",
+                "}")),
+            writeThird("AES/GCM/NoPadding"));
+        Assert.assertEquals(Collections.emptyList(), compile(files));
+        Assert.assertEquals(Collections.emptyList(), compile(files));
+        // the prefilter skips the other two.
+        Assert.assertEquals(1, replayedClasses());
+
+        writeThird("DES");
+        Assert.assertEquals(Collections.singletonList("First.java:4: (crypto.policy.violation)"), compile(files));
+        Assert.assertEquals(0, replayedClasses());
+    }
+
+    @Test
+    public void annotationValueThroughAnotherClass() throws IOException {
+        final List<File> files = Arrays.asList(
+            write("Caller.java", String.join("\n",
+                "class Caller {",
+                "    static void call() {",
+                "        Wrapper.use(\"DES\");",
+                "    }",
+                "}")),
+            write("Wrapper.java", String.join("\n",
+                "import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;",
+                "class Wrapper {",
+                "    static void use(@CryptoWhiteListed({Approved.ALGORITHMS}) String algorithm) {",
+                "    }",
+                "}")),
+            writeApproved("des"));
+        Assert.assertEquals(Collections.emptyList(), compile(files));
+
+        writeApproved("aes/gcm.*");
+        Assert.assertEquals(Collections.singletonList("Caller.java:3: (crypto.policy.violation)"), compile(files));
+    }
+
+    private File writeThird(final String algorithm) throws IOException {
+        return write("Third.java", String.join("\n",
+            "class Third {",
+            "    static final String ALGORITHM = \"" + algorithm + "\";",
+            "}"));
+    }
+
+    private File writeApproved(final String regex) throws IOException {
+        return write("Approved.java", String.join("\n",
+            "class Approved {",
+            "    static final String ALGORITHMS = \"" + regex + "\";",
+            "}"));
+    }
+
+    private File write(final String fileName, final String source) throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), fileName);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @return the classes that the last compilation replayed from the cache.
+     */
+    private long replayedClasses() throws IOException {
+        final String json = new String(Files.readAllBytes(metrics), StandardCharsets.UTF_8);
+        final Matcher replayed = REPLAYED.matcher(json);
+        Assert.assertTrue(json, replayed.find());
+        return Long.parseLong(replayed.group(1));
+    }
+
+    /**
+     * @return the diagnostics of the checker, as "file:line: (key)", sorted.
+     */
+    private List<String> compile(final List<File> files) throws IOException {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only",
+            "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anomsgtext", "-Anocheckjdk", "-Astubs=stubs", "-nowarn",
+            "-AcryptoCacheDir=" + cacheDir, "-AcryptoMetrics=" + metrics,
+            "-classpath", System.getProperty("java.class.path")));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                                    StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                             fileManager.getJavaFileObjectsFromFiles(files)).call();
+        }
+        final List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.NOTE && diagnostic.getKind() != Diagnostic.Kind.OTHER) {
+                results.add(new File(diagnostic.getSource().getName()).getName() + ":"
+                            + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+}
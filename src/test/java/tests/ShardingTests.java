@@ -0,0 +1,151 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyComplianceChecker;
+import com.amazon.checkerframework.cryptopolicy.shard.ShardedChecker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks a source set of two packages that use each other's constants with the {@link ShardedChecker} and compares
+ * the diagnostics, the audit lines of the approved suppressions and the report with those of a single compilation.
+ */
+public class ShardingTests {
+
+    private static final String[][] SOURCES = {
+        {"a/Algorithms.java", String.join("\n",
+            "package a;",
+            "import javax.crypto.Cipher;",
+            "public class Algorithms {",
+            "    public static final String CIPHER = \"AES/GCM/NoPadding\";",
+            "    public static final String LEGACY = \"DES\";",
+            "    static Cipher legacy() throws Exception {",
+            "        return Cipher.getInstance(LEGACY);",
+            "    }",
+            "}")},
+        {"b/Service.java", String.join("\n",
+            "package b;",
+            "import java.security.MessageDigest;",
+            "import javax.crypto.Cipher;",
+            "import a.Algorithms;",
+            "public class Service {",
+            "    static void run(final String algorithm) throws Exception {",
+            "        Cipher.getInstance(Algorithms.CIPHER);",
+            "        Cipher.getInstance(Algorithms.LEGACY);",
+            "        Cipher.getInstance(algorithm);",
+            "        MessageDigest.getInstance(\"MD5\");",
+            "    }",
+            "}")},
+        {"a/Approved.java", String.join("\n",
+            "package a;",
+            "import javax.crypto.Cipher;",
+            "import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;",
+            "class Approved {",
+            "    @SuppressCryptoWarning(issue = \"https://example.com/issues/1\")",
+            "    static Cipher approved() throws Exception {",
+            "        return Cipher.getInstance(\"DES/ECB/PKCS5Padding\");",
+            "    }",
+            "}")},
+        {"b/Client.java", String.join("\n",
+            "package b;",
+            "import javax.crypto.Cipher;",
+            "class Client {",
+            "    static Cipher client() throws Exception {",
+            "        return Cipher.getInstance(\"RC4\");",
+            "    }",
+            "}")}
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> files = new ArrayList<>();
+
+    @Before
+    public void writeSources() throws IOException {
+        for (String[] source : SOURCES) {
+            final Path file = temporaryFolder.getRoot().toPath().resolve("src").resolve(source[0]);
+            Files.createDirectories(file.getParent());
+            Files.write(file, source[1].getBytes(StandardCharsets.UTF_8));
+            files.add(file.toString());
+        }
+    }
+
+    @Test
+    public void shardsPrintTheOutputOfASingleCompilation() throws IOException {
+        final Path sequentialReport = temporaryFolder.getRoot().toPath().resolve("sequential/crypto.json");
+        final Path shardedReport = temporaryFolder.getRoot().toPath().resolve("sharded/crypto.json");
+        final String[] sequential = compile("-AcryptoReport=" + sequentialReport);
+        final String[] sharded = checkInShards(3, "-AcryptoReport=" + shardedReport);
+
+        Assert.assertTrue(sequential[0], sequential[0].contains("crypto.cipher.unknown"));
+        Assert.assertTrue(sequential[0], sequential[0].contains("4 errors"));
+        Assert.assertEquals(sequential[0], sharded[0]);
+        Assert.assertEquals(sequential[1], sharded[1]);
+        Assert.assertEquals(new String(Files.readAllBytes(sequentialReport), StandardCharsets.UTF_8),
+                            new String(Files.readAllBytes(shardedReport), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void limitsApplyToTheMergedDiagnostics() throws IOException {
+        final String[] sequential = compile("-Xmaxerrs", "1", "-Awarns");
+        final String[] sharded = checkInShards(2, "-Xmaxerrs", "1", "-Awarns");
+
+        Assert.assertTrue(sequential[1], sequential[1].contains("Suppressing warning"));
+        Assert.assertEquals(sequential[0], sharded[0]);
+        Assert.assertEquals(sequential[1], sharded[1]);
+    }
+
+    /**
+     * @return what a single javac compilation printed to stderr and to stdout.
+     */
+    private String[] compile(final String... options) throws IOException {
+        final StringWriter diagnostics = new StringWriter();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final PrintStream stdout = System.out;
+        try (PrintWriter writer = new PrintWriter(diagnostics)) {
+            System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+            com.sun.tools.javac.Main.compile(arguments(options).toArray(new String[0]), writer);
+        } finally {
+            System.setOut(stdout);
+        }
+        return new String[] {diagnostics.toString(), new String(output.toByteArray(), StandardCharsets.UTF_8)};
+    }
+
+    /**
+     * @return what the sharded check printed to stderr and to stdout.
+     */
+    private String[] checkInShards(final int shards, final String... options) throws IOException {
+        final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final List<String> arguments = new ArrayList<>(Arrays.asList("--shards", String.valueOf(shards)));
+        arguments.addAll(arguments(options));
+        try (PrintStream err = new PrintStream(diagnostics, true, StandardCharsets.UTF_8.name());
+             PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8.name())) {
+            ShardedChecker.run(arguments, out, err);
+        }
+        return new String[] {new String(diagnostics.toByteArray(), StandardCharsets.UTF_8),
+                             new String(output.toByteArray(), StandardCharsets.UTF_8)};
+    }
+
+    private List<String> arguments(final String... options) {
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
+            "-proc:only", "-processor", CryptoPolicyComplianceChecker.class.getName(),
+            "-Anocheckjdk", "-Astubs=stubs", "-classpath", System.getProperty("java.class.path")));
+        arguments.addAll(Arrays.asList(options));
+        arguments.addAll(files);
+        return arguments;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicy;
+import com.amazon.checkerframework.cryptopolicy.CryptoPolicyCache;
+import com.amazon.checkerframework.cryptopolicy.PolicyVerdict;
+import com.amazon.checkerframework.cryptopolicy.VerdictCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the {@link VerdictCache} that all compilations in a JVM share: that its key tells apart policies that give
+ * a different verdict but not candidates in another order, its hit and miss counts, and that the least recently used
+ * verdict is evicted once it is full. The cache is shared, so every test uses regexes and candidates of its own.
+ */
+public class VerdictCacheTests {
+
+    /**
+     * VerdictCache.MAX_VERDICTS.
+     */
+    private static final int MAX_VERDICTS = 8192;
+
+    private final CryptoPolicyCache policies = CryptoPolicyCache.getInstance();
+    private final VerdictCache verdicts = VerdictCache.getInstance();
+
+    @Test
+    public void policiesOfAnotherKindOrWarnOnAreDistinct() {
+        final CryptoPolicy whiteList = whiteList("kind/.*");
+        final CryptoPolicy blackList =
+            policies.getPolicy(CryptoPolicy.Kind.BLACKLIST, list("kind/.*"), Collections.<String>emptyList());
+        final CryptoPolicy warnOn = policies.getPolicy(CryptoPolicy.Kind.WHITELIST, list("kind/.*"), list("kind/.*"));
+        Assert.assertNotEquals(whiteList, blackList);
+        Assert.assertNotEquals(whiteList, warnOn);
+
+        // in the same position, each gets a verdict of its own rather than the one cached for the others.
+        final List<String> candidates = list("kind/x");
+        Assert.assertNull(verdicts.getVerdict(whiteList, null, candidates).getErrorMessage());
+        Assert.assertEquals("KIND/X", verdicts.getVerdict(blackList, null, candidates).getErrorMessage());
+        final PolicyVerdict warning = verdicts.getVerdict(warnOn, null, candidates);
+        Assert.assertNull(warning.getErrorMessage());
+        Assert.assertEquals("KIND/X", warning.getWarningMessage());
+        Assert.assertNull(verdicts.getVerdict(whiteList, null, candidates).getWarningMessage());
+    }
+
+    @Test
+    public void candidatesInAnotherOrderHitTheSameVerdict() {
+        final CryptoPolicy policy = whiteList("order/a");
+        final long hits = verdicts.getHitCount();
+        final long misses = verdicts.getMissCount();
+        final PolicyVerdict verdict = verdicts.getVerdict(policy, null, list("order/a", "order/b", "order/c"));
+        Assert.assertEquals("ORDER/B, ORDER/C", verdict.getErrorMessage());
+        Assert.assertSame(verdict, verdicts.getVerdict(policy, null, list("order/c", "order/a", "order/b")));
+        Assert.assertSame(verdict, verdicts.getVerdict(policy, null, list("order/b", "order/c", "order/a")));
+        Assert.assertEquals(misses + 1, verdicts.getMissCount());
+        Assert.assertEquals(hits + 2, verdicts.getHitCount());
+
+        // a subset is another call site.
+        Assert.assertNotSame(verdict, verdicts.getVerdict(policy, null, list("order/a", "order/b")));
+        Assert.assertEquals(misses + 2, verdicts.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedVerdictIsEvicted() {
+        final CryptoPolicy policy = whiteList("verdicts/.*");
+        final PolicyVerdict evicted = verdicts.getVerdict(policy, null, list("verdicts/evicted"));
+        for (int i = 0; i < MAX_VERDICTS; i++) {
+            verdicts.getVerdict(policy, null, list("verdicts/filler-" + i));
+        }
+        final long misses = verdicts.getMissCount();
+        Assert.assertNotSame(evicted, verdicts.getVerdict(policy, null, list("verdicts/evicted")));
+        Assert.assertEquals(misses + 1, verdicts.getMissCount());
+    }
+
+    private CryptoPolicy whiteList(final String regex) {
+        return policies.getPolicy(CryptoPolicy.Kind.WHITELIST, list(regex), Collections.<String>emptyList());
+    }
+
+    private static List<String> list(final String... values) {
+        return Arrays.asList(values);
+    }
+}
@@ -0,0 +1,27 @@
+import javax.crypto.Cipher;
+
+/**
+ * With -AcryptoInterprocedural=closedWorld the compilation holds every caller, so public methods are resolved
+ * through their call sites as well.
+ */
+public class ClosedWorld {
+
+    public static Cipher make(final String cipher) throws Exception {
+        return Cipher.getInstance(cipher);
+    }
+
+    public static Cipher makeWeak(final String cipher) throws Exception {
+        // :: error: (crypto.policy.violation)
+        return Cipher.getInstance(cipher);
+    }
+
+    public static Cipher uncalled(final String cipher) throws Exception {
+        // :: error: (crypto.cipher.unknown)
+        return Cipher.getInstance(cipher);
+    }
+
+    static void callers() throws Exception {
+        make("AES/GCM/NoPadding");
+        makeWeak("DES");
+    }
+}
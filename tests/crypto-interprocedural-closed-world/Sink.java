@@ -0,0 +1,17 @@
+import javax.crypto.Cipher;
+
+/**
+ * Only called from {@link Source}, which javac checks after this class, so the summaries must include units that
+ * have not been checked yet. Other classes can call its methods, so they are only resolved in a closed world.
+ */
+public class Sink {
+
+    static Cipher open(final String cipher) throws Exception {
+        // :: error: (crypto.policy.violation)
+        return Cipher.getInstance(cipher);
+    }
+
+    static Cipher openStrong(final String cipher) throws Exception {
+        return Cipher.getInstance(cipher);
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * The call sites of {@link Sink}.
+ */
+public class Source {
+
+    static void open() throws Exception {
+        Sink.open("AES/GCM/NoPadding");
+        Sink.open("DESede");
+        Sink.openStrong("AES/GCM/NoPadding");
+    }
+}
@@ -0,0 +1,99 @@
+import javax.crypto.Cipher;
+import java.util.function.Consumer;
+
+/**
+ * With -AcryptoInterprocedural, an algorithm that reaches a policy through the parameters of private helper methods
+ * is resolved to the values that the call sites pass, as long as all of them are known.
+ */
+public class Helpers {
+
+    private static final String BAD_CIPHER = "des";
+    private static final String GOOD_CIPHER = "AES/GCM/NoPadding";
+
+    static void callers(final boolean strong) throws Exception {
+        badCipher(BAD_CIPHER);
+        goodCipher(GOOD_CIPHER);
+        goodCipher(strong ? "RSA/ECB/OAEPPadding" : GOOD_CIPHER);
+        chained("RC4");
+        reassigned(GOOD_CIPHER);
+        recursive(GOOD_CIPHER, 3);
+        referenced(GOOD_CIPHER);
+        Consumer<String> consumer = Helpers::referenced;
+        new Sub().create(GOOD_CIPHER);
+    }
+
+    static void unknownCaller(final String cipher) throws Exception {
+        goodCipher(cipher);
+    }
+
+    private static void badCipher(final String cipher) throws Exception {
+        // :: error: (crypto.policy.violation)
+        Cipher.getInstance(cipher);
+    }
+
+    private static void goodCipher(final String cipher) throws Exception {
+        // the call from unknownCaller passes a parameter that is not called, so this is unknown.
+        // :: error: (crypto.cipher.unknown)
+        Cipher.getInstance(cipher);
+    }
+
+    private static void chained(final String cipher) throws Exception {
+        chainedSink(cipher);
+    }
+
+    private static void chainedSink(final String cipher) throws Exception {
+        // :: error: (crypto.policy.violation)
+        Cipher.getInstance((cipher));
+    }
+
+    private static void fromConstants(final String cipher) throws Exception {
+        Cipher.getInstance(cipher);
+    }
+
+    static void constants() throws Exception {
+        fromConstants(GOOD_CIPHER);
+        fromConstants("RSA/ECB/OAEPPadding");
+    }
+
+    private static void reassigned(String cipher) throws Exception {
+        cipher = cipher.trim();
+        // :: error: (crypto.cipher.unknown)
+        Cipher.getInstance(cipher);
+    }
+
+    private static void recursive(final String cipher, final int depth) throws Exception {
+        if (depth > 0) {
+            recursive(cipher, depth - 1);
+        }
+        // :: error: (crypto.cipher.unknown)
+        Cipher.getInstance(cipher);
+    }
+
+    private static void referenced(final String cipher) {
+        try {
+            // :: error: (crypto.cipher.unknown)
+            Cipher.getInstance(cipher);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void uncalled(final String cipher) throws Exception {
+        // :: error: (crypto.cipher.unknown)
+        Cipher.getInstance(cipher);
+    }
+
+    private static class Base {
+        void create(final String cipher) throws Exception {
+        }
+    }
+
+    private static class Sub extends Base {
+        @Override
+        void create(final String cipher) throws Exception {
+            // calls through Base are not call sites of this method.
+            // :: error: (crypto.cipher.unknown)
+            Cipher.getInstance(cipher);
+        }
+    }
+}
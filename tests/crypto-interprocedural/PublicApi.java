@@ -0,0 +1,68 @@
+import javax.crypto.Cipher;
+
+/**
+ * Methods that other classes can call may be called by code outside the compilation, even package-private ones from
+ * the same package compiled separately, so their parameters are unknown even if every call site in the compilation
+ * passes an approved algorithm.
+ */
+public class PublicApi {
+
+    public static Cipher make(final String cipher) throws Exception {
+        // :: error: (crypto.cipher.unknown)
+        return Cipher.getInstance(cipher);
+    }
+
+    protected static Cipher makeProtected(final String cipher) throws Exception {
+        // :: error: (crypto.cipher.unknown)
+        return Cipher.getInstance(cipher);
+    }
+
+    public static Cipher uncalled(final String cipher) throws Exception {
+        // :: error: (crypto.cipher.unknown)
+        return Cipher.getInstance(cipher);
+    }
+
+    static Cipher makePackagePrivate(final String cipher) throws Exception {
+        // :: error: (crypto.cipher.unknown)
+        return Cipher.getInstance(cipher);
+    }
+
+    private static Cipher makePrivate(final String cipher) throws Exception {
+        return Cipher.getInstance(cipher);
+    }
+
+    static void callers() throws Exception {
+        make("AES/GCM/NoPadding");
+        makeProtected("AES/GCM/NoPadding");
+        makePackagePrivate("AES/GCM/NoPadding");
+        makePrivate("AES/GCM/NoPadding");
+        Hidden.make("AES/GCM/NoPadding");
+        new Object() {
+            public void run() throws Exception {
+                PrivateHelper.make("RC4");
+                local("AES/GCM/NoPadding");
+            }
+
+            void local(final String cipher) throws Exception {
+                Cipher.getInstance(cipher);
+            }
+        }.run();
+    }
+
+    /**
+     * Only visible in the package, which may have classes that are compiled separately.
+     */
+    static class Hidden {
+        public static Cipher make(final String cipher) throws Exception {
+            // :: error: (crypto.cipher.unknown)
+            return Cipher.getInstance(cipher);
+        }
+    }
+
+    private static class PrivateHelper {
+        public static Cipher make(final String cipher) throws Exception {
+            // :: error: (crypto.policy.violation)
+            return Cipher.getInstance(cipher);
+        }
+    }
+}
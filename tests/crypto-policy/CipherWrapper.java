@@ -0,0 +1,18 @@
+import javax.crypto.Cipher;
+
+import com.amazon.checkerframework.cryptopolicy.qual.CryptoWhiteListed;
+
+/**
+ * A wrapper whose parameter carries the policy itself. Callers in other files must still be checked, see
+ * {@link WrapperCaller}.
+ */
+public class CipherWrapper {
+
+    public static @CryptoWhiteListed({"aes/gcm.*"}) String defaultAlgorithm = "AES/GCM/NoPadding";
+
+    static Cipher create(final @CryptoWhiteListed({"aes/gcm.*"}) String algorithm) throws Exception {
+        // The Value Checker does not know the values of parameters.
+        // :: error: (crypto.cipher.unknown)
+        return Cipher.getInstance(algorithm);
+    }
+}
@@ -0,0 +1,68 @@
+import javax.crypto.Cipher;
+import java.util.function.Supplier;
+
+import com.amazon.checkerframework.cryptopolicy.qual.SuppressCryptoWarning;
+
+// The innermost variable, method or class decides: a suppression on a class covers its initializers but not its
+// methods, and a suppression on a method does not cover the methods of a class declared inside it.
+@SuppressCryptoWarning(issue = "https://example.com/issues/1")
+public class SuppressionScopes {
+
+    static {
+        try {
+            Cipher.getInstance("DES");
+        } catch (Exception e) {
+            // ignored
+        }
+    }
+
+    static void methodOfSuppressedClass() throws Exception {
+        // :: error: (crypto.policy.violation)
+        Cipher.getInstance("DES");
+    }
+
+    static void suppressedVariable() throws Exception {
+        @SuppressCryptoWarning(issue = "https://example.com/issues/2")
+        Cipher cipher = Cipher.getInstance("DES");
+        // :: error: (crypto.policy.violation)
+        Cipher.getInstance("RC4");
+    }
+
+    @SuppressCryptoWarning(issue = "https://example.com/issues/3")
+    static void suppressedMethod() throws Exception {
+        Cipher.getInstance("DES");
+        Supplier<Object> lambda = () -> {
+            try {
+                return Cipher.getInstance("RC4");
+            } catch (Exception e) {
+                return null;
+            }
+        };
+        new Object() {
+            void inner() throws Exception {
+                // :: error: (crypto.policy.violation)
+                Cipher.getInstance("DES");
+            }
+        };
+    }
+
+    static class Nested {
+        Supplier<Object> unsuppressedField = () -> {
+            try {
+                // :: error: (crypto.policy.violation)
+                return Cipher.getInstance("RC4");
+            } catch (Exception e) {
+                return null;
+            }
+        };
+
+        @SuppressCryptoWarning(issue = "https://example.com/issues/4")
+        Supplier<Object> suppressedField = () -> {
+            try {
+                return Cipher.getInstance("RC4");
+            } catch (Exception e) {
+                return null;
+            }
+        };
+    }
+}
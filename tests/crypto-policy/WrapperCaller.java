@@ -0,0 +1,17 @@
+/**
+ * Neither calls an annotated API directly nor mentions a policy qualifier, but uses the annotated members of
+ * {@link CipherWrapper}, so it must not be skipped by the prefilter.
+ */
+public class WrapperCaller {
+
+    static void useWrapper() throws Exception {
+        CipherWrapper.create("AES/GCM/NoPadding");
+        // :: error: (crypto.policy.violation)
+        CipherWrapper.create("DES");
+    }
+
+    static void assignField() {
+        // :: error: (crypto.policy.violation)
+        CipherWrapper.defaultAlgorithm = "DES";
+    }
+}